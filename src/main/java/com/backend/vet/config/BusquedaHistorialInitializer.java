@@ -0,0 +1,76 @@
+package com.backend.vet.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prepara el índice de texto completo del historial clínico.
+ * La columna {@code busqueda} es un tsvector generado por PostgreSQL a partir del diagnóstico (peso A),
+ * el tratamiento (B) y las observaciones (C) con el diccionario español, así que se mantiene en cada
+ * escritura sin intervención de la aplicación. No se mapea en la entidad: Hibernate no la lee ni la escribe.
+ * Se ejecuta durante el refresco del contexto, antes de que arranque el servidor web. El índice se crea con
+ * {@code CONCURRENTLY} para no bloquear las escrituras de otras instancias que ya atienden peticiones.
+ */
+@Component
+public class BusquedaHistorialInitializer implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusquedaHistorialInitializer.class);
+
+    static final String EXISTE_COLUMNA =
+            "SELECT COUNT(*) FROM information_schema.columns " +
+            "WHERE table_schema = current_schema() AND table_name = 'historial_clinico' AND column_name = 'busqueda'";
+
+    static final String COLUMNA =
+            "ALTER TABLE historial_clinico ADD COLUMN IF NOT EXISTS busqueda tsvector GENERATED ALWAYS AS (" +
+            "setweight(to_tsvector('spanish', coalesce(diagnostico, '')), 'A') || " +
+            "setweight(to_tsvector('spanish', coalesce(tratamiento, '')), 'B') || " +
+            "setweight(to_tsvector('spanish', coalesce(observaciones, '')), 'C')) STORED";
+
+    static final String NOMBRE_INDICE = "idx_historial_clinico_busqueda";
+
+    static final String INDICE_INVALIDO =
+            "SELECT COUNT(*) FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid " +
+            "WHERE i.relname = '" + NOMBRE_INDICE + "' AND NOT x.indisvalid";
+
+    static final String INDICE =
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + NOMBRE_INDICE + " ON historial_clinico USING GIN (busqueda)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        String motor = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(motor)) {
+            logger.warn("La búsqueda en el historial clínico requiere PostgreSQL; base de datos actual: {}", motor);
+            return;
+        }
+        // ALTER TABLE toma un bloqueo exclusivo aunque la columna exista: solo se ejecuta la primera vez,
+        // cuando además calcula la columna para todas las filas existentes
+        Integer columnas = jdbcTemplate.queryForObject(EXISTE_COLUMNA, Integer.class);
+        if (columnas == null || columnas == 0) {
+            jdbcTemplate.execute(COLUMNA);
+        }
+        // Un CREATE INDEX CONCURRENTLY interrumpido deja el índice inválido, y IF NOT EXISTS no lo reemplazaría
+        Integer invalidos = jdbcTemplate.queryForObject(INDICE_INVALIDO, Integer.class);
+        if (invalidos != null && invalidos > 0) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + NOMBRE_INDICE);
+        }
+        try {
+            // Fuera de una transacción: JdbcTemplate usa la conexión en modo autocommit
+            jdbcTemplate.execute(INDICE);
+            logger.info("Índice de búsqueda del historial clínico preparado");
+        } catch (DataAccessException ex) {
+            // La búsqueda sigue funcionando sin el índice, recorriendo la tabla; se reintenta en el próximo arranque
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + NOMBRE_INDICE);
+            logger.warn("No se pudo crear el índice de búsqueda del historial clínico: {}",
+                    ex.getMostSpecificCause().getMessage());
+        }
+    }
+}
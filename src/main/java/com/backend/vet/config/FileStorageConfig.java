@@ -2,15 +2,36 @@ package com.backend.vet.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 @ConfigurationProperties(prefix = "file.storage")
 public class FileStorageConfig {
     private String uploadDir = "uploads";
     private String historialDir = "historiales";
+    private String blobDir = "blobs";
+    private String uploadSessionDir = "subidas";
+    private String quarantineDir = "cuarentena";
+    private boolean contentAddressed = true;
+    // Dónde se guarda el contenido deduplicado: "filesystem" (blob-dir) o "s3"
+    private String backend = "filesystem";
+    private S3 s3 = new S3();
+    // Archivos con nombre único repartidos en historial-dir/ab/cd/<nombre> según el hash del nombre
+    private boolean shardedLayout = true;
+    private DataSize maxUploadSize = DataSize.ofMegabytes(512);
+    // Tipos MIME que se guardan comprimidos; admite comodines como "text/*"
+    private List<String> compressibleTypes = new ArrayList<>(List.of(
+            "text/*", "application/json", "application/xml", "application/pdf", "application/rtf",
+            "application/dicom", "application/msword", "application/vnd.ms-excel"));
+    private int compressionLevel = 6;
+    // Ahorro mínimo para conservar la versión comprimida; si no se alcanza, el archivo se guarda sin comprimir
+    private double compressionMinSavings = 0.1;
     
     public String getUploadDir() {
         return uploadDir;
@@ -28,7 +49,220 @@ public class FileStorageConfig {
         this.historialDir = historialDir;
     }
     
+    public String getBlobDir() {
+        return blobDir;
+    }
+    
+    public void setBlobDir(String blobDir) {
+        this.blobDir = blobDir;
+    }
+    
+    public String getUploadSessionDir() {
+        return uploadSessionDir;
+    }
+    
+    public void setUploadSessionDir(String uploadSessionDir) {
+        this.uploadSessionDir = uploadSessionDir;
+    }
+    
+    public String getQuarantineDir() {
+        return quarantineDir;
+    }
+    
+    public void setQuarantineDir(String quarantineDir) {
+        this.quarantineDir = quarantineDir;
+    }
+    
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+    
+    public void setContentAddressed(boolean contentAddressed) {
+        this.contentAddressed = contentAddressed;
+    }
+    
+    public String getBackend() {
+        return backend;
+    }
+    
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+    
+    public S3 getS3() {
+        return s3;
+    }
+    
+    public void setS3(S3 s3) {
+        this.s3 = s3;
+    }
+    
+    public boolean isShardedLayout() {
+        return shardedLayout;
+    }
+    
+    public void setShardedLayout(boolean shardedLayout) {
+        this.shardedLayout = shardedLayout;
+    }
+    
+    public DataSize getMaxUploadSize() {
+        return maxUploadSize;
+    }
+    
+    public void setMaxUploadSize(DataSize maxUploadSize) {
+        this.maxUploadSize = maxUploadSize;
+    }
+    
+    public List<String> getCompressibleTypes() {
+        return compressibleTypes;
+    }
+    
+    public void setCompressibleTypes(List<String> compressibleTypes) {
+        this.compressibleTypes = compressibleTypes;
+    }
+    
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+    
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+    
+    public double getCompressionMinSavings() {
+        return compressionMinSavings;
+    }
+    
+    public void setCompressionMinSavings(double compressionMinSavings) {
+        this.compressionMinSavings = compressionMinSavings;
+    }
+    
     public Path getHistorialStoragePath() {
         return Paths.get(uploadDir, historialDir).toAbsolutePath().normalize();
     }
+    
+    public Path getUploadSessionPath() {
+        return Paths.get(uploadDir, uploadSessionDir).toAbsolutePath().normalize();
+    }
+    
+    public Path getBlobStoragePath() {
+        return Paths.get(uploadDir, blobDir).toAbsolutePath().normalize();
+    }
+    
+    public Path getQuarantinePath() {
+        return Paths.get(uploadDir, quarantineDir).toAbsolutePath().normalize();
+    }
+    
+    public Path getUploadRootPath() {
+        return Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+    
+    /**
+     * Configuración del almacén S3 o compatible (MinIO, Ceph...)
+     */
+    public static class S3 {
+        private String bucket;
+        // Solo para servicios compatibles; vacío usa el punto de acceso de AWS de la región
+        private String endpoint;
+        private String region = "us-east-1";
+        // Vacías usan la cadena de credenciales por defecto de AWS (variables de entorno, perfil, rol)
+        private String accessKey;
+        private String secretKey;
+        // MinIO y la mayoría de servicios compatibles requieren rutas http://host/bucket/clave
+        private boolean pathStyle = false;
+        private String prefix = "blobs/";
+        // A partir de este tamaño se sube por partes, varias a la vez
+        private DataSize multipartThreshold = DataSize.ofMegabytes(16);
+        private DataSize partSize = DataSize.ofMegabytes(8);
+        private int parallelParts = 4;
+        private Duration presignTtl = Duration.ofMinutes(15);
+        
+        public String getBucket() {
+            return bucket;
+        }
+        
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+        
+        public String getEndpoint() {
+            return endpoint;
+        }
+        
+        public void setEndpoint(String endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        public String getRegion() {
+            return region;
+        }
+        
+        public void setRegion(String region) {
+            this.region = region;
+        }
+        
+        public String getAccessKey() {
+            return accessKey;
+        }
+        
+        public void setAccessKey(String accessKey) {
+            this.accessKey = accessKey;
+        }
+        
+        public String getSecretKey() {
+            return secretKey;
+        }
+        
+        public void setSecretKey(String secretKey) {
+            this.secretKey = secretKey;
+        }
+        
+        public boolean isPathStyle() {
+            return pathStyle;
+        }
+        
+        public void setPathStyle(boolean pathStyle) {
+            this.pathStyle = pathStyle;
+        }
+        
+        public String getPrefix() {
+            return prefix;
+        }
+        
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+        
+        public DataSize getMultipartThreshold() {
+            return multipartThreshold;
+        }
+        
+        public void setMultipartThreshold(DataSize multipartThreshold) {
+            this.multipartThreshold = multipartThreshold;
+        }
+        
+        public DataSize getPartSize() {
+            return partSize;
+        }
+        
+        public void setPartSize(DataSize partSize) {
+            this.partSize = partSize;
+        }
+        
+        public int getParallelParts() {
+            return parallelParts;
+        }
+        
+        public void setParallelParts(int parallelParts) {
+            this.parallelParts = parallelParts;
+        }
+        
+        public Duration getPresignTtl() {
+            return presignTtl;
+        }
+        
+        public void setPresignTtl(Duration presignTtl) {
+            this.presignTtl = presignTtl;
+        }
+    }
 }
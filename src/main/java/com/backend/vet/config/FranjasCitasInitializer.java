@@ -0,0 +1,65 @@
+package com.backend.vet.config;
+
+import com.backend.vet.model.Cita;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Crea el índice único que impide dos citas activas del mismo veterinario en la misma franja.
+ * {@code DisponibilidadIndex} rechaza las reservas en memoria, pero ese índice es de cada instancia y se vacía al
+ * reiniciar; el índice de la base de datos es la garantía. La franja se calcula con la duración configurada, que
+ * forma parte del nombre del índice: al cambiarla se elimina el índice anterior y se crea el nuevo.
+ * Se ejecuta durante el refresco del contexto, antes de que arranque el servidor web, y con
+ * {@code CONCURRENTLY} para no bloquear las escrituras de otras instancias que ya atienden peticiones.
+ */
+@Component
+public class FranjasCitasInitializer implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(FranjasCitasInitializer.class);
+
+    static final String INDICES =
+            "SELECT i.relname FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid " +
+            "WHERE i.relname LIKE '" + Cita.INDICE_FRANJA + "%' AND (i.relname <> ? OR NOT x.indisvalid)";
+
+    static final String INDICE = "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS %s ON citas " +
+            "(id_usuario, fecha, (CAST(EXTRACT(HOUR FROM hora) * 60 + EXTRACT(MINUTE FROM hora) AS INTEGER) / %d)) " +
+            "WHERE id_usuario IS NOT NULL AND (estado IS NULL OR UPPER(estado) <> 'CANCELADA')";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.agenda.duracion-slot-minutos:30}")
+    private int duracionSlotMinutos;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        String motor = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(motor)) {
+            return;
+        }
+        String nombre = Cita.INDICE_FRANJA + duracionSlotMinutos;
+        // Índices de otra duración o que quedaron inválidos tras un CREATE INDEX CONCURRENTLY fallido
+        List<String> sobrantes = jdbcTemplate.queryForList(INDICES, String.class, nombre);
+        for (String sobrante : sobrantes) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + sobrante);
+        }
+        try {
+            // Fuera de una transacción: JdbcTemplate usa la conexión en modo autocommit
+            jdbcTemplate.execute(String.format(INDICE, nombre, duracionSlotMinutos));
+        } catch (DataAccessException ex) {
+            // Citas ya superpuestas: la reserva en memoria sigue protegiendo hasta que se corrijan
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + nombre);
+            logger.warn("No se pudo crear el índice de franjas de citas {}; revise las citas superpuestas: {}",
+                    nombre, ex.getMostSpecificCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.backend.vet.config;
+
+import com.backend.vet.model.Cita;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Alinea la secuencia {@code citas_seq} con los ids existentes.
+ * Las citas usaban una columna IDENTITY; al pasar a una secuencia por bloques, la secuencia nueva empieza en 1
+ * y chocaría con las filas ya creadas. Con asignación por bloques un id nunca supera el último valor leído de la
+ * secuencia, así que basta con que ese valor quede al menos un bloque por encima del id máximo.
+ * La secuencia solo avanza, por lo que es seguro ejecutarlo en cada arranque y desde varias instancias.
+ * Se ejecuta al terminar de crear los beans, durante el refresco del contexto y antes de que arranque el
+ * servidor web: un {@code CommandLineRunner} correría con la aplicación ya aceptando peticiones que crean citas.
+ */
+@Component
+public class SecuenciaCitasInitializer implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecuenciaCitasInitializer.class);
+
+    static final String SECUENCIA =
+            "CREATE SEQUENCE IF NOT EXISTS citas_seq START WITH 1 INCREMENT BY " + Cita.BLOQUE_IDS;
+
+    static final String AJUSTE =
+            "SELECT setval('citas_seq', maximo + " + Cita.BLOQUE_IDS + ") " +
+            "FROM (SELECT COALESCE(MAX(id), 0) AS maximo FROM citas) c " +
+            "WHERE (SELECT last_value FROM citas_seq) < maximo + " + Cita.BLOQUE_IDS;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        String motor = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(motor)) {
+            return;
+        }
+        jdbcTemplate.execute(SECUENCIA);
+        List<Long> ajustada = jdbcTemplate.queryForList(AJUSTE, Long.class);
+        if (!ajustada.isEmpty()) {
+            logger.info("Secuencia de citas alineada con los ids existentes: {}", ajustada.get(0));
+        }
+    }
+}
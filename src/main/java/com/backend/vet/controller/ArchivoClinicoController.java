@@ -1,8 +1,14 @@
 package com.backend.vet.controller;
 
 import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.dto.MigracionAlmacenamientoDto;
+import com.backend.vet.exception.BadRequestException;
 import com.backend.vet.exception.FileStorageException;
 import com.backend.vet.service.ArchivoClinicoService;
+import com.backend.vet.service.MigracionAlmacenamientoService;
+import com.backend.vet.service.MiniaturaService;
+import com.backend.vet.util.CompresionUtil;
+import com.backend.vet.util.DescargaUtil;
 import com.backend.vet.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,15 +18,29 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -30,9 +50,17 @@ public class ArchivoClinicoController {
     
     private static final Logger logger = LoggerFactory.getLogger(ArchivoClinicoController.class);
     
+    private static final CacheControl CACHE_DESCARGAS = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+    
     @Autowired
     private ArchivoClinicoService archivoClinicoService;
     
+    @Autowired
+    private MiniaturaService miniaturaService;
+    
+    @Autowired
+    private MigracionAlmacenamientoService migracionAlmacenamientoService;
+    
     @Operation(summary = "Obtener todos los archivos clínicos", description = "${api.archivoClinico.getAll.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
@@ -93,6 +121,69 @@ public class ArchivoClinicoController {
         }
     }
     
+    @Operation(summary = "Subir archivo clínico por streaming", description = "${api.archivoClinico.uploadStream.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @PostMapping(value = "/historial/{historialClinicoId}/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('VETERINARIO') or hasRole('ADMIN')")
+    public ResponseEntity<ArchivoClinicoDto> uploadArchivoClinicoStream(
+            @Parameter(description = "ID del historial clínico", required = true)
+            @PathVariable Long historialClinicoId,
+            HttpServletRequest request) throws IOException {
+        // No se deben leer parámetros de la petición: obligaría al contenedor a procesar el cuerpo completo
+        String boundary = MediaType.parseMediaType(request.getContentType()).getParameter("boundary");
+        if (boundary == null || boundary.isEmpty()) {
+            throw new BadRequestException("El Content-Type no indica el boundary del cuerpo multipart");
+        }
+        if (boundary.startsWith("\"") && boundary.endsWith("\"") && boundary.length() > 1) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        logger.info("Subiendo archivo por streaming para historial clínico ID: {}", historialClinicoId);
+        try {
+            ArchivoClinicoDto resultado = archivoClinicoService.createArchivoClinico(
+                    historialClinicoId, request.getInputStream(), boundary);
+            logger.info("Archivo subido exitosamente con ID: {} ({} bytes)", resultado.getId(), resultado.getTamano());
+            return ResponseUtil.ok(resultado);
+        } catch (FileStorageException e) {
+            logger.error("Error al subir archivo: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @Operation(summary = "Adjuntar contenido ya almacenado", description = "${api.archivoClinico.attachExisting.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @PostMapping("/historial/{historialClinicoId}/existente")
+    @PreAuthorize("hasRole('VETERINARIO') or hasRole('ADMIN')")
+    public ResponseEntity<ArchivoClinicoDto> adjuntarContenidoExistente(
+            @Parameter(description = "ID del historial clínico", required = true)
+            @PathVariable Long historialClinicoId,
+            @Parameter(description = "Hash SHA-256 del contenido, en hexadecimal", required = true)
+            @RequestParam String sha256,
+            @Parameter(description = "Nombre del archivo", required = true)
+            @RequestParam String nombreArchivo,
+            @Parameter(description = "Tipo MIME del archivo")
+            @RequestParam(required = false) String tipoMime) {
+        logger.info("Adjuntando contenido {} al historial clínico ID: {}", sha256, historialClinicoId);
+        try {
+            ArchivoClinicoDto resultado = archivoClinicoService.adjuntarContenidoExistente(
+                    historialClinicoId, sha256.toLowerCase(), nombreArchivo, tipoMime);
+            logger.info("Contenido adjuntado sin transferencia con ID: {}", resultado.getId());
+            return ResponseUtil.ok(resultado);
+        } catch (FileStorageException e) {
+            logger.error("Error al adjuntar contenido: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @Operation(summary = "Actualizar datos de archivo clínico", description = "${api.archivoClinico.update.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
@@ -141,31 +232,149 @@ public class ArchivoClinicoController {
     @Operation(summary = "Descargar archivo clínico", description = "${api.archivoClinico.download.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
-        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}")
+        @ApiResponse(responseCode = "206", description = "${api.response-codes.partial-content.description}"),
+        @ApiResponse(responseCode = "304", description = "${api.response-codes.not-modified.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "416", description = "${api.response-codes.range-not-satisfiable.description}")
     })
     @GetMapping("/download/{fileName:.+}")
     @PreAuthorize("hasAnyRole('ADMIN', 'VETERINARIO')")
-    public ResponseEntity<Resource> downloadFile(
+    public ResponseEntity<?> downloadFile(
             @Parameter(description = "Nombre del archivo", required = true)
-            @PathVariable String fileName) {
+            @PathVariable String fileName,
+            ServletWebRequest webRequest) throws IOException {
         logger.info("Solicitando descarga del archivo: {}", fileName);
+        ArchivoClinicoService.Descarga descarga;
         try {
-            Resource resource = archivoClinicoService.loadFileAsResource(fileName);
-            String originalFileName = fileName;
-            if (fileName.contains("_")) {
-                originalFileName = fileName.substring(fileName.indexOf("_") + 1);
-            }
-            logger.debug("Archivo encontrado y listo para descarga: {}", originalFileName);
-            
-            String contentType = "application/octet-stream";
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + originalFileName + "\"")
-                    .body(resource);
+            descarga = archivoClinicoService.getDescarga(fileName);
         } catch (FileStorageException ex) {
             logger.error("Error al intentar descargar el archivo {}: {}", fileName, ex.getMessage());
             return ResponseEntity.notFound().build();
         }
+        
+        HttpServletRequest request = webRequest.getRequest();
+        HttpServletResponse response = webRequest.getResponse();
+        // Los archivos guardados comprimidos se envían tal cual a los clientes que aceptan su códec;
+        // los rangos se aplican entonces sobre los bytes comprimidos
+        boolean comprimido = descarga.getCodificacion() != null;
+        boolean enviarComprimido = comprimido && CompresionUtil.aceptaCodificacion(
+                request.getHeader(HttpHeaders.ACCEPT_ENCODING), descarga.getCodificacion());
+        boolean descomprimir = comprimido && !enviarComprimido;
+        String etag = enviarComprimido ? descarga.getEtagCodificado() : descarga.getEtag();
+        // Contenido en un almacén remoto: el cliente lo descarga directamente con una URL firmada
+        // (que también admite rangos); si no la hay, se envía completo a través del servidor
+        boolean remoto = descarga.getPath() == null;
+        boolean redirigir = remoto && !descomprimir && descarga.getUrlFirmada() != null;
+        boolean conRangos = !descomprimir && (!remoto || redirigir);
+        
+        // El nombre almacenado es único, por lo que su contenido nunca cambia
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_DESCARGAS.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, conRangos ? "bytes" : "none");
+        if (comprimido) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (webRequest.checkNotModified(etag, descarga.getUltimaModificacion())) {
+            logger.debug("Archivo {} sin cambios para el cliente", fileName);
+            return null;
+        }
+        if (redirigir) {
+            // La URL firmada caduca: la redirección no se guarda en caché
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            logger.debug("Redirigiendo la descarga de {} al almacén de contenido", fileName);
+            return ResponseEntity.status(HttpStatus.FOUND).location(descarga.getUrlFirmada()).build();
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(descarga.getNombreOriginal(), StandardCharsets.UTF_8).build().toString());
+        
+        if (descomprimir) {
+            // Sin rangos: se envía el contenido original completo, descomprimido al vuelo
+            response.setContentType(tipoMime(descarga.getTipoMime()).toString());
+            logger.debug("Enviando {} descomprimido: el cliente no acepta {}", fileName, descarga.getCodificacion());
+            if (remoto) {
+                DescargaUtil.enviarDescomprimido(request, response, archivoClinicoService.abrirArchivo(fileName),
+                        descarga.getCodificacion(), descarga.getTamanoOriginal());
+            } else {
+                DescargaUtil.enviarDescomprimido(request, response, descarga.getPath(), descarga.getCodificacion(),
+                        descarga.getTamanoOriginal());
+            }
+            return null;
+        }
+        if (enviarComprimido) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, descarga.getCodificacion());
+        }
+        if (remoto) {
+            response.setContentType(tipoMime(descarga.getTipoMime()).toString());
+            DescargaUtil.enviar(request, response, archivoClinicoService.abrirArchivo(fileName), descarga.getTamano());
+            return null;
+        }
+        
+        long inicio = 0;
+        long longitud = descarga.getTamano();
+        try {
+            List<HttpRange> rangos = DescargaUtil.rangosSolicitados(request, etag, descarga.getUltimaModificacion());
+            FileSystemResource resource = new FileSystemResource(descarga.getPath());
+            if (rangos.size() > 1) {
+                // Varios rangos: se responde multipart/byteranges
+                logger.debug("Enviando {} rangos del archivo {}", rangos.size(), fileName);
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .body(HttpRange.toResourceRegions(rangos, resource));
+            }
+            if (rangos.size() == 1) {
+                ResourceRegion region = rangos.get(0).toResourceRegion(resource);
+                inicio = region.getPosition();
+                longitud = region.getCount();
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + (inicio + longitud - 1)
+                        + "/" + descarga.getTamano());
+            }
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Rango no válido para el archivo {}: {}", fileName, ex.getMessage());
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + descarga.getTamano())
+                    .build();
+        }
+        
+        response.setContentType(tipoMime(descarga.getTipoMime()).toString());
+        logger.debug("Archivo encontrado y listo para descarga: {} ({} bytes desde {})",
+                descarga.getNombreOriginal(), longitud, inicio);
+        DescargaUtil.enviar(request, response, descarga.getPath(), inicio, longitud);
+        return null;
+    }
+    
+    @Operation(summary = "Obtener miniatura de un archivo clínico", description = "${api.archivoClinico.thumbnail.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "304", description = "${api.response-codes.not-modified.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/{id}/thumbnail")
+    @PreAuthorize("hasAnyRole('ADMIN', 'VETERINARIO')")
+    public ResponseEntity<Resource> getMiniatura(
+            @Parameter(description = "ID del archivo clínico", required = true)
+            @PathVariable Long id) {
+        logger.debug("Solicitando miniatura del archivo clínico con ID: {}", id);
+        ArchivoClinicoDto archivoClinico = archivoClinicoService.getArchivoClinicoById(id);
+        if (archivoClinico == null || archivoClinico.getMiniaturaUrl() == null) {
+            return ResponseUtil.notFound();
+        }
+        try {
+            Path miniatura = miniaturaService.obtener(archivoClinico);
+            if (miniatura == null) {
+                logger.debug("El archivo clínico {} no tiene un formato de imagen compatible", id);
+                return ResponseUtil.notFound();
+            }
+            ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .cacheControl(CACHE_DESCARGAS);
+            if (archivoClinico.getSha256() != null) {
+                respuesta.eTag("\"" + archivoClinico.getSha256() + "-miniatura\"");
+            }
+            return respuesta.body(new FileSystemResource(miniatura));
+        } catch (FileStorageException ex) {
+            logger.error("Error al obtener la miniatura del archivo clínico {}: {}", id, ex.getMessage());
+            return ResponseUtil.notFound();
+        }
     }
     
     @Operation(summary = "Obtener archivos por historial clínico", description = "${api.archivoClinico.getByHistorial.description}")
@@ -231,4 +440,39 @@ public class ArchivoClinicoController {
         logger.debug("Se encontraron {} archivos del tipo MIME: {}", archivos.size(), tipoMime);
         return ResponseUtil.ok(archivos);
     }
+    
+    @Operation(summary = "Iniciar la migración del almacenamiento", description = "${api.archivoClinico.migrar.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "${api.response-codes.accepted.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @PostMapping("/almacenamiento/migracion")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<MigracionAlmacenamientoDto> iniciarMigracion() {
+        logger.info("Iniciando la migración del almacenamiento de archivos clínicos");
+        return ResponseEntity.accepted().body(migracionAlmacenamientoService.iniciar());
+    }
+    
+    @Operation(summary = "Estado de la migración del almacenamiento", description = "${api.archivoClinico.estadoMigracion.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/almacenamiento/migracion")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<MigracionAlmacenamientoDto> getEstadoMigracion() {
+        return ResponseUtil.ok(migracionAlmacenamientoService.getEstado());
+    }
+    
+    private MediaType tipoMime(String tipoMime) {
+        if (tipoMime != null) {
+            try {
+                return MediaType.parseMediaType(tipoMime);
+            } catch (InvalidMediaTypeException ex) {
+                logger.debug("Tipo MIME almacenado no válido: {}", tipoMime);
+            }
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
 }
@@ -1,6 +1,9 @@
 package com.backend.vet.controller;
 
 import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.DisponibilidadDto;
+import com.backend.vet.dto.PaginaCursorDto;
+import com.backend.vet.dto.ResultadoLoteCitasDto;
 import com.backend.vet.service.CitaService;
 import com.backend.vet.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,11 +15,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -44,6 +53,41 @@ public class CitaController {
         return ResponseUtil.ok(citas);
     }
     
+    @Operation(summary = "Obtener citas paginadas por cursor", description = "${api.cita.getPagina.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/pagina")
+    @PreAuthorize("hasAuthority('CITA_READ')")
+    public ResponseEntity<PaginaCursorDto<CitaDto>> getCitasPagina(
+            @Parameter(description = "Cursor devuelto por la página anterior (omitir para la primera página)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Número de citas por página")
+            @RequestParam(defaultValue = "50") int size) {
+        logger.info("Obteniendo página de citas con tamaño {}", size);
+        PaginaCursorDto<CitaDto> pagina = citaService.getCitasPagina(cursor, size);
+        logger.debug("Se devolvieron {} citas, hay más: {}", pagina.getContenido().size(), pagina.isTieneMas());
+        return ResponseUtil.ok(pagina);
+    }
+    
+    @Operation(summary = "Exportar todas las citas en NDJSON", description = "${api.cita.export.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('CITA_READ')")
+    public void exportCitas(HttpServletResponse response) throws IOException {
+        logger.info("Exportando todas las citas en formato NDJSON");
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"citas.ndjson\"");
+        long total = citaService.exportCitas(response.getOutputStream());
+        logger.info("Exportación finalizada: {} citas", total);
+    }
+    
     @Operation(summary = "Obtener cita por ID", description = "${api.cita.getById.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
@@ -83,6 +127,23 @@ public class CitaController {
         return ResponseUtil.created(created);
     }
     
+    @Operation(summary = "Crear o actualizar citas en lote", description = "${api.cita.bulk.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasAuthority('CITA_CREATE') and hasAuthority('CITA_UPDATE')")
+    public ResponseEntity<ResultadoLoteCitasDto> procesarLote(InputStream cuerpo) throws IOException {
+        List<CitaDto> citas = citaService.leerLote(cuerpo);
+        logger.info("Procesando lote de {} citas", citas.size());
+        ResultadoLoteCitasDto resultado = citaService.procesarLote(citas);
+        logger.info("Lote procesado - Creadas: {}, Actualizadas: {}, Fallidas: {}",
+                resultado.getCreadas(), resultado.getActualizadas(), resultado.getFallidas());
+        return ResponseUtil.ok(resultado);
+    }
+    
     @Operation(summary = "Actualizar cita", description = "${api.cita.update.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
@@ -210,17 +271,43 @@ public class CitaController {
         return ResponseEntity.ok(citas);
     }
 
+    @Operation(summary = "Obtener disponibilidad de un veterinario", description = "${api.cita.getDisponibilidad.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/disponibilidad")
+    @PreAuthorize("hasAuthority('CITA_READ')")
+    public ResponseEntity<List<DisponibilidadDto>> getDisponibilidad(
+            @Parameter(description = "ID del veterinario", required = true)
+            @RequestParam Long veterinarioId,
+            @Parameter(description = "Fecha de inicio", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @Parameter(description = "Fecha de fin", required = true)
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        logger.info("Consultando disponibilidad del veterinario ID: {} entre {} y {}", veterinarioId, desde, hasta);
+        List<DisponibilidadDto> disponibilidad = citaService.getDisponibilidad(veterinarioId, desde, hasta);
+        logger.debug("Disponibilidad calculada para {} días", disponibilidad.size());
+        return ResponseUtil.ok(disponibilidad);
+    }
+
     @Operation(summary = "Obtener próximas citas", 
-          description = "Proporciona la lista de próximas citas programadas a partir de hoy")
+          description = "Proporciona la lista de próximas citas programadas a partir de hoy, ordenadas por fecha y hora")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Lista de citas obtenida correctamente"),
         @ApiResponse(responseCode = "403", description = "No autorizado para acceder a este recurso")
     })
     @GetMapping("/proximas")
     @PreAuthorize("hasAuthority('CITA_READ')")
-    public ResponseEntity<List<CitaDto>> getProximasCitas() {
-        logger.info("Obteniendo lista de próximas citas");
-        List<CitaDto> citas = citaService.findProximasCitas();
+    public ResponseEntity<List<CitaDto>> getProximasCitas(
+            @Parameter(description = "Número máximo de citas a devolver")
+            @RequestParam(defaultValue = "10") int limit,
+            @Parameter(description = "Número de citas a omitir")
+            @RequestParam(defaultValue = "0") long offset) {
+        logger.info("Obteniendo lista de próximas citas (limit: {}, offset: {})", limit, offset);
+        List<CitaDto> citas = citaService.findProximasCitas(limit, offset);
         logger.debug("Se encontraron {} próximas citas", citas.size());
         return ResponseUtil.ok(citas);
     }
@@ -1,6 +1,9 @@
 package com.backend.vet.controller;
 
 import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.dto.LineaTiempoHistorialDto;
+import com.backend.vet.dto.PaginaDto;
+import com.backend.vet.dto.ResultadoBusquedaHistorialDto;
 import com.backend.vet.service.HistorialClinicoService;
 import com.backend.vet.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
@@ -148,6 +151,30 @@ public class HistorialClinicoController {
         return ResponseEntity.ok(historiales);
     }
     
+    @Operation(summary = "Línea de tiempo del historial de una mascota", description = "${api.historialClinico.lineaTiempo.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/mascota/{mascotaId}/linea-tiempo")
+    @PreAuthorize("hasAuthority('HISTORIAL_CLINICO_READ')")
+    public ResponseEntity<LineaTiempoHistorialDto> getLineaTiempo(
+            @Parameter(description = "ID de la mascota", required = true)
+            @PathVariable Long mascotaId,
+            @Parameter(description = "Cursor devuelto por la página anterior (omitir para la primera página)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "cursorReciente de una consulta anterior: solo devuelve las entradas más nuevas")
+            @RequestParam(required = false) String since,
+            @Parameter(description = "Número de entradas por página")
+            @RequestParam(defaultValue = "20") int size) {
+        logger.info("Consultando la línea de tiempo de la mascota ID: {} con tamaño {}", mascotaId, size);
+        LineaTiempoHistorialDto pagina = historialClinicoService.getLineaTiempo(mascotaId, cursor, since, size);
+        logger.debug("Se devolvieron {} entradas, hay más: {}", pagina.getContenido().size(), pagina.isTieneMas());
+        return ResponseUtil.ok(pagina);
+    }
+    
     @Operation(summary = "Obtener historial clínico por cliente", description = "${api.historialClinico.getByCliente.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
@@ -213,4 +240,25 @@ public class HistorialClinicoController {
         logger.debug("Se encontraron {} registros en el rango de fechas especificado", historiales.size());
         return ResponseEntity.ok(historiales);
     }
+    
+    @Operation(summary = "Buscar en el historial clínico", description = "${api.historialClinico.buscar.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/buscar")
+    @PreAuthorize("hasAuthority('HISTORIAL_CLINICO_READ')")
+    public ResponseEntity<PaginaDto<ResultadoBusquedaHistorialDto>> buscarHistorialClinico(
+            @Parameter(description = "Texto a buscar en diagnóstico, tratamiento y observaciones", required = true)
+            @RequestParam String q,
+            @Parameter(description = "Número de página, empezando en 0")
+            @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Número de resultados por página")
+            @RequestParam(defaultValue = "20") int size) {
+        logger.info("Buscando en el historial clínico (página {}, tamaño {})", page, size);
+        PaginaDto<ResultadoBusquedaHistorialDto> resultados = historialClinicoService.buscarHistorialClinico(q, page, size);
+        logger.debug("La búsqueda encontró {} registros en total", resultados.getTotal());
+        return ResponseUtil.ok(resultados);
+    }
 }
@@ -1,7 +1,10 @@
 package com.backend.vet.controller;
 
 import com.backend.vet.dto.MascotaDto;
+import com.backend.vet.dto.ResumenPacienteDto;
+import com.backend.vet.service.ExpedienteService;
 import com.backend.vet.service.MascotaService;
+import com.backend.vet.service.ResumenPacienteService;
 import com.backend.vet.util.ResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,12 +14,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -29,6 +36,12 @@ public class MascotaController {
     @Autowired
     private MascotaService mascotaService;
     
+    @Autowired
+    private ExpedienteService expedienteService;
+    
+    @Autowired
+    private ResumenPacienteService resumenPacienteService;
+    
     @Operation(summary = "Obtener todas las mascotas", description = "${api.mascota.getAll.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}")
@@ -62,6 +75,52 @@ public class MascotaController {
         return ResponseUtil.ok(mascota);
     }
     
+    @Operation(summary = "Obtener el resumen de la ficha de una mascota", description = "${api.mascota.resumen.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}")
+    })
+    @GetMapping("/{id}/resumen")
+    @PreAuthorize("hasAuthority('MASCOTA_READ') and hasAuthority('HISTORIAL_CLINICO_READ')")
+    public ResponseEntity<ResumenPacienteDto> getResumen(
+            @Parameter(description = "ID de la mascota", required = true)
+            @PathVariable Long id) {
+        logger.info("Consultando el resumen de la mascota con ID: {}", id);
+        ResumenPacienteDto resumen = resumenPacienteService.getResumen(id);
+        logger.debug("Resumen de la mascota ID: {} armado el {}", id, resumen.getActualizado());
+        return ResponseUtil.ok(resumen);
+    }
+    
+    @Operation(summary = "Exportar expediente clínico", description = "${api.mascota.expediente.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}")
+    })
+    @GetMapping(value = "/{id}/expediente.zip", produces = "application/zip")
+    // El ZIP incluye el contenido de los archivos clínicos: se exige lo mismo que para descargarlos uno a uno
+    @PreAuthorize("hasAuthority('MASCOTA_READ') and hasAuthority('HISTORIAL_CLINICO_READ') " +
+            "and hasAuthority('ARCHIVO_CLINICO_READ') and hasAnyRole('ADMIN', 'VETERINARIO')")
+    public ResponseEntity<Void> exportarExpediente(
+            @Parameter(description = "ID de la mascota", required = true)
+            @PathVariable Long id,
+            HttpServletResponse response) throws IOException {
+        logger.info("Exportando expediente clínico de la mascota con ID: {}", id);
+        MascotaDto mascota = mascotaService.getMascotaById(id);
+        if (mascota == null) {
+            logger.warn("No se encontró la mascota con ID: {}", id);
+            return ResponseUtil.notFound();
+        }
+        // El ZIP se genera al vuelo sobre la respuesta, por lo que no se conoce su tamaño de antemano
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("expediente_mascota_" + id + ".zip")
+                .build().toString());
+        int archivos = expedienteService.escribirExpediente(mascota, response.getOutputStream());
+        logger.debug("Expediente de la mascota ID {} exportado con {} archivos", id, archivos);
+        return null;
+    }
+    
     @Operation(summary = "Obtener mascotas por cliente", description = "${api.mascota.getByCliente.description}")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}")
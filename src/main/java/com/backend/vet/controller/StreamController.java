@@ -0,0 +1,45 @@
+package com.backend.vet.controller;
+
+import com.backend.vet.service.AgendaStreamService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/stream")
+@Tag(name = "Streams", description = "API de notificaciones en vivo mediante Server-Sent Events")
+public class StreamController {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamController.class);
+
+    @Autowired
+    private AgendaStreamService agendaStreamService;
+
+    @Operation(summary = "Suscribirse a los cambios de la agenda", description = "${api.stream.agenda.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping(value = "/agenda", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('CITA_READ') and (!#dashboard or hasAuthority('STATS_READ'))")
+    public SseEmitter suscribirAgenda(
+            @Parameter(description = "Incluir los contadores del dashboard (requiere STATS_READ)")
+            @RequestParam(defaultValue = "false") boolean dashboard) {
+        logger.info("Nueva suscripción al stream de la agenda (dashboard: {})", dashboard);
+        SseEmitter emitter = agendaStreamService.suscribir(dashboard);
+        logger.debug("Conexiones abiertas al stream de la agenda: {}", agendaStreamService.getConexiones());
+        return emitter;
+    }
+}
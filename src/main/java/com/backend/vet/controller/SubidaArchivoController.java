@@ -0,0 +1,133 @@
+package com.backend.vet.controller;
+
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.dto.SubidaArchivoDto;
+import com.backend.vet.exception.FileStorageException;
+import com.backend.vet.service.SubidaArchivoService;
+import com.backend.vet.util.ResponseUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/archivos-clinicos/subidas")
+@Tag(name = "Subidas Reanudables", description = "API para subir archivos clínicos grandes por fragmentos")
+public class SubidaArchivoController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SubidaArchivoController.class);
+    
+    @Autowired
+    private SubidaArchivoService subidaArchivoService;
+    
+    @Operation(summary = "Crear sesión de subida", description = "${api.subidaArchivo.crear.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "${api.response-codes.created.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @PostMapping
+    @PreAuthorize("hasRole('VETERINARIO') or hasRole('ADMIN')")
+    public ResponseEntity<SubidaArchivoDto> crearSesion(
+            @Parameter(description = "Datos del archivo a subir", required = true)
+            @Valid @RequestBody SubidaArchivoDto subidaArchivoDto,
+            Authentication authentication) {
+        logger.info("Creando sesión de subida para historial clínico ID: {}, archivo: {} ({} bytes)",
+                subidaArchivoDto.getHistorialClinicoId(), subidaArchivoDto.getNombreArchivo(), subidaArchivoDto.getTamano());
+        SubidaArchivoDto sesion = subidaArchivoService.crearSesion(subidaArchivoDto, authentication.getName());
+        return ResponseUtil.created(sesion);
+    }
+    
+    @Operation(summary = "Consultar estado de la subida", description = "${api.subidaArchivo.estado.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('VETERINARIO') or hasRole('ADMIN')")
+    public ResponseEntity<SubidaArchivoDto> getEstado(
+            @Parameter(description = "ID de la sesión de subida", required = true)
+            @PathVariable String id,
+            Authentication authentication) {
+        logger.debug("Consultando estado de la sesión de subida {}", id);
+        return ResponseUtil.ok(subidaArchivoService.getEstado(id, authentication.getName()));
+    }
+    
+    @Operation(summary = "Enviar fragmento", description = "${api.subidaArchivo.fragmento.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasRole('VETERINARIO') or hasRole('ADMIN')")
+    public ResponseEntity<SubidaArchivoDto> escribirFragmento(
+            @Parameter(description = "ID de la sesión de subida", required = true)
+            @PathVariable String id,
+            @Parameter(description = "Posición del primer byte del fragmento", required = true)
+            @RequestParam long offset,
+            HttpServletRequest request,
+            Authentication authentication) throws IOException {
+        logger.debug("Recibiendo fragmento de la sesión {} desde el offset {}", id, offset);
+        SubidaArchivoDto sesion = subidaArchivoService.escribirFragmento(id, offset, request.getInputStream(),
+                authentication.getName());
+        return ResponseUtil.ok(sesion);
+    }
+    
+    @Operation(summary = "Finalizar subida", description = "${api.subidaArchivo.finalizar.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "${api.response-codes.ok.description}"),
+        @ApiResponse(responseCode = "400", description = "${api.response-codes.bad-request.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @PostMapping("/{id}/finalizar")
+    @PreAuthorize("hasRole('VETERINARIO') or hasRole('ADMIN')")
+    public ResponseEntity<ArchivoClinicoDto> finalizar(
+            @Parameter(description = "ID de la sesión de subida", required = true)
+            @PathVariable String id,
+            Authentication authentication) {
+        logger.info("Finalizando sesión de subida {}", id);
+        try {
+            ArchivoClinicoDto archivo = subidaArchivoService.finalizar(id, authentication.getName());
+            logger.info("Archivo subido exitosamente con ID: {}", archivo.getId());
+            return ResponseUtil.ok(archivo);
+        } catch (FileStorageException e) {
+            logger.error("Error al finalizar la subida {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @Operation(summary = "Cancelar subida", description = "${api.subidaArchivo.cancelar.description}")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "${api.response-codes.no-content.description}"),
+        @ApiResponse(responseCode = "404", description = "${api.response-codes.not-found.description}"),
+        @ApiResponse(responseCode = "403", description = "${api.response-codes.forbidden.description}")
+    })
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('VETERINARIO') or hasRole('ADMIN')")
+    public ResponseEntity<Void> cancelar(
+            @Parameter(description = "ID de la sesión de subida", required = true)
+            @PathVariable String id,
+            Authentication authentication) {
+        logger.info("Cancelando sesión de subida {}", id);
+        subidaArchivoService.cancelar(id, authentication.getName());
+        return ResponseUtil.noContent();
+    }
+}
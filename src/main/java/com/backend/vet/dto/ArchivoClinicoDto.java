@@ -23,10 +23,17 @@ public class ArchivoClinicoDto {
     @Size(max = 50, message = "El tipo MIME no debe exceder los 50 caracteres")
     private String tipoMime;
     
+    // Calculados al almacenar el archivo
+    private String sha256;
+    private Long tamano; // tamaño original, sin comprimir
+    private String codificacion; // compresión en disco, null si se guarda tal cual
+    
     @NotNull(message = "El ID del historial clínico es obligatorio")
     private Long historialClinicoId;
     
     // Información adicional para la respuesta
+    private Long mascotaId;
     private String mascotaNombre;
     private String diagnosticoResumen;
+    private String miniaturaUrl; // solo para imágenes
 }
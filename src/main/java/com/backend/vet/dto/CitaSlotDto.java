@@ -0,0 +1,17 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CitaSlotDto {
+    private Long usuarioId; // ID del veterinario
+    private LocalDate fecha;
+    private LocalTime hora;
+}
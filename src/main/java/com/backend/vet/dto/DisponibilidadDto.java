@@ -0,0 +1,17 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DisponibilidadDto {
+    private LocalDate fecha;
+    private List<LocalTime> horasLibres; // Inicio de cada franja libre dentro del horario de atención
+}
@@ -0,0 +1,17 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cambio de una cita enviado a los suscriptores de /api/stream/agenda
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoAgendaDto {
+    private String tipo; // CREADO, ACTUALIZADO, ELIMINADO
+    private Long citaId;
+    private CitaDto cita; // null cuando la cita se elimina
+}
@@ -0,0 +1,17 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LineaTiempoHistorialDto {
+    private List<HistorialClinicoDto> contenido; // de la entrada más reciente a la más antigua
+    private String siguienteCursor; // null cuando no hay entradas más antiguas
+    private boolean tieneMas;
+    private String cursorReciente; // valor para "since" en la próxima consulta de novedades; solo en la primera página
+}
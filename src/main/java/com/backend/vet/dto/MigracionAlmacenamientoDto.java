@@ -0,0 +1,19 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MigracionAlmacenamientoDto {
+    private boolean enCurso;
+    private long migrados;
+    private long fallidos;
+    private LocalDateTime inicio;
+    private LocalDateTime fin;
+    private String error;
+}
@@ -0,0 +1,16 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaCursorDto<T> {
+    private List<T> contenido;
+    private String siguienteCursor; // null cuando no hay más resultados
+    private boolean tieneMas;
+}
@@ -0,0 +1,18 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaDto<T> {
+    private List<T> contenido;
+    private int pagina; // empieza en 0
+    private int tamano;
+    private long total;
+    private boolean tieneMas;
+}
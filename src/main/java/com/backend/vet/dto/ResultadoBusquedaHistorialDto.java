@@ -0,0 +1,21 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoBusquedaHistorialDto {
+    private Long id;
+    private LocalDateTime fecha;
+    private Long mascotaId;
+    private String mascotaNombre;
+    private double relevancia;
+    // Campo (diagnostico, tratamiento, observaciones) -> fragmento con los términos entre <mark></mark>
+    private Map<String, String> fragmentos;
+}
@@ -0,0 +1,18 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de un elemento de /api/citas/bulk, en la misma posición que en la petición
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoCitaLoteDto {
+    private int indice;
+    private String resultado; // CREADA, ACTUALIZADA, ERROR
+    private Long id;
+    private String error;
+}
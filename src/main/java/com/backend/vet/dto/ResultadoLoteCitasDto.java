@@ -0,0 +1,18 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoLoteCitasDto {
+    private int total;
+    private int creadas;
+    private int actualizadas;
+    private int fallidas;
+    private List<ResultadoCitaLoteDto> resultados;
+}
@@ -0,0 +1,28 @@
+package com.backend.vet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenPacienteDto {
+    private MascotaDto mascota;
+    private ClienteDto propietario;
+    
+    private List<HistorialClinicoDto> ultimasAtenciones; // de la más reciente a la más antigua
+    private CitaDto proximaCita; // null si no tiene citas pendientes
+    
+    private String ultimoDiagnostico;
+    private LocalDateTime fechaUltimoDiagnostico;
+    
+    private long totalArchivos;
+    private Map<String, Long> archivosPorTipo; // tipo MIME -> número de archivos
+    
+    private LocalDateTime actualizado; // momento en que se armó el resumen
+}
@@ -0,0 +1,38 @@
+package com.backend.vet.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubidaArchivoDto {
+    private String id;
+    
+    @NotNull(message = "El ID del historial clínico es obligatorio")
+    private Long historialClinicoId;
+    
+    @NotBlank(message = "El nombre del archivo es obligatorio")
+    @Size(max = 255, message = "El nombre del archivo no debe exceder los 255 caracteres")
+    private String nombreArchivo;
+    
+    @Size(max = 50, message = "El tipo MIME no debe exceder los 50 caracteres")
+    private String tipoMime;
+    
+    @NotNull(message = "El tamaño del archivo es obligatorio")
+    @Positive(message = "El tamaño del archivo debe ser mayor que cero")
+    private Long tamano;
+    
+    // Estado de la sesión para la respuesta
+    private Long recibidos;
+    private Long siguienteOffset; // primer byte que falta recibir
+    private boolean completa;
+    private LocalDateTime expira;
+}
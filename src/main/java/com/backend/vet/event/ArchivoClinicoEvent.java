@@ -0,0 +1,16 @@
+package com.backend.vet.event;
+
+import com.backend.vet.dto.ArchivoClinicoDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado al crear o eliminar un archivo clínico.
+ * Contiene el estado del archivo antes y después del cambio.
+ */
+@Getter
+@AllArgsConstructor
+public class ArchivoClinicoEvent {
+    private final ArchivoClinicoDto anterior; // null cuando el archivo se crea
+    private final ArchivoClinicoDto actual;   // null cuando el archivo se elimina
+}
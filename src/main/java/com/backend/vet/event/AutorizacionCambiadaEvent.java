@@ -0,0 +1,23 @@
+package com.backend.vet.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado cuando cambian los datos de autorización de un usuario o de un rol
+ * (activación, contraseña, rol asignado o permisos del rol).
+ */
+@Getter
+@AllArgsConstructor
+public class AutorizacionCambiadaEvent {
+    private final String nombreUsuario; // null cuando el cambio afecta a un rol
+    private final String rolNombre;     // null cuando el cambio afecta a un usuario
+
+    public static AutorizacionCambiadaEvent deUsuario(String nombreUsuario) {
+        return new AutorizacionCambiadaEvent(nombreUsuario, null);
+    }
+
+    public static AutorizacionCambiadaEvent deRol(String rolNombre) {
+        return new AutorizacionCambiadaEvent(null, rolNombre);
+    }
+}
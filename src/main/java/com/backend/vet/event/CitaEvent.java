@@ -0,0 +1,16 @@
+package com.backend.vet.event;
+
+import com.backend.vet.dto.CitaDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado al crear, actualizar o eliminar una cita.
+ * Contiene el estado de la cita antes y después del cambio.
+ */
+@Getter
+@AllArgsConstructor
+public class CitaEvent {
+    private final CitaDto anterior; // null cuando la cita se crea
+    private final CitaDto actual;   // null cuando la cita se elimina
+}
@@ -0,0 +1,16 @@
+package com.backend.vet.event;
+
+import com.backend.vet.dto.ClienteDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado al crear, actualizar o eliminar un cliente.
+ * Contiene el estado del cliente antes y después del cambio.
+ */
+@Getter
+@AllArgsConstructor
+public class ClienteEvent {
+    private final ClienteDto anterior; // null cuando el cliente se crea
+    private final ClienteDto actual;   // null cuando el cliente se elimina
+}
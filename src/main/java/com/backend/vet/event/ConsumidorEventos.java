@@ -0,0 +1,22 @@
+package com.backend.vet.event;
+
+import java.util.List;
+
+/**
+ * Consumidor del bus de eventos alimentado por el outbox. Cada bean que implementa esta interfaz recibe
+ * todos los cambios registrados, con entrega al menos una vez: debe tolerar eventos repetidos.
+ */
+public interface ConsumidorEventos {
+
+    /**
+     * Nombre estable del consumidor; identifica su offset en {@code outbox_offsets}
+     */
+    String getNombre();
+
+    /**
+     * Procesa un grupo de eventos en el orden del outbox. Los eventos de un mismo agregado siempre llegan en el
+     * mismo grupo o en grupos sucesivos, nunca en paralelo. Si lanza una excepción, todos los eventos del grupo
+     * (y los posteriores) se vuelven a entregar en la próxima pasada.
+     */
+    void procesar(List<EventoDominio> eventos);
+}
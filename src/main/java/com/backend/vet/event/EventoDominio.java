@@ -0,0 +1,23 @@
+package com.backend.vet.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cambio de una entidad tal como lo entrega el bus de eventos a sus consumidores.
+ * {@code datos} contiene el estado "anterior" y "actual" del evento de dominio original
+ * (por ejemplo, los CitaDto de un {@link CitaEvent}).
+ */
+@Getter
+@AllArgsConstructor
+public class EventoDominio {
+    private final long id;             // posición en el outbox
+    private final String agregado;     // Cita, HistorialClinico, ArchivoClinico, Mascota, Cliente
+    private final Long agregadoId;
+    private final String tipo;         // CREADO, ACTUALIZADO, ELIMINADO
+    private final JsonNode datos;
+    private final LocalDateTime creado;
+}
@@ -0,0 +1,16 @@
+package com.backend.vet.event;
+
+import com.backend.vet.dto.HistorialClinicoDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado al crear, actualizar o eliminar un registro de historial clínico.
+ * Contiene el estado del registro antes y después del cambio.
+ */
+@Getter
+@AllArgsConstructor
+public class HistorialClinicoEvent {
+    private final HistorialClinicoDto anterior; // null cuando el registro se crea
+    private final HistorialClinicoDto actual;   // null cuando el registro se elimina
+}
@@ -0,0 +1,16 @@
+package com.backend.vet.event;
+
+import com.backend.vet.dto.MascotaDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado al crear, actualizar o eliminar una mascota.
+ * Contiene el estado de la mascota antes y después del cambio.
+ */
+@Getter
+@AllArgsConstructor
+public class MascotaEvent {
+    private final MascotaDto anterior; // null cuando la mascota se crea
+    private final MascotaDto actual;   // null cuando la mascota se elimina
+}
@@ -25,6 +25,16 @@ public class ArchivoClinico {
     @Column(name = "tipo_mime", length = 50)
     private String tipoMime;
     
+    @Column(length = 64)
+    private String sha256;
+    
+    @Column(name = "tamano")
+    private Long tamano;
+    
+    // Códec con el que está guardado en disco (gzip), o null si se guardó sin comprimir
+    @Column(length = 16)
+    private String codificacion;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_historial")
     private HistorialClinico historialClinico;
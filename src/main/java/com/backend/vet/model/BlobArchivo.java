@@ -0,0 +1,30 @@
+package com.backend.vet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Contenido almacenado una sola vez e identificado por su SHA-256.
+ * Lleva la cuenta de los archivos clínicos que lo referencian.
+ */
+@Data
+@Entity
+@Table(name = "blobs_archivos")
+@NoArgsConstructor
+public class BlobArchivo {
+
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long tamano;
+
+    @Column(nullable = false)
+    private Integer referencias;
+
+    // Códec con el que está guardado en disco (gzip), o null si se guardó sin comprimir
+    @Column(length = 16)
+    private String codificacion;
+}
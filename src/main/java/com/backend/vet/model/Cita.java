@@ -11,14 +11,25 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "citas")
+@Table(name = "citas", indexes = {
+    // Cubre el orden (fecha, hora) de próximas citas y el keyset (fecha, hora, id) de la paginación
+    @Index(name = "idx_citas_fecha_hora", columnList = "fecha, hora, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Cita {
+
+    public static final int BLOQUE_IDS = 50;
+
+    // Prefijo del índice único (veterinario, fecha, franja) de las citas activas; lo crea FranjasCitasInitializer
+    public static final String INDICE_FRANJA = "uq_citas_franja_";
     
+    // Secuencia con asignación por bloques: los ids se conocen antes del INSERT, lo que permite agrupar
+    // las inserciones en lotes JDBC (hibernate.jdbc.batch_size) en la creación masiva de citas
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "citas_seq")
+    @SequenceGenerator(name = "citas_seq", sequenceName = "citas_seq", allocationSize = Cita.BLOQUE_IDS)
     private Long id;
     
     @Column(nullable = false)
@@ -0,0 +1,44 @@
+package com.backend.vet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cambio de una entidad registrado en la misma transacción que el cambio (patrón outbox).
+ * Los consumidores avanzan por (transaccion, id). El id IDENTITY se asigna al insertar y no al confirmar, así que
+ * por sí solo no sirve de offset: una transacción con un id menor podría confirmarse después. En cambio, una vez
+ * terminadas todas las transacciones anteriores a un xid, ninguna fila nueva puede tener un xid menor.
+ */
+@Entity
+@Table(name = "eventos_outbox", indexes = @Index(name = "idx_eventos_outbox_posicion", columnList = "transaccion, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoOutbox {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, length = 50)
+    private String agregado; // Cita, HistorialClinico, ArchivoClinico, Mascota, Cliente
+    
+    @Column(name = "agregado_id", nullable = false)
+    private Long agregadoId;
+    
+    @Column(nullable = false, length = 20)
+    private String tipo; // CREADO, ACTUALIZADO, ELIMINADO
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String datos; // JSON con el estado "anterior" y "actual"
+    
+    @Column(nullable = false)
+    private LocalDateTime creado;
+    
+    @Column(nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long transaccion; // pg_current_xact_id() de la transacción que registró el evento
+}
@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "historial_clinico")
+@Table(name = "historial_clinico", indexes = {
+    // Cubre la línea de tiempo de una mascota: filtro por mascota, orden (fecha DESC, id DESC) y keyset
+    @Index(name = "idx_historial_mascota_fecha", columnList = "id_mascota, fecha DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -41,4 +45,9 @@ public class HistorialClinico {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_cita")
     private Cita cita;
+    
+    // Momento en que se insertó; la línea de tiempo lo usa para repasar las entradas confirmadas tarde
+    @CreationTimestamp
+    @Column(name = "creado", updatable = false)
+    private LocalDateTime creado;
 }
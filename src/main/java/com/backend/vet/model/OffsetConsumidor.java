@@ -0,0 +1,32 @@
+package com.backend.vet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Posición de un consumidor en el outbox: transacción e id del último evento que procesó por completo
+ */
+@Entity
+@Table(name = "outbox_offsets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OffsetConsumidor {
+    
+    @Id
+    @Column(length = 100)
+    private String consumidor;
+    
+    @Column(name = "ultima_transaccion", nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    private Long ultimaTransaccion;
+    
+    @Column(name = "ultimo_id", nullable = false)
+    private Long ultimoId;
+    
+    @Column(nullable = false)
+    private LocalDateTime actualizado;
+}
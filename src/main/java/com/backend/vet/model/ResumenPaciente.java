@@ -0,0 +1,36 @@
+package com.backend.vet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Modelo de lectura de la ficha de una mascota: una fila por mascota con el resumen ya armado en JSON.
+ * Lo mantiene {@link com.backend.vet.service.ResumenPacienteService} a partir de los eventos del dominio;
+ * nunca se escribe desde los servicios de escritura.
+ */
+@Entity
+@Table(name = "resumen_paciente", indexes = {
+    @Index(name = "idx_resumen_paciente_cliente", columnList = "id_cliente")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenPaciente {
+    
+    @Id
+    @Column(name = "id_mascota")
+    private Long mascotaId;
+    
+    @Column(name = "id_cliente")
+    private Long clienteId; // para rehacer los resúmenes de un cliente cuando cambian sus datos
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String datos; // ResumenPacienteDto serializado
+    
+    @Column(nullable = false)
+    private LocalDateTime actualizado;
+}
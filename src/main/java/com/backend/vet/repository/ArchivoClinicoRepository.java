@@ -1,10 +1,15 @@
 package com.backend.vet.repository;
 
 import com.backend.vet.model.ArchivoClinico;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ArchivoClinicoRepository extends JpaRepository<ArchivoClinico, Long> {
@@ -12,4 +17,23 @@ public interface ArchivoClinicoRepository extends JpaRepository<ArchivoClinico,
     List<ArchivoClinico> findByHistorialClinicoMascotaId(Long mascotaId);
     List<ArchivoClinico> findByNombreArchivoContaining(String nombreArchivo);
     List<ArchivoClinico> findByTipoMime(String tipoMime);
+    // Varios archivos pueden publicar el mismo contenido con el mismo nombre
+    Optional<ArchivoClinico> findFirstByUrl(String url);
+    
+    // Consultas por lotes de la conciliación del almacenamiento
+    @Query("SELECT DISTINCT a.url FROM ArchivoClinico a WHERE a.url IN :urls")
+    List<String> findUrlsRegistradas(@Param("urls") Collection<String> urls);
+    
+    @Query("SELECT DISTINCT a.sha256 FROM ArchivoClinico a WHERE a.sha256 IN :hashes")
+    List<String> findHashesRegistrados(@Param("hashes") Collection<String> hashes);
+    
+    List<ArchivoClinico> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+    
+    /**
+     * Cuenta los archivos de una mascota por tipo MIME
+     * @return filas con el tipo MIME (puede ser null) y su número de archivos
+     */
+    @Query("SELECT a.tipoMime, COUNT(a) FROM ArchivoClinico a WHERE a.historialClinico.mascota.id = :mascotaId " +
+           "GROUP BY a.tipoMime")
+    List<Object[]> countPorTipoMimeByMascotaId(@Param("mascotaId") Long mascotaId);
 }
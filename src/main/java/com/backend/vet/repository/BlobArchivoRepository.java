@@ -0,0 +1,54 @@
+package com.backend.vet.repository;
+
+import com.backend.vet.model.BlobArchivo;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BlobArchivoRepository extends JpaRepository<BlobArchivo, String> {
+
+    /**
+     * Registra una referencia al contenido, creando la fila si no existe.
+     * La fila queda bloqueada hasta el fin de la transacción.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO blobs_archivos (sha256, tamano, referencias, codificacion) " +
+            "VALUES (:sha256, :tamano, 1, :codificacion) " +
+            "ON CONFLICT (sha256) DO UPDATE SET referencias = blobs_archivos.referencias + 1",
+            nativeQuery = true)
+    void agregarReferencia(@Param("sha256") String sha256, @Param("tamano") long tamano,
+                           @Param("codificacion") String codificacion);
+
+    /**
+     * Crea la fila del contenido sin referencias si no existe, para poder bloquearla después de que se revirtiera
+     * la transacción que la insertó. Si otra transacción está insertando la misma fila, espera a que termine.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO blobs_archivos (sha256, tamano, referencias) VALUES (:sha256, :tamano, 0) " +
+            "ON CONFLICT (sha256) DO NOTHING",
+            nativeQuery = true)
+    void reservarFila(@Param("sha256") String sha256, @Param("tamano") long tamano);
+
+    @Query("SELECT b.codificacion FROM BlobArchivo b WHERE b.sha256 = :sha256")
+    Optional<String> findCodificacionBySha256(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query("UPDATE BlobArchivo b SET b.codificacion = :codificacion WHERE b.sha256 = :sha256")
+    void actualizarCodificacion(@Param("sha256") String sha256, @Param("codificacion") String codificacion);
+
+    @Query("SELECT b.sha256 FROM BlobArchivo b WHERE b.sha256 IN :hashes")
+    List<String> findHashesRegistrados(@Param("hashes") Collection<String> hashes);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BlobArchivo b WHERE b.sha256 = :sha256")
+    Optional<BlobArchivo> findBySha256ForUpdate(@Param("sha256") String sha256);
+}
@@ -1,33 +1,119 @@
 package com.backend.vet.repository;
 
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.CitaSlotDto;
 import com.backend.vet.model.Cita;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import jakarta.persistence.QueryHint;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CitaRepository extends JpaRepository<Cita, Long> {
-    List<Cita> findByMascotaId(Long mascotaId);
-    List<Cita> findByMascotaClienteId(Long clienteId);
-    List<Cita> findByUsuarioId(Long usuarioId);
-    List<Cita> findByFechaBetween(LocalDate inicio, LocalDate fin);
-    List<Cita> findByEstado(String estado);
-    List<Cita> findByFechaGreaterThanEqual(LocalDate fecha);
 
     /**
-     * Cuenta las citas programadas para hoy
+     * Proyección de Cita a CitaDto que une mascota, cliente y veterinario en una sola consulta,
+     * evitando la carga perezosa de cada asociación por fila
+     */
+    String CITA_DTO_SELECT = "SELECT new com.backend.vet.dto.CitaDto(c.id, c.fecha, c.hora, c.motivo, c.estado, " +
+            "m.id, m.nombre, m.especie, m.raza, u.id, u.nombreUsuario, cl.id, " +
+            "CASE WHEN cl.id IS NULL THEN NULL ELSE CONCAT(cl.nombre, ' ', COALESCE(cl.apellido, '')) END) " +
+            "FROM Cita c LEFT JOIN c.mascota m LEFT JOIN m.cliente cl LEFT JOIN c.usuario u ";
+
+    String ORDEN_FECHA_HORA_ID = " ORDER BY c.fecha ASC, c.hora ASC, c.id ASC";
+
+    @Query(CITA_DTO_SELECT)
+    List<CitaDto> findAllDto();
+
+    @Query(CITA_DTO_SELECT + "WHERE c.id = :id")
+    Optional<CitaDto> findDtoById(@Param("id") Long id);
+
+    @Query(CITA_DTO_SELECT + "WHERE m.id = :mascotaId")
+    List<CitaDto> findDtoByMascotaId(@Param("mascotaId") Long mascotaId);
+
+    @Query(CITA_DTO_SELECT + "WHERE cl.id = :clienteId")
+    List<CitaDto> findDtoByClienteId(@Param("clienteId") Long clienteId);
+
+    @Query(CITA_DTO_SELECT + "WHERE u.id = :usuarioId")
+    List<CitaDto> findDtoByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    @Query(CITA_DTO_SELECT + "WHERE c.fecha BETWEEN :inicio AND :fin")
+    List<CitaDto> findDtoByFechaBetween(@Param("inicio") LocalDate inicio, @Param("fin") LocalDate fin);
+
+    @Query(CITA_DTO_SELECT + "WHERE c.estado = :estado")
+    List<CitaDto> findDtoByEstado(@Param("estado") String estado);
+
+    /**
+     * Obtiene la franja (veterinario, fecha, hora) de cada cita no cancelada a partir de una fecha
+     */
+    @Query("SELECT new com.backend.vet.dto.CitaSlotDto(c.usuario.id, c.fecha, c.hora) FROM Cita c " +
+           "WHERE c.usuario IS NOT NULL AND c.fecha >= :desde AND (c.estado IS NULL OR UPPER(c.estado) <> 'CANCELADA')")
+    List<CitaSlotDto> findSlotsOcupadosDesde(@Param("desde") LocalDate desde);
+
+    /**
+     * Obtiene las citas no canceladas de una mascota desde un momento (fecha, hora), ordenadas por (fecha, hora, id)
+     */
+    @Query(CITA_DTO_SELECT + "WHERE m.id = :mascotaId " +
+           "AND (c.fecha > :fecha OR (c.fecha = :fecha AND c.hora >= :hora)) " +
+           "AND (c.estado IS NULL OR UPPER(c.estado) <> 'CANCELADA')" + ORDEN_FECHA_HORA_ID)
+    List<CitaDto> findProximasByMascotaId(@Param("mascotaId") Long mascotaId,
+                                          @Param("fecha") LocalDate fecha,
+                                          @Param("hora") LocalTime hora,
+                                          Pageable pageable);
+
+    /**
+     * Cuenta las citas programadas para una fecha
+     */
+    long countByFecha(LocalDate fecha);
+
+    /**
+     * Obtiene las próximas citas a partir de una fecha, ordenadas por (fecha, hora).
+     * El límite y desplazamiento se aplican en SQL a través del Pageable.
+     */
+    @Query(CITA_DTO_SELECT + "WHERE c.fecha >= :desde" + ORDEN_FECHA_HORA_ID)
+    List<CitaDto> findProximasCitas(@Param("desde") LocalDate desde, Pageable pageable);
+
+    /**
+     * Obtiene la primera página de citas ordenadas por (fecha, hora, id)
+     */
+    @Query(CITA_DTO_SELECT + ORDEN_FECHA_HORA_ID)
+    List<CitaDto> findPrimeraPagina(Pageable pageable);
+
+    /**
+     * Obtiene la página de citas posterior a la posición (fecha, hora, id) indicada por el cursor
+     */
+    @Query(CITA_DTO_SELECT +
+           "WHERE c.fecha > :fecha OR (c.fecha = :fecha AND (c.hora > :hora OR (c.hora = :hora AND c.id > :id)))" +
+           ORDEN_FECHA_HORA_ID)
+    List<CitaDto> findPaginaDespuesDe(@Param("fecha") LocalDate fecha,
+                                      @Param("hora") LocalTime hora,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    /**
+     * Recorre todas las citas ordenadas por (fecha, hora, id) sin materializar el resultado completo.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
      */
-    @Query("SELECT COUNT(c) FROM Cita c WHERE CAST(c.fecha AS LocalDate) = CURRENT_DATE")
-    int countCitasDelDia();
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT c FROM Cita c LEFT JOIN FETCH c.mascota m LEFT JOIN FETCH m.cliente LEFT JOIN FETCH c.usuario" +
+           ORDEN_FECHA_HORA_ID)
+    Stream<Cita> streamAllOrdenadas();
 
     /**
-     * Obtiene las próximas 10 citas programadas a partir de hoy
+     * Obtiene las citas indicadas con su mascota, cliente y veterinario en una sola consulta
      */
-    @Query("SELECT c FROM Cita c WHERE c.fecha >= CURRENT_TIMESTAMP ORDER BY c.fecha ASC")
-    List<Cita> findProximasCitas();
+    @Query("SELECT c FROM Cita c LEFT JOIN FETCH c.mascota m LEFT JOIN FETCH m.cliente LEFT JOIN FETCH c.usuario " +
+           "WHERE c.id IN :ids")
+    List<Cita> findConRelacionesByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,35 @@
+package com.backend.vet.repository;
+
+import com.backend.vet.model.EventoOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EventoOutboxRepository extends JpaRepository<EventoOutbox, Long> {
+
+    /**
+     * Siguiente lote de eventos posteriores a un offset, en orden de (transaccion, id).
+     * Solo incluye los de transacciones anteriores a la más antigua aún en curso: esas ya terminaron todas, así que
+     * ningún evento que se confirme después puede quedar por detrás del offset.
+     */
+    @Query(value = "SELECT * FROM eventos_outbox WHERE (transaccion, id) > (:transaccion, :id) " +
+            "AND transaccion < CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS TEXT) AS BIGINT) " +
+            "ORDER BY transaccion, id LIMIT :limite",
+            nativeQuery = true)
+    List<EventoOutbox> findLote(@Param("transaccion") long transaccion, @Param("id") long id,
+                                @Param("limite") int limite);
+
+    /**
+     * Elimina los eventos ya procesados por todos los consumidores y anteriores a la fecha indicada
+     */
+    @Modifying
+    @Query("DELETE FROM EventoOutbox e WHERE (e.transaccion < :transaccion " +
+            "OR (e.transaccion = :transaccion AND e.id <= :id)) AND e.creado < :antesDe")
+    int purgar(@Param("transaccion") long transaccion, @Param("id") long id, @Param("antesDe") LocalDateTime antesDe);
+}
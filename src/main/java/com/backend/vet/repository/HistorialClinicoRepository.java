@@ -1,16 +1,90 @@
 package com.backend.vet.repository;
 
 import com.backend.vet.model.HistorialClinico;
+import com.backend.vet.dto.HistorialClinicoDto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.time.LocalDateTime;
-import java.time.LocalDate;
 
 import java.util.List;
 
 @Repository
 public interface HistorialClinicoRepository extends JpaRepository<HistorialClinico, Long> {
+
+    /**
+     * Proyección de HistorialClinico a HistorialClinicoDto que une mascota, cliente y veterinario
+     * en una sola consulta, evitando la carga perezosa de cada asociación por fila
+     */
+    String HISTORIAL_DTO_SELECT = "SELECT new com.backend.vet.dto.HistorialClinicoDto(h.id, h.fecha, " +
+            "h.diagnostico, h.tratamiento, h.observaciones, m.id, m.nombre, u.id, u.nombreUsuario, c.id, cl.id, " +
+            "CASE WHEN cl.id IS NULL THEN NULL ELSE CONCAT(cl.nombre, ' ', COALESCE(cl.apellido, '')) END) " +
+            "FROM HistorialClinico h LEFT JOIN h.mascota m LEFT JOIN m.cliente cl LEFT JOIN h.usuario u " +
+            "LEFT JOIN h.cita c ";
+
+    String ORDEN_RECIENTES_PRIMERO = " ORDER BY h.fecha DESC, h.id DESC";
+
+    // Posición (fecha, id) relativa al cursor en el orden de la línea de tiempo
+    String ANTERIOR_A = " AND (h.fecha < :antesFecha OR (h.fecha = :antesFecha AND h.id < :antesId))";
+    // Entradas creadas después del último id visto: la fecha la indica el usuario y puede ser anterior.
+    // El id se asigna al insertar y no al confirmar, así que se repasan también las creadas en la ventana
+    // previa a la consulta anterior: una transacción más lenta puede confirmar un id menor después
+    String POSTERIOR_A = " AND (h.id > :desdeId OR h.creado > :desdeCreado)";
+
+    @Query(HISTORIAL_DTO_SELECT + "WHERE h.mascota.id = :mascotaId" + ORDEN_RECIENTES_PRIMERO)
+    List<HistorialClinicoDto> findDtoByMascotaId(@Param("mascotaId") Long mascotaId);
+
+    /**
+     * Primera página de la línea de tiempo de una mascota, de la más reciente a la más antigua
+     */
+    @Query(HISTORIAL_DTO_SELECT + "WHERE h.mascota.id = :mascotaId" + ORDEN_RECIENTES_PRIMERO)
+    List<HistorialClinicoDto> findLineaTiempo(@Param("mascotaId") Long mascotaId, Pageable pageable);
+
+    /**
+     * Entradas de una mascota con diagnóstico, de la más reciente a la más antigua
+     */
+    @Query(HISTORIAL_DTO_SELECT + "WHERE h.mascota.id = :mascotaId AND h.diagnostico IS NOT NULL AND h.diagnostico <> ''" +
+           ORDEN_RECIENTES_PRIMERO)
+    List<HistorialClinicoDto> findConDiagnosticoByMascotaId(@Param("mascotaId") Long mascotaId, Pageable pageable);
+
+    /**
+     * Página de la línea de tiempo con las entradas más antiguas que la posición (fecha, id) del cursor
+     */
+    @Query(HISTORIAL_DTO_SELECT + "WHERE h.mascota.id = :mascotaId" + ANTERIOR_A + ORDEN_RECIENTES_PRIMERO)
+    List<HistorialClinicoDto> findLineaTiempoAnteriorA(@Param("mascotaId") Long mascotaId,
+                                                       @Param("antesFecha") LocalDateTime antesFecha,
+                                                       @Param("antesId") Long antesId,
+                                                       Pageable pageable);
+
+    /**
+     * Primera página de las entradas creadas después del último id que el cliente ya tiene, o desde
+     * {@code desdeCreado}; puede repetir entradas que el cliente ya recibió
+     */
+    @Query(HISTORIAL_DTO_SELECT + "WHERE h.mascota.id = :mascotaId" + POSTERIOR_A + ORDEN_RECIENTES_PRIMERO)
+    List<HistorialClinicoDto> findLineaTiempoPosteriorA(@Param("mascotaId") Long mascotaId,
+                                                        @Param("desdeId") Long desdeId,
+                                                        @Param("desdeCreado") LocalDateTime desdeCreado,
+                                                        Pageable pageable);
+
+    /**
+     * Página de las entradas creadas después de {@code desdeId}, continuando tras el cursor
+     */
+    @Query(HISTORIAL_DTO_SELECT + "WHERE h.mascota.id = :mascotaId" + ANTERIOR_A + POSTERIOR_A + ORDEN_RECIENTES_PRIMERO)
+    List<HistorialClinicoDto> findLineaTiempoEntre(@Param("mascotaId") Long mascotaId,
+                                                   @Param("antesFecha") LocalDateTime antesFecha,
+                                                   @Param("antesId") Long antesId,
+                                                   @Param("desdeId") Long desdeId,
+                                                   @Param("desdeCreado") LocalDateTime desdeCreado,
+                                                   Pageable pageable);
+
+    /**
+     * Id de la última entrada creada para la mascota, o null si no tiene entradas
+     */
+    @Query("SELECT MAX(h.id) FROM HistorialClinico h WHERE h.mascota.id = :mascotaId")
+    Long findUltimoIdByMascotaId(@Param("mascotaId") Long mascotaId);
+
     List<HistorialClinico> findByMascotaId(Long mascotaId);
     List<HistorialClinico> findByMascotaClienteId(Long clienteId);
     List<HistorialClinico> findByUsuarioId(Long usuarioId);
@@ -18,15 +92,47 @@ public interface HistorialClinicoRepository extends JpaRepository<HistorialClini
     List<HistorialClinico> findByFechaBetween(LocalDateTime inicio, LocalDateTime fin);
 
     /**
-     * Cuenta el número de mascotas distintas atendidas hoy
+     * Cuenta las atenciones por mascota en un rango de fechas [inicio, fin)
+     * @return filas con el ID de la mascota y su número de atenciones
      */
-    @Query("SELECT COUNT(DISTINCT h.mascota.id) FROM HistorialClinico h WHERE CAST(h.fecha AS LocalDate) = CURRENT_DATE")
-    int countPacientesAtendidos();
+    @Query("SELECT h.mascota.id, COUNT(h) FROM HistorialClinico h " +
+           "WHERE h.fecha >= :inicio AND h.fecha < :fin AND h.mascota.id IS NOT NULL GROUP BY h.mascota.id")
+    List<Object[]> countAtencionesPorMascota(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
 
     /**
-     * Cuenta el número de vacunas aplicadas hoy
+     * Cuenta el número de vacunas aplicadas en un rango de fechas [inicio, fin)
      * Nota: Ajusta esta consulta según tu modelo de datos para vacunas
      */
-    @Query("SELECT COUNT(h) FROM HistorialClinico h WHERE CAST(h.fecha AS LocalDate) = CURRENT_DATE AND h.diagnostico LIKE '%vacuna%'")
-    int countVacunasAplicadasHoy();
+    @Query("SELECT COUNT(h) FROM HistorialClinico h " +
+           "WHERE h.fecha >= :inicio AND h.fecha < :fin AND h.diagnostico LIKE '%vacuna%'")
+    int countVacunasEntre(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+
+    /**
+     * Búsqueda de texto completo sobre diagnóstico, tratamiento y observaciones (columna {@code busqueda}, índice GIN).
+     * Los fragmentos resaltados solo se calculan para las filas de la página y solo en los campos que coinciden.
+     * @param consulta texto en formato websearch: palabras, "frases exactas", OR y -exclusiones
+     * @return filas con id, fecha, id de la mascota, nombre de la mascota, relevancia y los fragmentos
+     *         de diagnóstico, tratamiento y observaciones (null si el campo no coincide)
+     */
+    @Query(value = "SELECT r.id, r.fecha, r.id_mascota, m.nombre, r.rango, " +
+            "CASE WHEN to_tsvector('spanish', coalesce(r.diagnostico, '')) @@ r.q " +
+            "THEN ts_headline('spanish', r.diagnostico, r.q, :opciones) END, " +
+            "CASE WHEN to_tsvector('spanish', coalesce(r.tratamiento, '')) @@ r.q " +
+            "THEN ts_headline('spanish', r.tratamiento, r.q, :opciones) END, " +
+            "CASE WHEN to_tsvector('spanish', coalesce(r.observaciones, '')) @@ r.q " +
+            "THEN ts_headline('spanish', r.observaciones, r.q, :opciones) END " +
+            "FROM (SELECT h.id, h.fecha, h.id_mascota, h.diagnostico, h.tratamiento, h.observaciones, " +
+            "q, ts_rank_cd(h.busqueda, q) AS rango " +
+            "FROM historial_clinico h, websearch_to_tsquery('spanish', :consulta) q " +
+            "WHERE h.busqueda @@ q ORDER BY rango DESC, h.id DESC LIMIT :limite OFFSET :desplazamiento) r " +
+            "LEFT JOIN mascotas m ON m.id = r.id_mascota " +
+            "ORDER BY r.rango DESC, r.id DESC",
+            nativeQuery = true)
+    List<Object[]> buscarTexto(@Param("consulta") String consulta, @Param("opciones") String opciones,
+                               @Param("limite") int limite, @Param("desplazamiento") long desplazamiento);
+
+    @Query(value = "SELECT COUNT(*) FROM historial_clinico h " +
+            "WHERE h.busqueda @@ websearch_to_tsquery('spanish', :consulta)",
+            nativeQuery = true)
+    long contarBusquedaTexto(@Param("consulta") String consulta);
 }
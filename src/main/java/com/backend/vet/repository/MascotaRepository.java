@@ -2,11 +2,20 @@ package com.backend.vet.repository;
 
 import com.backend.vet.model.Mascota;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface MascotaRepository extends JpaRepository<Mascota, Long> {
     List<Mascota> findByClienteId(Long clienteId);
+
+    /**
+     * Obtiene las mascotas indicadas con su cliente en una sola consulta
+     */
+    @Query("SELECT m FROM Mascota m LEFT JOIN FETCH m.cliente WHERE m.id IN :ids")
+    List<Mascota> findConClienteByIdIn(@Param("ids") Collection<Long> ids);
 }
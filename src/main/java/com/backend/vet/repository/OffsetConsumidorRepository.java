@@ -0,0 +1,42 @@
+package com.backend.vet.repository;
+
+import com.backend.vet.model.OffsetConsumidor;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface OffsetConsumidorRepository extends JpaRepository<OffsetConsumidor, String> {
+
+    /**
+     * Crea el offset de un consumidor nuevo en 0 (recibe todos los eventos conservados), si no existe
+     */
+    @Modifying
+    @Query(value = "INSERT INTO outbox_offsets (consumidor, ultima_transaccion, ultimo_id, actualizado) " +
+            "VALUES (:consumidor, 0, 0, now()) " +
+            "ON CONFLICT (consumidor) DO NOTHING",
+            nativeQuery = true)
+    void crearSiNoExiste(@Param("consumidor") String consumidor);
+
+    /**
+     * Bloquea el offset de un consumidor hasta el fin de la transacción.
+     * Devuelve vacío si otra instancia lo tiene bloqueado (SKIP LOCKED): solo una entrega a la vez por consumidor.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT o FROM OffsetConsumidor o WHERE o.consumidor = :consumidor")
+    Optional<OffsetConsumidor> findParaEntregar(@Param("consumidor") String consumidor);
+
+    /**
+     * Offset más atrasado de todos los consumidores
+     */
+    Optional<OffsetConsumidor> findFirstByOrderByUltimaTransaccionAscUltimoIdAsc();
+}
@@ -0,0 +1,37 @@
+package com.backend.vet.repository;
+
+import com.backend.vet.model.ResumenPaciente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ResumenPacienteRepository extends JpaRepository<ResumenPaciente, Long> {
+
+    /**
+     * Inserta o reemplaza el resumen de una mascota en una sola sentencia. No reemplaza un resumen armado
+     * por una reconstrucción que empezó después, aunque esta termine antes.
+     * Tampoco inserta nada si la mascota ya se eliminó: la fila de la mascota se bloquea con {@code FOR KEY SHARE},
+     * así que una eliminación en curso espera a esta transacción o se ve confirmada, y su propia reconstrucción
+     * borra el resumen después.
+     * @param actualizado instante en que empezó la reconstrucción, tomado antes de leer los datos
+     */
+    @Modifying
+    @Query(value = "INSERT INTO resumen_paciente (id_mascota, id_cliente, datos, actualizado) " +
+            "SELECT :mascotaId, CAST(:clienteId AS BIGINT), :datos, CAST(:actualizado AS TIMESTAMP) " +
+            "WHERE EXISTS (SELECT 1 FROM mascotas m WHERE m.id = :mascotaId FOR KEY SHARE) " +
+            "ON CONFLICT (id_mascota) DO UPDATE SET id_cliente = EXCLUDED.id_cliente, datos = EXCLUDED.datos, " +
+            "actualizado = EXCLUDED.actualizado " +
+            "WHERE resumen_paciente.actualizado <= EXCLUDED.actualizado",
+            nativeQuery = true)
+    void guardar(@Param("mascotaId") Long mascotaId, @Param("clienteId") Long clienteId,
+                 @Param("datos") String datos, @Param("actualizado") LocalDateTime actualizado);
+
+    @Query("SELECT r.mascotaId FROM ResumenPaciente r WHERE r.clienteId = :clienteId")
+    List<Long> findMascotaIdsByClienteId(@Param("clienteId") Long clienteId);
+}
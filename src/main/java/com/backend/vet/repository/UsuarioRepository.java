@@ -2,8 +2,11 @@ package com.backend.vet.repository;
 
 import com.backend.vet.model.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +18,10 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
     Boolean existsByCorreo(String correo);
     Optional<Usuario> findByResetToken(String resetToken); // Nuevo método
     List<Usuario> findAllByRolNombreIgnoreCase(String rolNombre);
+
+    /**
+     * Obtiene los usuarios indicados con su rol y permisos (de carga EAGER) en una sola consulta
+     */
+    @Query("SELECT DISTINCT u FROM Usuario u JOIN FETCH u.rol r LEFT JOIN FETCH r.permissions WHERE u.id IN :ids")
+    List<Usuario> findConRolByIdIn(@Param("ids") Collection<Long> ids);
 }
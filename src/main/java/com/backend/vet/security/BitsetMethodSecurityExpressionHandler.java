@@ -0,0 +1,32 @@
+package com.backend.vet.security;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+/**
+ * Manejador de expresiones de seguridad de métodos que evalúa las expresiones sobre
+ * {@link BitsetSecurityExpressionRoot}, comprobando permisos con los mapas de bits compilados por rol
+ */
+public class BitsetMethodSecurityExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+
+    private final ObjectProvider<PermissionRegistry> permissionRegistry;
+
+    public BitsetMethodSecurityExpressionHandler(ObjectProvider<PermissionRegistry> permissionRegistry) {
+        this.permissionRegistry = permissionRegistry;
+    }
+
+    @Override
+    public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
+        StandardEvaluationContext ctx = (StandardEvaluationContext) super.createEvaluationContext(authentication, mi);
+        MethodSecurityExpressionOperations delegado = (MethodSecurityExpressionOperations) ctx.getRootObject().getValue();
+        ctx.setRootObject(new BitsetSecurityExpressionRoot(delegado, authentication, permissionRegistry.getObject()));
+        return ctx;
+    }
+}
@@ -0,0 +1,145 @@
+package com.backend.vet.security;
+
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+/**
+ * Raíz de las expresiones de @PreAuthorize que resuelve hasAuthority/hasAnyAuthority con el mapa de bits
+ * compilado de las authorities del usuario autenticado, sin construir el conjunto de authorities en cada invocación.
+ * El resto de expresiones, y los permisos que no están en el catálogo, se delegan en la raíz estándar de Spring Security.
+ */
+public class BitsetSecurityExpressionRoot implements MethodSecurityExpressionOperations {
+
+    private final MethodSecurityExpressionOperations delegado;
+    private final Supplier<Authentication> authentication;
+    private final PermissionRegistry permissionRegistry;
+
+    private long[] permisosDelUsuario;
+    private boolean permisosResueltos;
+
+    public BitsetSecurityExpressionRoot(MethodSecurityExpressionOperations delegado,
+                                        Supplier<Authentication> authentication,
+                                        PermissionRegistry permissionRegistry) {
+        this.delegado = delegado;
+        this.authentication = authentication;
+        this.permissionRegistry = permissionRegistry;
+    }
+
+    @Override
+    public boolean hasAuthority(String authority) {
+        long[] bits = permisosDelUsuario();
+        int indice = bits != null ? permissionRegistry.indice(authority) : -1;
+        if (indice < 0) {
+            return delegado.hasAuthority(authority);
+        }
+        return PermissionRegistry.contiene(bits, indice);
+    }
+
+    @Override
+    public boolean hasAnyAuthority(String... authorities) {
+        for (String authority : authorities) {
+            if (hasAuthority(authority)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasRole(String role) {
+        return delegado.hasRole(role);
+    }
+
+    @Override
+    public boolean hasAnyRole(String... roles) {
+        return delegado.hasAnyRole(roles);
+    }
+
+    @Override
+    public Authentication getAuthentication() {
+        return delegado.getAuthentication();
+    }
+
+    public Object getPrincipal() {
+        return getAuthentication().getPrincipal();
+    }
+
+    @Override
+    public boolean permitAll() {
+        return delegado.permitAll();
+    }
+
+    @Override
+    public boolean denyAll() {
+        return delegado.denyAll();
+    }
+
+    @Override
+    public boolean isAnonymous() {
+        return delegado.isAnonymous();
+    }
+
+    @Override
+    public boolean isAuthenticated() {
+        return delegado.isAuthenticated();
+    }
+
+    @Override
+    public boolean isRememberMe() {
+        return delegado.isRememberMe();
+    }
+
+    @Override
+    public boolean isFullyAuthenticated() {
+        return delegado.isFullyAuthenticated();
+    }
+
+    @Override
+    public boolean hasPermission(Object target, Object permission) {
+        return delegado.hasPermission(target, permission);
+    }
+
+    @Override
+    public boolean hasPermission(Object targetId, String targetType, Object permission) {
+        return delegado.hasPermission(targetId, targetType, permission);
+    }
+
+    @Override
+    public void setFilterObject(Object filterObject) {
+        delegado.setFilterObject(filterObject);
+    }
+
+    @Override
+    public Object getFilterObject() {
+        return delegado.getFilterObject();
+    }
+
+    @Override
+    public void setReturnObject(Object returnObject) {
+        delegado.setReturnObject(returnObject);
+    }
+
+    @Override
+    public Object getReturnObject() {
+        return delegado.getReturnObject();
+    }
+
+    @Override
+    public Object getThis() {
+        return delegado.getThis();
+    }
+
+    // Las authorities se compilan una sola vez por evaluación
+    private long[] permisosDelUsuario() {
+        if (!permisosResueltos) {
+            permisosResueltos = true;
+            Authentication actual = authentication.get();
+            if (actual != null) {
+                permisosDelUsuario = permissionRegistry.compilar(actual.getAuthorities());
+            }
+        }
+        return permisosDelUsuario;
+    }
+}
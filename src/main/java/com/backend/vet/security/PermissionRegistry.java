@@ -0,0 +1,168 @@
+package com.backend.vet.security;
+
+import com.backend.vet.model.Permission;
+import com.backend.vet.repository.PermissionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catálogo en memoria de permisos. Cada permiso ocupa una posición de bit estable igual a su ID,
+ * lo que permite representar un conjunto de permisos como un mapa de bits compacto.
+ * Las authorities de cada usuario autenticado se compilan en un long[] para comprobar autorizaciones en O(1);
+ * el mapa de bits sale siempre de las authorities del propio usuario, así que una revocación se aplica
+ * en cuanto el usuario se vuelve a cargar, aunque se haya hecho en otra instancia o directamente en la base de datos.
+ */
+@Component
+public class PermissionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionRegistry.class);
+
+    // Conjuntos de authorities distintos que se guardan compilados; en la práctica, uno por rol
+    private static final int MAX_COMPILADOS = 1024;
+
+    @Autowired
+    private PermissionRepository permissionRepository;
+
+    private volatile Catalogo catalogo = new Catalogo(Map.of(), Map.of());
+
+    /**
+     * Vuelve a cargar el catálogo de permisos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recargar() {
+        Map<String, Integer> indices = new HashMap<>();
+        Map<Integer, String> nombres = new HashMap<>();
+        for (Permission permission : permissionRepository.findAll()) {
+            int indice = Math.toIntExact(permission.getId());
+            indices.put(permission.getName(), indice);
+            nombres.put(indice, permission.getName());
+        }
+
+        catalogo = new Catalogo(indices, nombres);
+        logger.info("Catálogo de permisos cargado con {} permisos", indices.size());
+    }
+
+    /**
+     * @return posición de bit del permiso, o -1 si no existe en el catálogo
+     */
+    public int indice(String permiso) {
+        return catalogo.indices.getOrDefault(permiso, -1);
+    }
+
+    /**
+     * Compila las authorities de un usuario autenticado en un mapa de bits. Las que no están en el catálogo,
+     * como el rol, se ignoran. El resultado se reutiliza para las authorities iguales hasta que cambie el catálogo.
+     */
+    public long[] compilar(Collection<? extends GrantedAuthority> authorities) {
+        Catalogo actual = catalogo;
+        long[] bits = actual.compilados.get(authorities);
+        if (bits == null) {
+            BitSet conjunto = new BitSet();
+            for (GrantedAuthority authority : authorities) {
+                Integer indice = actual.indices.get(authority.getAuthority());
+                if (indice != null) {
+                    conjunto.set(indice);
+                }
+            }
+            bits = conjunto.toLongArray();
+            if (actual.compilados.size() < MAX_COMPILADOS) {
+                // Se guarda una copia: la clave no puede cambiar mientras está en el mapa
+                actual.compilados.putIfAbsent(List.copyOf(authorities), bits);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Indica si el mapa de bits contiene la posición dada
+     */
+    public static boolean contiene(long[] bits, int indice) {
+        int palabra = indice >> 6;
+        return indice >= 0 && palabra < bits.length && (bits[palabra] & (1L << indice)) != 0;
+    }
+
+    /**
+     * Codifica un conjunto de nombres de permisos como mapa de bits en Base64 URL
+     * @return permisos codificados, o null si algún permiso no existe en el catálogo
+     */
+    public String codificar(Collection<String> permisos) {
+        BitSet bits = aBits(permisos, catalogo);
+        if (bits == null) {
+            recargar();
+            bits = aBits(permisos, catalogo);
+            if (bits == null) {
+                return null;
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bits.toByteArray());
+    }
+
+    /**
+     * Decodifica un mapa de bits generado por {@link #codificar(Collection)}
+     * @return nombres de los permisos, o null si el valor no es válido o contiene permisos desconocidos
+     */
+    public List<String> decodificar(String codificados) {
+        BitSet bits;
+        try {
+            bits = BitSet.valueOf(Base64.getUrlDecoder().decode(codificados));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        List<String> permisos = aNombres(bits, catalogo);
+        if (permisos == null) {
+            recargar();
+            permisos = aNombres(bits, catalogo);
+        }
+        return permisos;
+    }
+
+    private BitSet aBits(Collection<String> permisos, Catalogo actual) {
+        BitSet bits = new BitSet();
+        for (String permiso : permisos) {
+            Integer indice = actual.indices.get(permiso);
+            if (indice == null) {
+                return null;
+            }
+            bits.set(indice);
+        }
+        return bits;
+    }
+
+    private List<String> aNombres(BitSet bits, Catalogo actual) {
+        List<String> permisos = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            String nombre = actual.nombres.get(i);
+            if (nombre == null) {
+                return null;
+            }
+            permisos.add(nombre);
+        }
+        return permisos;
+    }
+
+    private static final class Catalogo {
+        private final Map<String, Integer> indices;
+        private final Map<Integer, String> nombres;
+        // authorities de un usuario -> mapa de bits; las de un Authentication son una lista inmutable
+        private final Map<List<GrantedAuthority>, long[]> compilados = new ConcurrentHashMap<>();
+
+        private Catalogo(Map<String, Integer> indices, Map<Integer, String> nombres) {
+            this.indices = indices;
+            this.nombres = nombres;
+        }
+    }
+}
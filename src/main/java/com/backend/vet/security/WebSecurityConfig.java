@@ -1,9 +1,12 @@
 package com.backend.vet.security;
 
+import jakarta.servlet.DispatcherType;
 import com.backend.vet.security.jwt.AuthTokenFilter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -28,6 +31,12 @@ public class WebSecurityConfig {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    // Evalúa hasAuthority de @PreAuthorize con los permisos compilados por rol
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler(ObjectProvider<PermissionRegistry> permissionRegistry) {
+        return new BitsetMethodSecurityExpressionHandler(permissionRegistry);
+    }
+
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
@@ -72,7 +81,9 @@ public class WebSecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> 
-                auth.requestMatchers("/api/auth/**").permitAll()
+                // El despacho asíncrono de un stream ya fue autorizado en la petición original
+                auth.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                    .requestMatchers("/api/auth/**").permitAll()
                     .requestMatchers("/api-docs/**", "/api-docs.yaml").permitAll()
                     .requestMatchers("/swagger-ui/**", "/swagger-ui.html").permitAll()
                     .requestMatchers("/v3/api-docs/**").permitAll()
@@ -0,0 +1,189 @@
+package com.backend.vet.security.jwt;
+
+import com.backend.vet.event.AutorizacionCambiadaEvent;
+import com.backend.vet.security.PermissionRegistry;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Construye la identidad del usuario a partir del rol y los permisos embebidos en el JWT,
+ * evitando consultar la base de datos en cada petición.
+ * Los claims solo se aceptan si la misma combinación de usuario, rol y permisos fue verificada contra
+ * la base de datos dentro del intervalo de revalidación y no hubo cambios de autorización posteriores
+ * a la emisión del token.
+ */
+@Component
+public class JwtAuthorityResolver {
+
+    static final String CLAIM_ROL = "rol";
+    static final String CLAIM_PERMISOS = "perms";
+
+    private static final String PREFIJO_ROL = "ROLE_";
+
+    @Value("${app.jwt.embed-authorities:false}")
+    private boolean embedAuthorities;
+
+    @Value("${app.jwt.revalidate-interval-ms:300000}")
+    private long revalidateIntervalMs;
+
+    @Autowired
+    private PermissionRegistry permissionRegistry;
+
+    // Instante del último cambio de autorización por usuario y por rol
+    private final Map<String, Long> cambiosUsuario = new ConcurrentHashMap<>();
+    private final Map<String, Long> cambiosRol = new ConcurrentHashMap<>();
+
+    // usuario|rol|permisos -> última verificación contra la base de datos
+    private final Map<String, Verificacion> verificaciones = new ConcurrentHashMap<>();
+
+    /**
+     * Obtiene los claims de rol y permisos a embeber en un token nuevo
+     * @param userDetails usuario autenticado, con authorities cargadas desde la base de datos
+     * @return claims a agregar, vacío si el modo está deshabilitado
+     */
+    public Map<String, Object> claimsDe(UserDetails userDetails) {
+        Map<String, Object> claims = new HashMap<>();
+        if (!embedAuthorities) {
+            return claims;
+        }
+
+        String rol = null;
+        List<String> permisos = new ArrayList<>();
+        for (GrantedAuthority authority : userDetails.getAuthorities()) {
+            if (authority.getAuthority().startsWith(PREFIJO_ROL)) {
+                rol = authority.getAuthority().substring(PREFIJO_ROL.length());
+            } else {
+                permisos.add(authority.getAuthority());
+            }
+        }
+        String permisosCodificados = permissionRegistry.codificar(permisos);
+        if (rol == null || permisosCodificados == null) {
+            return claims;
+        }
+
+        claims.put(CLAIM_ROL, rol);
+        claims.put(CLAIM_PERMISOS, permisosCodificados);
+        // Las authorities se acaban de cargar desde la base de datos
+        verificaciones.put(clave(userDetails.getUsername(), rol, permisosCodificados), new Verificacion());
+        return claims;
+    }
+
+    /**
+     * Construye el usuario a partir de los claims del token si son confiables
+     * @return usuario con sus authorities, o null si debe cargarse desde la base de datos
+     */
+    public UserDetails resolver(Claims claims) {
+        if (!embedAuthorities) {
+            return null;
+        }
+        String usuario = claims.getSubject();
+        String rol = claims.get(CLAIM_ROL, String.class);
+        String permisosCodificados = claims.get(CLAIM_PERMISOS, String.class);
+        Date emitido = claims.getIssuedAt();
+        if (usuario == null || rol == null || permisosCodificados == null || emitido == null) {
+            return null;
+        }
+
+        // Cambios de autorización posteriores a la emisión invalidan los claims
+        long emitidoMs = emitido.getTime();
+        if (cambiosUsuario.getOrDefault(usuario, Long.MIN_VALUE) >= emitidoMs
+                || cambiosRol.getOrDefault(rol, Long.MIN_VALUE) >= emitidoMs) {
+            return null;
+        }
+
+        Verificacion verificacion = verificaciones.get(clave(usuario, rol, permisosCodificados));
+        if (verificacion == null || System.currentTimeMillis() - verificacion.instante > revalidateIntervalMs) {
+            return null;
+        }
+
+        // El usuario se construye una vez por verificación y se reutiliza en las siguientes peticiones
+        UserDetails userDetails = verificacion.userDetails;
+        if (userDetails == null) {
+            List<String> permisos = permissionRegistry.decodificar(permisosCodificados);
+            if (permisos == null) {
+                return null;
+            }
+            List<GrantedAuthority> authorities = new ArrayList<>(permisos.size() + 1);
+            authorities.add(new SimpleGrantedAuthority(PREFIJO_ROL + rol));
+            permisos.forEach(p -> authorities.add(new SimpleGrantedAuthority(p)));
+            userDetails = new User(usuario, "", authorities);
+            verificacion.userDetails = userDetails;
+        }
+        return userDetails;
+    }
+
+    /**
+     * Registra que los claims del token coinciden con las authorities cargadas desde la base de datos,
+     * para que las siguientes peticiones puedan usar los claims hasta el próximo intervalo de revalidación
+     */
+    public void registrarVerificacion(Claims claims, UserDetails desdeBaseDeDatos) {
+        if (!embedAuthorities) {
+            return;
+        }
+        String rol = claims.get(CLAIM_ROL, String.class);
+        String permisosCodificados = claims.get(CLAIM_PERMISOS, String.class);
+        if (rol == null || permisosCodificados == null) {
+            return;
+        }
+        List<String> permisos = permissionRegistry.decodificar(permisosCodificados);
+        if (permisos == null) {
+            return;
+        }
+
+        Set<String> delToken = new HashSet<>(permisos);
+        delToken.add(PREFIJO_ROL + rol);
+        Set<String> actuales = desdeBaseDeDatos.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+        if (delToken.equals(actuales)) {
+            verificaciones.put(clave(claims.getSubject(), rol, permisosCodificados), new Verificacion());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAutorizacionCambiada(AutorizacionCambiadaEvent event) {
+        long ahora = System.currentTimeMillis();
+        if (event.getNombreUsuario() != null) {
+            cambiosUsuario.put(event.getNombreUsuario(), ahora);
+        }
+        if (event.getRolNombre() != null) {
+            cambiosRol.put(event.getRolNombre(), ahora);
+        }
+    }
+
+    /**
+     * Elimina las verificaciones vencidas
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.revalidate-interval-ms:300000}")
+    public void purgarVerificaciones() {
+        long limite = System.currentTimeMillis() - revalidateIntervalMs;
+        verificaciones.values().removeIf(verificacion -> verificacion.instante < limite);
+    }
+
+    private String clave(String usuario, String rol, String permisosCodificados) {
+        return usuario + "|" + rol + "|" + permisosCodificados;
+    }
+
+    private static final class Verificacion {
+        private final long instante = System.currentTimeMillis();
+        private volatile UserDetails userDetails;
+    }
+}
@@ -1,8 +1,13 @@
 package com.backend.vet.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -10,6 +15,11 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,35 +34,84 @@ public class JwtUtils {
     @Value("${app.jwt.expiration-ms:86400000}")
     private int jwtExpirationMs;
 
+    @Value("${app.jwt.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    @Value("${app.jwt.embed-authorities:false}")
+    private boolean embedAuthorities;
+
+    @Autowired
+    private JwtAuthorityResolver jwtAuthorityResolver;
+
+    private SecretKey key;
+
+    private JwtParser jwtParser;
+
+    // hash SHA-256 del token -> claims ya verificados; cada entrada caduca cuando expira su token
+    private Cache<String, Claims> tokensVerificados;
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        // Al llenarse se desalojan los tokens menos usados, no toda la caché
+        tokensVerificados = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String hash, Claims claims, long ahora) {
+                        return vigenciaRestante(claims).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, Claims claims, long ahora, long restante) {
+                        return vigenciaRestante(claims).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, Claims claims, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .build();
+    }
+
     public String generateJwtToken(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key)
-                .compact();
+                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs));
+        if (embedAuthorities) {
+            // Rol y permisos en el token para no consultar la base de datos en cada petición
+            builder.addClaims(jwtAuthorityResolver.claimsDe(userDetails));
+        }
+        return builder.signWith(key).compact();
     }
 
-    public String getUsernameFromJwtToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
-    }
+    /**
+     * Verifica la firma y expiración del token y devuelve sus claims.
+     * Los tokens verificados recientemente se sirven desde caché sin volver a comprobar la firma.
+     * @param token JWT recibido
+     * @return claims del token, o null si el token no es válido
+     */
+    public Claims parseAndValidate(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.info("JWT con claims vacío");
+            return null;
+        }
+
+        String hash = hash(token);
+        Claims enCache = tokensVerificados.getIfPresent(hash);
+        if (enCache != null) {
+            return enCache;
+        }
 
-    public boolean validateJwtToken(String authToken) {
         try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            guardarEnCache(hash, claims);
+            return claims;
         } catch (SignatureException e) {
             logger.info("JWT con firma inválida: " + e.getMessage());
         } catch (MalformedJwtException e) {
@@ -65,6 +124,39 @@ public class JwtUtils {
             logger.info("JWT con claims vacío: " + e.getMessage());
         }
 
-        return false;
+        return null;
+    }
+
+    public String getUsernameFromJwtToken(String token) {
+        Claims claims = parseAndValidate(token);
+        return claims != null ? claims.getSubject() : null;
+    }
+
+    public boolean validateJwtToken(String authToken) {
+        return parseAndValidate(authToken) != null;
+    }
+
+    private void guardarEnCache(String hash, Claims claims) {
+        if (claims.getExpiration() == null) {
+            // Sin expiración no hay momento seguro para descartarlo
+            return;
+        }
+        tokensVerificados.put(hash, claims);
+    }
+
+    // La entrada no debe sobrevivir al token, aunque la expiración configurada sea mayor
+    private Duration vigenciaRestante(Claims claims) {
+        Duration restante = Duration.between(Instant.now(), claims.getExpiration().toInstant());
+        Duration maxima = Duration.ofMillis(jwtExpirationMs);
+        return restante.isNegative() ? Duration.ZERO : (restante.compareTo(maxima) > 0 ? maxima : restante);
+    }
+
+    private String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 }
@@ -1,16 +1,24 @@
 package com.backend.vet.security.services;
 
+import com.backend.vet.event.AutorizacionCambiadaEvent;
 import com.backend.vet.model.Usuario;
 import com.backend.vet.repository.UsuarioRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -20,9 +28,59 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     UsuarioRepository usuarioRepository;
 
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    @Value("${app.security.user-cache.max-size:10000}")
+    private long userCacheMaxSize;
+
+    @Value("${app.security.user-cache.ttl-minutes:10}")
+    private long userCacheTtlMinutes;
+
+    // nombreUsuario -> usuario activo con sus authorities
+    private Cache<String, UserDetails> usuarios;
+
+    @PostConstruct
+    public void init() {
+        usuarios = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(userCacheTtlMinutes))
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            // Métricas de aciertos, fallos y desalojos expuestas en /actuator/metrics
+            CaffeineCacheMetrics.monitor(meterRegistry, usuarios, "userDetails");
+        }
+    }
+
+    // Sin @Transactional: un acierto en caché no debe abrir una transacción ni tomar una conexión.
+    // El rol y sus permisos se cargan de forma EAGER junto con el usuario.
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String nombreUsuario) throws UsernameNotFoundException {
+        UserDetails enCache = usuarios.getIfPresent(nombreUsuario);
+        if (enCache == null) {
+            enCache = cargarUsuario(nombreUsuario);
+            usuarios.put(nombreUsuario, enCache);
+        }
+        // Se entrega una copia porque Spring Security borra la contraseña del principal tras autenticar
+        return User.withUserDetails(enCache).build();
+    }
+
+    /**
+     * Invalida los usuarios afectados por un cambio de autorización
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAutorizacionCambiada(AutorizacionCambiadaEvent event) {
+        if (event.getNombreUsuario() != null) {
+            usuarios.invalidate(event.getNombreUsuario());
+        }
+        if (event.getRolNombre() != null) {
+            SimpleGrantedAuthority rol = new SimpleGrantedAuthority("ROLE_" + event.getRolNombre());
+            usuarios.asMap().values().removeIf(usuario -> usuario.getAuthorities().contains(rol));
+        }
+    }
+
+    private UserDetails cargarUsuario(String nombreUsuario) {
         Usuario usuario = usuarioRepository.findByNombreUsuario(nombreUsuario)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + nombreUsuario));
 
@@ -0,0 +1,297 @@
+package com.backend.vet.service;
+
+import com.backend.vet.dto.EventoAgendaDto;
+import com.backend.vet.event.CitaEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Envía por Server-Sent Events los cambios de citas y de los contadores del dashboard a los puestos
+ * suscritos a /api/stream/agenda, para que no tengan que consultar la agenda periódicamente.
+ * Cada cita confirmada se reparte una sola vez a la cola de cada conexión, y los contadores se leen una vez
+ * por ciclo del despachador para todas; ninguna conexión consulta la base de datos por su cuenta.
+ * La cola de cada conexión está acotada y agrupa los cambios de una misma cita: si un cliente lento la llena,
+ * se descarta y se le pide que vuelva a cargar la agenda. Las conexiones inactivas reciben un latido.
+ * <p>
+ * Solo funciona con una única instancia de la aplicación: los cambios de citas llegan por un listener local
+ * tras el commit y los contadores son los de {@link DashboardCounters} de esta JVM, así que con varias réplicas
+ * cada conexión solo vería lo que se confirma en la instancia que la atiende. Para escalar horizontalmente
+ * habría que alimentarlo desde el outbox ({@link BusEventos}) con un consumidor por instancia.
+ */
+@Service
+public class AgendaStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgendaStreamService.class);
+
+    public static final String EVENTO_CITA = "cita";
+    public static final String EVENTO_DASHBOARD = "dashboard";
+    public static final String EVENTO_RESINCRONIZAR = "resincronizar";
+
+    @Autowired
+    private DashboardCounters dashboardCounters;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.agenda-stream.intervalo-ms:250}")
+    private long intervaloMs;
+
+    @Value("${app.agenda-stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${app.agenda-stream.capacidad:200}")
+    private int capacidad;
+
+    @Value("${app.agenda-stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.agenda-stream.reconexion-ms:3000}")
+    private long reconexionMs;
+
+    private final Set<Suscripcion> suscripciones = ConcurrentHashMap.newKeySet();
+    private final AtomicLong desbordes = new AtomicLong();
+
+    // Solo se usa desde el hilo del despachador
+    private Map<String, Integer> ultimoDashboard;
+
+    private ScheduledExecutorService despachador;
+    private ExecutorService envios;
+
+    @PostConstruct
+    public void init() {
+        // Hilo propio: el planificador de @Scheduled es compartido y una pasada larga retrasaría los envíos
+        despachador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "agenda-stream");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        despachador.scheduleWithFixedDelay(this::despachar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        // Un hilo virtual por envío, para que un cliente lento no bloquee a los demás
+        envios = Executors.newVirtualThreadPerTaskExecutor();
+        if (meterRegistry != null) {
+            Gauge.builder("agenda.stream.conexiones", suscripciones, Set::size)
+                    .description("Conexiones abiertas a /api/stream/agenda")
+                    .register(meterRegistry);
+            FunctionCounter.builder("agenda.stream.desbordes", desbordes, AtomicLong::get)
+                    .description("Colas de conexión llenas que obligaron al cliente a recargar la agenda")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        despachador.shutdownNow();
+        suscripciones.forEach(suscripcion -> suscripcion.emitter.complete());
+        suscripciones.clear();
+        envios.shutdown();
+    }
+
+    /**
+     * Abre una conexión que recibe los cambios de citas y, si se pide, los contadores del dashboard
+     */
+    public SseEmitter suscribir(boolean incluirDashboard) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Suscripcion suscripcion = new Suscripcion(emitter, incluirDashboard);
+        emitter.onCompletion(() -> suscripciones.remove(suscripcion));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(ex -> suscripciones.remove(suscripcion));
+        try {
+            // Se envía antes de registrar la conexión, así que no compite con el despachador
+            emitter.send(SseEmitter.event().reconnectTime(reconexionMs).comment("conectado"));
+            if (incluirDashboard) {
+                emitter.send(SseEmitter.event().name(EVENTO_DASHBOARD).data(dashboardActual(), MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException ex) {
+            emitter.completeWithError(ex);
+            return emitter;
+        }
+        suscripciones.add(suscripcion);
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCita(CitaEvent event) {
+        if (suscripciones.isEmpty()) {
+            return;
+        }
+        EventoAgendaDto cambio;
+        if (event.getAnterior() == null) {
+            cambio = new EventoAgendaDto(OutboxService.CREADO, event.getActual().getId(), event.getActual());
+        } else if (event.getActual() == null) {
+            cambio = new EventoAgendaDto(OutboxService.ELIMINADO, event.getAnterior().getId(), null);
+        } else {
+            cambio = new EventoAgendaDto(OutboxService.ACTUALIZADO, event.getActual().getId(), event.getActual());
+        }
+        for (Suscripcion suscripcion : suscripciones) {
+            if (!suscripcion.encolar(cambio, capacidad)) {
+                desbordes.incrementAndGet();
+                logger.warn("Cola de una conexión del stream de la agenda llena; se pedirá al cliente que recargue");
+            }
+        }
+    }
+
+    /**
+     * Reparte los contadores del dashboard si cambiaron y programa el envío de las conexiones con cambios
+     * pendientes o que llevan más de un latido sin recibir nada
+     */
+    public void despachar() {
+        try {
+            if (suscripciones.isEmpty()) {
+                return;
+            }
+            Map<String, Integer> dashboard = dashboardActual();
+            boolean dashboardCambio = !dashboard.equals(ultimoDashboard);
+            ultimoDashboard = dashboard;
+
+            long ahora = System.nanoTime();
+            for (Suscripcion suscripcion : suscripciones) {
+                if (dashboardCambio && suscripcion.incluyeDashboard) {
+                    suscripcion.setDashboard(dashboard);
+                }
+                if (suscripcion.tienePendientes()
+                        || ahora - suscripcion.ultimoEnvio >= TimeUnit.MILLISECONDS.toNanos(heartbeatMs)) {
+                    programarEnvio(suscripcion);
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Una excepción detendría las ejecuciones siguientes del despachador
+            logger.error("Error al despachar el stream de la agenda: {}", ex.getMessage(), ex);
+        }
+    }
+
+    public int getConexiones() {
+        return suscripciones.size();
+    }
+
+    private void programarEnvio(Suscripcion suscripcion) {
+        // Como mucho un envío en curso por conexión; lo que llegue mientras tanto se agrupa en su cola
+        if (!suscripcion.enviando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            envios.execute(() -> enviar(suscripcion));
+        } catch (RejectedExecutionException ex) {
+            suscripcion.enviando.set(false);
+        }
+    }
+
+    private void enviar(Suscripcion suscripcion) {
+        try {
+            List<SseEventBuilder> eventos = suscripcion.drenar();
+            if (eventos.isEmpty()) {
+                eventos = List.of(SseEmitter.event().comment("ping"));
+            }
+            for (SseEventBuilder evento : eventos) {
+                suscripcion.emitter.send(evento);
+            }
+            suscripcion.ultimoEnvio = System.nanoTime();
+        } catch (IOException | IllegalStateException ex) {
+            // El cliente cerró la conexión; el contenedor completa el emisor
+            suscripciones.remove(suscripcion);
+            logger.debug("Conexión del stream de la agenda cerrada: {}", ex.getMessage());
+        } finally {
+            suscripcion.enviando.set(false);
+        }
+    }
+
+    private Map<String, Integer> dashboardActual() {
+        Map<String, Integer> dashboard = new LinkedHashMap<>();
+        dashboard.put("pacientesAtendidos", dashboardCounters.getPacientesAtendidos());
+        dashboard.put("citasDelDia", dashboardCounters.getCitasDelDia());
+        dashboard.put("vacunasAplicadas", dashboardCounters.getVacunasAplicadas());
+        return dashboard;
+    }
+
+    private static final class Suscripcion {
+        private final SseEmitter emitter;
+        private final boolean incluyeDashboard;
+        private final AtomicBoolean enviando = new AtomicBoolean();
+        private volatile long ultimoEnvio = System.nanoTime();
+
+        // Protegidos por this: último cambio de cada cita en orden de llegada, contadores y desborde
+        private final Map<Long, EventoAgendaDto> citas = new LinkedHashMap<>();
+        private Map<String, Integer> dashboard;
+        private boolean resincronizar;
+
+        private Suscripcion(SseEmitter emitter, boolean incluyeDashboard) {
+            this.emitter = emitter;
+            this.incluyeDashboard = incluyeDashboard;
+        }
+
+        /**
+         * @return false si la cola se llenó y se descartó
+         */
+        private synchronized boolean encolar(EventoAgendaDto cambio, int capacidad) {
+            if (resincronizar) {
+                return true;
+            }
+            EventoAgendaDto previo = citas.remove(cambio.getCitaId());
+            if (previo == null && citas.size() >= capacidad) {
+                citas.clear();
+                resincronizar = true;
+                return false;
+            }
+            if (previo != null && OutboxService.CREADO.equals(previo.getTipo())) {
+                // El cliente aún no conoce la cita: si se eliminó no hay nada que enviar, y si cambió sigue siendo nueva
+                if (OutboxService.ELIMINADO.equals(cambio.getTipo())) {
+                    return true;
+                }
+                cambio = new EventoAgendaDto(OutboxService.CREADO, cambio.getCitaId(), cambio.getCita());
+            }
+            citas.put(cambio.getCitaId(), cambio);
+            return true;
+        }
+
+        private synchronized void setDashboard(Map<String, Integer> dashboard) {
+            this.dashboard = dashboard;
+        }
+
+        private synchronized boolean tienePendientes() {
+            return resincronizar || !citas.isEmpty() || dashboard != null;
+        }
+
+        private synchronized List<SseEventBuilder> drenar() {
+            List<SseEventBuilder> eventos = new ArrayList<>();
+            if (resincronizar) {
+                eventos.add(SseEmitter.event().name(EVENTO_RESINCRONIZAR).data(""));
+                resincronizar = false;
+            }
+            for (EventoAgendaDto cambio : citas.values()) {
+                eventos.add(SseEmitter.event().name(EVENTO_CITA).data(cambio, MediaType.APPLICATION_JSON));
+            }
+            citas.clear();
+            if (dashboard != null) {
+                eventos.add(SseEmitter.event().name(EVENTO_DASHBOARD).data(dashboard, MediaType.APPLICATION_JSON));
+                dashboard = null;
+            }
+            return eventos;
+        }
+    }
+}
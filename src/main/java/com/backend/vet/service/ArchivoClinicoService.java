@@ -1,23 +1,45 @@
 package com.backend.vet.service;
 
 import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.event.ArchivoClinicoEvent;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.exception.FileStorageException;
 import com.backend.vet.exception.ResourceNotFoundException;
 import com.backend.vet.model.ArchivoClinico;
 import com.backend.vet.model.HistorialClinico;
 import com.backend.vet.repository.ArchivoClinicoRepository;
 import com.backend.vet.repository.HistorialClinicoRepository;
+import com.backend.vet.service.FileStorageService.StoredFile;
+import com.backend.vet.service.storage.BlobStore.BlobInfo;
+import com.backend.vet.util.MultipartStreamParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 public class ArchivoClinicoService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ArchivoClinicoService.class);
+    
     @Autowired
     private ArchivoClinicoRepository archivoClinicoRepository;
     
@@ -27,6 +49,18 @@ public class ArchivoClinicoService {
     @Autowired
     private FileStorageService fileStorageService;
     
+    @Autowired
+    private BlobArchivoService blobArchivoService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${file.storage.content-addressed:true}")
+    private boolean contentAddressed;
+    
     public List<ArchivoClinicoDto> getAllArchivosClinico() {
         return archivoClinicoRepository.findAll().stream()
                 .map(this::convertToDto)
@@ -69,18 +103,179 @@ public class ArchivoClinicoService {
                 .orElseThrow(() -> new ResourceNotFoundException("HistorialClinico", "id", historialClinicoId));
         
         // Almacenar el archivo en el sistema de archivos usando el FileStorageService
-        String fileName = fileStorageService.storeFile(file);
-        String fileUrl = fileStorageService.getFileUrl(fileName);
+        StoredFile storedFile;
+        try (InputStream in = file.getInputStream()) {
+            storedFile = almacenarContenido(in, file.getOriginalFilename(), file.getContentType());
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo almacenar el archivo " + file.getOriginalFilename(), ex);
+        }
         
+        return guardarArchivo(historialClinico, file.getOriginalFilename(), file.getContentType(), storedFile);
+    }
+    
+    /**
+     * Crea un archivo clínico leyendo el cuerpo multipart a medida que llega: la parte "file" se escribe
+     * directamente en el almacenamiento, sin pasar por los archivos temporales del contenedor.
+     * El cuerpo se lee sin transacción abierta, para que un cliente lento no retenga una conexión del pool;
+     * el historial se valida y el registro se inserta después, en una transacción corta.
+     * @param historialClinicoId historial al que se adjunta el archivo
+     * @param body cuerpo de la petición
+     * @param boundary boundary del Content-Type de la petición
+     * @throws BadRequestException si el cuerpo no contiene una parte "file"
+     * @throws ResourceNotFoundException si el historial no existe; el contenido leído se descarta
+     */
+    public ArchivoClinicoDto createArchivoClinico(Long historialClinicoId, InputStream body, String boundary) {
+        // No se consulta el historial antes de leer el cuerpo: con open-in-view, la primera consulta
+        // retendría la conexión hasta el final de la petición
+        MultipartStreamParser.Parte archivo = null;
+        StoredFile pendiente = null;
+        try {
+            MultipartStreamParser parser = new MultipartStreamParser(body, boundary);
+            MultipartStreamParser.Parte parte;
+            while ((parte = parser.siguienteParte()) != null) {
+                if ("file".equals(parte.getNombre()) && parte.getNombreArchivo() != null) {
+                    archivo = parte;
+                    pendiente = escribirContenido(parte.getContenido(), parte.getNombreArchivo(), parte.getContentType());
+                    break;
+                }
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new FileStorageException("No se pudo leer el cuerpo multipart: " + ex.getMessage(), ex);
+        }
+        if (pendiente == null) {
+            throw new BadRequestException("La petición no contiene la parte 'file'");
+        }
+        return registrarContenido(historialClinicoId, archivo.getNombreArchivo(), archivo.getContentType(), pendiente);
+    }
+    
+    /**
+     * Crea un archivo clínico a partir de un archivo ya escrito en disco, como el de una subida reanudable completa.
+     * El archivo se mueve al almacenamiento sin volver a copiar su contenido.
+     * @throws ResourceNotFoundException si el historial no existe
+     */
+    @Transactional
+    public ArchivoClinicoDto createArchivoClinico(Long historialClinicoId, Path archivo, String nombreArchivo, String tipoMime) {
+        HistorialClinico historialClinico = historialClinicoRepository.findById(historialClinicoId)
+                .orElseThrow(() -> new ResourceNotFoundException("HistorialClinico", "id", historialClinicoId));
+        StoredFile storedFile;
+        if (contentAddressed) {
+            storedFile = blobArchivoService.almacenar(archivo, nombreArchivo, tipoMime);
+        } else {
+            storedFile = fileStorageService.storeExistingFile(archivo, nombreArchivo, tipoMime);
+            eliminarSiSeRevierte(storedFile.getFileName());
+        }
+        return guardarArchivo(historialClinico, nombreArchivo, tipoMime, storedFile);
+    }
+    
+    /**
+     * Adjunta a un historial un contenido que ya está en el almacén, identificado por su SHA-256,
+     * sin volver a transferirlo
+     * @throws ResourceNotFoundException si el historial o el contenido no existen
+     */
+    @Transactional
+    public ArchivoClinicoDto adjuntarContenidoExistente(Long historialClinicoId, String sha256,
+                                                       String nombreArchivo, String tipoMime) {
+        if (!contentAddressed) {
+            throw new BadRequestException("El almacenamiento por contenido no está habilitado");
+        }
+        HistorialClinico historialClinico = historialClinicoRepository.findById(historialClinicoId)
+                .orElseThrow(() -> new ResourceNotFoundException("HistorialClinico", "id", historialClinicoId));
+        StoredFile storedFile = blobArchivoService.adjuntar(sha256, nombreArchivo);
+        return guardarArchivo(historialClinico, nombreArchivo, tipoMime, storedFile);
+    }
+    
+    // Con almacenamiento por contenido queda en el área temporal; si no, en su ubicación definitiva con nombre único
+    private StoredFile escribirContenido(InputStream in, String nombreOriginal, String tipoMime) {
+        if (contentAddressed) {
+            return fileStorageService.stageBlob(in, nombreOriginal, tipoMime);
+        }
+        return fileStorageService.storeStream(in, nombreOriginal, tipoMime);
+    }
+    
+    private ArchivoClinicoDto registrarContenido(Long historialClinicoId, String nombreOriginal, String tipoMime,
+                                                 StoredFile escrito) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            return transactionTemplate.execute(status -> {
+                if (!contentAddressed) {
+                    eliminarSiSeRevierte(escrito.getFileName());
+                }
+                HistorialClinico historialClinico = historialClinicoRepository.findById(historialClinicoId)
+                        .orElseThrow(() -> new ResourceNotFoundException("HistorialClinico", "id", historialClinicoId));
+                // Si la transacción se revierte, BlobArchivoService retira el contenido nuevo
+                StoredFile storedFile = contentAddressed ? blobArchivoService.registrarPendiente(escrito) : escrito;
+                return guardarArchivo(historialClinico, nombreOriginal, tipoMime, storedFile);
+            });
+        } finally {
+            // Sin efecto si el contenido ya se movió al almacén
+            fileStorageService.discardStaged(escrito);
+        }
+    }
+    
+    private StoredFile almacenarContenido(InputStream in, String nombreOriginal, String tipoMime) {
+        if (contentAddressed) {
+            // Si la transacción se revierte, BlobArchivoService retira el contenido nuevo
+            return blobArchivoService.almacenar(in, nombreOriginal, tipoMime);
+        }
+        StoredFile storedFile = fileStorageService.storeStream(in, nombreOriginal, tipoMime);
+        eliminarSiSeRevierte(storedFile.getFileName());
+        return storedFile;
+    }
+    
+    // El archivo con nombre único se escribe antes de insertar su registro: si la transacción no se confirma, se borra
+    private void eliminarSiSeRevierte(String fileName) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    eliminarArchivo(fileName);
+                }
+            }
+        });
+    }
+    
+    // El archivo se borra solo cuando se confirma la eliminación del registro
+    private void eliminarAlConfirmar(String fileName) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eliminarArchivo(fileName);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eliminarArchivo(fileName);
+            }
+        });
+    }
+    
+    private void eliminarArchivo(String fileName) {
+        try {
+            fileStorageService.deleteFile(fileName);
+        } catch (FileStorageException ex) {
+            // Queda huérfano; la conciliación del almacenamiento lo retirará
+            logger.warn("No se pudo eliminar el archivo {}: {}", fileName, ex.getMessage());
+        }
+    }
+    
+    private ArchivoClinicoDto guardarArchivo(HistorialClinico historialClinico, String nombreOriginal,
+                                             String tipoMime, StoredFile storedFile) {
         // Crear registro en la base de datos
         ArchivoClinico archivoClinico = new ArchivoClinico();
-        archivoClinico.setNombreArchivo(file.getOriginalFilename());
-        archivoClinico.setUrl(fileUrl);
-        archivoClinico.setTipoMime(file.getContentType());
+        archivoClinico.setNombreArchivo(nombreOriginal);
+        archivoClinico.setUrl(fileStorageService.getFileUrl(storedFile.getFileName()));
+        archivoClinico.setTipoMime(tipoMime);
+        archivoClinico.setSha256(storedFile.getSha256());
+        archivoClinico.setTamano(storedFile.getSize());
+        archivoClinico.setCodificacion(storedFile.getEncoding());
         archivoClinico.setHistorialClinico(historialClinico);
         
         ArchivoClinico savedArchivoClinico = archivoClinicoRepository.save(archivoClinico);
-        return convertToDto(savedArchivoClinico);
+        ArchivoClinicoDto creado = convertToDto(savedArchivoClinico);
+        eventPublisher.publishEvent(new ArchivoClinicoEvent(null, creado));
+        return creado;
     }
     
     @Transactional
@@ -110,36 +305,104 @@ public class ArchivoClinicoService {
         }
     }
     
+    /**
+     * Elimina el registro del archivo clínico. El archivo físico se borra después de confirmar la transacción,
+     * de modo que un fallo nunca deja un registro apuntando a un archivo inexistente.
+     * @return false si el archivo clínico no existe
+     */
     @Transactional
     public boolean deleteArchivoClinico(Long id) {
-        try {
-            ArchivoClinico archivoClinico = archivoClinicoRepository.findById(id)
-                    .orElseThrow(() -> new ResourceNotFoundException("ArchivoClinico", "id", id));
-            
-            // Extraer el nombre del archivo de la URL
-            String fileName = archivoClinico.getUrl().substring(archivoClinico.getUrl().lastIndexOf("/") + 1);
-            
-            // Eliminar el archivo físico
-            fileStorageService.deleteFile(fileName);
-            
-            // Eliminar el registro de la base de datos
-            archivoClinicoRepository.delete(archivoClinico);
-            return true;
-        } catch (Exception ex) {
+        Optional<ArchivoClinico> encontrado = archivoClinicoRepository.findById(id);
+        if (encontrado.isEmpty()) {
             return false;
         }
+        ArchivoClinico archivoClinico = encontrado.get();
+        
+        // Extraer el nombre del archivo de la URL
+        String fileName = fileStorageService.getFileName(archivoClinico.getUrl());
+        String sha256 = FileStorageService.blobHash(fileName);
+        ArchivoClinicoDto eliminado = convertToDto(archivoClinico);
+        
+        archivoClinicoRepository.delete(archivoClinico);
+        if (sha256 != null) {
+            // Contenido compartido: se libera la referencia;
+            // el archivo solo se borra al confirmar la eliminación de su última referencia
+            blobArchivoService.liberar(sha256);
+        } else {
+            eliminarAlConfirmar(fileName);
+        }
+        eventPublisher.publishEvent(new ArchivoClinicoEvent(eliminado, null));
+        return true;
     }
     
     public Resource loadFileAsResource(String fileName) {
         return fileStorageService.loadFileAsResource(fileName);
     }
     
+    /**
+     * Obtiene la ubicación y los metadatos necesarios para servir la descarga de un archivo.
+     * Los archivos registrados antes de guardar el hash lo calculan y persisten en su primera descarga.
+     * Si el contenido está en un almacén remoto, la descarga incluye una URL firmada en lugar de la ruta local.
+     * @throws FileStorageException si el archivo no existe
+     */
+    @Transactional
+    public Descarga getDescarga(String fileName) {
+        Path path = fileStorageService.localFile(fileName).orElse(null);
+        BlobInfo remoto = path == null ? fileStorageService.stat(fileName) : null;
+        Optional<ArchivoClinico> archivo = archivoClinicoRepository.findFirstByUrl(fileStorageService.getFileUrl(fileName));
+        
+        String nombreOriginal = fileName.contains("_") ? fileName.substring(fileName.indexOf("_") + 1) : fileName;
+        String tipoMime = null;
+        String sha256 = null;
+        String codificacion = null;
+        Long tamanoOriginal = null;
+        if (archivo.isPresent()) {
+            ArchivoClinico archivoClinico = archivo.get();
+            // Solo los archivos anteriores a la compresión carecen de hash, por lo que se leen tal cual
+            if (archivoClinico.getSha256() == null && archivoClinico.getCodificacion() == null && path != null) {
+                archivoClinico.setSha256(fileStorageService.sha256Of(path));
+            }
+            nombreOriginal = archivoClinico.getNombreArchivo();
+            tipoMime = archivoClinico.getTipoMime();
+            sha256 = archivoClinico.getSha256();
+            codificacion = archivoClinico.getCodificacion();
+            tamanoOriginal = archivoClinico.getTamano();
+        }
+        
+        if (remoto != null) {
+            URI urlFirmada = fileStorageService.presignedDownloadUrl(fileName, nombreOriginal, tipoMime, codificacion)
+                    .orElse(null);
+            return new Descarga(null, nombreOriginal, tipoMime, sha256, remoto.getSize(), remoto.getLastModified(),
+                    codificacion, tamanoOriginal, urlFirmada);
+        }
+        try {
+            return new Descarga(path, nombreOriginal, tipoMime, sha256, Files.size(path),
+                    Files.getLastModifiedTime(path).toMillis(), codificacion, tamanoOriginal);
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo leer el archivo: " + fileName, ex);
+        }
+    }
+    
+    /**
+     * Abre los bytes almacenados de un archivo (comprimidos, si se guardó así), esté en disco o en el almacén remoto
+     * @throws FileStorageException si el archivo no existe
+     */
+    public InputStream abrirArchivo(String fileName) {
+        return fileStorageService.openStream(fileName, null);
+    }
+    
     private ArchivoClinicoDto convertToDto(ArchivoClinico archivoClinico) {
         ArchivoClinicoDto dto = new ArchivoClinicoDto();
         dto.setId(archivoClinico.getId());
         dto.setNombreArchivo(archivoClinico.getNombreArchivo());
         dto.setUrl(archivoClinico.getUrl());
         dto.setTipoMime(archivoClinico.getTipoMime());
+        dto.setSha256(archivoClinico.getSha256());
+        dto.setTamano(archivoClinico.getTamano());
+        dto.setCodificacion(archivoClinico.getCodificacion());
+        if (MiniaturaService.esImagen(archivoClinico.getTipoMime())) {
+            dto.setMiniaturaUrl("/api/archivos-clinicos/" + archivoClinico.getId() + "/thumbnail");
+        }
         
         if (archivoClinico.getHistorialClinico() != null) {
             dto.setHistorialClinicoId(archivoClinico.getHistorialClinico().getId());
@@ -151,10 +414,97 @@ public class ArchivoClinicoService {
             }
             
             if (archivoClinico.getHistorialClinico().getMascota() != null) {
+                dto.setMascotaId(archivoClinico.getHistorialClinico().getMascota().getId());
                 dto.setMascotaNombre(archivoClinico.getHistorialClinico().getMascota().getNombre());
             }
         }
         
         return dto;
     }
+    
+    /**
+     * Datos de un archivo almacenado listo para su descarga
+     */
+    public static class Descarga {
+        private final Path path;
+        private final String nombreOriginal;
+        private final String tipoMime;
+        private final String sha256;
+        private final long tamano;
+        private final long ultimaModificacion;
+        private final String codificacion;
+        private final Long tamanoOriginal;
+        private final URI urlFirmada;
+        
+        public Descarga(Path path, String nombreOriginal, String tipoMime, String sha256,
+                        long tamano, long ultimaModificacion) {
+            this(path, nombreOriginal, tipoMime, sha256, tamano, ultimaModificacion, null, tamano);
+        }
+        
+        public Descarga(Path path, String nombreOriginal, String tipoMime, String sha256,
+                        long tamano, long ultimaModificacion, String codificacion, Long tamanoOriginal) {
+            this(path, nombreOriginal, tipoMime, sha256, tamano, ultimaModificacion, codificacion, tamanoOriginal, null);
+        }
+        
+        public Descarga(Path path, String nombreOriginal, String tipoMime, String sha256, long tamano,
+                        long ultimaModificacion, String codificacion, Long tamanoOriginal, URI urlFirmada) {
+            this.path = path;
+            this.nombreOriginal = nombreOriginal;
+            this.tipoMime = tipoMime;
+            this.sha256 = sha256;
+            this.tamano = tamano;
+            this.ultimaModificacion = ultimaModificacion;
+            this.codificacion = codificacion;
+            this.tamanoOriginal = tamanoOriginal;
+            this.urlFirmada = urlFirmada;
+        }
+        
+        /** Ruta local, o null si el contenido está en un almacén remoto */
+        public Path getPath() {
+            return path;
+        }
+        
+        /** URL firmada para descargar directamente del almacén remoto, o null si no la hay */
+        public URI getUrlFirmada() {
+            return urlFirmada;
+        }
+        
+        public String getNombreOriginal() {
+            return nombreOriginal;
+        }
+        
+        /** Tipo MIME registrado, o null si se desconoce */
+        public String getTipoMime() {
+            return tipoMime;
+        }
+        
+        /** ETag fuerte derivado del contenido, o null si el archivo no está registrado */
+        public String getEtag() {
+            return sha256 != null ? "\"" + sha256 + "\"" : null;
+        }
+        
+        /** ETag de la representación comprimida, distinto del de la original como exige HTTP */
+        public String getEtagCodificado() {
+            return sha256 != null ? "\"" + sha256 + "-" + codificacion + "\"" : null;
+        }
+        
+        /** Tamaño en disco, comprimido si el archivo se guardó con códec */
+        public long getTamano() {
+            return tamano;
+        }
+        
+        /** Códec con el que está guardado (coincide con Content-Encoding), o null si se guardó tal cual */
+        public String getCodificacion() {
+            return codificacion;
+        }
+        
+        /** Tamaño del contenido original, o null si se desconoce */
+        public Long getTamanoOriginal() {
+            return tamanoOriginal;
+        }
+        
+        public long getUltimaModificacion() {
+            return ultimaModificacion;
+        }
+    }
 }
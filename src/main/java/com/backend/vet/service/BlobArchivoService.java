@@ -0,0 +1,196 @@
+package com.backend.vet.service;
+
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.model.BlobArchivo;
+import com.backend.vet.repository.BlobArchivoRepository;
+import com.backend.vet.service.FileStorageService.StoredFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Almacén de contenido deduplicado. Cada contenido se guarda una sola vez, identificado por su SHA-256,
+ * y cuenta las referencias de los archivos clínicos que lo usan. El archivo físico se elimina cuando
+ * se confirma la transacción que libera su última referencia, o cuando se revierte la transacción que lo subió.
+ *
+ * Todas las operaciones sobre un mismo hash se serializan con el bloqueo de su fila en blobs_archivos.
+ */
+@Service
+public class BlobArchivoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobArchivoService.class);
+
+    @Autowired
+    private BlobArchivoRepository blobArchivoRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Transactional
+    public StoredFile almacenar(InputStream in, String nombreOriginal) {
+        return almacenar(in, nombreOriginal, null);
+    }
+
+    /**
+     * Almacena el contenido del flujo y le agrega una referencia. Si el contenido ya existía, no se vuelve a guardar.
+     * @param tipoMime tipo declarado, decide si el contenido se guarda comprimido
+     * @return nombre publicado ({@code <sha256>_<nombre>}), tamaño, hash y códec del contenido
+     */
+    @Transactional
+    public StoredFile almacenar(InputStream in, String nombreOriginal, String tipoMime) {
+        return registrar(fileStorageService.stageBlob(in, nombreOriginal, tipoMime));
+    }
+
+    /**
+     * Incorpora al almacén un archivo ya escrito en disco, sin volver a copiar su contenido salvo que haya que comprimirlo
+     * @param archivo archivo a incorporar; se mueve o se elimina si el contenido ya existía
+     */
+    @Transactional
+    public StoredFile almacenar(Path archivo, String nombreOriginal, String tipoMime) {
+        return registrar(fileStorageService.stageExistingFile(archivo, nombreOriginal, tipoMime));
+    }
+
+    /**
+     * Registra un contenido ya escrito en el área temporal con {@link FileStorageService#stageBlob}, de modo que
+     * el flujo pueda leerse antes de abrir la transacción
+     * @param staged archivo pendiente; se mueve al almacén o se descarta
+     */
+    @Transactional
+    public StoredFile registrarPendiente(StoredFile staged) {
+        return registrar(staged);
+    }
+
+    private StoredFile registrar(StoredFile staged) {
+        String codificacion = staged.getEncoding();
+        try {
+            // La referencia se registra antes de mover el archivo para que una eliminación concurrente
+            // del mismo contenido espere al bloqueo de la fila
+            blobArchivoRepository.agregarReferencia(staged.getSha256(), staged.getSize(), codificacion);
+            if (fileStorageService.promoteBlob(staged)) {
+                eliminarSiSeRevierte(staged.getSha256(), staged.getSize());
+                // El archivo recién movido define el códec, aunque la fila ya existiera
+                blobArchivoRepository.actualizarCodificacion(staged.getSha256(), codificacion);
+                logger.debug("Nuevo contenido almacenado: {} ({} bytes, códec {})",
+                        staged.getSha256(), staged.getSize(), codificacion);
+            } else {
+                // Se conserva la copia existente, que puede estar guardada con otro códec
+                codificacion = blobArchivoRepository.findCodificacionBySha256(staged.getSha256()).orElse(null);
+                logger.debug("Contenido {} ya existente, no se vuelve a guardar", staged.getSha256());
+            }
+        } finally {
+            fileStorageService.discardStaged(staged);
+        }
+        return new StoredFile(staged.getFileName(), staged.getSize(), staged.getSha256(), null, codificacion);
+    }
+
+    /**
+     * Agrega una referencia a un contenido ya almacenado, sin transferirlo de nuevo
+     * @throws ResourceNotFoundException si el contenido no está en el almacén
+     */
+    @Transactional
+    public StoredFile adjuntar(String sha256, String nombreOriginal) {
+        BlobArchivo blob = blobArchivoRepository.findBySha256ForUpdate(sha256)
+                .filter(b -> fileStorageService.blobExists(sha256))
+                .orElseThrow(() -> new ResourceNotFoundException("BlobArchivo", "sha256", sha256));
+        blobArchivoRepository.agregarReferencia(sha256, blob.getTamano(), blob.getCodificacion());
+        return new StoredFile(fileStorageService.blobFileName(sha256, nombreOriginal), blob.getTamano(), sha256,
+                null, blob.getCodificacion());
+    }
+
+    /**
+     * Quita una referencia al contenido. Si era la última, el archivo se elimina al confirmar la transacción.
+     */
+    @Transactional
+    public void liberar(String sha256) {
+        blobArchivoRepository.findBySha256ForUpdate(sha256).ifPresent(blob -> {
+            blob.setReferencias(blob.getReferencias() - 1);
+            blobArchivoRepository.save(blob);
+            if (blob.getReferencias() <= 0) {
+                alConfirmar(() -> eliminarSiHuerfano(sha256));
+            }
+        });
+    }
+
+    /**
+     * Elimina el contenido si sigue sin referencias. Se ejecuta en una transacción propia que vuelve a
+     * bloquear la fila, por lo que una subida concurrente del mismo contenido no pierde su archivo.
+     */
+    public void eliminarSiHuerfano(String sha256) {
+        nuevaTransaccion().executeWithoutResult(status -> eliminarSinReferencias(sha256));
+    }
+
+    /**
+     * Elimina un contenido subido por una transacción que se revirtió. Su fila también se revirtió, así que
+     * se vuelve a crear vacía para bloquearla: si otra subida del mismo contenido la insertó entretanto,
+     * se espera a que termine y se conserva el archivo.
+     */
+    public void eliminarTrasReversion(String sha256, long tamano) {
+        nuevaTransaccion().executeWithoutResult(status -> {
+            blobArchivoRepository.reservarFila(sha256, tamano);
+            eliminarSinReferencias(sha256);
+        });
+    }
+
+    private void eliminarSinReferencias(String sha256) {
+        blobArchivoRepository.findBySha256ForUpdate(sha256)
+                .filter(blob -> blob.getReferencias() <= 0)
+                .ifPresent(blob -> {
+                    blobArchivoRepository.delete(blob);
+                    blobArchivoRepository.flush();
+                    fileStorageService.deleteBlob(sha256);
+                    logger.info("Contenido {} eliminado al quedar sin referencias", sha256);
+                });
+    }
+
+    private TransactionTemplate nuevaTransaccion() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    // Sin esto el contenido quedaría sin fila; con un almacén remoto, la conciliación del disco no lo vería
+    private void eliminarSiSeRevierte(String sha256, long tamano) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                try {
+                    eliminarTrasReversion(sha256, tamano);
+                } catch (RuntimeException ex) {
+                    logger.warn("No se pudo retirar el contenido {} tras revertir su subida: {}", sha256, ex.getMessage());
+                }
+            }
+        });
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
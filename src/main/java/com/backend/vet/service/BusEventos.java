@@ -0,0 +1,245 @@
+package com.backend.vet.service;
+
+import com.backend.vet.event.ConsumidorEventos;
+import com.backend.vet.event.EventoDominio;
+import com.backend.vet.model.EventoOutbox;
+import com.backend.vet.model.OffsetConsumidor;
+import com.backend.vet.repository.EventoOutboxRepository;
+import com.backend.vet.repository.OffsetConsumidorRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bus de eventos en proceso alimentado por el outbox. En cada pasada, y para cada {@link ConsumidorEventos},
+ * lee por lotes los eventos posteriores a su offset y los reparte en carriles según su agregado: cada carril
+ * se procesa en orden en un hilo virtual, y los carriles en paralelo. El offset solo avanza hasta el último
+ * evento anterior al primer fallo, así que la entrega es al menos una vez y respeta el orden por agregado.
+ * El offset se bloquea (SKIP LOCKED) mientras se entrega, por lo que con varias instancias cada lote de un
+ * consumidor lo procesa una sola de ellas.
+ * <p>
+ * Cada lote va en su propia transacción, que confirma el offset al terminar, y solo {@code carriles-simultaneos}
+ * carriles se procesan a la vez entre todos los consumidores: un carril suele abrir su propia transacción, así que
+ * ese límite, más la conexión del lote, es lo que el bus puede ocupar del pool de conexiones.
+ */
+@Service
+public class BusEventos {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusEventos.class);
+
+    @Autowired
+    private EventoOutboxRepository eventoOutboxRepository;
+
+    @Autowired
+    private OffsetConsumidorRepository offsetConsumidorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private List<ConsumidorEventos> consumidores = List.of();
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.outbox.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${app.outbox.lotes-por-pasada:20}")
+    private int lotesPorPasada;
+
+    @Value("${app.outbox.carriles:8}")
+    private int carriles;
+
+    @Value("${app.outbox.carriles-simultaneos:4}")
+    private int carrilesSimultaneos;
+
+    private final AtomicLong entregados = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+
+    private ExecutorService executor;
+    private Semaphore carrilesActivos;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        carrilesActivos = new Semaphore(Math.max(1, carrilesSimultaneos));
+        if (meterRegistry != null) {
+            FunctionCounter.builder("outbox.eventos.entregados", entregados, AtomicLong::get)
+                    .description("Eventos del outbox procesados por un consumidor")
+                    .register(meterRegistry);
+            FunctionCounter.builder("outbox.entregas.fallidas", fallidos, AtomicLong::get)
+                    .description("Grupos de eventos que un consumidor no pudo procesar y se volverán a entregar")
+                    .register(meterRegistry);
+            FunctionCounter.builder("outbox.eventos.descartados", descartados, AtomicLong::get)
+                    .description("Eventos del outbox ilegibles que se omitieron sin entregarlos")
+                    .register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.intervalo-ms:500}")
+    public void entregarPendientes() {
+        for (ConsumidorEventos consumidor : consumidores) {
+            try {
+                entregar(consumidor);
+            } catch (RuntimeException ex) {
+                logger.error("Error al entregar eventos a {}: {}", consumidor.getNombre(), ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Entrega a un consumidor los eventos posteriores a su offset, hasta {@code lotes-por-pasada} lotes
+     * @return offset del consumidor tras la entrega, o -1 si otra instancia le está entregando
+     */
+    public long entregar(ConsumidorEventos consumidor) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status ->
+                offsetConsumidorRepository.crearSiNoExiste(consumidor.getNombre()));
+        long resultado = -1L;
+        for (int lote = 0; lote < lotesPorPasada; lote++) {
+            Avance avance = transactionTemplate.execute(status -> entregarSiguienteLote(consumidor));
+            if (avance == null) {
+                break; // otra instancia tomó el offset
+            }
+            resultado = avance.ultimoId;
+            if (!avance.continuar) {
+                break;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Entrega el lote siguiente al offset y lo avanza; se ejecuta en una transacción por lote
+     * @return nuevo offset, o null si otra instancia le está entregando
+     */
+    private Avance entregarSiguienteLote(ConsumidorEventos consumidor) {
+        OffsetConsumidor offset = offsetConsumidorRepository.findParaEntregar(consumidor.getNombre()).orElse(null);
+        if (offset == null) {
+            return null;
+        }
+        List<EventoOutbox> eventos = eventoOutboxRepository.findLote(offset.getUltimaTransaccion(),
+                offset.getUltimoId(), tamanoLote);
+        if (eventos.isEmpty()) {
+            return new Avance(offset.getUltimoId(), false);
+        }
+        int hasta = entregarLote(consumidor, eventos);
+        if (hasta >= 0) {
+            offset.setUltimaTransaccion(eventos.get(hasta).getTransaccion());
+            offset.setUltimoId(eventos.get(hasta).getId());
+            offset.setActualizado(LocalDateTime.now());
+        }
+        // Un fallo se reintenta en la próxima pasada
+        return new Avance(offset.getUltimoId(), hasta == eventos.size() - 1 && eventos.size() == tamanoLote);
+    }
+
+    /**
+     * @return posición en el lote del último evento hasta el que se procesó sin huecos, o -1 si ninguno
+     */
+    private int entregarLote(ConsumidorEventos consumidor, List<EventoOutbox> lote) {
+        Map<Integer, List<EventoDominio>> porCarril = new TreeMap<>();
+        Map<Integer, Integer> primeraPosicion = new TreeMap<>();
+        for (int i = 0; i < lote.size(); i++) {
+            EventoOutbox evento = lote.get(i);
+            EventoDominio dominio = toEventoDominio(evento);
+            if (dominio == null) {
+                continue;
+            }
+            int carril = Math.floorMod(Objects.hash(evento.getAgregado(), evento.getAgregadoId()), carriles);
+            porCarril.computeIfAbsent(carril, c -> new ArrayList<>()).add(dominio);
+            primeraPosicion.putIfAbsent(carril, i);
+        }
+
+        List<Future<?>> tareas = new ArrayList<>();
+        List<List<EventoDominio>> grupos = new ArrayList<>(porCarril.values());
+        List<Integer> posiciones = new ArrayList<>(primeraPosicion.values());
+        for (List<EventoDominio> grupo : grupos) {
+            tareas.add(executor.submit(() -> {
+                carrilesActivos.acquire();
+                try {
+                    consumidor.procesar(grupo);
+                } finally {
+                    carrilesActivos.release();
+                }
+                return null;
+            }));
+        }
+
+        int primerFallo = lote.size();
+        for (int i = 0; i < tareas.size(); i++) {
+            List<EventoDominio> grupo = grupos.get(i);
+            try {
+                tareas.get(i).get();
+                entregados.addAndGet(grupo.size());
+            } catch (ExecutionException ex) {
+                fallidos.incrementAndGet();
+                primerFallo = Math.min(primerFallo, posiciones.get(i));
+                logger.warn("{} no pudo procesar {} eventos desde el {}: {}", consumidor.getNombre(),
+                        grupo.size(), grupo.get(0).getId(), ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                primerFallo = Math.min(primerFallo, posiciones.get(i));
+            }
+        }
+        return primerFallo - 1;
+    }
+
+    /**
+     * @return el evento para los consumidores, o null si sus datos son ilegibles. Un evento así nunca podría
+     * procesarse, así que se descarta en lugar de detener al consumidor en él.
+     */
+    private EventoDominio toEventoDominio(EventoOutbox evento) {
+        try {
+            return new EventoDominio(evento.getId(), evento.getAgregado(), evento.getAgregadoId(), evento.getTipo(),
+                    objectMapper.readTree(evento.getDatos()), evento.getCreado());
+        } catch (JsonProcessingException ex) {
+            descartados.incrementAndGet();
+            logger.error("Evento del outbox {} ilegible, se omite: {}", evento.getId(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Avance {
+        private final long ultimoId;
+        private final boolean continuar;
+
+        private Avance(long ultimoId, boolean continuar) {
+            this.ultimoId = ultimoId;
+            this.continuar = continuar;
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.backend.vet.service;
 
 import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.DisponibilidadDto;
+import com.backend.vet.dto.PaginaCursorDto;
+import com.backend.vet.dto.ResultadoCitaLoteDto;
+import com.backend.vet.dto.ResultadoLoteCitasDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.event.CitaEvent;
 import com.backend.vet.exception.ResourceNotFoundException;
 import com.backend.vet.model.Cita;
 import com.backend.vet.model.Mascota;
@@ -8,17 +14,63 @@ import com.backend.vet.model.Usuario;
 import com.backend.vet.repository.CitaRepository;
 import com.backend.vet.repository.MascotaRepository;
 import com.backend.vet.repository.UsuarioRepository;
+import com.backend.vet.util.KeysetCursor;
+import com.backend.vet.util.OffsetPageRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CitaService {
     
+    // Cada cuántas filas exportadas se vacía la salida y se libera el contexto de persistencia
+    private static final int EXPORT_FLUSH_SIZE = 500;
+    
+    public static final String RESULTADO_CREADA = "CREADA";
+    public static final String RESULTADO_ACTUALIZADA = "ACTUALIZADA";
+    public static final String RESULTADO_ERROR = "ERROR";
+    
+    @Value("${app.citas.page-size-max:200}")
+    private int pageSizeMax;
+    
+    @Value("${app.citas.bulk-max:5000}")
+    private int bulkMax;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private Validator validator;
+    
     @Autowired
     private CitaRepository citaRepository;
     
@@ -28,46 +80,101 @@ public class CitaService {
     @Autowired
     private UsuarioRepository usuarioRepository;
     
+    @Autowired
+    private DisponibilidadIndex disponibilidadIndex;
+    
+    @Autowired
+    private DashboardCounters dashboardCounters;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public List<CitaDto> getAllCitas() {
-        return citaRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return citaRepository.findAllDto();
+    }
+    
+    /**
+     * Obtiene una página de citas ordenadas por (fecha, hora, id) usando paginación por keyset
+     * @param cursor cursor devuelto por la página anterior, o null para la primera página
+     * @param size tamaño de página solicitado
+     * @return página de citas con el cursor de la siguiente página
+     */
+    @Transactional(readOnly = true)
+    public PaginaCursorDto<CitaDto> getCitasPagina(String cursor, int size) {
+        int tamano = Math.max(1, Math.min(size, pageSizeMax));
+        // Se pide un elemento extra para saber si existe una página siguiente sin contar filas
+        PageRequest limite = PageRequest.of(0, tamano + 1);
+        
+        List<CitaDto> citas;
+        if (cursor == null || cursor.isBlank()) {
+            citas = citaRepository.findPrimeraPagina(limite);
+        } else {
+            String[] partes = KeysetCursor.decode(cursor, 3);
+            try {
+                citas = citaRepository.findPaginaDespuesDe(
+                        LocalDate.parse(partes[0]), LocalTime.parse(partes[1]), Long.valueOf(partes[2]), limite);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new BadRequestException("Cursor de paginación inválido");
+            }
+        }
+        
+        boolean tieneMas = citas.size() > tamano;
+        List<CitaDto> contenido = tieneMas ? citas.subList(0, tamano) : citas;
+        
+        String siguienteCursor = null;
+        if (tieneMas) {
+            CitaDto ultima = contenido.get(contenido.size() - 1);
+            siguienteCursor = KeysetCursor.encode(ultima.getFecha(), ultima.getHora(), ultima.getId());
+        }
+        return new PaginaCursorDto<>(contenido, siguienteCursor, tieneMas);
+    }
+    
+    /**
+     * Escribe todas las citas en formato NDJSON (una cita JSON por línea) a medida que se leen
+     * de la base de datos, sin mantener el resultado completo en memoria
+     * @param out flujo de salida donde se escriben las citas
+     * @return número de citas exportadas
+     */
+    @Transactional(readOnly = true)
+    public long exportCitas(OutputStream out) throws IOException {
+        long total = 0;
+        try (Stream<Cita> citas = citaRepository.streamAllOrdenadas()) {
+            Iterator<Cita> iterator = citas.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(convertToDto(iterator.next())));
+                out.write('\n');
+                if (++total % EXPORT_FLUSH_SIZE == 0) {
+                    out.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        out.flush();
+        return total;
     }
     
     public CitaDto getCitaById(Long id) {
-        return citaRepository.findById(id)
-                .map(this::convertToDto)
-                .orElse(null);
+        return citaRepository.findDtoById(id).orElse(null);
     }
     
     public List<CitaDto> getCitasByMascotaId(Long mascotaId) {
-        return citaRepository.findByMascotaId(mascotaId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return citaRepository.findDtoByMascotaId(mascotaId);
     }
     
     public List<CitaDto> getCitasByClienteId(Long clienteId) {
-        return citaRepository.findByMascotaClienteId(clienteId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return citaRepository.findDtoByClienteId(clienteId);
     }
     
     public List<CitaDto> getCitasByVeterinarioId(Long veterinarioId) {
-        return citaRepository.findByUsuarioId(veterinarioId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return citaRepository.findDtoByUsuarioId(veterinarioId);
     }
     
     public List<CitaDto> getCitasByFechaRango(LocalDate inicio, LocalDate fin) {
-        return citaRepository.findByFechaBetween(inicio, fin).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return citaRepository.findDtoByFechaBetween(inicio, fin);
     }
     
     public List<CitaDto> getCitasByEstado(String estado) {
-        return citaRepository.findByEstado(estado).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return citaRepository.findDtoByEstado(estado);
     }
     
     @Transactional
@@ -78,16 +185,7 @@ public class CitaService {
         Usuario veterinario = usuarioRepository.findById(citaDto.getUsuarioId())
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario", "id", citaDto.getUsuarioId()));
         
-        Cita cita = new Cita();
-        cita.setFecha(citaDto.getFecha());
-        cita.setHora(citaDto.getHora());
-        cita.setMotivo(citaDto.getMotivo());
-        cita.setEstado(citaDto.getEstado());
-        cita.setMascota(mascota);
-        cita.setUsuario(veterinario);
-        
-        Cita savedCita = citaRepository.save(cita);
-        return convertToDto(savedCita);
+        return crear(citaDto, mascota, veterinario);
     }
     
     @Transactional
@@ -96,41 +194,219 @@ public class CitaService {
             Cita cita = citaRepository.findById(id)
                     .orElseThrow(() -> new ResourceNotFoundException("Cita", "id", id));
             
-            cita.setFecha(citaDto.getFecha());
-            cita.setHora(citaDto.getHora());
-            cita.setMotivo(citaDto.getMotivo());
-            cita.setEstado(citaDto.getEstado());
-            
+            Mascota mascota = null;
             if (citaDto.getMascotaId() != null && 
                     (cita.getMascota() == null || !cita.getMascota().getId().equals(citaDto.getMascotaId()))) {
-                Mascota mascota = mascotaRepository.findById(citaDto.getMascotaId())
+                mascota = mascotaRepository.findById(citaDto.getMascotaId())
                         .orElseThrow(() -> new ResourceNotFoundException("Mascota", "id", citaDto.getMascotaId()));
-                cita.setMascota(mascota);
             }
             
+            Usuario veterinario = null;
             if (citaDto.getUsuarioId() != null && 
                     (cita.getUsuario() == null || !cita.getUsuario().getId().equals(citaDto.getUsuarioId()))) {
-                Usuario veterinario = usuarioRepository.findById(citaDto.getUsuarioId())
+                veterinario = usuarioRepository.findById(citaDto.getUsuarioId())
                         .orElseThrow(() -> new ResourceNotFoundException("Usuario", "id", citaDto.getUsuarioId()));
-                cita.setUsuario(veterinario);
             }
             
-            Cita updatedCita = citaRepository.save(cita);
-            return convertToDto(updatedCita);
+            return actualizar(cita, citaDto, mascota, veterinario);
         } catch (ResourceNotFoundException e) {
             return null;
         }
     }
     
+    /**
+     * Lee las citas de una petición masiva, enviadas como arreglo JSON o como NDJSON (una cita por línea)
+     * @throws BadRequestException si el contenido no es válido, está vacío o supera el máximo por petición
+     */
+    public List<CitaDto> leerLote(InputStream entrada) throws IOException {
+        List<CitaDto> citas = new ArrayList<>();
+        // readValues recorre igual los elementos de un arreglo raíz que una secuencia de objetos
+        try (MappingIterator<CitaDto> iterador = objectMapper.readerFor(CitaDto.class).readValues(entrada)) {
+            while (iterador.hasNextValue()) {
+                if (citas.size() == bulkMax) {
+                    throw new BadRequestException("La petición no puede contener más de " + bulkMax + " citas");
+                }
+                citas.add(iterador.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Contenido inválido en la cita " + citas.size() + ": " + e.getOriginalMessage());
+        }
+        if (citas.isEmpty()) {
+            throw new BadRequestException("La petición no contiene citas");
+        }
+        return citas;
+    }
+    
+    /**
+     * Crea las citas sin id y actualiza las que lo traen, en una sola transacción.
+     * Las mascotas, veterinarios y citas referenciados se cargan con una consulta IN por tipo, y las inserciones
+     * se envían en lotes JDBC. Un elemento inválido no detiene al resto: su error se informa en su resultado.
+     * @return resultado de cada elemento, en el orden de la petición
+     */
+    @Transactional
+    public ResultadoLoteCitasDto procesarLote(List<CitaDto> citas) {
+        Set<Long> mascotaIds = new HashSet<>();
+        Set<Long> usuarioIds = new HashSet<>();
+        Set<Long> citaIds = new HashSet<>();
+        for (CitaDto citaDto : citas) {
+            agregarId(mascotaIds, citaDto.getMascotaId());
+            agregarId(usuarioIds, citaDto.getUsuarioId());
+            agregarId(citaIds, citaDto.getId());
+        }
+        Map<Long, Mascota> mascotas = mascotaIds.isEmpty() ? Map.of() : mascotaRepository.findConClienteByIdIn(mascotaIds)
+                .stream().collect(Collectors.toMap(Mascota::getId, Function.identity()));
+        Map<Long, Usuario> veterinarios = usuarioIds.isEmpty() ? Map.of() : usuarioRepository.findConRolByIdIn(usuarioIds)
+                .stream().collect(Collectors.toMap(Usuario::getId, Function.identity()));
+        Map<Long, Cita> existentes = citaIds.isEmpty() ? Map.of() : citaRepository.findConRelacionesByIdIn(citaIds)
+                .stream().collect(Collectors.toMap(Cita::getId, Function.identity()));
+        
+        List<ResultadoCitaLoteDto> resultados = new ArrayList<>(citas.size());
+        int creadas = 0;
+        int actualizadas = 0;
+        for (int i = 0; i < citas.size(); i++) {
+            CitaDto citaDto = citas.get(i);
+            try {
+                validar(citaDto);
+                if (citaDto.getId() == null) {
+                    if (citaDto.getMascotaId() == null || citaDto.getUsuarioId() == null) {
+                        throw new BadRequestException("La cita requiere mascotaId y usuarioId");
+                    }
+                    CitaDto creada = crear(citaDto, resolver(mascotas, citaDto.getMascotaId(), "Mascota"),
+                            resolver(veterinarios, citaDto.getUsuarioId(), "Usuario"));
+                    resultados.add(new ResultadoCitaLoteDto(i, RESULTADO_CREADA, creada.getId(), null));
+                    creadas++;
+                } else {
+                    Cita cita = resolver(existentes, citaDto.getId(), "Cita");
+                    Mascota mascota = citaDto.getMascotaId() != null
+                            ? resolver(mascotas, citaDto.getMascotaId(), "Mascota") : null;
+                    Usuario veterinario = citaDto.getUsuarioId() != null
+                            ? resolver(veterinarios, citaDto.getUsuarioId(), "Usuario") : null;
+                    actualizar(cita, citaDto, mascota, veterinario);
+                    resultados.add(new ResultadoCitaLoteDto(i, RESULTADO_ACTUALIZADA, cita.getId(), null));
+                    actualizadas++;
+                }
+            } catch (BadRequestException | ResourceNotFoundException e) {
+                resultados.add(new ResultadoCitaLoteDto(i, RESULTADO_ERROR, citaDto.getId(), e.getMessage()));
+            }
+        }
+        return new ResultadoLoteCitasDto(citas.size(), creadas, actualizadas,
+                citas.size() - creadas - actualizadas, resultados);
+    }
+    
+    private CitaDto crear(CitaDto citaDto, Mascota mascota, Usuario veterinario) {
+        if (disponibilidadIndex.ocupaAgenda(citaDto.getEstado())) {
+            disponibilidadIndex.reservar(veterinario.getId(), citaDto.getFecha(), citaDto.getHora());
+        }
+        
+        Cita cita = new Cita();
+        cita.setFecha(citaDto.getFecha());
+        cita.setHora(citaDto.getHora());
+        cita.setMotivo(citaDto.getMotivo());
+        cita.setEstado(citaDto.getEstado());
+        cita.setMascota(mascota);
+        cita.setUsuario(veterinario);
+        
+        Cita savedCita = citaRepository.save(cita);
+        CitaDto creada = convertToDto(savedCita);
+        eventPublisher.publishEvent(new CitaEvent(null, creada));
+        return creada;
+    }
+    
+    /**
+     * Aplica los cambios a una cita existente. La franja se reserva antes de modificar la entidad, así que
+     * si está ocupada la cita queda intacta.
+     * @param mascota nueva mascota, o null para conservar la actual
+     * @param veterinario nuevo veterinario, o null para conservar el actual
+     */
+    private CitaDto actualizar(Cita cita, CitaDto citaDto, Mascota mascota, Usuario veterinario) {
+        // Franja ocupada antes de la actualización
+        Long veterinarioAnterior = cita.getUsuario() != null ? cita.getUsuario().getId() : null;
+        LocalDate fechaAnterior = cita.getFecha();
+        LocalTime horaAnterior = cita.getHora();
+        boolean ocupabaAgenda = veterinarioAnterior != null && disponibilidadIndex.ocupaAgenda(cita.getEstado());
+        CitaDto anterior = convertToDto(cita);
+        
+        Long veterinarioNuevo = veterinario != null ? veterinario.getId() : veterinarioAnterior;
+        boolean ocupaAgenda = veterinarioNuevo != null && disponibilidadIndex.ocupaAgenda(citaDto.getEstado());
+        boolean mismaFranja = ocupabaAgenda && ocupaAgenda && disponibilidadIndex.mismaFranja(
+                veterinarioAnterior, fechaAnterior, horaAnterior, veterinarioNuevo, citaDto.getFecha(), citaDto.getHora());
+        if (!mismaFranja) {
+            if (ocupaAgenda) {
+                disponibilidadIndex.reservar(veterinarioNuevo, citaDto.getFecha(), citaDto.getHora());
+            }
+            if (ocupabaAgenda) {
+                disponibilidadIndex.liberar(veterinarioAnterior, fechaAnterior, horaAnterior);
+            }
+        }
+        
+        cita.setFecha(citaDto.getFecha());
+        cita.setHora(citaDto.getHora());
+        cita.setMotivo(citaDto.getMotivo());
+        cita.setEstado(citaDto.getEstado());
+        if (mascota != null) {
+            cita.setMascota(mascota);
+        }
+        if (veterinario != null) {
+            cita.setUsuario(veterinario);
+        }
+        
+        Cita updatedCita = citaRepository.save(cita);
+        CitaDto actualizada = convertToDto(updatedCita);
+        eventPublisher.publishEvent(new CitaEvent(anterior, actualizada));
+        return actualizada;
+    }
+    
+    private void validar(CitaDto citaDto) {
+        Set<ConstraintViolation<CitaDto>> violaciones = validator.validate(citaDto);
+        if (!violaciones.isEmpty()) {
+            throw new BadRequestException(violaciones.stream()
+                    .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; ")));
+        }
+    }
+    
+    private static void agregarId(Set<Long> ids, Long id) {
+        if (id != null) {
+            ids.add(id);
+        }
+    }
+    
+    private static <T> T resolver(Map<Long, T> entidades, Long id, String recurso) {
+        T entidad = entidades.get(id);
+        if (entidad == null) {
+            throw new ResourceNotFoundException(recurso, "id", id);
+        }
+        return entidad;
+    }
+    
     @Transactional
     public boolean deleteCita(Long id) {
-        if (!citaRepository.existsById(id)) {
+        Cita cita = citaRepository.findById(id).orElse(null);
+        if (cita == null) {
             return false;
         }
-        citaRepository.deleteById(id);
+        CitaDto eliminada = convertToDto(cita);
+        citaRepository.delete(cita);
+        if (cita.getUsuario() != null && disponibilidadIndex.ocupaAgenda(cita.getEstado())) {
+            disponibilidadIndex.liberar(cita.getUsuario().getId(), cita.getFecha(), cita.getHora());
+        }
+        eventPublisher.publishEvent(new CitaEvent(eliminada, null));
         return true;
     }
     
+    /**
+     * Obtiene las franjas libres de un veterinario para cada día del rango indicado
+     * @param veterinarioId ID del veterinario
+     * @param desde fecha inicial (inclusive)
+     * @param hasta fecha final (inclusive)
+     * @return disponibilidad por día
+     */
+    public List<DisponibilidadDto> getDisponibilidad(Long veterinarioId, LocalDate desde, LocalDate hasta) {
+        if (!usuarioRepository.existsById(veterinarioId)) {
+            throw new ResourceNotFoundException("Usuario", "id", veterinarioId);
+        }
+        return disponibilidadIndex.consultar(veterinarioId, desde, hasta);
+    }
+    
     private CitaDto convertToDto(Cita cita) {
         CitaDto dto = new CitaDto();
         dto.setId(cita.getId());
@@ -163,27 +439,17 @@ public class CitaService {
      * @return número de citas del día
      */
     public int countCitasDelDia() {
-        return citaRepository.countCitasDelDia();
+        return dashboardCounters.getCitasDelDia();
     }
 
     /**
-     * Obtiene la lista de próximas citas
-     * @return lista de citas próximas
+     * Obtiene la lista de próximas citas a partir de hoy, ordenadas por fecha y hora
+     * @param limit número máximo de citas a devolver
+     * @param offset número de citas a omitir
+     * @return lista de citas próximas con especie y raza de la mascota
      */
-    public List<CitaDto> findProximasCitas() {
-        LocalDate hoy = LocalDate.now();
-        List<Cita> citas = citaRepository.findByFechaGreaterThanEqual(hoy);
-        
-        return citas.stream()
-            .map(entity -> {
-                CitaDto dto = convertToDto(entity);
-                
-                // asignar especie y raza
-                dto.setEspecie(entity.getMascota().getEspecie());
-                dto.setRaza(entity.getMascota().getRaza());
-                
-                return dto;
-            })
-            .collect(Collectors.toList());
+    public List<CitaDto> findProximasCitas(int limit, long offset) {
+        int tamano = Math.max(1, Math.min(limit, pageSizeMax));
+        return citaRepository.findProximasCitas(LocalDate.now(), new OffsetPageRequest(Math.max(0, offset), tamano));
     }
 }
@@ -1,11 +1,13 @@
 package com.backend.vet.service;
 
 import com.backend.vet.dto.ClienteDto;
+import com.backend.vet.event.ClienteEvent;
 import com.backend.vet.exception.BadRequestException;
 import com.backend.vet.exception.ResourceNotFoundException;
 import com.backend.vet.model.Cliente;
 import com.backend.vet.repository.ClienteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,6 +20,9 @@ public class ClienteService {
     @Autowired
     private ClienteRepository clienteRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public List<ClienteDto> getAllClientes() {
         return clienteRepository.findAll().stream()
                 .map(this::convertToDto)
@@ -40,7 +45,9 @@ public class ClienteService {
         
         Cliente cliente = convertToEntity(clienteDto);
         Cliente savedCliente = clienteRepository.save(cliente);
-        return convertToDto(savedCliente);
+        ClienteDto creado = convertToDto(savedCliente);
+        eventPublisher.publishEvent(new ClienteEvent(null, creado));
+        return creado;
     }
     
     @Transactional
@@ -55,6 +62,7 @@ public class ClienteService {
                 clienteRepository.existsByCorreo(clienteDto.getCorreo())) {
                 throw new BadRequestException("El correo electrónico ya está registrado");
             }
+            ClienteDto anterior = convertToDto(cliente);
             
             cliente.setNombre(clienteDto.getNombre());
             cliente.setApellido(clienteDto.getApellido());
@@ -63,7 +71,9 @@ public class ClienteService {
             cliente.setDireccion(clienteDto.getDireccion());
             
             Cliente updatedCliente = clienteRepository.save(cliente);
-            return convertToDto(updatedCliente);
+            ClienteDto actualizado = convertToDto(updatedCliente);
+            eventPublisher.publishEvent(new ClienteEvent(anterior, actualizado));
+            return actualizado;
         } catch (ResourceNotFoundException e) {
             return null;
         }
@@ -71,10 +81,13 @@ public class ClienteService {
     
     @Transactional
     public boolean deleteCliente(Long id) {
-        if (!clienteRepository.existsById(id)) {
+        Cliente cliente = clienteRepository.findById(id).orElse(null);
+        if (cliente == null) {
             return false;
         }
-        clienteRepository.deleteById(id);
+        ClienteDto eliminado = convertToDto(cliente);
+        clienteRepository.delete(cliente);
+        eventPublisher.publishEvent(new ClienteEvent(eliminado, null));
         return true;
     }
     
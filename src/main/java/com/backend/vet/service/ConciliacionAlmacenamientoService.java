@@ -0,0 +1,516 @@
+package com.backend.vet.service;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.model.ArchivoClinico;
+import com.backend.vet.repository.ArchivoClinicoRepository;
+import com.backend.vet.repository.BlobArchivoRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Conciliación incremental entre el almacenamiento de archivos y la base de datos.
+ * El recorrido avanza por directorios de reparto ({@code ab/cd}) de los historiales y del almacén de contenido:
+ * cada ejecución lista completos los siguientes directorios hasta reunir un lote, continuando donde terminó la
+ * anterior, y compara sus archivos con los nombres registrados mediante consultas por lote. Así cada directorio,
+ * incluido el directorio plano anterior de historiales, se lista una sola vez por pasada.
+ * Los archivos sin registro y con una antigüedad mínima (para no tocar subidas en curso) se mueven a cuarentena,
+ * se eliminan o solo se informan, según {@code file.storage.gc.mode}. También revisa, por lotes, que cada
+ * registro de archivos_clinicos tenga su archivo.
+ */
+@Service
+public class ConciliacionAlmacenamientoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConciliacionAlmacenamientoService.class);
+
+    private static final String SUFIJO_MINIATURA = ".thumb.jpg";
+    private static final String SUFIJO_TEMPORAL = ".raw";
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern REPARTO = Pattern.compile("[0-9a-f]{2}");
+    // Niveles de reparto bajo cada almacén: ab/cd
+    private static final int NIVELES_REPARTO = 2;
+    // Separador de componentes en las claves del recorrido: al ser menor que cualquier carácter de un nombre,
+    // el orden de las claves coincide con el del árbol, componente a componente
+    private static final char SEPARADOR = '\u0000';
+
+    private enum Modo { CUARENTENA, ELIMINAR, INFORMAR }
+
+    @Autowired
+    private FileStorageConfig fileStorageConfig;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ArchivoClinicoRepository archivoClinicoRepository;
+
+    @Autowired
+    private BlobArchivoRepository blobArchivoRepository;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${file.storage.gc.batch-size:500}")
+    private int tamanoLote;
+
+    @Value("${file.storage.gc.min-age:1h}")
+    private Duration antiguedadMinima;
+
+    @Value("${file.storage.gc.mode:quarantine}")
+    private String modoConfigurado;
+
+    @Value("${file.storage.gc.quarantine-retention:7d}")
+    private Duration retencionCuarentena;
+
+    private Modo modo;
+    private Path raiz;
+    private Path historiales;
+    private Path blobs;
+    private Path pendientes;
+    private Path cuarentena;
+
+    // Clave del último directorio revisado en la pasada actual, o null al comenzar una pasada
+    private volatile String cursorArchivos;
+    // Primer nivel de reparto de cada almacén, listado una vez por pasada: el directorio de historiales
+    // puede contener todavía los archivos del formato plano y no se vuelve a listar en cada ejecución
+    private Map<Path, List<Path>> primerNivel = new HashMap<>();
+    private volatile long cursorRegistros;
+
+    private final AtomicLong revisadosEnPasada = new AtomicLong();
+    private final AtomicLong totalUltimaPasada = new AtomicLong(-1);
+    private final AtomicLong pasadasCompletadas = new AtomicLong();
+    private final AtomicLong archivosRevisados = new AtomicLong();
+    private final AtomicLong huerfanos = new AtomicLong();
+    private final AtomicLong bytesRecuperados = new AtomicLong();
+    private final AtomicLong registrosSinArchivo = new AtomicLong();
+    private final AtomicLong inconsistencias = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        raiz = fileStorageConfig.getUploadRootPath();
+        historiales = fileStorageConfig.getHistorialStoragePath();
+        blobs = fileStorageConfig.getBlobStoragePath();
+        pendientes = blobs.resolve(".tmp");
+        cuarentena = fileStorageConfig.getQuarantinePath();
+        modo = switch (modoConfigurado.toLowerCase(Locale.ROOT)) {
+            case "delete" -> Modo.ELIMINAR;
+            case "report" -> Modo.INFORMAR;
+            case "quarantine" -> Modo.CUARENTENA;
+            default -> {
+                logger.warn("Modo de conciliación desconocido '{}', se usa 'quarantine'", modoConfigurado);
+                yield Modo.CUARENTENA;
+            }
+        };
+
+        if (meterRegistry != null) {
+            // Expuestas en /actuator/metrics y /actuator/prometheus
+            FunctionCounter.builder("almacenamiento.conciliacion.archivos.revisados", archivosRevisados, AtomicLong::get)
+                    .register(meterRegistry);
+            FunctionCounter.builder("almacenamiento.conciliacion.huerfanos", huerfanos, AtomicLong::get)
+                    .description("Archivos sin registro retirados o informados")
+                    .register(meterRegistry);
+            FunctionCounter.builder("almacenamiento.conciliacion.bytes.recuperados", bytesRecuperados, AtomicLong::get)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            FunctionCounter.builder("almacenamiento.conciliacion.registros.sin.archivo", registrosSinArchivo, AtomicLong::get)
+                    .register(meterRegistry);
+            FunctionCounter.builder("almacenamiento.conciliacion.inconsistencias", inconsistencias, AtomicLong::get)
+                    .description("Contenidos referenciados por archivos clínicos sin fila en blobs_archivos")
+                    .register(meterRegistry);
+            FunctionCounter.builder("almacenamiento.conciliacion.pasadas", pasadasCompletadas, AtomicLong::get)
+                    .register(meterRegistry);
+            Gauge.builder("almacenamiento.conciliacion.progreso", this, ConciliacionAlmacenamientoService::getProgreso)
+                    .description("Fracción revisada de la pasada actual, estimada con el total de la anterior")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${file.storage.gc.interval-ms:300000}",
+            initialDelayString = "${file.storage.gc.initial-delay-ms:120000}")
+    public synchronized void ejecutar() {
+        try {
+            conciliarArchivos();
+            revisarRegistros();
+            purgarCuarentena();
+        } catch (IOException | RuntimeException ex) {
+            logger.error("Error en la conciliación del almacenamiento: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Revisa los siguientes directorios de reparto en orden de recorrido, hasta reunir al menos un lote de archivos.
+     * Cada directorio se revisa completo, así que un directorio con más archivos que el lote se lista una sola vez.
+     * @return número de archivos revisados; 0 cuando se completa una pasada
+     */
+    public synchronized int conciliarArchivos() throws IOException {
+        Instant limite = Instant.now().minus(antiguedadMinima);
+        int revisados = 0;
+        while (revisados < tamanoLote) {
+            Path directorio = siguienteDirectorio(cursorArchivos);
+            if (directorio == null) {
+                if (revisados > 0) {
+                    // La pasada se cierra en la siguiente ejecución
+                    break;
+                }
+                totalUltimaPasada.set(revisadosEnPasada.getAndSet(0));
+                pasadasCompletadas.incrementAndGet();
+                cursorArchivos = null;
+                primerNivel = new HashMap<>();
+                logger.info("Pasada de conciliación completada: {} archivos revisados, {} huérfanos y {} bytes recuperados en total",
+                        totalUltimaPasada.get(), huerfanos.get(), bytesRecuperados.get());
+                return 0;
+            }
+            int enDirectorio = conciliarDirectorio(directorio, limite);
+            cursorArchivos = clave(directorio);
+            revisados += enDirectorio;
+            revisadosEnPasada.addAndGet(enDirectorio);
+            archivosRevisados.addAndGet(enDirectorio);
+        }
+        return revisados;
+    }
+
+    /**
+     * Comprueba que el siguiente lote de registros de archivos clínicos tenga su archivo en el almacenamiento
+     * @return número de registros revisados; 0 cuando se completa una pasada
+     */
+    public synchronized int revisarRegistros() {
+        List<ArchivoClinico> registros = archivoClinicoRepository.findByIdGreaterThanOrderByIdAsc(
+                cursorRegistros, PageRequest.of(0, tamanoLote));
+        if (registros.isEmpty()) {
+            cursorRegistros = 0;
+            return 0;
+        }
+        for (ArchivoClinico registro : registros) {
+            if (!fileStorageService.exists(fileStorageService.getFileName(registro.getUrl()))) {
+                registrosSinArchivo.incrementAndGet();
+                logger.warn("El archivo clínico ID {} no tiene archivo en el almacenamiento: {}",
+                        registro.getId(), registro.getUrl());
+            }
+        }
+        cursorRegistros = registros.get(registros.size() - 1).getId();
+        return registros.size();
+    }
+
+    /**
+     * Elimina definitivamente los archivos que llevan en cuarentena más tiempo que la retención configurada
+     */
+    public synchronized void purgarCuarentena() throws IOException {
+        if (!Files.isDirectory(cuarentena)) {
+            return;
+        }
+        Instant limite = Instant.now().minus(retencionCuarentena);
+        Files.walkFileTree(cuarentena, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.lastModifiedTime().toInstant().isBefore(limite) && Files.deleteIfExists(file)) {
+                    bytesRecuperados.addAndGet(attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (!dir.equals(cuarentena)) {
+                    try {
+                        Files.deleteIfExists(dir);
+                    } catch (DirectoryNotEmptyException ignored) {
+                        // quedan archivos dentro del plazo de retención
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Fracción revisada de la pasada actual, o NaN si todavía no se ha completado ninguna pasada */
+    public double getProgreso() {
+        long total = totalUltimaPasada.get();
+        return total <= 0 ? Double.NaN : Math.min(1.0, (double) revisadosEnPasada.get() / total);
+    }
+
+    public long getHuerfanos() {
+        return huerfanos.get();
+    }
+
+    public long getBytesRecuperados() {
+        return bytesRecuperados.get();
+    }
+
+    public long getPasadasCompletadas() {
+        return pasadasCompletadas.get();
+    }
+
+    public long getRegistrosSinArchivo() {
+        return registrosSinArchivo.get();
+    }
+
+    /**
+     * Revisa los archivos del directorio, sin entrar en sus subdirectorios, en lotes para las consultas
+     * @return número de archivos revisados
+     */
+    private int conciliarDirectorio(Path directorio, Instant limite) throws IOException {
+        int revisados = 0;
+        List<Candidato> lote = new ArrayList<>();
+        try (DirectoryStream<Path> entradas = Files.newDirectoryStream(directorio)) {
+            for (Path entrada : entradas) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(entrada, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException ex) {
+                    // retirado junto con su original en este mismo lote
+                    continue;
+                } catch (IOException ex) {
+                    logger.warn("No se pudo revisar {}: {}", entrada, ex.getMessage());
+                    continue;
+                }
+                if (!attrs.isRegularFile()) {
+                    continue;
+                }
+                lote.add(new Candidato(entrada, attrs.lastModifiedTime()));
+                if (lote.size() >= tamanoLote) {
+                    procesarLote(lote, limite);
+                    revisados += lote.size();
+                    lote.clear();
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            return revisados;
+        }
+        if (!lote.isEmpty()) {
+            procesarLote(lote, limite);
+            revisados += lote.size();
+        }
+        return revisados;
+    }
+
+    /**
+     * Busca el primer directorio a revisar posterior al cursor. Se revisan la raíz de cada almacén
+     * (en historiales, el directorio plano anterior), sus directorios de reparto y el de temporales del almacén.
+     * @return directorio siguiente, o null si la pasada terminó
+     */
+    private Path siguienteDirectorio(String despuesDe) throws IOException {
+        List<Path> almacenes = new ArrayList<>(List.of(historiales, blobs));
+        almacenes.sort(Comparator.comparing(this::clave));
+        for (Path almacen : almacenes) {
+            Path siguiente = siguienteEn(almacen, 0, despuesDe);
+            if (siguiente != null) {
+                return siguiente;
+            }
+        }
+        return null;
+    }
+
+    private Path siguienteEn(Path directorio, int nivel, String despuesDe) throws IOException {
+        String clave = clave(directorio);
+        // Un directorio va antes que su contenido en el orden de claves
+        if (despuesDe == null || clave.compareTo(despuesDe) > 0) {
+            return directorio;
+        }
+        // Todo el subárbol es anterior al cursor
+        if (nivel == NIVELES_REPARTO || !(clave.equals(despuesDe) || despuesDe.startsWith(clave + SEPARADOR))) {
+            return null;
+        }
+        for (Path subdirectorio : subdirectorios(directorio, nivel)) {
+            Path siguiente = siguienteEn(subdirectorio, nivel + 1, despuesDe);
+            if (siguiente != null) {
+                return siguiente;
+            }
+        }
+        return null;
+    }
+
+    private List<Path> subdirectorios(Path directorio, int nivel) throws IOException {
+        if (nivel == 0) {
+            List<Path> cache = primerNivel.get(directorio);
+            if (cache == null) {
+                cache = listarSubdirectorios(directorio, nivel);
+                primerNivel.put(directorio, cache);
+            }
+            return cache;
+        }
+        return listarSubdirectorios(directorio, nivel);
+    }
+
+    private List<Path> listarSubdirectorios(Path directorio, int nivel) throws IOException {
+        List<Path> subdirectorios = new ArrayList<>();
+        // Se filtra por nombre antes de consultar atributos: el directorio plano puede tener muchos archivos
+        DirectoryStream.Filter<Path> filtro = ruta -> REPARTO.matcher(ruta.getFileName().toString()).matches()
+                || (nivel == 0 && ruta.equals(pendientes));
+        try (DirectoryStream<Path> entradas = Files.newDirectoryStream(directorio, filtro)) {
+            for (Path entrada : entradas) {
+                if (Files.isDirectory(entrada, LinkOption.NOFOLLOW_LINKS)) {
+                    subdirectorios.add(entrada);
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            return List.of();
+        }
+        subdirectorios.sort(Comparator.comparing(this::clave));
+        return subdirectorios;
+    }
+
+    private void procesarLote(List<Candidato> candidatos, Instant limite) {
+        Map<String, Candidato> porUrl = new HashMap<>();
+        Map<String, Candidato> porHash = new HashMap<>();
+        for (Candidato candidato : candidatos) {
+            if (!esAntiguo(candidato.getModificado(), limite)) {
+                // Puede pertenecer a una subida cuya transacción aún no se ha confirmado
+                continue;
+            }
+            Path archivo = candidato.getRuta();
+            String nombre = archivo.getFileName().toString();
+            if (archivo.startsWith(pendientes) || nombre.endsWith(SUFIJO_TEMPORAL)) {
+                retirar(archivo, limite, "temporal abandonado");
+            } else if (nombre.endsWith(SUFIJO_MINIATURA)) {
+                String original = nombre.substring(0, nombre.length() - SUFIJO_MINIATURA.length());
+                // Con un almacén de contenido remoto, el original de una miniatura de blobs no está en disco
+                boolean existe = archivo.startsWith(blobs) && SHA256.matcher(original).matches()
+                        ? fileStorageService.blobExists(original)
+                        : Files.exists(archivo.resolveSibling(original));
+                if (!existe) {
+                    retirar(archivo, limite, "miniatura sin original");
+                }
+            } else if (archivo.startsWith(blobs)) {
+                if (SHA256.matcher(nombre).matches()) {
+                    porHash.put(nombre, candidato);
+                }
+            } else if (archivo.startsWith(historiales)) {
+                // Directorio plano anterior o árbol repartido ab/cd/<nombre>
+                porUrl.put(fileStorageService.getFileUrl(nombre), candidato);
+            }
+        }
+
+        if (!porUrl.isEmpty()) {
+            Set<String> registradas = new HashSet<>(archivoClinicoRepository.findUrlsRegistradas(porUrl.keySet()));
+            porUrl.forEach((url, candidato) -> {
+                if (!registradas.contains(url)) {
+                    retirar(candidato.getRuta(), limite, "sin registro en archivos_clinicos");
+                }
+            });
+        }
+
+        if (!porHash.isEmpty()) {
+            Set<String> conFila = new HashSet<>(blobArchivoRepository.findHashesRegistrados(porHash.keySet()));
+            List<String> sinFila = porHash.keySet().stream().filter(hash -> !conFila.contains(hash)).toList();
+            if (!sinFila.isEmpty()) {
+                // Por precaución, no se retira un contenido que algún archivo clínico todavía referencia
+                Set<String> referenciados = new HashSet<>(archivoClinicoRepository.findHashesRegistrados(sinFila));
+                for (String hash : sinFila) {
+                    if (referenciados.contains(hash)) {
+                        inconsistencias.incrementAndGet();
+                        logger.warn("El contenido {} está referenciado por archivos clínicos pero no tiene fila en blobs_archivos", hash);
+                    } else {
+                        retirar(porHash.get(hash).getRuta(), limite, "sin fila en blobs_archivos");
+                    }
+                }
+            }
+        }
+    }
+
+    private void retirar(Path archivo, Instant limite, String motivo) {
+        try {
+            // Se vuelve a comprobar la fecha: una subida del mismo contenido la renueva mientras se registra
+            if (!esAntiguo(Files.getLastModifiedTime(archivo), limite)) {
+                return;
+            }
+            long tamano = Files.size(archivo);
+            huerfanos.incrementAndGet();
+            switch (modo) {
+                case INFORMAR -> logger.info("Archivo huérfano ({}): {} ({} bytes)", motivo, raiz.relativize(archivo), tamano);
+                case ELIMINAR -> {
+                    if (Files.deleteIfExists(archivo)) {
+                        bytesRecuperados.addAndGet(tamano);
+                    }
+                    logger.info("Archivo huérfano eliminado ({}): {}", motivo, raiz.relativize(archivo));
+                }
+                case CUARENTENA -> {
+                    Path destino = cuarentena.resolve(raiz.relativize(archivo));
+                    Files.createDirectories(destino.getParent());
+                    Files.move(archivo, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    // La retención se cuenta desde que entra en cuarentena
+                    Files.setLastModifiedTime(destino, FileTime.from(Instant.now()));
+                    logger.info("Archivo huérfano movido a cuarentena ({}): {}", motivo, raiz.relativize(archivo));
+                }
+            }
+            if (modo != Modo.INFORMAR && !archivo.getFileName().toString().endsWith(SUFIJO_MINIATURA)) {
+                Path miniatura = archivo.resolveSibling(archivo.getFileName() + SUFIJO_MINIATURA);
+                if (Files.exists(miniatura)) {
+                    retirar(miniatura, Instant.MAX, "miniatura sin original");
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+            // ya no existe
+        } catch (IOException ex) {
+            logger.warn("No se pudo retirar el archivo huérfano {}: {}", archivo, ex.getMessage());
+        }
+    }
+
+    private static boolean esAntiguo(FileTime modificado, Instant limite) {
+        return modificado.toInstant().isBefore(limite);
+    }
+
+    private String clave(Path ruta) {
+        StringBuilder clave = new StringBuilder();
+        for (Path componente : raiz.relativize(ruta)) {
+            if (!clave.isEmpty()) {
+                clave.append(SEPARADOR);
+            }
+            clave.append(componente);
+        }
+        return clave.toString();
+    }
+
+    /**
+     * Archivo seleccionado para el lote actual
+     */
+    private static class Candidato {
+        private final Path ruta;
+        private final FileTime modificado;
+
+        Candidato(Path ruta, FileTime modificado) {
+            this.ruta = ruta;
+            this.modificado = modificado;
+        }
+
+        Path getRuta() {
+            return ruta;
+        }
+
+        FileTime getModificado() {
+            return modificado;
+        }
+    }
+}
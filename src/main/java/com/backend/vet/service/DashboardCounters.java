@@ -0,0 +1,200 @@
+package com.backend.vet.service;
+
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.event.CitaEvent;
+import com.backend.vet.event.HistorialClinicoEvent;
+import com.backend.vet.repository.CitaRepository;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Contadores del dashboard mantenidos en memoria para el día actual.
+ * Se cargan una vez desde la base de datos al iniciar, se actualizan con los eventos de citas
+ * e historial clínico después de cada commit y se recargan al cambiar de día.
+ * Un cambio confirmado mientras se recarga puede quedar fuera de los contadores nuevos, y no se repite sobre
+ * ellos porque no hay forma de saber si las consultas de carga ya lo vieron (se contaría dos veces). En su lugar
+ * los contadores se recargan periódicamente, así que esa diferencia nunca dura más de un intervalo ni se acumula.
+ * Los eventos son locales: con varias instancias, cada una solo cuenta los cambios que confirma ella misma
+ * hasta la siguiente recarga.
+ */
+@Component
+public class DashboardCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardCounters.class);
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private HistorialClinicoRepository historialClinicoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private volatile ContadoresDia contadores;
+
+    /**
+     * Carga los contadores del día actual desde la base de datos
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconstruir() {
+        LocalDate hoy = LocalDate.now();
+        ContadoresDia nuevos = new ContadoresDia(hoy);
+
+        // Las tres consultas ven la misma instantánea, para que los contadores sean coherentes entre sí
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            nuevos.citas.set((int) citaRepository.countByFecha(hoy));
+            for (Object[] fila : historialClinicoRepository.countAtencionesPorMascota(
+                    hoy.atStartOfDay(), hoy.plusDays(1).atStartOfDay())) {
+                nuevos.atencionesPorMascota.put((Long) fila[0], ((Number) fila[1]).intValue());
+            }
+            nuevos.vacunas.set(historialClinicoRepository.countVacunasEntre(
+                    hoy.atStartOfDay(), hoy.plusDays(1).atStartOfDay()));
+        });
+        contadores = nuevos;
+        logger.debug("Contadores del dashboard cargados para {} - Pacientes: {}, Citas: {}, Vacunas: {}",
+                hoy, nuevos.atencionesPorMascota.size(), nuevos.citas.get(), nuevos.vacunas.get());
+    }
+
+    /**
+     * Reinicia los contadores a medianoche
+     */
+    @Scheduled(cron = "${app.dashboard.cron-cambio-dia:0 0 0 * * *}")
+    public void cambiarDia() {
+        reconstruir();
+    }
+
+    /**
+     * Corrige los cambios que se perdieron durante la recarga anterior
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.reconciliar-ms:60000}",
+            initialDelayString = "${app.dashboard.reconciliar-ms:60000}")
+    public void reconciliar() {
+        reconstruir();
+    }
+
+    public int getCitasDelDia() {
+        return delDia().citas.get();
+    }
+
+    public int getPacientesAtendidos() {
+        return delDia().atencionesPorMascota.size();
+    }
+
+    public int getVacunasAplicadas() {
+        return delDia().vacunas.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCita(CitaEvent event) {
+        aplicar(actuales -> {
+            if (actuales.esDelDia(event.getAnterior())) {
+                actuales.citas.updateAndGet(DashboardCounters::restar);
+            }
+            if (actuales.esDelDia(event.getActual())) {
+                actuales.citas.incrementAndGet();
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHistorialClinico(HistorialClinicoEvent event) {
+        aplicar(actuales -> {
+            HistorialClinicoDto anterior = event.getAnterior();
+            if (actuales.esDelDia(anterior)) {
+                if (anterior.getMascotaId() != null) {
+                    actuales.atencionesPorMascota.computeIfPresent(anterior.getMascotaId(),
+                            (id, total) -> total > 1 ? total - 1 : null);
+                }
+                if (esVacuna(anterior)) {
+                    actuales.vacunas.updateAndGet(DashboardCounters::restar);
+                }
+            }
+            HistorialClinicoDto actual = event.getActual();
+            if (actuales.esDelDia(actual)) {
+                if (actual.getMascotaId() != null) {
+                    actuales.atencionesPorMascota.merge(actual.getMascotaId(), 1, Integer::sum);
+                }
+                if (esVacuna(actual)) {
+                    actuales.vacunas.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Aplica un cambio a los contadores vigentes
+     */
+    private void aplicar(Consumer<ContadoresDia> cambio) {
+        ContadoresDia actuales = contadores;
+        // Los contadores que reemplaza una recarga se descartan, así que da igual si el cambio llega después
+        if (actuales != null) {
+            cambio.accept(actuales);
+        }
+    }
+
+    // Si la recarga no vio la creación de algo que luego se elimina, el contador no baja de cero
+    private static int restar(int valor) {
+        return Math.max(0, valor - 1);
+    }
+
+    private ContadoresDia delDia() {
+        ContadoresDia actuales = contadores;
+        // Si aún no se cargaron o la tarea de medianoche no se ha ejecutado, se recargan
+        if (actuales == null || !actuales.dia.equals(LocalDate.now())) {
+            synchronized (this) {
+                actuales = contadores;
+                if (actuales == null || !actuales.dia.equals(LocalDate.now())) {
+                    reconstruir();
+                    actuales = contadores;
+                }
+            }
+        }
+        return actuales;
+    }
+
+    // Mismo criterio que el LIKE '%vacuna%' de la consulta de carga
+    private boolean esVacuna(HistorialClinicoDto historial) {
+        return historial.getDiagnostico() != null && historial.getDiagnostico().contains("vacuna");
+    }
+
+    private static final class ContadoresDia {
+        private final LocalDate dia;
+        private final AtomicInteger citas = new AtomicInteger();
+        // mascotaId -> número de atenciones del día, para contar pacientes distintos
+        private final Map<Long, Integer> atencionesPorMascota = new ConcurrentHashMap<>();
+        private final AtomicInteger vacunas = new AtomicInteger();
+
+        private ContadoresDia(LocalDate dia) {
+            this.dia = dia;
+        }
+
+        private boolean esDelDia(CitaDto cita) {
+            return cita != null && dia.equals(cita.getFecha());
+        }
+
+        private boolean esDelDia(HistorialClinicoDto historial) {
+            return historial != null && historial.getFecha() != null && dia.equals(historial.getFecha().toLocalDate());
+        }
+    }
+}
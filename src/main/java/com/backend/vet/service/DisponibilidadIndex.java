@@ -0,0 +1,220 @@
+package com.backend.vet.service;
+
+import com.backend.vet.dto.CitaSlotDto;
+import com.backend.vet.dto.DisponibilidadDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.repository.CitaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice en memoria de la agenda de cada veterinario.
+ * Por cada veterinario y día guarda un mapa de bits con una posición por franja de duración fija,
+ * de modo que comprobar o reservar una franja es O(1) y no requiere consultar la tabla de citas.
+ * El índice es de cada instancia; lo que impide en último término dos citas en la misma franja es el índice
+ * único de la base de datos (ver {@code FranjasCitasInitializer}).
+ */
+@Component
+public class DisponibilidadIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(DisponibilidadIndex.class);
+
+    private static final int MINUTOS_POR_DIA = 24 * 60;
+
+    @Value("${app.agenda.duracion-slot-minutos:30}")
+    private int duracionSlotMinutos;
+
+    @Value("${app.agenda.hora-apertura:08:00}")
+    private String horaApertura;
+
+    @Value("${app.agenda.hora-cierre:20:00}")
+    private String horaCierre;
+
+    @Value("${app.agenda.rango-maximo-dias:31}")
+    private int rangoMaximoDias;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    // veterinarioId -> fecha -> mapa de bits de franjas ocupadas
+    private volatile Map<Long, Map<LocalDate, long[]>> agendas = new ConcurrentHashMap<>();
+
+    /**
+     * Reconstruye el índice a partir de las citas activas desde hoy. El índice nuevo se arma aparte y reemplaza
+     * al anterior de una vez, así que nunca se consulta un índice vacío o a medio cargar; los días pasados quedan
+     * fuera.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        Map<Long, Map<LocalDate, long[]>> nuevas = new ConcurrentHashMap<>();
+        List<CitaSlotDto> ocupadas = citaRepository.findSlotsOcupadosDesde(LocalDate.now());
+        int conflictos = 0;
+        for (CitaSlotDto slot : ocupadas) {
+            if (!marcar(nuevas, slot.getUsuarioId(), slot.getFecha(), slot.getHora())) {
+                conflictos++;
+            }
+        }
+        agendas = nuevas;
+        logger.info("Índice de disponibilidad reconstruido con {} citas ({} franjas con citas superpuestas)",
+                ocupadas.size(), conflictos);
+    }
+
+    /**
+     * Descarta los días anteriores a hoy, que ya no se reservan ni se consultan
+     */
+    @Scheduled(cron = "${app.agenda.cron-limpieza:0 5 0 * * *}")
+    public void descartarDiasPasados() {
+        LocalDate hoy = LocalDate.now();
+        for (Map<LocalDate, long[]> agenda : agendas.values()) {
+            agenda.keySet().removeIf(fecha -> fecha.isBefore(hoy));
+        }
+        agendas.values().removeIf(Map::isEmpty);
+    }
+
+    /**
+     * Indica si una cita con el estado dado ocupa una franja en la agenda
+     * @param estado estado de la cita
+     * @return false si la cita está cancelada
+     */
+    public boolean ocupaAgenda(String estado) {
+        return estado == null || !"Cancelada".equalsIgnoreCase(estado);
+    }
+
+    /**
+     * Indica si dos horas de un mismo veterinario y fecha caen en la misma franja
+     */
+    public boolean mismaFranja(Long veterinarioA, LocalDate fechaA, LocalTime horaA,
+                               Long veterinarioB, LocalDate fechaB, LocalTime horaB) {
+        return veterinarioA != null && veterinarioA.equals(veterinarioB)
+                && fechaA != null && fechaA.equals(fechaB)
+                && horaA != null && horaB != null && franja(horaA) == franja(horaB);
+    }
+
+    /**
+     * Reserva la franja de forma atómica. Si la transacción actual se revierte, la franja se libera.
+     * @throws BadRequestException si el veterinario ya tiene una cita en esa franja
+     */
+    public void reservar(Long veterinarioId, LocalDate fecha, LocalTime hora) {
+        if (!marcar(agendas, veterinarioId, fecha, hora)) {
+            throw new BadRequestException("El veterinario ya tiene una cita programada el " + fecha + " a las " + hora);
+        }
+        alFinalizarTransaccion(null, () -> desmarcar(veterinarioId, fecha, hora));
+    }
+
+    /**
+     * Libera la franja cuando la transacción actual se confirma (o inmediatamente si no hay transacción)
+     */
+    public void liberar(Long veterinarioId, LocalDate fecha, LocalTime hora) {
+        alFinalizarTransaccion(() -> desmarcar(veterinarioId, fecha, hora), null);
+    }
+
+    /**
+     * Obtiene las franjas libres de un veterinario, dentro del horario de atención, para cada día del rango
+     * @throws BadRequestException si el rango es inválido o excede el máximo permitido
+     */
+    public List<DisponibilidadDto> consultar(Long veterinarioId, LocalDate desde, LocalDate hasta) {
+        if (hasta.isBefore(desde)) {
+            throw new BadRequestException("La fecha 'hasta' no puede ser anterior a 'desde'");
+        }
+        if (desde.plusDays(rangoMaximoDias).isBefore(hasta)) {
+            throw new BadRequestException("El rango de fechas no puede exceder " + rangoMaximoDias + " días");
+        }
+
+        Map<LocalDate, long[]> agenda = agendas.getOrDefault(veterinarioId, Map.of());
+        int primera = franjaCeil(LocalTime.parse(horaApertura));
+        int ultima = franjaCeil(LocalTime.parse(horaCierre));
+
+        List<DisponibilidadDto> resultado = new ArrayList<>();
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            long[] bits = agenda.get(fecha);
+            List<LocalTime> libres = new ArrayList<>();
+            for (int i = primera; i < ultima; i++) {
+                boolean ocupada;
+                if (bits == null) {
+                    ocupada = false;
+                } else {
+                    synchronized (bits) {
+                        ocupada = (bits[i >> 6] & (1L << i)) != 0;
+                    }
+                }
+                if (!ocupada) {
+                    libres.add(LocalTime.MIDNIGHT.plusMinutes((long) i * duracionSlotMinutos));
+                }
+            }
+            resultado.add(new DisponibilidadDto(fecha, libres));
+        }
+        return resultado;
+    }
+
+    private boolean marcar(Map<Long, Map<LocalDate, long[]>> en, Long veterinarioId, LocalDate fecha, LocalTime hora) {
+        long[] bits = en.computeIfAbsent(veterinarioId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fecha, f -> new long[(franjasPorDia() + 63) / 64]);
+        int i = franja(hora);
+        synchronized (bits) {
+            if ((bits[i >> 6] & (1L << i)) != 0) {
+                return false;
+            }
+            bits[i >> 6] |= 1L << i;
+            return true;
+        }
+    }
+
+    private void desmarcar(Long veterinarioId, LocalDate fecha, LocalTime hora) {
+        Map<LocalDate, long[]> agenda = agendas.get(veterinarioId);
+        long[] bits = agenda != null ? agenda.get(fecha) : null;
+        if (bits == null) {
+            return;
+        }
+        int i = franja(hora);
+        synchronized (bits) {
+            bits[i >> 6] &= ~(1L << i);
+        }
+    }
+
+    private int franja(LocalTime hora) {
+        return (hora.getHour() * 60 + hora.getMinute()) / duracionSlotMinutos;
+    }
+
+    private int franjaCeil(LocalTime hora) {
+        int minutos = hora.getHour() * 60 + hora.getMinute();
+        return (minutos + duracionSlotMinutos - 1) / duracionSlotMinutos;
+    }
+
+    private int franjasPorDia() {
+        return (MINUTOS_POR_DIA + duracionSlotMinutos - 1) / duracionSlotMinutos;
+    }
+
+    private void alFinalizarTransaccion(Runnable siConfirma, Runnable siRevierte) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (siConfirma != null) {
+                siConfirma.run();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED && siConfirma != null) {
+                    siConfirma.run();
+                } else if (status == STATUS_ROLLED_BACK && siRevierte != null) {
+                    siRevierte.run();
+                }
+            }
+        });
+    }
+}
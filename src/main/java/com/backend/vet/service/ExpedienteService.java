@@ -0,0 +1,234 @@
+package com.backend.vet.service;
+
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.dto.MascotaDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Genera el expediente clínico completo de una mascota como un ZIP que se escribe directamente
+ * sobre el flujo de salida, sin archivos temporales: los datos de la mascota y su historial en JSON y CSV,
+ * más todos los archivos clínicos adjuntos.
+ * Los formatos que ya vienen comprimidos (imágenes, vídeo, PDF, ZIP...) se guardan sin comprimir (STORED),
+ * ya que volver a comprimirlos gasta CPU sin reducir el tamaño.
+ */
+@Service
+public class ExpedienteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpedienteService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NIVEL_COMPRESION = 6;
+
+    private static final Set<String> TIPOS_COMPRIMIDOS = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/heic", "image/avif",
+            "application/pdf", "application/zip", "application/gzip", "application/x-gzip",
+            "application/x-7z-compressed", "application/x-rar-compressed", "application/x-bzip2");
+
+    private static final Set<String> EXTENSIONES_COMPRIMIDAS = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif", "pdf", "zip", "gz", "tgz", "7z", "rar", "bz2",
+            "mp3", "m4a", "ogg", "mp4", "mov", "webm", "mkv");
+
+    private static final String CABECERA_CSV = "id,fecha,veterinario,citaId,diagnostico,tratamiento,observaciones";
+
+    @Autowired
+    private HistorialClinicoService historialClinicoService;
+
+    @Autowired
+    private ArchivoClinicoService archivoClinicoService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Escribe el expediente de la mascota en formato ZIP. No cierra el flujo de salida.
+     * @param mascota mascota cuyo expediente se exporta
+     * @param out flujo de salida (normalmente el de la respuesta HTTP)
+     * @return número de archivos clínicos incluidos
+     */
+    public int escribirExpediente(MascotaDto mascota, OutputStream out) throws IOException {
+        List<HistorialClinicoDto> historial = historialClinicoService.getHistorialClinicoByMascotaId(mascota.getId());
+        List<ArchivoClinicoDto> archivos = archivoClinicoService.getArchivosByMascotaId(mascota.getId());
+
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        zip.setLevel(NIVEL_COMPRESION);
+
+        escribirTexto(zip, "mascota.json", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(mascota));
+        escribirTexto(zip, "historial.json", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(historial));
+        escribirTexto(zip, "historial.csv", historialCsv(historial).getBytes(StandardCharsets.UTF_8));
+        escribirTexto(zip, "archivos.json", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(archivos));
+
+        int incluidos = 0;
+        for (ArchivoClinicoDto archivo : archivos) {
+            String fileName = fileStorageService.getFileName(archivo.getUrl());
+            Optional<Path> ruta = fileStorageService.localFile(fileName);
+            if (ruta.isEmpty() && !fileStorageService.exists(fileName)) {
+                logger.warn("Archivo clínico ID {} no disponible en el almacenamiento, se omite del expediente", archivo.getId());
+                continue;
+            }
+            String nombre = "archivos/" + archivo.getHistorialClinicoId() + "/" + archivo.getId() + "_"
+                    + nombreSeguro(archivo.getNombreArchivo());
+            // Lo que se guarda comprimido en disco ya demostró ser comprimible
+            boolean yaComprimido = archivo.getCodificacion() == null
+                    && estaComprimido(archivo.getTipoMime(), archivo.getNombreArchivo());
+            if (yaComprimido && ruta.isPresent()) {
+                escribirSinComprimir(zip, nombre, ruta.get());
+            } else {
+                // En un almacén remoto no se relee el archivo para calcular el CRC: se usa DEFLATE sin compresión
+                escribirComprimido(zip, nombre, fileName, ruta.orElse(null), archivo.getCodificacion(),
+                        yaComprimido ? Deflater.NO_COMPRESSION : NIVEL_COMPRESION);
+            }
+            incluidos++;
+        }
+
+        // finish() escribe el directorio central sin cerrar el flujo subyacente
+        zip.finish();
+        zip.flush();
+        logger.info("Expediente de la mascota ID {} generado: {} entradas de historial, {} archivos",
+                mascota.getId(), historial.size(), incluidos);
+        return incluidos;
+    }
+
+    /**
+     * Indica si un archivo está en un formato ya comprimido, según su tipo MIME o su extensión
+     */
+    public static boolean estaComprimido(String tipoMime, String nombreArchivo) {
+        if (tipoMime != null) {
+            String tipo = tipoMime.toLowerCase(Locale.ROOT);
+            int parametros = tipo.indexOf(';');
+            if (parametros >= 0) {
+                tipo = tipo.substring(0, parametros).trim();
+            }
+            if (TIPOS_COMPRIMIDOS.contains(tipo) || tipo.startsWith("video/") || tipo.startsWith("audio/")) {
+                return true;
+            }
+        }
+        if (nombreArchivo != null) {
+            int punto = nombreArchivo.lastIndexOf('.');
+            return punto >= 0 && EXTENSIONES_COMPRIMIDAS.contains(nombreArchivo.substring(punto + 1).toLowerCase(Locale.ROOT));
+        }
+        return false;
+    }
+
+    private void escribirTexto(ZipOutputStream zip, String nombre, byte[] contenido) throws IOException {
+        zip.putNextEntry(new ZipEntry(nombre));
+        zip.write(contenido);
+        zip.closeEntry();
+    }
+
+    private void escribirComprimido(ZipOutputStream zip, String nombre, String fileName, Path ruta,
+                                    String codificacion, int nivel) throws IOException {
+        ZipEntry entrada = new ZipEntry(nombre);
+        entrada.setMethod(ZipEntry.DEFLATED);
+        if (ruta != null) {
+            entrada.setLastModifiedTime(Files.getLastModifiedTime(ruta));
+        }
+        // El nivel se aplica a las entradas siguientes, así que se restablece al terminar
+        zip.setLevel(nivel);
+        zip.putNextEntry(entrada);
+        try (InputStream in = ruta != null
+                ? fileStorageService.openStream(ruta, codificacion)
+                : fileStorageService.openStream(fileName, codificacion)) {
+            in.transferTo(zip);
+        }
+        zip.closeEntry();
+        zip.setLevel(NIVEL_COMPRESION);
+    }
+
+    /**
+     * Las entradas STORED necesitan tamaño y CRC antes de escribir los datos: el CRC se calcula con una
+     * primera lectura del archivo, mucho más barata que comprimirlo
+     */
+    private void escribirSinComprimir(ZipOutputStream zip, String nombre, Path ruta) throws IOException {
+        ZipEntry entrada = new ZipEntry(nombre);
+        entrada.setMethod(ZipEntry.STORED);
+        entrada.setLastModifiedTime(Files.getLastModifiedTime(ruta));
+        long tamano = Files.size(ruta);
+        entrada.setSize(tamano);
+        entrada.setCompressedSize(tamano);
+        entrada.setCrc(crc32(ruta));
+        zip.putNextEntry(entrada);
+        copiar(ruta, zip);
+        zip.closeEntry();
+    }
+
+    private long crc32(Path ruta) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private void copiar(Path ruta, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(ruta)) {
+            int leidos;
+            while ((leidos = in.read(buffer)) != -1) {
+                out.write(buffer, 0, leidos);
+            }
+        }
+    }
+
+    private String historialCsv(List<HistorialClinicoDto> historial) {
+        StringBuilder csv = new StringBuilder(CABECERA_CSV).append("\r\n");
+        for (HistorialClinicoDto entrada : historial) {
+            csv.append(entrada.getId()).append(',')
+                    .append(campoCsv(entrada.getFecha())).append(',')
+                    .append(campoCsv(entrada.getUsuarioNombre())).append(',')
+                    .append(campoCsv(entrada.getCitaId())).append(',')
+                    .append(campoCsv(entrada.getDiagnostico())).append(',')
+                    .append(campoCsv(entrada.getTratamiento())).append(',')
+                    .append(campoCsv(entrada.getObservaciones())).append("\r\n");
+        }
+        return csv.toString();
+    }
+
+    private static String campoCsv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            return '"' + texto.replace("\"", "\"\"") + '"';
+        }
+        return texto;
+    }
+
+    private static String nombreSeguro(String nombreArchivo) {
+        if (nombreArchivo == null || nombreArchivo.isBlank()) {
+            return "archivo";
+        }
+        return nombreArchivo.replaceAll("[/\\\\:]", "_").replace("..", "_");
+    }
+}
@@ -2,6 +2,10 @@ package com.backend.vet.service;
 
 import com.backend.vet.config.FileStorageConfig;
 import com.backend.vet.exception.FileStorageException;
+import com.backend.vet.service.storage.BlobStore;
+import com.backend.vet.service.storage.BlobStore.BlobInfo;
+import com.backend.vet.service.storage.FileSystemBlobStore;
+import com.backend.vet.util.CompresionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
@@ -11,69 +15,430 @@ import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class FileStorageService {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern BLOB_FILE_NAME = Pattern.compile("^([0-9a-f]{64})_.+");
+    private static final Pattern SHA256 = Pattern.compile("[0-9a-f]{64}");
+    private static final String THUMBNAIL_SUFFIX = ".thumb.jpg";
+
     private final Path fileStorageLocation;
+    private final Path blobStorageLocation;
+    private final Path stagingLocation;
+    private final boolean shardedLayout;
+    private final BlobStore blobStore;
+    private final long maxUploadSize;
+    private final List<String> compressibleTypes;
+    private final int compressionLevel;
+    private final double compressionMinSavings;
 
-    @Autowired
     public FileStorageService(FileStorageConfig fileStorageConfig) {
+        this(fileStorageConfig, new FileSystemBlobStore(fileStorageConfig));
+    }
+
+    @Autowired
+    public FileStorageService(FileStorageConfig fileStorageConfig, BlobStore blobStore) {
+        this.blobStore = blobStore;
         this.fileStorageLocation = fileStorageConfig.getHistorialStoragePath();
+        this.blobStorageLocation = fileStorageConfig.getBlobStoragePath();
+        this.stagingLocation = blobStorageLocation.resolve(".tmp");
+        this.shardedLayout = fileStorageConfig.isShardedLayout();
+        this.maxUploadSize = fileStorageConfig.getMaxUploadSize().toBytes();
+        this.compressibleTypes = fileStorageConfig.getCompressibleTypes().stream()
+                .map(tipo -> tipo.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        this.compressionLevel = fileStorageConfig.getCompressionLevel();
+        this.compressionMinSavings = fileStorageConfig.getCompressionMinSavings();
     }
 
     @PostConstruct
     public void init() {
         try {
             Files.createDirectories(fileStorageLocation);
+            Files.createDirectories(stagingLocation);
         } catch (IOException ex) {
             throw new FileStorageException("No se pudo crear el directorio para almacenar archivos.", ex);
         }
     }
 
     public String storeFile(MultipartFile file) {
-        String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
-        
+        try (InputStream in = file.getInputStream()) {
+            return storeStream(in, file.getOriginalFilename(), file.getContentType()).getFileName();
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo almacenar el archivo " + file.getOriginalFilename(), ex);
+        }
+    }
+
+    public StoredFile storeStream(InputStream in, String originalFilename) {
+        return storeStream(in, originalFilename, null);
+    }
+
+    /**
+     * Escribe el flujo directamente en su ubicación definitiva, calculando el tamaño y el SHA-256
+     * en la misma pasada. Si se supera el tamaño máximo o falla la escritura, el archivo parcial se elimina.
+     * Los tipos comprimibles se guardan comprimidos; el tamaño y el hash son siempre los del contenido original.
+     * @param in contenido del archivo; no se cierra
+     * @param originalFilename nombre original enviado por el cliente
+     * @param contentType tipo MIME declarado, o null si se desconoce
+     * @return nombre con el que quedó almacenado, tamaño, hash y códec del contenido
+     */
+    public StoredFile storeStream(InputStream in, String originalFilename, String contentType) {
+        originalFilename = cleanFilename(originalFilename);
+        // Generar nombre único para el archivo para evitar sobreescrituras
+        String uniqueFilename = UUID.randomUUID().toString() + "_" + originalFilename;
+        return write(in, newFilePath(uniqueFilename), uniqueFilename, originalFilename, isCompressible(contentType));
+    }
+
+    /**
+     * Escribe el flujo en el área temporal del almacén de contenido, calculando su SHA-256.
+     * El archivo queda pendiente hasta llamar a {@link #promoteBlob(StoredFile)} o {@link #discardStaged(StoredFile)}.
+     * @return archivo pendiente; su nombre es el que se usará en la URL ({@code <sha256>_<nombre original>})
+     */
+    public StoredFile stageBlob(InputStream in, String originalFilename, String contentType) {
+        originalFilename = cleanFilename(originalFilename);
+        Path staged = this.stagingLocation.resolve(UUID.randomUUID().toString());
+        StoredFile written = write(in, staged, null, originalFilename, isCompressible(contentType));
+        return new StoredFile(blobFileName(written.getSha256(), originalFilename), written.getSize(),
+                written.getSha256(), staged, written.getEncoding());
+    }
+
+    /**
+     * Incorpora al área temporal un archivo ya escrito en el mismo sistema de archivos (por ejemplo, una subida
+     * reanudable completa). Si no hay que comprimirlo, se calcula su SHA-256 y se mueve sin volver a copiarlo.
+     * @param source archivo a incorporar; se mueve o se elimina tras comprimirlo
+     */
+    public StoredFile stageExistingFile(Path source, String originalFilename, String contentType) {
+        originalFilename = cleanFilename(originalFilename);
+        Path staged = this.stagingLocation.resolve(UUID.randomUUID().toString());
         try {
-            if (originalFilename.contains("..")) {
-                throw new FileStorageException("El nombre del archivo contiene una ruta inválida " + originalFilename);
+            if (isCompressible(contentType)) {
+                StoredFile written;
+                try (InputStream in = Files.newInputStream(source)) {
+                    written = write(in, staged, null, originalFilename, true);
+                }
+                Files.deleteIfExists(source);
+                return new StoredFile(blobFileName(written.getSha256(), originalFilename), written.getSize(),
+                        written.getSha256(), staged, written.getEncoding());
             }
+            long size = Files.size(source);
+            if (size > maxUploadSize) {
+                throw new FileStorageException("El archivo " + originalFilename
+                        + " supera el tamaño máximo permitido de " + maxUploadSize + " bytes");
+            }
+            String sha256 = sha256Of(source);
+            Files.move(source, staged, StandardCopyOption.ATOMIC_MOVE);
+            // El movimiento conserva la fecha de la subida reanudable, que puede superar la antigüedad mínima
+            // de la conciliación; se renueva para que no retire el archivo antes de que se registre
+            Files.setLastModifiedTime(staged, FileTime.from(Instant.now()));
+            return new StoredFile(blobFileName(sha256, originalFilename), size, sha256, staged);
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo almacenar el archivo " + originalFilename, ex);
+        }
+    }
 
-            // Generar nombre único para el archivo para evitar sobreescrituras
-            String uniqueFilename = UUID.randomUUID().toString() + "_" + originalFilename;
-            Path targetLocation = this.fileStorageLocation.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-
-            return uniqueFilename;
+    /**
+     * Mueve un archivo ya escrito en el mismo sistema de archivos al almacenamiento con nombre único
+     * @param source archivo a incorporar; se mueve
+     */
+    public StoredFile storeExistingFile(Path source, String originalFilename, String contentType) {
+        StoredFile staged = stageExistingFile(source, originalFilename, contentType);
+        String uniqueFilename = UUID.randomUUID().toString() + "_" + cleanFilename(originalFilename);
+        try {
+            Files.move(staged.getStagedPath(), newFilePath(uniqueFilename), StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException ex) {
+            deleteQuietly(staged.getStagedPath());
             throw new FileStorageException("No se pudo almacenar el archivo " + originalFilename, ex);
         }
+        return new StoredFile(uniqueFilename, staged.getSize(), staged.getSha256(), null, staged.getEncoding());
+    }
+
+    /**
+     * Indica si un tipo MIME se guarda comprimido según {@code file.storage.compressible-types}
+     */
+    public boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String tipo = contentType.toLowerCase(Locale.ROOT);
+        int parametros = tipo.indexOf(';');
+        if (parametros >= 0) {
+            tipo = tipo.substring(0, parametros);
+        }
+        tipo = tipo.trim();
+        for (String patron : compressibleTypes) {
+            if (patron.endsWith("/*") ? tipo.startsWith(patron.substring(0, patron.length() - 1)) : tipo.equals(patron)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Abre el contenido original de un archivo almacenado, descomprimiéndolo si se guardó comprimido
+     * @param encoding códec con el que se guardó, o null si se guardó tal cual
+     */
+    public InputStream openStream(Path filePath, String encoding) {
+        try {
+            return CompresionUtil.descomprimir(Files.newInputStream(filePath), encoding);
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new FileStorageException("No se pudo leer el archivo: " + filePath.getFileName(), ex);
+        }
+    }
+
+    /**
+     * Entrega un archivo pendiente al almacén de contenido (en disco, {@code ab/cd/<sha256>}).
+     * Si el contenido ya existía, el archivo pendiente se descarta.
+     * @return true si el contenido no existía y se agregó al almacén
+     */
+    public boolean promoteBlob(StoredFile staged) {
+        try {
+            return blobStore.put(staged.getSha256(), staged.getStagedPath(), staged.getEncoding());
+        } catch (FileStorageException ex) {
+            deleteQuietly(staged.getStagedPath());
+            throw ex;
+        }
+    }
+
+    public void discardStaged(StoredFile staged) {
+        if (staged.getStagedPath() != null) {
+            deleteQuietly(staged.getStagedPath());
+        }
+    }
+
+    public boolean blobExists(String sha256) {
+        return blobStore.exists(checkHash(sha256));
+    }
+
+    public boolean deleteBlob(String sha256) {
+        try {
+            Files.deleteIfExists(thumbnailOf(blobPath(sha256)));
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo eliminar el contenido: " + sha256, ex);
+        }
+        return blobStore.delete(sha256);
+    }
+
+    /**
+     * Ruta local del contenido en el árbol de directorios del almacén: {@code ab/cd/abcdef...}.
+     * Con un almacén remoto solo contiene las miniaturas, que se generan y guardan en cada servidor.
+     * @throws FileStorageException si el hash no es un SHA-256 en hexadecimal
+     */
+    public Path blobPath(String sha256) {
+        return FileSystemBlobStore.shardedPath(blobStorageLocation, checkHash(sha256));
+    }
+
+    /**
+     * Nombre con el que se publica un contenido del almacén
+     */
+    public String blobFileName(String sha256, String originalFilename) {
+        return sha256 + "_" + cleanFilename(originalFilename);
+    }
+
+    /**
+     * Obtiene el hash de un nombre publicado por el almacén de contenido
+     * @return el SHA-256, o null si el nombre corresponde a un archivo con nombre único
+     */
+    public static String blobHash(String fileName) {
+        Matcher matcher = BLOB_FILE_NAME.matcher(fileName);
+        return matcher.matches() ? matcher.group(1) : null;
     }
 
     public Resource loadFileAsResource(String fileName) {
         try {
-            Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (resource.exists()) {
-                return resource;
-            } else {
-                throw new FileStorageException("Archivo no encontrado: " + fileName);
-            }
+            return new UrlResource(resolveExistingFile(fileName).toUri());
         } catch (MalformedURLException ex) {
             throw new FileStorageException("Archivo no encontrado: " + fileName, ex);
         }
     }
     
+    /**
+     * Obtiene la ruta de un archivo almacenado, comprobando que exista y que no salga del directorio de almacenamiento.
+     * La ruta se calcula a partir del nombre, sin listar directorios: mientras dure la migración al árbol repartido
+     * se prueban ambas ubicaciones.
+     * @throws FileStorageException si el archivo no existe o el nombre es inválido
+     */
+    public Path resolveExistingFile(String fileName) {
+        return localFile(fileName).orElseThrow(() -> new FileStorageException("Archivo no encontrado: " + fileName));
+    }
+
+    /**
+     * Ruta local de un archivo almacenado, o vacío si no existe o su contenido está en un almacén remoto
+     */
+    public Optional<Path> localFile(String fileName) {
+        String sha256 = blobHash(fileName);
+        if (sha256 != null) {
+            return blobStore.localPath(sha256);
+        }
+        Path legacy = legacyFilePath(fileName);
+        Path sharded = shardedFilePath(fileName);
+        // Se vuelve a probar la ruta repartida por si la migración movió el archivo entre ambas comprobaciones
+        for (Path filePath : List.of(sharded, legacy, sharded)) {
+            if (Files.isRegularFile(filePath)) {
+                return Optional.of(filePath);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Indica si un archivo almacenado existe, esté en disco o en el almacén de contenido
+     */
+    public boolean exists(String fileName) {
+        String sha256 = blobHash(fileName);
+        return sha256 != null ? blobStore.exists(sha256) : localFile(fileName).isPresent();
+    }
+
+    /**
+     * Tamaño almacenado (comprimido, si se guardó así) y fecha de modificación de un archivo
+     * @throws FileStorageException si el archivo no existe
+     */
+    public BlobInfo stat(String fileName) {
+        String sha256 = blobHash(fileName);
+        if (sha256 != null) {
+            return blobStore.stat(sha256)
+                    .orElseThrow(() -> new FileStorageException("Archivo no encontrado: " + fileName));
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(resolveExistingFile(fileName), BasicFileAttributes.class);
+            return new BlobInfo(attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo leer el archivo: " + fileName, ex);
+        }
+    }
+
+    /**
+     * Abre el contenido original de un archivo almacenado, esté en disco o en el almacén de contenido
+     * @param encoding códec con el que se guardó, o null si se guardó tal cual
+     * @throws FileStorageException si el archivo no existe
+     */
+    public InputStream openStream(String fileName, String encoding) {
+        String sha256 = blobHash(fileName);
+        if (sha256 == null) {
+            return openStream(resolveExistingFile(fileName), encoding);
+        }
+        InputStream in = blobStore.open(sha256);
+        try {
+            return CompresionUtil.descomprimir(in, encoding);
+        } catch (IOException | IllegalArgumentException ex) {
+            closeQuietly(in);
+            throw new FileStorageException("No se pudo leer el archivo: " + fileName, ex);
+        }
+    }
+
+    /**
+     * URL firmada para que el cliente descargue el archivo directamente del almacén de contenido
+     * @return vacío si el archivo no está en el almacén de contenido o este no admite descargas directas
+     */
+    public Optional<URI> presignedDownloadUrl(String fileName, String downloadName, String contentType, String encoding) {
+        String sha256 = blobHash(fileName);
+        return sha256 != null
+                ? blobStore.presignedDownloadUrl(sha256, downloadName, contentType, encoding)
+                : Optional.empty();
+    }
+
+    /**
+     * Ruta de un archivo con nombre único en el árbol repartido: {@code ab/cd/<nombre>}, según el SHA-256 del nombre
+     * @throws FileStorageException si el nombre es inválido
+     */
+    public Path shardedFilePath(String fileName) {
+        String shard = HexFormat.of().formatHex(sha256().digest(checkFileName(fileName).getBytes(StandardCharsets.UTF_8)));
+        return fileStorageLocation.resolve(shard.substring(0, 2)).resolve(shard.substring(2, 4)).resolve(fileName);
+    }
+
+    /**
+     * Mueve un archivo del directorio plano anterior a su ubicación en el árbol repartido, junto con su miniatura.
+     * El movimiento es atómico, por lo que las lecturas en curso no se ven afectadas.
+     * @param legacyFile archivo en el primer nivel del directorio de historiales
+     * @return true si se movió; false si no era un archivo a migrar o ya no existía
+     */
+    public boolean moveToShardedLayout(Path legacyFile) {
+        String fileName = legacyFile.getFileName().toString();
+        if (!legacyFile.getParent().equals(fileStorageLocation) || fileName.endsWith(".raw")
+                || !Files.isRegularFile(legacyFile)) {
+            return false;
+        }
+        // Las miniaturas se reparten según el original para seguir estando junto a él
+        String owner = fileName.endsWith(THUMBNAIL_SUFFIX)
+                ? fileName.substring(0, fileName.length() - THUMBNAIL_SUFFIX.length())
+                : fileName;
+        Path target = shardedFilePath(owner).resolveSibling(fileName);
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(legacyFile, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException ex) {
+            return false;
+        } catch (FileAlreadyExistsException ex) {
+            // Una miniatura regenerada en el árbol nuevo durante la migración ya ocupa el destino
+            deleteQuietly(legacyFile);
+            return false;
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo migrar el archivo: " + fileName, ex);
+        }
+    }
+
+    /**
+     * Indica si los archivos nuevos se guardan en el árbol repartido
+     */
+    public boolean isShardedLayout() {
+        return shardedLayout;
+    }
+
+    /**
+     * Calcula el SHA-256 de un archivo ya almacenado
+     */
+    public String sha256Of(Path filePath) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo leer el archivo: " + filePath.getFileName(), ex);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
     public boolean deleteFile(String fileName) {
         try {
-            Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-            return Files.deleteIfExists(filePath);
+            // Se elimina de ambas ubicaciones para no dejar copias si la migración lo movió entretanto
+            boolean deleted = false;
+            for (Path filePath : List.of(legacyFilePath(fileName), shardedFilePath(fileName))) {
+                Files.deleteIfExists(thumbnailOf(filePath));
+                deleted |= Files.deleteIfExists(filePath);
+            }
+            return deleted;
         } catch (IOException ex) {
             throw new FileStorageException("No se pudo eliminar el archivo: " + fileName, ex);
         }
@@ -82,4 +447,211 @@ public class FileStorageService {
     public String getFileUrl(String fileName) {
         return "/api/archivos-clinicos/download/" + fileName;
     }
+
+    /**
+     * Nombre almacenado a partir de la URL de descarga de un archivo
+     */
+    public String getFileName(String fileUrl) {
+        return fileUrl.substring(fileUrl.lastIndexOf("/") + 1);
+    }
+
+    /**
+     * Ruta de la miniatura de un archivo almacenado, junto al original
+     * @throws FileStorageException si el archivo no existe
+     */
+    public Path thumbnailPath(String fileName) {
+        String sha256 = blobHash(fileName);
+        if (sha256 == null) {
+            return thumbnailOf(resolveExistingFile(fileName));
+        }
+        // Las miniaturas del almacén de contenido siempre se guardan en disco, también con un almacén remoto
+        Path thumbnail = thumbnailOf(blobPath(sha256));
+        if (!Files.exists(thumbnail) && !blobStore.exists(sha256)) {
+            throw new FileStorageException("Archivo no encontrado: " + fileName);
+        }
+        return thumbnail;
+    }
+
+    private static Path thumbnailOf(Path filePath) {
+        return filePath.resolveSibling(filePath.getFileName() + THUMBNAIL_SUFFIX);
+    }
+
+    private Path newFilePath(String fileName) {
+        return shardedLayout ? createParent(shardedFilePath(fileName)) : legacyFilePath(fileName);
+    }
+
+    private Path legacyFilePath(String fileName) {
+        return fileStorageLocation.resolve(checkFileName(fileName));
+    }
+
+    private static Path createParent(Path filePath) {
+        try {
+            Files.createDirectories(filePath.getParent());
+            return filePath;
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo crear el directorio para almacenar archivos.", ex);
+        }
+    }
+
+    private static String checkHash(String sha256) {
+        if (sha256 == null || !SHA256.matcher(sha256).matches()) {
+            throw new FileStorageException("Hash de contenido inválido: " + sha256);
+        }
+        return sha256;
+    }
+
+    // Un nombre almacenado es siempre un único componente de ruta
+    private static String checkFileName(String fileName) {
+        if (fileName == null || fileName.isEmpty() || fileName.contains("/") || fileName.contains("\\")
+                || fileName.equals(".") || fileName.equals("..")) {
+            throw new FileStorageException("Archivo no encontrado: " + fileName);
+        }
+        return fileName;
+    }
+
+    private String cleanFilename(String originalFilename) {
+        if (originalFilename == null || originalFilename.isBlank()) {
+            throw new FileStorageException("El archivo no tiene nombre");
+        }
+        originalFilename = StringUtils.cleanPath(originalFilename);
+        if (originalFilename.contains("..") || originalFilename.contains("/")) {
+            throw new FileStorageException("El nombre del archivo contiene una ruta inválida " + originalFilename);
+        }
+        return originalFilename;
+    }
+
+    // Copia el flujo al destino calculando tamaño y SHA-256 del original, comprimiéndolo si se indica;
+    // elimina el archivo parcial si falla
+    private StoredFile write(InputStream in, Path targetLocation, String fileName, String originalFilename,
+                             boolean compress) {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+        String encoding = compress ? CompresionUtil.GZIP : null;
+
+        try (FileChannel channel = FileChannel.open(targetLocation, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             OutputStream out = compress
+                     ? CompresionUtil.comprimir(Channels.newOutputStream(channel), encoding, compressionLevel)
+                     : Channels.newOutputStream(channel)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                size += read;
+                if (size > maxUploadSize) {
+                    throw new FileStorageException("El archivo " + originalFilename
+                            + " supera el tamaño máximo permitido de " + maxUploadSize + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException | RuntimeException ex) {
+            deleteQuietly(targetLocation);
+            if (ex instanceof FileStorageException fileStorageException) {
+                throw fileStorageException;
+            }
+            throw new FileStorageException("No se pudo almacenar el archivo " + originalFilename, ex);
+        }
+
+        if (compress && !worthCompressing(targetLocation, size)) {
+            decompressInPlace(targetLocation, encoding, originalFilename);
+            encoding = null;
+        }
+        return new StoredFile(fileName, size, HexFormat.of().formatHex(digest.digest()), null, encoding);
+    }
+
+    private boolean worthCompressing(Path compressed, long originalSize) {
+        try {
+            return Files.size(compressed) <= originalSize * (1 - compressionMinSavings);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    // Contenido que apenas se comprime (por ejemplo, un PDF escaneado): se guarda tal cual para no pagar
+    // la descompresión en cada lectura
+    private void decompressInPlace(Path targetLocation, String encoding, String originalFilename) {
+        Path raw = targetLocation.resolveSibling(targetLocation.getFileName() + ".raw");
+        try {
+            try (InputStream in = openStream(targetLocation, encoding)) {
+                Files.copy(in, raw);
+            }
+            Files.move(raw, targetLocation, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException ex) {
+            deleteQuietly(raw);
+            deleteQuietly(targetLocation);
+            throw new FileStorageException("No se pudo almacenar el archivo " + originalFilename, ex);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // se informa el error original de la lectura
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // se informa el error original de la escritura
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Resultado de almacenar un archivo
+     */
+    public static class StoredFile {
+        private final String fileName;
+        private final long size;
+        private final String sha256;
+        private final Path stagedPath;
+        private final String encoding;
+
+        public StoredFile(String fileName, long size, String sha256) {
+            this(fileName, size, sha256, null);
+        }
+
+        public StoredFile(String fileName, long size, String sha256, Path stagedPath) {
+            this(fileName, size, sha256, stagedPath, null);
+        }
+
+        public StoredFile(String fileName, long size, String sha256, Path stagedPath, String encoding) {
+            this.fileName = fileName;
+            this.size = size;
+            this.sha256 = sha256;
+            this.stagedPath = stagedPath;
+            this.encoding = encoding;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        /** Ubicación temporal mientras el contenido no se ha movido al almacén */
+        public Path getStagedPath() {
+            return stagedPath;
+        }
+
+        /** Códec con el que se guardó en disco (coincide con Content-Encoding), o null si se guardó tal cual */
+        public String getEncoding() {
+            return encoding;
+        }
+    }
 }
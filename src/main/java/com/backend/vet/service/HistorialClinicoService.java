@@ -1,6 +1,11 @@
 package com.backend.vet.service;
 
 import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.dto.LineaTiempoHistorialDto;
+import com.backend.vet.dto.PaginaDto;
+import com.backend.vet.dto.ResultadoBusquedaHistorialDto;
+import com.backend.vet.event.HistorialClinicoEvent;
+import com.backend.vet.exception.BadRequestException;
 import com.backend.vet.exception.ResourceNotFoundException;
 import com.backend.vet.model.Cita;
 import com.backend.vet.model.HistorialClinico;
@@ -10,17 +15,34 @@ import com.backend.vet.repository.CitaRepository;
 import com.backend.vet.repository.HistorialClinicoRepository;
 import com.backend.vet.repository.MascotaRepository;
 import com.backend.vet.repository.UsuarioRepository;
+import com.backend.vet.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
 
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class HistorialClinicoService {
     
+    private static final String[] CAMPOS_BUSQUEDA = {"diagnostico", "tratamiento", "observaciones"};
+    
+    // Se resalta con marcadores de control para poder escapar el texto clínico antes de insertar <mark>
+    private static final String OPCIONES_RESALTADO =
+            "StartSel=\"\u0001\", StopSel=\"\u0002\", MaxWords=30, MinWords=10, MaxFragments=2, FragmentDelimiter=\" … \"";
+    
     @Autowired
     private HistorialClinicoRepository historialClinicoRepository;
     
@@ -33,6 +55,24 @@ public class HistorialClinicoService {
     @Autowired
     private CitaRepository citaRepository;
     
+    @Autowired
+    private DashboardCounters dashboardCounters;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Value("${app.historial.linea-tiempo.page-size-max:100}")
+    private int lineaTiempoPageSizeMax;
+    
+    @Value("${app.historial.linea-tiempo.ventana-novedades:30s}")
+    private Duration ventanaNovedades;
+    
+    @Value("${app.historial.busqueda.page-size-max:50}")
+    private int busquedaPageSizeMax;
+    
+    @Value("${app.historial.busqueda.longitud-maxima:200}")
+    private int busquedaLongitudMaxima;
+    
     public List<HistorialClinicoDto> getAllHistorialClinico() {
         return historialClinicoRepository.findAll().stream()
                 .map(this::convertToDto)
@@ -45,10 +85,76 @@ public class HistorialClinicoService {
                 .orElse(null);
     }
     
+    @Transactional(readOnly = true)
     public List<HistorialClinicoDto> getHistorialClinicoByMascotaId(Long mascotaId) {
-        return historialClinicoRepository.findByMascotaId(mascotaId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return historialClinicoRepository.findDtoByMascotaId(mascotaId);
+    }
+    
+    /**
+     * Línea de tiempo del historial de una mascota, de la entrada más reciente a la más antigua,
+     * paginada por keyset sobre (fecha, id)
+     * @param cursor siguienteCursor de la página anterior, o null para la primera página
+     * @param since cursorReciente de una consulta anterior: solo se devuelven las entradas creadas después,
+     *              aunque su fecha sea anterior, o null. Se repiten las creadas en la ventana de novedades previa
+     *              a esa consulta, por si alguna se confirmó más tarde; el cliente las descarta por id
+     * @param size entradas por página (se limita al máximo configurado)
+     */
+    @Transactional(readOnly = true)
+    public LineaTiempoHistorialDto getLineaTiempo(Long mascotaId, String cursor, String since, int size) {
+        int tamano = Math.max(1, Math.min(size, lineaTiempoPageSizeMax));
+        // Se pide un elemento extra para saber si existe una página siguiente sin contar filas
+        PageRequest limite = PageRequest.of(0, tamano + 1);
+        boolean conCursor = cursor != null && !cursor.isBlank();
+        boolean conSince = since != null && !since.isBlank();
+        
+        String[] antes = conCursor ? KeysetCursor.decode(cursor, 2) : null;
+        String[] desde = conSince ? KeysetCursor.decode(since, 2) : null;
+        
+        // En la primera página se lee antes que las entradas: una creada entre ambas consultas se repite
+        // en la siguiente consulta de novedades en lugar de perderse
+        LocalDateTime lectura = LocalDateTime.now();
+        Long ultimoId = conCursor ? null : historialClinicoRepository.findUltimoIdByMascotaId(mascotaId);
+        
+        List<HistorialClinicoDto> entradas;
+        Long desdeId;
+        try {
+            desdeId = conSince ? Long.valueOf(desde[0]) : null;
+            LocalDateTime desdeCreado = conSince ? LocalDateTime.parse(desde[1]).minus(ventanaNovedades) : null;
+            if (conCursor && conSince) {
+                entradas = historialClinicoRepository.findLineaTiempoEntre(mascotaId,
+                        LocalDateTime.parse(antes[0]), Long.valueOf(antes[1]), desdeId, desdeCreado, limite);
+            } else if (conCursor) {
+                entradas = historialClinicoRepository.findLineaTiempoAnteriorA(mascotaId,
+                        LocalDateTime.parse(antes[0]), Long.valueOf(antes[1]), limite);
+            } else if (conSince) {
+                entradas = historialClinicoRepository.findLineaTiempoPosteriorA(mascotaId, desdeId, desdeCreado, limite);
+            } else {
+                entradas = historialClinicoRepository.findLineaTiempo(mascotaId, limite);
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BadRequestException("Cursor de paginación inválido");
+        }
+        
+        if (ultimoId == null && !conCursor && !mascotaRepository.existsById(mascotaId)) {
+            throw new ResourceNotFoundException("Mascota", "id", mascotaId);
+        }
+        
+        boolean tieneMas = entradas.size() > tamano;
+        List<HistorialClinicoDto> contenido = tieneMas ? entradas.subList(0, tamano) : entradas;
+        
+        String siguienteCursor = null;
+        if (tieneMas) {
+            HistorialClinicoDto ultima = contenido.get(contenido.size() - 1);
+            siguienteCursor = KeysetCursor.encode(ultima.getFecha(), ultima.getId());
+        }
+        // Último id creado y momento de la lectura, solo en la primera página. Sin novedades se conserva el id
+        // recibido, pero se renueva el momento para no repetir indefinidamente la misma ventana
+        String cursorReciente = null;
+        if (!conCursor && (ultimoId != null || desdeId != null)) {
+            long hastaId = ultimoId == null ? desdeId : (desdeId == null ? ultimoId : Math.max(ultimoId, desdeId));
+            cursorReciente = KeysetCursor.encode(hastaId, lectura);
+        }
+        return new LineaTiempoHistorialDto(contenido, siguienteCursor, tieneMas, cursorReciente);
     }
     
     public List<HistorialClinicoDto> getHistorialClinicoByClienteId(Long clienteId) {
@@ -75,6 +181,65 @@ public class HistorialClinicoService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Busca en el diagnóstico, el tratamiento y las observaciones, ordenando por relevancia
+     * (las coincidencias en el diagnóstico pesan más que en el tratamiento, y estas más que en las observaciones)
+     * @param consulta texto a buscar: palabras, "frases exactas", OR y -exclusiones
+     * @param page número de página, empezando en 0
+     * @param size resultados por página (se limita al máximo configurado)
+     */
+    @Transactional(readOnly = true)
+    public PaginaDto<ResultadoBusquedaHistorialDto> buscarHistorialClinico(String consulta, int page, int size) {
+        if (consulta == null || consulta.isBlank()) {
+            throw new BadRequestException("El texto de búsqueda es obligatorio");
+        }
+        if (consulta.length() > busquedaLongitudMaxima) {
+            throw new BadRequestException("El texto de búsqueda no puede superar los " + busquedaLongitudMaxima + " caracteres");
+        }
+        if (page < 0) {
+            throw new BadRequestException("El número de página no puede ser negativo");
+        }
+        int tamano = Math.max(1, Math.min(size, busquedaPageSizeMax));
+        String texto = consulta.strip();
+        
+        long total = historialClinicoRepository.contarBusquedaTexto(texto);
+        List<ResultadoBusquedaHistorialDto> resultados = new ArrayList<>();
+        long desplazamiento = (long) page * tamano;
+        if (desplazamiento < total) {
+            for (Object[] fila : historialClinicoRepository.buscarTexto(texto, OPCIONES_RESALTADO, tamano, desplazamiento)) {
+                resultados.add(convertToResultado(fila));
+            }
+        }
+        return new PaginaDto<>(resultados, page, tamano, total, desplazamiento + resultados.size() < total);
+    }
+    
+    private ResultadoBusquedaHistorialDto convertToResultado(Object[] fila) {
+        Map<String, String> fragmentos = new LinkedHashMap<>();
+        for (int i = 0; i < CAMPOS_BUSQUEDA.length; i++) {
+            String fragmento = (String) fila[5 + i];
+            if (fragmento != null) {
+                fragmentos.put(CAMPOS_BUSQUEDA[i], resaltar(fragmento));
+            }
+        }
+        Object fecha = fila[1];
+        return new ResultadoBusquedaHistorialDto(
+                ((Number) fila[0]).longValue(),
+                fecha instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) fecha,
+                fila[2] != null ? ((Number) fila[2]).longValue() : null,
+                (String) fila[3],
+                ((Number) fila[4]).doubleValue(),
+                fragmentos);
+    }
+    
+    /**
+     * Escapa el fragmento para HTML y cambia los marcadores de PostgreSQL por etiquetas {@code <mark>}
+     */
+    private String resaltar(String fragmento) {
+        return HtmlUtils.htmlEscape(fragmento, "UTF-8")
+                .replace("\u0001", "<mark>")
+                .replace("\u0002", "</mark>");
+    }
+    
     @Transactional
     public HistorialClinicoDto createHistorialClinico(HistorialClinicoDto historialClinicoDto) {
         Mascota mascota = mascotaRepository.findById(historialClinicoDto.getMascotaId())
@@ -98,7 +263,9 @@ public class HistorialClinicoService {
         }
         
         HistorialClinico savedHistorialClinico = historialClinicoRepository.save(historialClinico);
-        return convertToDto(savedHistorialClinico);
+        HistorialClinicoDto creado = convertToDto(savedHistorialClinico);
+        eventPublisher.publishEvent(new HistorialClinicoEvent(null, creado));
+        return creado;
     }
     
     @Transactional
@@ -106,6 +273,7 @@ public class HistorialClinicoService {
         try {
             HistorialClinico historialClinico = historialClinicoRepository.findById(id)
                     .orElseThrow(() -> new ResourceNotFoundException("HistorialClinico", "id", id));
+            HistorialClinicoDto anterior = convertToDto(historialClinico);
             
             historialClinico.setFecha(historialClinicoDto.getFecha());
             historialClinico.setDiagnostico(historialClinicoDto.getDiagnostico());
@@ -134,7 +302,9 @@ public class HistorialClinicoService {
             }
             
             HistorialClinico updatedHistorialClinico = historialClinicoRepository.save(historialClinico);
-            return convertToDto(updatedHistorialClinico);
+            HistorialClinicoDto actualizado = convertToDto(updatedHistorialClinico);
+            eventPublisher.publishEvent(new HistorialClinicoEvent(anterior, actualizado));
+            return actualizado;
         } catch (ResourceNotFoundException e) {
             return null;
         }
@@ -142,10 +312,13 @@ public class HistorialClinicoService {
     
     @Transactional
     public boolean deleteHistorialClinico(Long id) {
-        if (!historialClinicoRepository.existsById(id)) {
+        HistorialClinico historialClinico = historialClinicoRepository.findById(id).orElse(null);
+        if (historialClinico == null) {
             return false;
         }
-        historialClinicoRepository.deleteById(id);
+        HistorialClinicoDto eliminado = convertToDto(historialClinico);
+        historialClinicoRepository.delete(historialClinico);
+        eventPublisher.publishEvent(new HistorialClinicoEvent(eliminado, null));
         return true;
     }
     
@@ -185,7 +358,7 @@ public class HistorialClinicoService {
      * @return número de pacientes atendidos
      */
     public int countPacientesAtendidos() {
-        return historialClinicoRepository.countPacientesAtendidos();
+        return dashboardCounters.getPacientesAtendidos();
     }
 
     /**
@@ -193,6 +366,6 @@ public class HistorialClinicoService {
      * @return número de vacunas aplicadas
      */
     public int countVacunasAplicadasHoy() {
-        return historialClinicoRepository.countVacunasAplicadasHoy();
+        return dashboardCounters.getVacunasAplicadas();
     }
 }
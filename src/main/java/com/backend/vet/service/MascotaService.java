@@ -1,12 +1,14 @@
 package com.backend.vet.service;
 
 import com.backend.vet.dto.MascotaDto;
+import com.backend.vet.event.MascotaEvent;
 import com.backend.vet.exception.ResourceNotFoundException;
 import com.backend.vet.model.Cliente;
 import com.backend.vet.model.Mascota;
 import com.backend.vet.repository.ClienteRepository;
 import com.backend.vet.repository.MascotaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +24,9 @@ public class MascotaService {
     @Autowired
     private ClienteRepository clienteRepository;
     
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
     public List<MascotaDto> getAllMascotas() {
         return mascotaRepository.findAll().stream()
                 .map(this::convertToDto)
@@ -54,7 +59,9 @@ public class MascotaService {
         mascota.setCliente(cliente);
         
         Mascota savedMascota = mascotaRepository.save(mascota);
-        return convertToDto(savedMascota);
+        MascotaDto creada = convertToDto(savedMascota);
+        eventPublisher.publishEvent(new MascotaEvent(null, creada));
+        return creada;
     }
     
     @Transactional
@@ -62,6 +69,7 @@ public class MascotaService {
         try {
             Mascota mascota = mascotaRepository.findById(id)
                     .orElseThrow(() -> new ResourceNotFoundException("Mascota", "id", id));
+            MascotaDto anterior = convertToDto(mascota);
             
             mascota.setNombre(mascotaDto.getNombre());
             mascota.setEspecie(mascotaDto.getEspecie());
@@ -77,7 +85,9 @@ public class MascotaService {
             }
             
             Mascota updatedMascota = mascotaRepository.save(mascota);
-            return convertToDto(updatedMascota);
+            MascotaDto actualizada = convertToDto(updatedMascota);
+            eventPublisher.publishEvent(new MascotaEvent(anterior, actualizada));
+            return actualizada;
         } catch (ResourceNotFoundException e) {
             return null;
         }
@@ -85,10 +95,13 @@ public class MascotaService {
     
     @Transactional
     public boolean deleteMascota(Long id) {
-        if (!mascotaRepository.existsById(id)) {
+        Mascota mascota = mascotaRepository.findById(id).orElse(null);
+        if (mascota == null) {
             return false;
         }
-        mascotaRepository.deleteById(id);
+        MascotaDto eliminada = convertToDto(mascota);
+        mascotaRepository.delete(mascota);
+        eventPublisher.publishEvent(new MascotaEvent(eliminada, null));
         return true;
     }
     
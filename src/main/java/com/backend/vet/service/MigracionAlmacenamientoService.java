@@ -0,0 +1,127 @@
+package com.backend.vet.service;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.dto.MigracionAlmacenamientoDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.exception.FileStorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Migra los archivos clínicos del directorio plano de historiales al árbol repartido {@code ab/cd/<nombre>}.
+ * La migración se ejecuta en segundo plano y sin detener el servicio: los archivos nuevos ya se guardan en el
+ * árbol repartido, las lecturas prueban ambas ubicaciones y cada archivo se mueve de forma atómica.
+ * Se hacen pausas entre lotes para no saturar el disco.
+ */
+@Service
+public class MigracionAlmacenamientoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigracionAlmacenamientoService.class);
+
+    @Autowired
+    private FileStorageConfig fileStorageConfig;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${file.storage.migration.batch-size:500}")
+    private int tamanoLote;
+
+    @Value("${file.storage.migration.pause:100ms}")
+    private Duration pausa;
+
+    @Value("${file.storage.migration.on-startup:false}")
+    private boolean alIniciar;
+
+    private volatile Thread hilo;
+    private volatile LocalDateTime inicio;
+    private volatile LocalDateTime fin;
+    private volatile String error;
+    private final AtomicLong migrados = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciarAlArrancar() {
+        if (alIniciar && fileStorageService.isShardedLayout()) {
+            iniciar();
+        }
+    }
+
+    /**
+     * Inicia la migración en segundo plano
+     * @return estado de la migración recién iniciada
+     * @throws BadRequestException si ya hay una migración en curso o el árbol repartido está desactivado
+     */
+    public synchronized MigracionAlmacenamientoDto iniciar() {
+        if (!fileStorageService.isShardedLayout()) {
+            throw new BadRequestException("El almacenamiento repartido está desactivado (file.storage.sharded-layout)");
+        }
+        if (hilo != null && hilo.isAlive()) {
+            throw new BadRequestException("Ya hay una migración del almacenamiento en curso");
+        }
+        migrados.set(0);
+        fallidos.set(0);
+        error = null;
+        inicio = LocalDateTime.now();
+        fin = null;
+        hilo = new Thread(this::migrar, "migracion-almacenamiento");
+        hilo.setDaemon(true);
+        hilo.start();
+        logger.info("Migración del almacenamiento al árbol repartido iniciada");
+        return getEstado();
+    }
+
+    public MigracionAlmacenamientoDto getEstado() {
+        Thread actual = hilo;
+        return new MigracionAlmacenamientoDto(actual != null && actual.isAlive(), migrados.get(), fallidos.get(),
+                inicio, fin, error);
+    }
+
+    /**
+     * Recorre el primer nivel del directorio de historiales y mueve cada archivo a su ubicación repartida.
+     * Los subdirectorios (el propio árbol repartido) se ignoran, así que la migración puede repetirse sin riesgo.
+     */
+    void migrar() {
+        Path historiales = fileStorageConfig.getHistorialStoragePath();
+        long enLote = 0;
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(historiales, Files::isRegularFile)) {
+            for (Path archivo : archivos) {
+                try {
+                    if (fileStorageService.moveToShardedLayout(archivo)) {
+                        migrados.incrementAndGet();
+                    }
+                } catch (FileStorageException ex) {
+                    fallidos.incrementAndGet();
+                    logger.warn("No se pudo migrar {}: {}", archivo.getFileName(), ex.getMessage());
+                }
+                if (++enLote >= tamanoLote) {
+                    enLote = 0;
+                    Thread.sleep(pausa.toMillis());
+                }
+            }
+            logger.info("Migración del almacenamiento completada: {} archivos movidos, {} con error",
+                    migrados.get(), fallidos.get());
+        } catch (IOException ex) {
+            error = ex.getMessage();
+            logger.error("Error en la migración del almacenamiento: {}", ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            error = "Migración interrumpida";
+        } finally {
+            fin = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.backend.vet.service;
+
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.event.ArchivoClinicoEvent;
+import com.backend.vet.exception.FileStorageException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Genera miniaturas JPEG de los archivos clínicos de tipo imagen.
+ * Las miniaturas se generan en segundo plano al confirmarse la creación del archivo, en un pool de hilos
+ * con cola acotada: si la cola se llena, el hilo que publica el evento genera la miniatura él mismo,
+ * frenando a los productores en lugar de acumular trabajo. Se guardan junto al original.
+ */
+@Service
+public class MiniaturaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MiniaturaService.class);
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.miniaturas.tamano-maximo:320}")
+    private int tamanoMaximo;
+
+    @Value("${app.miniaturas.calidad:0.8}")
+    private float calidad;
+
+    @Value("${app.miniaturas.hilos:2}")
+    private int hilos;
+
+    @Value("${app.miniaturas.capacidad-cola:64}")
+    private int capacidadCola;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "miniaturas-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Indica si el tipo MIME corresponde a una imagen de la que se puede generar miniatura
+     */
+    public static boolean esImagen(String tipoMime) {
+        return tipoMime != null && tipoMime.toLowerCase(Locale.ROOT).startsWith("image/");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onArchivoClinico(ArchivoClinicoEvent event) {
+        ArchivoClinicoDto actual = event.getActual();
+        if (actual == null || !esImagen(actual.getTipoMime())) {
+            return;
+        }
+        String fileName = fileStorageService.getFileName(actual.getUrl());
+        executor.execute(() -> {
+            try {
+                generar(fileName);
+            } catch (RuntimeException ex) {
+                logger.warn("No se pudo generar la miniatura de {}: {}", fileName, ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Obtiene la miniatura de un archivo, generándola si todavía no existe
+     * @return ruta de la miniatura, o null si el formato de imagen no es compatible
+     * @throws FileStorageException si el archivo no existe o no se puede leer
+     */
+    public Path obtener(ArchivoClinicoDto archivoClinico) {
+        String fileName = fileStorageService.getFileName(archivoClinico.getUrl());
+        Path destino = fileStorageService.thumbnailPath(fileName);
+        if (Files.exists(destino)) {
+            return destino;
+        }
+        return generar(fileName) ? destino : null;
+    }
+
+    private boolean generar(String fileName) {
+        Path destino = fileStorageService.thumbnailPath(fileName);
+        if (Files.exists(destino)) {
+            return true;
+        }
+        Path temporal = destino.resolveSibling(destino.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            // Con un almacén remoto, las miniaturas se guardan en un directorio local que puede no existir aún
+            Files.createDirectories(destino.getParent());
+            BufferedImage imagen = leerReducida(fileName);
+            if (imagen == null) {
+                logger.debug("Formato de imagen no compatible para miniatura: {}", fileName);
+                return false;
+            }
+            escribirJpeg(escalar(imagen), temporal);
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logger.debug("Miniatura generada para {}", fileName);
+            return true;
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo generar la miniatura de " + fileName, ex);
+        } finally {
+            try {
+                Files.deleteIfExists(temporal);
+            } catch (IOException ignored) {
+                // el temporal no afecta a la miniatura ya generada
+            }
+        }
+    }
+
+    // Decodifica la imagen submuestreada para no cargar en memoria la resolución completa.
+    // Las imágenes no se guardan comprimidas, así que se leen los bytes almacenados tal cual
+    private BufferedImage leerReducida(String fileName) throws IOException {
+        Optional<Path> local = fileStorageService.localFile(fileName);
+        try (InputStream remoto = local.isEmpty() ? fileStorageService.openStream(fileName, null) : null;
+             ImageInputStream entrada = ImageIO.createImageInputStream(
+                     local.isPresent() ? local.get().toFile() : remoto)) {
+            if (entrada == null) {
+                return null;
+            }
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) {
+                return null;
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                int lado = Math.max(lector.getWidth(0), lector.getHeight(0));
+                int submuestreo = Math.max(1, lado / (tamanoMaximo * 2));
+                ImageReadParam param = lector.getDefaultReadParam();
+                param.setSourceSubsampling(submuestreo, submuestreo, 0, 0);
+                return lector.read(0, param);
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    private BufferedImage escalar(BufferedImage imagen) {
+        double escala = Math.min(1.0, (double) tamanoMaximo / Math.max(imagen.getWidth(), imagen.getHeight()));
+        int ancho = Math.max(1, (int) Math.round(imagen.getWidth() * escala));
+        int alto = Math.max(1, (int) Math.round(imagen.getHeight() * escala));
+
+        // JPEG no admite transparencia: se compone sobre fondo blanco
+        BufferedImage miniatura = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = miniatura.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, ancho, alto);
+            g.drawImage(imagen, 0, 0, ancho, alto, null);
+        } finally {
+            g.dispose();
+        }
+        return miniatura;
+    }
+
+    private void escribirJpeg(BufferedImage imagen, Path destino) throws IOException {
+        ImageWriter escritor = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream salida = ImageIO.createImageOutputStream(destino.toFile())) {
+            ImageWriteParam param = escritor.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(calidad);
+            escritor.setOutput(salida);
+            escritor.write(null, new IIOImage(imagen, null, null), param);
+        } finally {
+            escritor.dispose();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.backend.vet.service;
+
+import com.backend.vet.event.ArchivoClinicoEvent;
+import com.backend.vet.event.CitaEvent;
+import com.backend.vet.event.ClienteEvent;
+import com.backend.vet.event.HistorialClinicoEvent;
+import com.backend.vet.event.MascotaEvent;
+import com.backend.vet.model.EventoOutbox;
+import com.backend.vet.repository.EventoOutboxRepository;
+import com.backend.vet.repository.OffsetConsumidorRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registra en {@code eventos_outbox} los eventos de dominio de los servicios de escritura.
+ * Los eventos de una transacción se acumulan y se insertan en un solo lote JDBC justo antes del commit, dentro
+ * de la misma transacción que el cambio: o se confirman ambos o ninguno. Así una creación masiva de citas no
+ * añade un INSERT por cita. {@link BusEventos} entrega después los eventos a sus consumidores.
+ * <p>
+ * Cada fila guarda el xid de su transacción, que {@link BusEventos} usa para no entregar nada hasta que
+ * terminen las transacciones anteriores.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+
+    public static final String CREADO = "CREADO";
+    public static final String ACTUALIZADO = "ACTUALIZADO";
+    public static final String ELIMINADO = "ELIMINADO";
+
+    private static final String INSERTAR =
+            "INSERT INTO eventos_outbox (agregado, agregado_id, tipo, datos, creado, transaccion) " +
+            "VALUES (?, ?, ?, ?, ?, CAST(CAST(pg_current_xact_id() AS TEXT) AS BIGINT))";
+
+    // Otras bases de datos (las pruebas con H2) no tienen xid: los eventos quedan en orden de id
+    private static final String INSERTAR_SIN_XID =
+            "INSERT INTO eventos_outbox (agregado, agregado_id, tipo, datos, creado, transaccion) " +
+            "VALUES (?, ?, ?, ?, ?, 0)";
+
+    @Autowired
+    private EventoOutboxRepository eventoOutboxRepository;
+
+    @Autowired
+    private OffsetConsumidorRepository offsetConsumidorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.outbox.retencion:P7D}")
+    private Duration retencion;
+
+    private volatile Boolean postgres;
+
+    @EventListener
+    public void onCita(CitaEvent event) {
+        Long id = event.getActual() != null ? event.getActual().getId() : event.getAnterior().getId();
+        registrar("Cita", id, event.getAnterior(), event.getActual(), event);
+    }
+
+    @EventListener
+    public void onHistorialClinico(HistorialClinicoEvent event) {
+        Long id = event.getActual() != null ? event.getActual().getId() : event.getAnterior().getId();
+        registrar("HistorialClinico", id, event.getAnterior(), event.getActual(), event);
+    }
+
+    @EventListener
+    public void onArchivoClinico(ArchivoClinicoEvent event) {
+        Long id = event.getActual() != null ? event.getActual().getId() : event.getAnterior().getId();
+        registrar("ArchivoClinico", id, event.getAnterior(), event.getActual(), event);
+    }
+
+    @EventListener
+    public void onMascota(MascotaEvent event) {
+        Long id = event.getActual() != null ? event.getActual().getId() : event.getAnterior().getId();
+        registrar("Mascota", id, event.getAnterior(), event.getActual(), event);
+    }
+
+    @EventListener
+    public void onCliente(ClienteEvent event) {
+        Long id = event.getActual() != null ? event.getActual().getId() : event.getAnterior().getId();
+        registrar("Cliente", id, event.getAnterior(), event.getActual(), event);
+    }
+
+    private void registrar(String agregado, Long agregadoId, Object anterior, Object actual, Object evento) {
+        String tipo = anterior == null ? CREADO : actual == null ? ELIMINADO : ACTUALIZADO;
+        String datos;
+        try {
+            datos = objectMapper.writeValueAsString(evento);
+        } catch (JsonProcessingException ex) {
+            // Sin la fila del outbox el cambio no llegaría a los consumidores: se aborta la transacción
+            throw new IllegalStateException("No se pudo registrar el evento de " + agregado + " " + agregadoId, ex);
+        }
+        EventoOutbox fila = new EventoOutbox(null, agregado, agregadoId, tipo, datos, null, null);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insertar(List.of(fila));
+            return;
+        }
+        LoteOutbox lote = (LoteOutbox) TransactionSynchronizationManager.getResource(this);
+        if (lote == null) {
+            lote = new LoteOutbox();
+            TransactionSynchronizationManager.bindResource(this, lote);
+            TransactionSynchronizationManager.registerSynchronization(lote);
+        }
+        lote.eventos.add(fila);
+    }
+
+    private void insertar(List<EventoOutbox> eventos) {
+        Timestamp creado = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> filas = new ArrayList<>(eventos.size());
+        for (EventoOutbox evento : eventos) {
+            filas.add(new Object[]{evento.getAgregado(), evento.getAgregadoId(), evento.getTipo(), evento.getDatos(), creado});
+        }
+        jdbcTemplate.batchUpdate(esPostgres() ? INSERTAR : INSERTAR_SIN_XID, filas);
+    }
+
+    private boolean esPostgres() {
+        if (postgres == null) {
+            String motor = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            postgres = "PostgreSQL".equalsIgnoreCase(motor);
+        }
+        return postgres;
+    }
+
+    /**
+     * Elimina los eventos que ya procesaron todos los consumidores, una vez cumplido el periodo de retención
+     * (durante el cual un consumidor nuevo todavía puede recibirlos)
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.purga-ms:3600000}")
+    @Transactional
+    public void purgar() {
+        offsetConsumidorRepository.findFirstByOrderByUltimaTransaccionAscUltimoIdAsc().ifPresent(minimo -> {
+            int eliminados = eventoOutboxRepository.purgar(minimo.getUltimaTransaccion(), minimo.getUltimoId(),
+                    LocalDateTime.now().minus(retencion));
+            if (eliminados > 0) {
+                logger.info("Eliminados {} eventos del outbox ya procesados", eliminados);
+            }
+        });
+    }
+
+    /**
+     * Eventos de la transacción en curso, en el orden en que se publicaron. Se desvincula al suspenderse la
+     * transacción (REQUIRES_NEW) para que los eventos de la interna no se mezclen con los de la externa.
+     */
+    private final class LoteOutbox implements TransactionSynchronization {
+        private final List<EventoOutbox> eventos = new ArrayList<>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(OutboxService.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(OutboxService.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // Los cambios de las entidades se envían antes que sus eventos: Hibernate solo haría el flush al
+            // confirmar, después de este método
+            entityManager.flush();
+            insertar(eventos);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OutboxService.this);
+        }
+    }
+}
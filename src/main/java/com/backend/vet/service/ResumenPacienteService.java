@@ -0,0 +1,228 @@
+package com.backend.vet.service;
+
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.ClienteDto;
+import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.dto.MascotaDto;
+import com.backend.vet.dto.ResumenPacienteDto;
+import com.backend.vet.event.ConsumidorEventos;
+import com.backend.vet.event.EventoDominio;
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.model.Cliente;
+import com.backend.vet.model.Mascota;
+import com.backend.vet.model.ResumenPaciente;
+import com.backend.vet.repository.ArchivoClinicoRepository;
+import com.backend.vet.repository.CitaRepository;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import com.backend.vet.repository.MascotaRepository;
+import com.backend.vet.repository.ResumenPacienteRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Modelo de lectura de la ficha de una mascota (mascota, propietario, últimas atenciones, próxima cita,
+ * último diagnóstico y archivos), guardado como una fila por mascota en {@code resumen_paciente}.
+ * Los servicios de escritura no lo tocan: como consumidor del {@link BusEventos}, recibe los cambios de mascotas,
+ * clientes, citas, historial y archivos, y reconstruye el resumen de las mascotas afectadas. Varios cambios de la
+ * misma mascota en un grupo de eventos se resuelven con una sola reconstrucción, que siempre se arma desde la
+ * base de datos, por lo que ni el orden ni la repetición de los eventos importan.
+ */
+@Service
+public class ResumenPacienteService implements ConsumidorEventos {
+
+    private static final String TIPO_DESCONOCIDO = "application/octet-stream";
+
+    @Autowired
+    private ResumenPacienteRepository resumenPacienteRepository;
+
+    @Autowired
+    private MascotaRepository mascotaRepository;
+
+    @Autowired
+    private HistorialClinicoRepository historialClinicoRepository;
+
+    @Autowired
+    private CitaRepository citaRepository;
+
+    @Autowired
+    private ArchivoClinicoRepository archivoClinicoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.resumen-paciente.ultimas-atenciones:5}")
+    private int ultimasAtenciones;
+
+    /**
+     * Obtiene el resumen de una mascota con una sola lectura por clave.
+     * Si todavía no existe (mascotas anteriores al modelo de lectura) o su próxima cita ya pasó, se arma en el momento.
+     * @throws ResourceNotFoundException si la mascota no existe
+     */
+    public ResumenPacienteDto getResumen(Long mascotaId) {
+        Optional<ResumenPacienteDto> guardado = resumenPacienteRepository.findById(mascotaId).map(this::leer);
+        if (guardado.isPresent() && !proximaCitaVencida(guardado.get())) {
+            return guardado.get();
+        }
+        return reconstruir(mascotaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Mascota", "id", mascotaId));
+    }
+
+    /**
+     * Arma el resumen de una mascota desde la base de datos y lo guarda, o lo elimina si la mascota ya no existe
+     * @return el resumen, o vacío si la mascota no existe
+     */
+    public Optional<ResumenPacienteDto> reconstruir(Long mascotaId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        return transactionTemplate.execute(status -> {
+            // Se toma antes de leer: si otra reconstrucción empezó después, sus datos son al menos tan nuevos
+            LocalDateTime inicio = LocalDateTime.now();
+            Optional<Mascota> mascota = mascotaRepository.findById(mascotaId);
+            if (mascota.isEmpty()) {
+                resumenPacienteRepository.deleteById(mascotaId);
+                return Optional.empty();
+            }
+            ResumenPacienteDto resumen = armar(mascota.get(), inicio);
+            Long clienteId = resumen.getPropietario() != null ? resumen.getPropietario().getId() : null;
+            resumenPacienteRepository.guardar(mascotaId, clienteId, escribir(resumen), resumen.getActualizado());
+            return Optional.of(resumen);
+        });
+    }
+
+    @Override
+    public String getNombre() {
+        return "resumen-paciente";
+    }
+
+    @Override
+    public void procesar(List<EventoDominio> eventos) {
+        Set<Long> mascotaIds = new LinkedHashSet<>();
+        for (EventoDominio evento : eventos) {
+            switch (evento.getAgregado()) {
+                case "Mascota" -> mascotaIds.add(evento.getAgregadoId());
+                case "Cliente" -> mascotaIds.addAll(resumenPacienteRepository.findMascotaIdsByClienteId(evento.getAgregadoId()));
+                default -> {
+                    // Una cita o una atención que cambia de mascota afecta a las dos
+                    agregarMascotaId(mascotaIds, evento.getDatos().path("anterior"));
+                    agregarMascotaId(mascotaIds, evento.getDatos().path("actual"));
+                }
+            }
+        }
+        mascotaIds.forEach(this::reconstruir);
+    }
+
+    private static void agregarMascotaId(Set<Long> mascotaIds, JsonNode estado) {
+        JsonNode mascotaId = estado.path("mascotaId");
+        if (mascotaId.canConvertToLong()) {
+            mascotaIds.add(mascotaId.asLong());
+        }
+    }
+
+    private ResumenPacienteDto armar(Mascota mascota, LocalDateTime ahora) {
+        ResumenPacienteDto resumen = new ResumenPacienteDto();
+        resumen.setMascota(convertToDto(mascota));
+        resumen.setPropietario(mascota.getCliente() != null ? convertToDto(mascota.getCliente()) : null);
+
+        List<HistorialClinicoDto> atenciones =
+                historialClinicoRepository.findLineaTiempo(mascota.getId(), PageRequest.of(0, ultimasAtenciones));
+        resumen.setUltimasAtenciones(atenciones);
+
+        // El último diagnóstico suele estar entre las últimas atenciones; si no, se busca más atrás
+        Optional<HistorialClinicoDto> conDiagnostico = atenciones.stream()
+                .filter(atencion -> atencion.getDiagnostico() != null && !atencion.getDiagnostico().isEmpty())
+                .findFirst();
+        if (conDiagnostico.isEmpty() && atenciones.size() == ultimasAtenciones) {
+            conDiagnostico = historialClinicoRepository
+                    .findConDiagnosticoByMascotaId(mascota.getId(), PageRequest.of(0, 1)).stream().findFirst();
+        }
+        conDiagnostico.ifPresent(atencion -> {
+            resumen.setUltimoDiagnostico(atencion.getDiagnostico());
+            resumen.setFechaUltimoDiagnostico(atencion.getFecha());
+        });
+
+        resumen.setProximaCita(citaRepository.findProximasByMascotaId(mascota.getId(),
+                ahora.toLocalDate(), ahora.toLocalTime(), PageRequest.of(0, 1)).stream().findFirst().orElse(null));
+
+        Map<String, Long> archivosPorTipo = new TreeMap<>();
+        for (Object[] fila : archivoClinicoRepository.countPorTipoMimeByMascotaId(mascota.getId())) {
+            String tipo = fila[0] != null ? (String) fila[0] : TIPO_DESCONOCIDO;
+            archivosPorTipo.merge(tipo, ((Number) fila[1]).longValue(), Long::sum);
+        }
+        resumen.setArchivosPorTipo(archivosPorTipo);
+        resumen.setTotalArchivos(archivosPorTipo.values().stream().mapToLong(Long::longValue).sum());
+
+        resumen.setActualizado(ahora);
+        return resumen;
+    }
+
+    private boolean proximaCitaVencida(ResumenPacienteDto resumen) {
+        CitaDto cita = resumen.getProximaCita();
+        if (cita == null || cita.getFecha() == null) {
+            return false;
+        }
+        LocalTime hora = cita.getHora() != null ? cita.getHora() : LocalTime.MIDNIGHT;
+        return LocalDateTime.of(cita.getFecha(), hora).isBefore(LocalDateTime.now());
+    }
+
+    private ResumenPacienteDto leer(ResumenPaciente fila) {
+        try {
+            return objectMapper.readValue(fila.getDatos(), ResumenPacienteDto.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Resumen de paciente ilegible para la mascota " + fila.getMascotaId(), ex);
+        }
+    }
+
+    private String escribir(ResumenPacienteDto resumen) {
+        try {
+            return objectMapper.writeValueAsString(resumen);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("No se pudo serializar el resumen de paciente", ex);
+        }
+    }
+
+    private MascotaDto convertToDto(Mascota mascota) {
+        MascotaDto dto = new MascotaDto();
+        dto.setId(mascota.getId());
+        dto.setNombre(mascota.getNombre());
+        dto.setEspecie(mascota.getEspecie());
+        dto.setRaza(mascota.getRaza());
+        dto.setFechaNacimiento(mascota.getFechaNacimiento());
+        dto.setSexo(mascota.getSexo());
+        if (mascota.getCliente() != null) {
+            dto.setClienteId(mascota.getCliente().getId());
+            dto.setClienteNombre(mascota.getCliente().getNombre());
+            dto.setClienteApellido(mascota.getCliente().getApellido());
+        }
+        return dto;
+    }
+
+    private ClienteDto convertToDto(Cliente cliente) {
+        ClienteDto dto = new ClienteDto();
+        dto.setId(cliente.getId());
+        dto.setNombre(cliente.getNombre());
+        dto.setApellido(cliente.getApellido());
+        dto.setTelefono(cliente.getTelefono());
+        dto.setCorreo(cliente.getCorreo());
+        dto.setDireccion(cliente.getDireccion());
+        dto.setFechaRegistro(cliente.getFechaRegistro());
+        return dto;
+    }
+}
@@ -2,6 +2,7 @@ package com.backend.vet.service;
 
 import com.backend.vet.dto.PermissionDto;
 import com.backend.vet.dto.RoleDto;
+import com.backend.vet.event.AutorizacionCambiadaEvent;
 import com.backend.vet.exception.BadRequestException;
 import com.backend.vet.exception.ResourceNotFoundException;
 import com.backend.vet.model.Permission;
@@ -9,6 +10,7 @@ import com.backend.vet.model.Role;
 import com.backend.vet.repository.PermissionRepository;
 import com.backend.vet.repository.RoleRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,6 +27,10 @@ public class RoleService {
 
     @Autowired
     private PermissionRepository permissionRepository;
+
+    // Notifica cambios de permisos a los usuarios del rol
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     
     public List<RoleDto> getAllRoles() {
         return roleRepository.findAll().stream()
@@ -66,8 +72,10 @@ public class RoleService {
                 throw new BadRequestException("Ya existe un rol con el nombre: " + roleDto.getNombre());
             }
             
+            String nombreAnterior = role.getNombre();
             role.setNombre(roleDto.getNombre());
             Role updatedRole = roleRepository.save(role);
+            eventPublisher.publishEvent(AutorizacionCambiadaEvent.deRol(nombreAnterior));
             return convertToDto(updatedRole);
         } catch (ResourceNotFoundException e) {
             return null;
@@ -76,10 +84,10 @@ public class RoleService {
     
     @Transactional
     public boolean deleteRole(Long id) {
-        if (!roleRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Role", "id", id);
-        }
-        roleRepository.deleteById(id);
+        Role role = roleRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Role", "id", id));
+        roleRepository.delete(role);
+        eventPublisher.publishEvent(AutorizacionCambiadaEvent.deRol(role.getNombre()));
         return true;
     }
 
@@ -101,6 +109,7 @@ public class RoleService {
                 .collect(Collectors.toSet());
         role.setPermissions(perms);
         Role saved = roleRepository.save(role);
+        eventPublisher.publishEvent(AutorizacionCambiadaEvent.deRol(saved.getNombre()));
         return saved.getPermissions().stream()
                 .map(p -> new PermissionDto(p.getId(), p.getName()))
                 .collect(Collectors.toList());
@@ -116,6 +125,7 @@ public class RoleService {
         if (!role.getPermissions().contains(permission)) {
             role.getPermissions().add(permission);
             roleRepository.save(role);
+            eventPublisher.publishEvent(AutorizacionCambiadaEvent.deRol(role.getNombre()));
         } else {
              // Opcional: Lanzar excepción si ya está asignado, o simplemente devolver la lista actual
              // throw new BadRequestException("El permiso " + permission.getName() + " ya está asignado al rol " + role.getNombre());
@@ -137,6 +147,7 @@ public class RoleService {
         if (role.getPermissions().contains(permission)) {
             role.getPermissions().remove(permission);
             roleRepository.save(role);
+            eventPublisher.publishEvent(AutorizacionCambiadaEvent.deRol(role.getNombre()));
             return true; // Se eliminó correctamente
         }
         // Si el permiso no estaba asignado, la operación no cambió nada.
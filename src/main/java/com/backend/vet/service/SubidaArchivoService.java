@@ -0,0 +1,409 @@
+package com.backend.vet.service;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.dto.SubidaArchivoDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.exception.FileStorageException;
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Subidas reanudables de archivos clínicos grandes.
+ * Cada sesión escribe sus fragmentos en un archivo preasignado con escrituras posicionales y registra
+ * en un diario en disco los rangos ya recibidos, de modo que la subida puede continuar tras un corte
+ * de conexión o un reinicio del servidor. Al finalizar, el archivo se adjunta al historial clínico.
+ * Las sesiones viven en la memoria y el disco local de la instancia que las creó, y solo se recuperan del disco
+ * al arrancar: con varias instancias, el balanceador debe enviar todas las peticiones de una subida a la que
+ * la creó (afinidad por el id de sesión de la ruta).
+ */
+@Service
+public class SubidaArchivoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubidaArchivoService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String EXTENSION_PARCIAL = ".part";
+    private static final String EXTENSION_DIARIO = ".journal";
+
+    @Autowired
+    private FileStorageConfig fileStorageConfig;
+
+    @Autowired
+    private HistorialClinicoRepository historialClinicoRepository;
+
+    @Autowired
+    private ArchivoClinicoService archivoClinicoService;
+
+    @Value("${file.storage.upload-session-ttl:24h}")
+    private Duration duracionSesion;
+
+    private Path directorio;
+    private final Map<String, Sesion> sesiones = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        directorio = fileStorageConfig.getUploadSessionPath();
+        try {
+            Files.createDirectories(directorio);
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo crear el directorio para subidas reanudables.", ex);
+        }
+        recuperarSesiones();
+    }
+
+    /**
+     * Crea una sesión de subida y preasigna el archivo con el tamaño declarado
+     * @throws ResourceNotFoundException si el historial no existe
+     * @throws BadRequestException si el tamaño supera el máximo permitido o el nombre es inválido
+     */
+    public SubidaArchivoDto crearSesion(SubidaArchivoDto solicitud, String usuario) {
+        if (!historialClinicoRepository.existsById(solicitud.getHistorialClinicoId())) {
+            throw new ResourceNotFoundException("HistorialClinico", "id", solicitud.getHistorialClinicoId());
+        }
+        long maximo = fileStorageConfig.getMaxUploadSize().toBytes();
+        if (solicitud.getTamano() > maximo) {
+            throw new BadRequestException("El archivo supera el tamaño máximo permitido de " + maximo + " bytes");
+        }
+        String nombre = solicitud.getNombreArchivo();
+        if (nombre.contains("/") || nombre.contains("\\") || nombre.contains("..")) {
+            throw new BadRequestException("El nombre del archivo contiene una ruta inválida " + nombre);
+        }
+
+        Sesion sesion = new Sesion(UUID.randomUUID().toString(), solicitud.getHistorialClinicoId(), nombre,
+                solicitud.getTipoMime(), solicitud.getTamano(), usuario, Instant.now());
+        try (FileChannel canal = FileChannel.open(parcial(sesion.id), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            // Preasignar el archivo escribiendo su último byte
+            canal.write(ByteBuffer.allocate(1), sesion.tamano - 1);
+            agregarAlDiario(sesion.id, "SESION " + sesion.historialClinicoId + " " + sesion.tamano + " "
+                    + codificar(usuario) + " " + codificar(nombre) + " " + codificar(sesion.tipoMime), true);
+        } catch (IOException ex) {
+            eliminarArchivos(sesion.id);
+            throw new FileStorageException("No se pudo crear la sesión de subida", ex);
+        }
+        sesiones.put(sesion.id, sesion);
+        logger.info("Sesión de subida {} creada para {} ({} bytes)", sesion.id, nombre, sesion.tamano);
+        return toDto(sesion);
+    }
+
+    public SubidaArchivoDto getEstado(String id, String usuario) {
+        return toDto(obtener(id, usuario));
+    }
+
+    /**
+     * Escribe un fragmento a partir del offset indicado. Si la conexión se corta, lo recibido hasta ese momento
+     * queda registrado y el cliente puede consultar el estado para continuar.
+     * @throws BadRequestException si el fragmento sale del tamaño declarado
+     */
+    public SubidaArchivoDto escribirFragmento(String id, long offset, InputStream in, String usuario) throws IOException {
+        Sesion sesion = obtener(id, usuario);
+        if (offset < 0 || offset >= sesion.tamano) {
+            throw new BadRequestException("El offset debe estar entre 0 y " + (sesion.tamano - 1));
+        }
+
+        sesion.candado.readLock().lock();
+        try {
+            if (sesion.cerrada) {
+                throw new ResourceNotFoundException("SubidaArchivo", "id", id);
+            }
+            long posicion = offset;
+            try (FileChannel canal = FileChannel.open(parcial(id), StandardOpenOption.WRITE)) {
+                ReadableByteChannel entrada = Channels.newChannel(in);
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                try {
+                    while (entrada.read(buffer) >= 0) {
+                        buffer.flip();
+                        if (posicion + buffer.remaining() > sesion.tamano) {
+                            throw new BadRequestException("El fragmento excede el tamaño declarado de " + sesion.tamano + " bytes");
+                        }
+                        while (buffer.hasRemaining()) {
+                            posicion += canal.write(buffer, posicion);
+                        }
+                        buffer.clear();
+                    }
+                } finally {
+                    // Lo que ya se escribió es válido aunque el fragmento no haya llegado completo
+                    if (posicion > offset) {
+                        canal.force(false);
+                        registrarRango(sesion, offset, posicion);
+                    }
+                }
+            }
+            logger.debug("Sesión {}: recibidos {} bytes desde {}", id, posicion - offset, offset);
+            return toDto(sesion);
+        } finally {
+            sesion.candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adjunta el archivo completo al historial clínico y elimina la sesión
+     * @throws BadRequestException si todavía faltan bytes por recibir
+     */
+    public ArchivoClinicoDto finalizar(String id, String usuario) {
+        Sesion sesion = obtener(id, usuario);
+        sesion.candado.writeLock().lock();
+        try {
+            if (sesion.cerrada) {
+                throw new ResourceNotFoundException("SubidaArchivo", "id", id);
+            }
+            long siguiente = sesion.siguienteOffset();
+            if (siguiente < sesion.tamano) {
+                throw new BadRequestException("La subida no está completa: faltan bytes desde el offset " + siguiente);
+            }
+            ArchivoClinicoDto archivo;
+            try {
+                archivo = archivoClinicoService.createArchivoClinico(sesion.historialClinicoId, parcial(id),
+                        sesion.nombreArchivo, sesion.tipoMime);
+            } catch (RuntimeException ex) {
+                // Si el archivo ya se movió al almacenamiento la sesión no puede reintentarse
+                if (!Files.exists(parcial(id))) {
+                    cerrar(sesion);
+                }
+                throw ex;
+            }
+            cerrar(sesion);
+            logger.info("Sesión de subida {} finalizada como archivo clínico {}", id, archivo.getId());
+            return archivo;
+        } finally {
+            sesion.candado.writeLock().unlock();
+        }
+    }
+
+    public void cancelar(String id, String usuario) {
+        Sesion sesion = obtener(id, usuario);
+        sesion.candado.writeLock().lock();
+        try {
+            cerrar(sesion);
+            logger.info("Sesión de subida {} cancelada", id);
+        } finally {
+            sesion.candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina las sesiones sin actividad durante más tiempo que el configurado
+     */
+    @Scheduled(fixedDelayString = "${file.storage.upload-session-purge-ms:3600000}")
+    public void purgarExpiradas() {
+        Instant limite = Instant.now().minus(duracionSesion);
+        for (Sesion sesion : sesiones.values()) {
+            if (sesion.ultimaActividad.isBefore(limite) && sesion.candado.writeLock().tryLock()) {
+                try {
+                    cerrar(sesion);
+                    logger.info("Sesión de subida {} eliminada por inactividad", sesion.id);
+                } finally {
+                    sesion.candado.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private Sesion obtener(String id, String usuario) {
+        Sesion sesion = sesiones.get(id);
+        if (sesion == null || !sesion.usuario.equals(usuario)) {
+            throw new ResourceNotFoundException("SubidaArchivo", "id", id);
+        }
+        return sesion;
+    }
+
+    private void registrarRango(Sesion sesion, long inicio, long fin) throws IOException {
+        synchronized (sesion) {
+            agregarAlDiario(sesion.id, "CHUNK " + inicio + " " + (fin - inicio), false);
+            sesion.agregarRango(inicio, fin);
+            sesion.ultimaActividad = Instant.now();
+        }
+    }
+
+    private void agregarAlDiario(String id, String linea, boolean nuevo) throws IOException {
+        try (FileChannel diario = nuevo
+                ? FileChannel.open(diario(id), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                : FileChannel.open(diario(id), StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap((linea + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                diario.write(buffer);
+            }
+            diario.force(false);
+        }
+    }
+
+    private void cerrar(Sesion sesion) {
+        sesion.cerrada = true;
+        sesiones.remove(sesion.id);
+        eliminarArchivos(sesion.id);
+    }
+
+    private void eliminarArchivos(String id) {
+        try {
+            Files.deleteIfExists(diario(id));
+            Files.deleteIfExists(parcial(id));
+        } catch (IOException ex) {
+            logger.warn("No se pudieron eliminar los archivos de la sesión {}: {}", id, ex.getMessage());
+        }
+    }
+
+    // Reconstruye las sesiones pendientes a partir de sus diarios
+    private void recuperarSesiones() {
+        try (DirectoryStream<Path> diarios = Files.newDirectoryStream(directorio, "*" + EXTENSION_DIARIO)) {
+            for (Path diario : diarios) {
+                String nombre = diario.getFileName().toString();
+                String id = nombre.substring(0, nombre.length() - EXTENSION_DIARIO.length());
+                try {
+                    Sesion sesion = leerDiario(id, diario);
+                    if (sesion != null && Files.exists(parcial(id))) {
+                        sesiones.put(id, sesion);
+                    } else {
+                        eliminarArchivos(id);
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    logger.warn("No se pudo recuperar la sesión de subida {}: {}", id, ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            logger.error("No se pudo leer el directorio de subidas reanudables: {}", ex.getMessage());
+        }
+        logger.info("Se recuperaron {} sesiones de subida pendientes", sesiones.size());
+    }
+
+    private Sesion leerDiario(String id, Path diario) throws IOException {
+        List<String> lineas = Files.readAllLines(diario, StandardCharsets.UTF_8);
+        if (lineas.isEmpty()) {
+            return null;
+        }
+        String[] cabecera = lineas.get(0).split(" ", -1);
+        if (cabecera.length != 6 || !"SESION".equals(cabecera[0])) {
+            return null;
+        }
+        Sesion sesion = new Sesion(id, Long.parseLong(cabecera[1]), decodificar(cabecera[4]), decodificar(cabecera[5]),
+                Long.parseLong(cabecera[2]), decodificar(cabecera[3]), Files.getLastModifiedTime(diario).toInstant());
+        for (String linea : lineas.subList(1, lineas.size())) {
+            String[] partes = linea.split(" ");
+            // Una línea incompleta al final del diario corresponde a un fragmento no confirmado
+            if (partes.length == 3 && "CHUNK".equals(partes[0])) {
+                try {
+                    long inicio = Long.parseLong(partes[1]);
+                    long fin = inicio + Long.parseLong(partes[2]);
+                    if (inicio >= 0 && fin <= sesion.tamano) {
+                        sesion.agregarRango(inicio, fin);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // se descarta la línea incompleta
+                }
+            }
+        }
+        return sesion;
+    }
+
+    private SubidaArchivoDto toDto(Sesion sesion) {
+        SubidaArchivoDto dto = new SubidaArchivoDto();
+        synchronized (sesion) {
+            dto.setId(sesion.id);
+            dto.setHistorialClinicoId(sesion.historialClinicoId);
+            dto.setNombreArchivo(sesion.nombreArchivo);
+            dto.setTipoMime(sesion.tipoMime);
+            dto.setTamano(sesion.tamano);
+            dto.setRecibidos(sesion.recibidos());
+            dto.setSiguienteOffset(sesion.siguienteOffset());
+            dto.setCompleta(sesion.siguienteOffset() == sesion.tamano);
+            dto.setExpira(LocalDateTime.ofInstant(sesion.ultimaActividad.plus(duracionSesion), ZoneId.systemDefault()));
+        }
+        return dto;
+    }
+
+    private Path parcial(String id) {
+        return directorio.resolve(id + EXTENSION_PARCIAL);
+    }
+
+    private Path diario(String id) {
+        return directorio.resolve(id + EXTENSION_DIARIO);
+    }
+
+    private static String codificar(String valor) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((valor != null ? valor : "").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodificar(String valor) {
+        String texto = new String(Base64.getUrlDecoder().decode(valor), StandardCharsets.UTF_8);
+        return texto.isEmpty() ? null : texto;
+    }
+
+    private static final class Sesion {
+        private final String id;
+        private final Long historialClinicoId;
+        private final String nombreArchivo;
+        private final String tipoMime;
+        private final long tamano;
+        private final String usuario;
+        // inicio -> fin (exclusivo) de los rangos recibidos, sin solapamientos
+        private final TreeMap<Long, Long> rangos = new TreeMap<>();
+        // Los fragmentos se escriben en paralelo; finalizar o cancelar espera a que terminen
+        private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+        private volatile Instant ultimaActividad;
+        private volatile boolean cerrada;
+
+        private Sesion(String id, Long historialClinicoId, String nombreArchivo, String tipoMime,
+                       long tamano, String usuario, Instant ultimaActividad) {
+            this.id = id;
+            this.historialClinicoId = historialClinicoId;
+            this.nombreArchivo = nombreArchivo;
+            this.tipoMime = tipoMime;
+            this.tamano = tamano;
+            this.usuario = usuario;
+            this.ultimaActividad = ultimaActividad;
+        }
+
+        private void agregarRango(long inicio, long fin) {
+            Map.Entry<Long, Long> anterior = rangos.floorEntry(inicio);
+            if (anterior != null && anterior.getValue() >= inicio) {
+                inicio = anterior.getKey();
+                fin = Math.max(fin, anterior.getValue());
+            }
+            Map.Entry<Long, Long> siguiente;
+            while ((siguiente = rangos.ceilingEntry(inicio)) != null && siguiente.getKey() <= fin) {
+                fin = Math.max(fin, siguiente.getValue());
+                rangos.remove(siguiente.getKey());
+            }
+            rangos.put(inicio, fin);
+        }
+
+        private long recibidos() {
+            return rangos.entrySet().stream().mapToLong(r -> r.getValue() - r.getKey()).sum();
+        }
+
+        private long siguienteOffset() {
+            Long fin = rangos.get(0L);
+            return fin != null ? fin : 0;
+        }
+    }
+}
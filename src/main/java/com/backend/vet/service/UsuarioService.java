@@ -2,6 +2,7 @@ package com.backend.vet.service;
 
 import com.backend.vet.dto.UsuarioDto;
 import com.backend.vet.dto.UsuarioUpdateDto; // Importar el nuevo DTO
+import com.backend.vet.event.AutorizacionCambiadaEvent;
 import com.backend.vet.exception.BadRequestException;
 import com.backend.vet.exception.ResourceNotFoundException;
 import com.backend.vet.exception.TokenExpiredException; // Necesita ser creada
@@ -13,6 +14,7 @@ import com.backend.vet.repository.RoleRepository;
 import com.backend.vet.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value; // Importar Value
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest; // Importar PageRequest
 import org.springframework.data.domain.Pageable; // Importar Pageable
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -65,6 +67,10 @@ public class UsuarioService {
     @Autowired
     private PasswordHistoryRepository passwordHistoryRepository;
 
+    // Notifica cambios que afectan la autenticación o los permisos del usuario
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     private final SecureRandom secureRandom = new SecureRandom(); // Para generar tokens
     private final Base64.Encoder base64Encoder = Base64.getUrlEncoder(); // Para generar tokens
 
@@ -128,6 +134,7 @@ public class UsuarioService {
     public UsuarioDto updateUsuario(Long id, UsuarioUpdateDto usuarioUpdateDto) { // Cambiar UsuarioDto a UsuarioUpdateDto
         Usuario usuario = usuarioRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario", "id", id));
+        String nombreUsuarioAnterior = usuario.getNombreUsuario();
 
         // Verificar si el nuevo nombreUsuario ya existe y no pertenece a este usuario
         if (!usuario.getNombreUsuario().equals(usuarioUpdateDto.getNombreUsuario()) &&
@@ -175,6 +182,10 @@ public class UsuarioService {
         // Guardar los cambios finales (si la contraseña no se cambió, esto guarda los otros campos)
         // Si la contraseña sí se cambió, esto guarda la actualización del rol si ocurrió después.
         Usuario updatedUsuario = usuarioRepository.save(usuario);
+        eventPublisher.publishEvent(AutorizacionCambiadaEvent.deUsuario(nombreUsuarioAnterior));
+        if (!nombreUsuarioAnterior.equals(updatedUsuario.getNombreUsuario())) {
+            eventPublisher.publishEvent(AutorizacionCambiadaEvent.deUsuario(updatedUsuario.getNombreUsuario()));
+        }
         return convertToDto(updatedUsuario); // Devolver UsuarioDto estándar
     }
     
@@ -193,6 +204,7 @@ public class UsuarioService {
         // usuario.setResetToken(null);
         // usuario.setResetTokenExpiry(null);
         usuarioRepository.save(usuario);
+        eventPublisher.publishEvent(AutorizacionCambiadaEvent.deUsuario(usuario.getNombreUsuario()));
         return true; // Se marcó como inactivo
     }
 
@@ -285,6 +297,7 @@ public class UsuarioService {
         Usuario updatedUser = usuarioRepository.save(user);
         // Añadir la nueva contraseña al historial DESPUÉS de guardar el usuario
         addPasswordToHistory(updatedUser, newPasswordHash);
+        eventPublisher.publishEvent(AutorizacionCambiadaEvent.deUsuario(updatedUser.getNombreUsuario()));
     }
 
     // Método refactorizado para validar complejidad
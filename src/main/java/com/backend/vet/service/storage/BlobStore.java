@@ -0,0 +1,73 @@
+package com.backend.vet.service.storage;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Almacén del contenido deduplicado de los archivos clínicos. Cada contenido se identifica por su SHA-256
+ * y nunca cambia, por lo que las implementaciones pueden copiarlo, cachearlo o servirlo desde fuera de la JVM.
+ * Los errores se informan con {@link com.backend.vet.exception.FileStorageException}.
+ */
+public interface BlobStore {
+
+    /**
+     * Incorpora un archivo local como contenido de la clave indicada
+     * @param key SHA-256 del contenido original
+     * @param source archivo ya escrito en disco; se consume (se mueve o se elimina)
+     * @param encoding códec con el que está comprimido el archivo, o null si está tal cual
+     * @return true si el contenido no existía y se agregó al almacén
+     */
+    boolean put(String key, Path source, String encoding);
+
+    boolean exists(String key);
+
+    /**
+     * Abre los bytes almacenados (comprimidos, si se guardaron así)
+     */
+    InputStream open(String key);
+
+    Optional<BlobInfo> stat(String key);
+
+    /**
+     * @return true si el contenido existía
+     */
+    boolean delete(String key);
+
+    /**
+     * Ruta local del contenido, si el almacén está en el sistema de archivos de este servidor
+     */
+    Optional<Path> localPath(String key);
+
+    /**
+     * URL firmada y de duración limitada con la que el cliente descarga el contenido directamente del almacén
+     * @param fileName nombre con el que se ofrece la descarga
+     * @param contentType tipo MIME de la respuesta, o null
+     * @param encoding códec con el que se guardó (se envía como Content-Encoding), o null
+     * @return vacío si el almacén no permite descargas directas
+     */
+    Optional<URI> presignedDownloadUrl(String key, String fileName, String contentType, String encoding);
+
+    /**
+     * Tamaño almacenado y fecha de modificación de un contenido
+     */
+    class BlobInfo {
+        private final long size;
+        private final long lastModified;
+
+        public BlobInfo(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /** Fecha de modificación en milisegundos */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.backend.vet.service.storage;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.exception.FileStorageException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Almacén de contenido en el sistema de archivos local, en {@code blob-dir/ab/cd/<sha256>}
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+
+    private final Path root;
+
+    @Autowired
+    public FileSystemBlobStore(FileStorageConfig fileStorageConfig) {
+        this.root = fileStorageConfig.getBlobStoragePath();
+    }
+
+    /**
+     * Ruta de un contenido dentro del directorio indicado: {@code ab/cd/<sha256>}
+     */
+    public static Path shardedPath(Path root, String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    @Override
+    public boolean put(String key, Path source, String encoding) {
+        Path target = shardedPath(root, key);
+        try {
+            if (Files.exists(target)) {
+                try {
+                    // Se renueva la fecha para que la conciliación no lo considere huérfano mientras se registra
+                    Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                    Files.deleteIfExists(source);
+                    return false;
+                } catch (NoSuchFileException ex) {
+                    // Retirado por la conciliación entre la comprobación y la renovación: se usa la copia pendiente
+                }
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            // El movimiento conserva la fecha del archivo pendiente: el contenido nuevo debe parecer reciente
+            // hasta que se confirme su fila en blobs_archivos
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return true;
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo almacenar el contenido " + key, ex);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(shardedPath(root, key));
+    }
+
+    @Override
+    public InputStream open(String key) {
+        try {
+            return Files.newInputStream(shardedPath(root, key));
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo leer el contenido: " + key, ex);
+        }
+    }
+
+    @Override
+    public Optional<BlobInfo> stat(String key) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(shardedPath(root, key), BasicFileAttributes.class);
+            return Optional.of(new BlobInfo(attrs.size(), attrs.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo leer el contenido: " + key, ex);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        try {
+            return Files.deleteIfExists(shardedPath(root, key));
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo eliminar el contenido: " + key, ex);
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = shardedPath(root, key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    @Override
+    public Optional<URI> presignedDownloadUrl(String key, String fileName, String contentType, String encoding) {
+        // Se sirve desde este servidor, con sendfile cuando el conector lo permite
+        return Optional.empty();
+    }
+}
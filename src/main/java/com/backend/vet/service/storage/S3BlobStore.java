@@ -0,0 +1,342 @@
+package com.backend.vet.service.storage;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.exception.FileStorageException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Almacén de contenido en S3 o en un servicio compatible (MinIO, Ceph...), compartido por todas las réplicas.
+ * Los archivos grandes se suben por partes, varias a la vez: cada parte se lee directamente de su tramo del
+ * archivo pendiente, sin cargarla en memoria. Las descargas se sirven con URLs firmadas, de modo que los bytes
+ * van del almacén al cliente sin pasar por la JVM.
+ */
+@Component
+@ConditionalOnProperty(name = "file.storage.backend", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3BlobStore.class);
+
+    private final S3Client s3;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final String prefix;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final Duration presignTtl;
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public S3BlobStore(FileStorageConfig fileStorageConfig) {
+        this(crearCliente(fileStorageConfig.getS3()), crearFirmador(fileStorageConfig.getS3()), fileStorageConfig.getS3());
+    }
+
+    public S3BlobStore(S3Client s3, S3Presigner presigner, FileStorageConfig.S3 config) {
+        if (!StringUtils.hasText(config.getBucket())) {
+            throw new IllegalStateException("Falta file.storage.s3.bucket para el almacenamiento en S3");
+        }
+        this.s3 = s3;
+        this.presigner = presigner;
+        this.bucket = config.getBucket();
+        this.prefix = config.getPrefix() == null ? "" : config.getPrefix();
+        this.multipartThreshold = config.getMultipartThreshold().toBytes();
+        this.partSize = config.getPartSize().toBytes();
+        this.presignTtl = config.getPresignTtl();
+
+        // Pool compartido por todas las subidas: limita las partes en vuelo, no el número de subidas
+        AtomicInteger contador = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getParallelParts(), config.getParallelParts(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "s3-partes-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        presigner.close();
+        s3.close();
+    }
+
+    @Override
+    public boolean put(String key, Path source, String encoding) {
+        String objectKey = objectKey(key);
+        try {
+            // El contenido es inmutable: si ya está, no se vuelve a subir. Dos subidas simultáneas del mismo
+            // contenido escriben los mismos bytes, así que no hay conflicto
+            if (exists(key)) {
+                Files.deleteIfExists(source);
+                return false;
+            }
+            long size = Files.size(source);
+            if (size < multipartThreshold) {
+                s3.putObject(PutObjectRequest.builder()
+                                .bucket(bucket).key(objectKey).contentLength(size).contentEncoding(encoding).build(),
+                        RequestBody.fromFile(source));
+            } else {
+                subirPorPartes(objectKey, source, size, encoding);
+            }
+            Files.deleteIfExists(source);
+            return true;
+        } catch (IOException | SdkException ex) {
+            throw new FileStorageException("No se pudo almacenar el contenido " + key, ex);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return head(key).isPresent();
+    }
+
+    @Override
+    public InputStream open(String key) {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+        } catch (NoSuchKeyException ex) {
+            throw new FileStorageException("Archivo no encontrado: " + key, ex);
+        } catch (SdkException ex) {
+            throw new FileStorageException("No se pudo leer el contenido: " + key, ex);
+        }
+    }
+
+    @Override
+    public Optional<BlobInfo> stat(String key) {
+        return head(key).map(head -> new BlobInfo(head.contentLength(),
+                head.lastModified() == null ? 0 : head.lastModified().toEpochMilli()));
+    }
+
+    @Override
+    public boolean delete(String key) {
+        try {
+            boolean existia = exists(key);
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+            return existia;
+        } catch (SdkException ex) {
+            throw new FileStorageException("No se pudo eliminar el contenido: " + key, ex);
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<URI> presignedDownloadUrl(String key, String fileName, String contentType, String encoding) {
+        GetObjectRequest.Builder get = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey(key))
+                .responseContentDisposition(ContentDisposition.attachment()
+                        .filename(fileName, StandardCharsets.UTF_8).build().toString());
+        if (contentType != null) {
+            get.responseContentType(contentType);
+        }
+        if (encoding != null) {
+            get.responseContentEncoding(encoding);
+        }
+        try {
+            return Optional.of(presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(presignTtl)
+                    .getObjectRequest(get.build())
+                    .build()).url().toURI());
+        } catch (URISyntaxException | SdkException ex) {
+            logger.warn("No se pudo firmar la descarga de {}: {}", key, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void subirPorPartes(String objectKey, Path source, long size, String encoding) throws IOException {
+        String uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket).key(objectKey).contentEncoding(encoding).build()).uploadId();
+        int partes = (int) ((size + partSize - 1) / partSize);
+        List<Future<CompletedPart>> pendientes = new ArrayList<>(partes);
+        try {
+            for (int i = 0; i < partes; i++) {
+                int numero = i + 1;
+                long inicio = i * partSize;
+                long longitud = Math.min(partSize, size - inicio);
+                pendientes.add(executor.submit(() -> subirParte(objectKey, uploadId, numero, source, inicio, longitud)));
+            }
+            List<CompletedPart> completadas = new ArrayList<>(partes);
+            for (Future<CompletedPart> pendiente : pendientes) {
+                completadas.add(pendiente.get());
+            }
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket).key(objectKey).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completadas).build())
+                    .build());
+            logger.debug("Contenido {} subido en {} partes ({} bytes)", objectKey, partes, size);
+        } catch (InterruptedException | ExecutionException | RuntimeException ex) {
+            pendientes.forEach(pendiente -> pendiente.cancel(true));
+            abortar(objectKey, uploadId);
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable causa = ex instanceof ExecutionException ? ex.getCause() : ex;
+            throw new IOException("Falló la subida por partes de " + objectKey, causa);
+        }
+    }
+
+    private CompletedPart subirParte(String objectKey, String uploadId, int numero, Path source,
+                                     long inicio, long longitud) {
+        // El proveedor puede invocarse de nuevo si el SDK reintenta la parte
+        RequestBody cuerpo = RequestBody.fromContentProvider(() -> abrirTramo(source, inicio, longitud),
+                longitud, "application/octet-stream");
+        UploadPartResponse respuesta = s3.uploadPart(UploadPartRequest.builder()
+                .bucket(bucket).key(objectKey).uploadId(uploadId)
+                .partNumber(numero).contentLength(longitud)
+                .build(), cuerpo);
+        return CompletedPart.builder().partNumber(numero).eTag(respuesta.eTag()).build();
+    }
+
+    private void abortar(String objectKey, String uploadId) {
+        try {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket).key(objectKey).uploadId(uploadId).build());
+        } catch (SdkException ex) {
+            // Las partes huérfanas las elimina la regla de ciclo de vida del bucket
+            logger.warn("No se pudo cancelar la subida por partes de {}: {}", objectKey, ex.getMessage());
+        }
+    }
+
+    private Optional<HeadObjectResponse> head(String key) {
+        try {
+            return Optional.of(s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(objectKey(key)).build()));
+        } catch (NoSuchKeyException ex) {
+            return Optional.empty();
+        } catch (S3Exception ex) {
+            if (ex.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new FileStorageException("No se pudo consultar el contenido: " + key, ex);
+        } catch (SdkException ex) {
+            throw new FileStorageException("No se pudo consultar el contenido: " + key, ex);
+        }
+    }
+
+    // Misma distribución que en disco (ab/cd/<sha256>) para repartir la carga entre prefijos
+    private String objectKey(String key) {
+        return prefix + key.substring(0, 2) + "/" + key.substring(2, 4) + "/" + key;
+    }
+
+    private static InputStream abrirTramo(Path source, long inicio, long longitud) {
+        try {
+            FileChannel channel = FileChannel.open(source, StandardOpenOption.READ).position(inicio);
+            return new FilterInputStream(Channels.newInputStream(channel)) {
+                private long restantes = longitud;
+
+                @Override
+                public int read() throws IOException {
+                    if (restantes <= 0) {
+                        return -1;
+                    }
+                    int leido = super.read();
+                    if (leido >= 0) {
+                        restantes--;
+                    }
+                    return leido;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (restantes <= 0) {
+                        return -1;
+                    }
+                    int leidos = super.read(b, off, (int) Math.min(len, restantes));
+                    if (leidos > 0) {
+                        restantes -= leidos;
+                    }
+                    return leidos;
+                }
+            };
+        } catch (IOException ex) {
+            throw new FileStorageException("No se pudo leer el archivo pendiente: " + source.getFileName(), ex);
+        }
+    }
+
+    private static S3Client crearCliente(FileStorageConfig.S3 config) {
+        var builder = S3Client.builder()
+                .region(Region.of(config.getRegion()))
+                .credentialsProvider(credenciales(config))
+                .forcePathStyle(config.isPathStyle());
+        if (StringUtils.hasText(config.getEndpoint())) {
+            builder.endpointOverride(URI.create(config.getEndpoint()));
+        }
+        return builder.build();
+    }
+
+    private static S3Presigner crearFirmador(FileStorageConfig.S3 config) {
+        var builder = S3Presigner.builder()
+                .region(Region.of(config.getRegion()))
+                .credentialsProvider(credenciales(config))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(config.isPathStyle()).build());
+        if (StringUtils.hasText(config.getEndpoint())) {
+            builder.endpointOverride(URI.create(config.getEndpoint()));
+        }
+        return builder.build();
+    }
+
+    private static AwsCredentialsProvider credenciales(FileStorageConfig.S3 config) {
+        if (StringUtils.hasText(config.getAccessKey())) {
+            return StaticCredentialsProvider.create(AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey()));
+        }
+        return DefaultCredentialsProvider.create();
+    }
+}
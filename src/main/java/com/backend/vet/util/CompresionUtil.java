@@ -0,0 +1,100 @@
+package com.backend.vet.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Clase utilitaria con los códecs de compresión usados para guardar archivos en disco.
+ * El nombre de cada códec coincide con su valor de la cabecera HTTP Content-Encoding, de modo que
+ * el contenido comprimido puede enviarse tal cual a los clientes que lo acepten.
+ */
+public class CompresionUtil {
+
+    public static final String GZIP = "gzip";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompresionUtil() {
+    }
+
+    /**
+     * Envuelve el flujo de salida con el compresor del códec indicado
+     *
+     * @param out flujo de destino; se cierra al cerrar el flujo devuelto
+     * @param codificacion códec a usar
+     * @param nivel nivel de compresión de 1 (más rápido) a 9 (más pequeño)
+     * @throws IllegalArgumentException si el códec no está soportado
+     */
+    public static OutputStream comprimir(OutputStream out, String codificacion, int nivel) throws IOException {
+        if (!GZIP.equals(codificacion)) {
+            throw new IllegalArgumentException("Códec de compresión no soportado: " + codificacion);
+        }
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(nivel);
+            }
+        };
+    }
+
+    /**
+     * Envuelve el flujo de entrada con el descompresor del códec indicado
+     *
+     * @param in flujo con el contenido almacenado
+     * @param codificacion códec con el que se guardó, o null si se guardó sin comprimir
+     * @throws IllegalArgumentException si el códec no está soportado
+     */
+    public static InputStream descomprimir(InputStream in, String codificacion) throws IOException {
+        if (codificacion == null) {
+            return in;
+        }
+        if (!GZIP.equals(codificacion)) {
+            throw new IllegalArgumentException("Códec de compresión no soportado: " + codificacion);
+        }
+        return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Indica si la cabecera Accept-Encoding del cliente admite el códec indicado
+     *
+     * @param acceptEncoding valor de la cabecera, o null si no se envió
+     * @param codificacion códec del contenido almacenado
+     * @return true si el códec (o el comodín "*") aparece con un valor q mayor que cero
+     */
+    public static boolean aceptaCodificacion(String acceptEncoding, String codificacion) {
+        if (acceptEncoding == null || codificacion == null) {
+            return false;
+        }
+        boolean comodin = false;
+        for (String elemento : acceptEncoding.split(",")) {
+            String[] partes = elemento.split(";");
+            String nombre = partes[0].trim().toLowerCase(Locale.ROOT);
+            boolean aceptado = calidad(partes) > 0;
+            if (nombre.equals(codificacion)) {
+                // Una mención explícita prevalece sobre el comodín
+                return aceptado;
+            }
+            if (nombre.equals("*")) {
+                comodin = aceptado;
+            }
+        }
+        return comodin;
+    }
+
+    private static double calidad(String[] partes) {
+        for (int i = 1; i < partes.length; i++) {
+            String parametro = partes[i].trim();
+            if (parametro.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parametro.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
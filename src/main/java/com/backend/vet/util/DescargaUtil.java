@@ -0,0 +1,147 @@
+package com.backend.vet.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Clase utilitaria para servir archivos almacenados por rangos de bytes.
+ * Cuando el conector lo permite, el contenido se envía con sendfile sin pasar por la JVM;
+ * en otro caso se transfiere desde el FileChannel directamente al flujo de la respuesta.
+ */
+public class DescargaUtil {
+
+    // Atributos con los que Tomcat delega el envío del cuerpo a sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private DescargaUtil() {
+    }
+
+    /**
+     * Obtiene los rangos pedidos en la cabecera Range, respetando If-Range
+     *
+     * @param request petición
+     * @param etag ETag actual del archivo, o null si no tiene
+     * @param ultimaModificacion fecha de modificación del archivo en milisegundos
+     * @return rangos solicitados, o lista vacía si se debe enviar el archivo completo
+     * @throws IllegalArgumentException si la cabecera Range no es válida
+     */
+    public static List<HttpRange> rangosSolicitados(HttpServletRequest request, String etag, long ultimaModificacion) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range == null) {
+            return List.of();
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !coincideIfRange(request, ifRange, etag, ultimaModificacion)) {
+            return List.of();
+        }
+        return HttpRange.parseRanges(range);
+    }
+
+    /**
+     * Envía una región del archivo como cuerpo de la respuesta. Las cabeceras de estado,
+     * tipo y rango deben estar establecidas antes de llamar a este método.
+     *
+     * @param path archivo a enviar
+     * @param inicio primer byte de la región
+     * @param longitud cantidad de bytes a enviar
+     */
+    public static void enviar(HttpServletRequest request, HttpServletResponse response,
+                              Path path, long inicio, long longitud) throws IOException {
+        response.setContentLengthLong(longitud);
+        if ("HEAD".equals(request.getMethod()) || longitud == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, inicio);
+            request.setAttribute(SENDFILE_END, inicio + longitud);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long posicion = inicio;
+            long fin = inicio + longitud;
+            while (posicion < fin) {
+                long transferidos = channel.transferTo(posicion, fin - posicion, salida);
+                if (transferidos <= 0) {
+                    throw new IOException("El archivo terminó antes de lo esperado: " + path.getFileName());
+                }
+                posicion += transferidos;
+            }
+        }
+    }
+
+    /**
+     * Envía completo el contenido original de un archivo guardado comprimido, descomprimiéndolo al vuelo.
+     * Se usa con los clientes que no aceptan el códec con el que está guardado.
+     *
+     * @param codificacion códec con el que se guardó el archivo
+     * @param tamanoOriginal tamaño descomprimido, o null si se desconoce (se envía sin Content-Length)
+     */
+    public static void enviarDescomprimido(HttpServletRequest request, HttpServletResponse response,
+                                           Path path, String codificacion, Long tamanoOriginal) throws IOException {
+        enviarDescomprimido(request, response, Files.newInputStream(path), codificacion, tamanoOriginal);
+    }
+
+    /**
+     * Igual que {@link #enviarDescomprimido(HttpServletRequest, HttpServletResponse, Path, String, Long)},
+     * leyendo los bytes almacenados de un flujo (por ejemplo, de un almacén remoto)
+     *
+     * @param contenido bytes almacenados; se cierra siempre
+     */
+    public static void enviarDescomprimido(HttpServletRequest request, HttpServletResponse response,
+                                           InputStream contenido, String codificacion, Long tamanoOriginal) throws IOException {
+        try (InputStream in = CompresionUtil.descomprimir(contenido, codificacion)) {
+            if (tamanoOriginal != null) {
+                response.setContentLengthLong(tamanoOriginal);
+            }
+            if (!"HEAD".equals(request.getMethod())) {
+                in.transferTo(response.getOutputStream());
+            }
+        }
+    }
+
+    /**
+     * Envía completo el contenido de un flujo como cuerpo de la respuesta, sin rangos
+     *
+     * @param contenido bytes a enviar; se cierra siempre
+     * @param longitud cantidad de bytes del flujo
+     */
+    public static void enviar(HttpServletRequest request, HttpServletResponse response,
+                              InputStream contenido, long longitud) throws IOException {
+        try (InputStream in = contenido) {
+            response.setContentLengthLong(longitud);
+            if (!"HEAD".equals(request.getMethod())) {
+                in.transferTo(response.getOutputStream());
+            }
+        }
+    }
+
+    // If-Range solo admite ETags fuertes o la fecha exacta de modificación
+    private static boolean coincideIfRange(HttpServletRequest request, String ifRange, String etag, long ultimaModificacion) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etag != null && etag.equals(ifRange.trim());
+        }
+        try {
+            long fecha = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return fecha / 1000 == ultimaModificacion / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
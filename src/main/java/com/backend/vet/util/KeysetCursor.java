@@ -0,0 +1,54 @@
+package com.backend.vet.util;
+
+import com.backend.vet.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * Clase utilitaria para codificar y decodificar los cursores opacos usados en la paginación por keyset.
+ * El cursor contiene los valores de las columnas de ordenamiento del último elemento entregado.
+ */
+public class KeysetCursor {
+
+    private static final String SEPARADOR = "|";
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Codifica los valores de ordenamiento en un token seguro para URLs
+     *
+     * @param valores valores de las columnas de ordenamiento, en orden
+     * @return token opaco del cursor
+     */
+    public static String encode(Object... valores) {
+        String plano = Arrays.stream(valores)
+                .map(String::valueOf)
+                .collect(Collectors.joining(SEPARADOR));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token de cursor en sus valores de ordenamiento
+     *
+     * @param cursor token recibido del cliente
+     * @param partesEsperadas número de valores que debe contener el cursor
+     * @return valores del cursor como texto
+     * @throws BadRequestException si el cursor no es válido
+     */
+    public static String[] decode(String cursor, int partesEsperadas) {
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = plano.split("\\" + SEPARADOR, -1);
+            if (partes.length != partesEsperadas) {
+                throw new BadRequestException("Cursor de paginación inválido");
+            }
+            return partes;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor de paginación inválido");
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.backend.vet.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lector incremental de cuerpos multipart/form-data.
+ * Recorre las partes en orden y entrega el contenido de cada una como un InputStream que termina en el
+ * siguiente delimitador, sin almacenar el cuerpo en memoria ni en archivos temporales.
+ */
+public class MultipartStreamParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimitador; // CRLF + "--" + boundary
+    private final byte[] buffer;
+    private int inicio; // siguiente byte sin consumir
+    private int fin;    // fin de los datos leídos
+    private boolean terminado;
+    private ContenidoParte contenidoActual;
+
+    /**
+     * @param in cuerpo de la petición
+     * @param boundary parámetro boundary del Content-Type
+     */
+    public MultipartStreamParser(InputStream in, String boundary) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("Boundary multipart inválido");
+        }
+        this.in = in;
+        this.delimitador = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[BUFFER_SIZE];
+        // El primer delimitador no va precedido de CRLF: se antepone uno para usar la misma búsqueda
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        fin = 2;
+        // El preámbulo se consume como si fuera el contenido de una parte
+        contenidoActual = new ContenidoParte();
+    }
+
+    /**
+     * Avanza a la siguiente parte, descartando lo que quede sin leer de la parte actual
+     * @return la siguiente parte, o null si no hay más
+     * @throws IOException si el cuerpo está truncado o mal formado
+     */
+    public Parte siguienteParte() throws IOException {
+        if (terminado) {
+            return null;
+        }
+        contenidoActual.descartar();
+
+        asegurar(2);
+        if (buffer[inicio] == '-' && buffer[inicio + 1] == '-') {
+            terminado = true;
+            return null;
+        }
+        if (buffer[inicio] != '\r' || buffer[inicio + 1] != '\n') {
+            throw new IOException("Cuerpo multipart inválido: delimitador mal formado");
+        }
+        inicio += 2;
+
+        Map<String, String> cabeceras = leerCabeceras();
+        contenidoActual = new ContenidoParte();
+        return new Parte(cabeceras, contenidoActual);
+    }
+
+    private Map<String, String> leerCabeceras() throws IOException {
+        Map<String, String> cabeceras = new HashMap<>();
+        while (true) {
+            int finLinea = buscarCrlf();
+            if (finLinea == inicio) {
+                inicio += 2;
+                return cabeceras;
+            }
+            String linea = new String(buffer, inicio, finLinea - inicio, StandardCharsets.UTF_8);
+            inicio = finLinea + 2;
+            int separador = linea.indexOf(':');
+            if (separador > 0) {
+                cabeceras.put(linea.substring(0, separador).trim().toLowerCase(Locale.ROOT),
+                        linea.substring(separador + 1).trim());
+            }
+        }
+    }
+
+    private int buscarCrlf() throws IOException {
+        int desde = inicio;
+        while (true) {
+            for (int i = desde; i < fin - 1; i++) {
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                    return i;
+                }
+            }
+            if (fin - inicio >= MAX_HEADER_SIZE) {
+                throw new IOException("Cabeceras de la parte multipart demasiado grandes");
+            }
+            desde = Math.max(inicio, fin - 1) - inicio;
+            if (!rellenar()) {
+                throw new IOException("Cuerpo multipart truncado");
+            }
+            desde += inicio;
+        }
+    }
+
+    private void asegurar(int bytes) throws IOException {
+        while (fin - inicio < bytes) {
+            if (!rellenar()) {
+                throw new IOException("Cuerpo multipart truncado");
+            }
+        }
+    }
+
+    // Mueve los datos pendientes al principio del buffer y lee más bytes; false si el flujo terminó
+    private boolean rellenar() throws IOException {
+        if (inicio > 0) {
+            System.arraycopy(buffer, inicio, buffer, 0, fin - inicio);
+            fin -= inicio;
+            inicio = 0;
+        }
+        if (fin == buffer.length) {
+            return true;
+        }
+        int leidos = in.read(buffer, fin, buffer.length - fin);
+        if (leidos < 0) {
+            return false;
+        }
+        fin += leidos;
+        return true;
+    }
+
+    private int buscarDelimitador() {
+        int ultimo = fin - delimitador.length;
+        for (int i = inicio; i <= ultimo; i++) {
+            if (buffer[i] != delimitador[0]) {
+                continue;
+            }
+            int j = 1;
+            while (j < delimitador.length && buffer[i + j] == delimitador[j]) {
+                j++;
+            }
+            if (j == delimitador.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parte de un cuerpo multipart con sus cabeceras y su contenido
+     */
+    public static class Parte {
+        private final Map<String, String> cabeceras;
+        private final InputStream contenido;
+        private final Map<String, String> disposicion;
+
+        private Parte(Map<String, String> cabeceras, InputStream contenido) {
+            this.cabeceras = cabeceras;
+            this.contenido = contenido;
+            this.disposicion = parametros(cabeceras.getOrDefault("content-disposition", ""));
+        }
+
+        /** Nombre del campo del formulario */
+        public String getNombre() {
+            return disposicion.get("name");
+        }
+
+        /** Nombre original del archivo, o null si la parte es un campo de texto */
+        public String getNombreArchivo() {
+            return disposicion.get("filename");
+        }
+
+        public String getContentType() {
+            return cabeceras.get("content-type");
+        }
+
+        public String getCabecera(String nombre) {
+            return cabeceras.get(nombre.toLowerCase(Locale.ROOT));
+        }
+
+        /** Contenido de la parte; solo es válido hasta pedir la siguiente parte */
+        public InputStream getContenido() {
+            return contenido;
+        }
+
+        private static Map<String, String> parametros(String valor) {
+            Map<String, String> parametros = new HashMap<>();
+            int i = valor.indexOf(';');
+            while (i >= 0 && i < valor.length()) {
+                int igual = valor.indexOf('=', i);
+                if (igual < 0) {
+                    break;
+                }
+                String nombre = valor.substring(i + 1, igual).trim().toLowerCase(Locale.ROOT);
+                int j = igual + 1;
+                StringBuilder dato = new StringBuilder();
+                if (j < valor.length() && valor.charAt(j) == '"') {
+                    j++;
+                    while (j < valor.length() && valor.charAt(j) != '"') {
+                        if (valor.charAt(j) == '\\' && j + 1 < valor.length()) {
+                            j++;
+                        }
+                        dato.append(valor.charAt(j++));
+                    }
+                    j++;
+                } else {
+                    while (j < valor.length() && valor.charAt(j) != ';') {
+                        dato.append(valor.charAt(j++));
+                    }
+                }
+                parametros.put(nombre, dato.toString().trim());
+                i = valor.indexOf(';', j);
+            }
+            return parametros;
+        }
+    }
+
+    private class ContenidoParte extends InputStream {
+
+        private boolean cerrado;
+
+        @Override
+        public int read() throws IOException {
+            byte[] uno = new byte[1];
+            int leidos = read(uno, 0, 1);
+            return leidos < 0 ? -1 : uno[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] destino, int desplazamiento, int longitud) throws IOException {
+            if (cerrado) {
+                return -1;
+            }
+            if (longitud == 0) {
+                return 0;
+            }
+            while (true) {
+                int posicion = buscarDelimitador();
+                int disponibles;
+                if (posicion >= 0) {
+                    disponibles = posicion - inicio;
+                    if (disponibles == 0) {
+                        inicio += delimitador.length;
+                        cerrado = true;
+                        return -1;
+                    }
+                } else {
+                    // Los últimos bytes podrían ser el comienzo de un delimitador
+                    disponibles = fin - inicio - (delimitador.length - 1);
+                }
+                if (disponibles > 0) {
+                    int n = Math.min(longitud, disponibles);
+                    System.arraycopy(buffer, inicio, destino, desplazamiento, n);
+                    inicio += n;
+                    return n;
+                }
+                if (!rellenar()) {
+                    throw new IOException("Cuerpo multipart truncado");
+                }
+            }
+        }
+
+        private void descartar() throws IOException {
+            byte[] descarte = new byte[8192];
+            while (read(descarte, 0, descarte.length) >= 0) {
+                // se descarta el resto de la parte
+            }
+        }
+    }
+}
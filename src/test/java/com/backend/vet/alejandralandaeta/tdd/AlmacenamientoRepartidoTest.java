@@ -0,0 +1,119 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.dto.MigracionAlmacenamientoDto;
+import com.backend.vet.exception.FileStorageException;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.service.FileStorageService.StoredFile;
+import com.backend.vet.service.MigracionAlmacenamientoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias TDD para el almacenamiento repartido de archivos clínicos y su migración
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para el almacenamiento repartido")
+class AlmacenamientoRepartidoTest {
+
+    @TempDir
+    Path directorio;
+
+    private FileStorageConfig config;
+    private FileStorageService fileStorageService;
+    private Path historiales;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: almacenamiento real en un directorio temporal
+        config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        fileStorageService = new FileStorageService(config);
+        fileStorageService.init();
+        historiales = config.getHistorialStoragePath();
+    }
+
+    @Test
+    @DisplayName("debería guardar los archivos nuevos en el árbol repartido ab/cd/<nombre>")
+    void deberiaGuardarEnArbolRepartido() {
+        // 1. PREPARACIÓN
+        byte[] contenido = "radiografía".getBytes(StandardCharsets.UTF_8);
+
+        // 2. LÓGICA DE LA PRUEBA
+        StoredFile guardado = fileStorageService.storeStream(new ByteArrayInputStream(contenido), "placa.png");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        Path ruta = fileStorageService.resolveExistingFile(guardado.getFileName());
+        assertEquals(fileStorageService.shardedFilePath(guardado.getFileName()), ruta);
+        assertEquals(historiales, ruta.getParent().getParent().getParent());
+        assertEquals(2, ruta.getParent().getFileName().toString().length());
+    }
+
+    @Test
+    @DisplayName("debería encontrar los archivos en ambas ubicaciones y eliminarlos de cualquiera de ellas")
+    void deberiaBuscarEnAmbasUbicaciones() throws Exception {
+        // 1. PREPARACIÓN: un archivo anterior a la migración sigue en el directorio plano
+        Path anterior = Files.writeString(historiales.resolve("uuid_informe.pdf"), "informe");
+
+        // 2. LÓGICA DE LA PRUEBA
+        Path encontrado = fileStorageService.resolveExistingFile("uuid_informe.pdf");
+        boolean eliminado = fileStorageService.deleteFile("uuid_informe.pdf");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(anterior, encontrado);
+        assertTrue(eliminado);
+        assertFalse(Files.exists(anterior));
+        assertThrows(FileStorageException.class, () -> fileStorageService.resolveExistingFile("uuid_informe.pdf"));
+        assertThrows(FileStorageException.class, () -> fileStorageService.resolveExistingFile("../application.yml"));
+    }
+
+    @Test
+    @DisplayName("debería migrar en segundo plano los archivos del directorio plano junto con sus miniaturas")
+    void deberiaMigrarArchivosExistentes() throws Exception {
+        // 1. PREPARACIÓN
+        Files.writeString(historiales.resolve("uuid1_ecografia.jpg"), "ecografía");
+        Files.writeString(historiales.resolve("uuid1_ecografia.jpg.thumb.jpg"), "miniatura");
+        Files.writeString(historiales.resolve("uuid2_analitica.csv"), "analítica");
+        StoredFile nuevo = fileStorageService.storeStream(
+                new ByteArrayInputStream("nuevo".getBytes(StandardCharsets.UTF_8)), "nuevo.txt");
+
+        MigracionAlmacenamientoService migracion = new MigracionAlmacenamientoService();
+        ReflectionTestUtils.setField(migracion, "fileStorageConfig", config);
+        ReflectionTestUtils.setField(migracion, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(migracion, "tamanoLote", 1);
+        ReflectionTestUtils.setField(migracion, "pausa", Duration.ZERO);
+
+        // 2. LÓGICA DE LA PRUEBA
+        migracion.iniciar();
+        MigracionAlmacenamientoDto estado = migracion.getEstado();
+        for (int intentos = 0; estado.isEnCurso() && intentos < 100; intentos++) {
+            Thread.sleep(50);
+            estado = migracion.getEstado();
+        }
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertFalse(estado.isEnCurso());
+        assertEquals(3, estado.getMigrados());
+        assertEquals(0, estado.getFallidos());
+        assertNotNull(estado.getFin());
+        try (var planos = Files.list(historiales)) {
+            assertEquals(0, planos.filter(Files::isRegularFile).count());
+        }
+        Path ecografia = fileStorageService.resolveExistingFile("uuid1_ecografia.jpg");
+        assertEquals(fileStorageService.shardedFilePath("uuid1_ecografia.jpg"), ecografia);
+        assertEquals("miniatura", Files.readString(fileStorageService.thumbnailPath("uuid1_ecografia.jpg")));
+        assertEquals("nuevo", Files.readString(fileStorageService.resolveExistingFile(nuevo.getFileName())));
+    }
+}
@@ -0,0 +1,215 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.controller.ArchivoClinicoController;
+import com.backend.vet.exception.FileStorageException;
+import com.backend.vet.service.ArchivoClinicoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para la descarga de archivos clínicos de ArchivoClinicoController
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para ArchivoClinicoController")
+class ArchivoClinicoControllerTest {
+
+    private static final String NOMBRE = "uuid_informe.pdf";
+    private static final String SHA256 = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final String CONTENIDO = "0123456789abcdefghij";
+
+    @Mock
+    private ArchivoClinicoService archivoClinicoService;
+
+    @InjectMocks
+    private ArchivoClinicoController archivoClinicoController;
+
+    @TempDir
+    Path directorio;
+
+    private ArchivoClinicoService.Descarga descarga;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Configuración común: archivo de 20 bytes registrado como PDF
+        Path archivo = Files.writeString(directorio.resolve(NOMBRE), CONTENIDO, StandardCharsets.US_ASCII);
+        descarga = new ArchivoClinicoService.Descarga(archivo, "informe.pdf", "application/pdf", SHA256,
+                CONTENIDO.length(), 1_700_000_000_000L);
+        request = new MockHttpServletRequest("GET", "/api/archivos-clinicos/download/" + NOMBRE);
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    @DisplayName("debería descargar el archivo completo con su tipo MIME, ETag y cabeceras de caché")
+    void deberiaDescargarArchivoCompleto() throws Exception {
+        // 1. PREPARACIÓN
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(descarga);
+
+        // 2. LÓGICA DE LA PRUEBA
+        ResponseEntity<?> resultado = archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNull(resultado);
+        assertEquals(200, response.getStatus());
+        assertEquals("application/pdf", response.getContentType());
+        assertEquals("\"" + SHA256 + "\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertTrue(response.getHeader(HttpHeaders.CACHE_CONTROL).contains("private"));
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+        assertEquals(CONTENIDO, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("debería responder 304 cuando el cliente ya tiene la misma versión")
+    void deberiaResponderNoModificado() throws Exception {
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(descarga);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + SHA256 + "\"");
+
+        ResponseEntity<?> resultado = archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        assertNull(resultado);
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("debería enviar un único rango con estado 206 y Content-Range")
+    void deberiaEnviarUnRango() throws Exception {
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(descarga);
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-");
+
+        archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("abcdefghij", response.getContentAsString());
+        assertEquals(10, response.getContentLengthLong());
+    }
+
+    @Test
+    @DisplayName("debería devolver las regiones cuando se piden varios rangos")
+    void deberiaDevolverVariosRangos() throws Exception {
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(descarga);
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,-3");
+
+        ResponseEntity<?> resultado = archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, resultado.getStatusCode());
+        List<?> regiones = (List<?>) resultado.getBody();
+        assertEquals(2, regiones.size());
+        assertEquals(17, ((ResourceRegion) regiones.get(1)).getPosition());
+    }
+
+    @Test
+    @DisplayName("debería ignorar el rango si If-Range no coincide con el ETag actual")
+    void deberiaIgnorarRangoConIfRangeDistinto() throws Exception {
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(descarga);
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"otro-hash\"");
+
+        archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENIDO, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("debería responder 416 si el rango está fuera del archivo")
+    void deberiaRechazarRangoNoSatisfacible() throws Exception {
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(descarga);
+        request.addHeader(HttpHeaders.RANGE, "bytes=50-60");
+
+        ResponseEntity<?> resultado = archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, resultado.getStatusCode());
+        assertEquals("bytes */20", resultado.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("debería enviar los bytes comprimidos con Content-Encoding si el cliente acepta gzip")
+    void deberiaEnviarArchivoComprimido() throws Exception {
+        // 1. PREPARACIÓN
+        byte[] comprimido = gzip(CONTENIDO);
+        Path archivo = Files.write(directorio.resolve("comprimido.pdf"), comprimido);
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(new ArchivoClinicoService.Descarga(archivo,
+                "informe.pdf", "application/pdf", SHA256, comprimido.length, 1_700_000_000_000L, "gzip",
+                (long) CONTENIDO.length()));
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8");
+
+        // 2. LÓGICA DE LA PRUEBA
+        archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertEquals("\"" + SHA256 + "-gzip\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals(comprimido.length, response.getContentLengthLong());
+        assertArrayEquals(comprimido, response.getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("debería descomprimir al vuelo si el cliente no acepta gzip")
+    void deberiaDescomprimirParaClientesSinGzip() throws Exception {
+        byte[] comprimido = gzip(CONTENIDO);
+        Path archivo = Files.write(directorio.resolve("comprimido.pdf"), comprimido);
+        when(archivoClinicoService.getDescarga(NOMBRE)).thenReturn(new ArchivoClinicoService.Descarga(archivo,
+                "informe.pdf", "application/pdf", SHA256, comprimido.length, 1_700_000_000_000L, "gzip",
+                (long) CONTENIDO.length()));
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity");
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-");
+
+        archivoClinicoController.downloadFile(NOMBRE, new ServletWebRequest(request, response));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("none", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"" + SHA256 + "\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals(CONTENIDO.length(), response.getContentLengthLong());
+        assertEquals(CONTENIDO, response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("debería responder 404 si el archivo no existe")
+    void deberiaResponderNoEncontrado() throws Exception {
+        when(archivoClinicoService.getDescarga("no-existe.pdf")).thenThrow(new FileStorageException("Archivo no encontrado"));
+
+        ResponseEntity<?> resultado = archivoClinicoController.downloadFile("no-existe.pdf", new ServletWebRequest(request, response));
+
+        assertEquals(HttpStatus.NOT_FOUND, resultado.getStatusCode());
+    }
+
+    private static byte[] gzip(String contenido) throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(contenido.getBytes(StandardCharsets.US_ASCII));
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,134 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.model.ArchivoClinico;
+import com.backend.vet.model.HistorialClinico;
+import com.backend.vet.repository.ArchivoClinicoRepository;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import com.backend.vet.service.ArchivoClinicoService;
+import com.backend.vet.service.BlobArchivoService;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.service.FileStorageService.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para la subida por streaming de archivos clínicos
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para la subida por streaming de ArchivoClinicoService")
+class ArchivoClinicoServiceStreamingTest {
+
+    private static final String BOUNDARY = "limite-radiografia";
+    private static final String SHA256 = "ab".repeat(32);
+
+    @Mock
+    private ArchivoClinicoRepository archivoClinicoRepository;
+
+    @Mock
+    private HistorialClinicoRepository historialClinicoRepository;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private BlobArchivoService blobArchivoService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private ArchivoClinicoService archivoClinicoService;
+
+    private StoredFile pendiente;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: almacenamiento por contenido y una radiografía ya escrita en el área temporal
+        ReflectionTestUtils.setField(archivoClinicoService, "contentAddressed", true);
+        pendiente = new StoredFile(SHA256 + "_rx.png", 4, SHA256, Path.of("staging", "rx"));
+        when(fileStorageService.stageBlob(any(InputStream.class), eq("rx.png"), eq("image/png"))).thenReturn(pendiente);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    @DisplayName("debería leer el cuerpo antes de abrir la transacción que inserta el registro")
+    void deberiaLeerElCuerpoSinTransaccion() {
+        // 1. PREPARACIÓN
+        HistorialClinico historial = new HistorialClinico();
+        historial.setId(12L);
+        when(historialClinicoRepository.findById(12L)).thenReturn(Optional.of(historial));
+        when(blobArchivoService.registrarPendiente(pendiente)).thenReturn(pendiente);
+        when(fileStorageService.getFileUrl(pendiente.getFileName())).thenReturn("/api/archivos/" + pendiente.getFileName());
+        when(archivoClinicoRepository.save(any(ArchivoClinico.class))).thenAnswer(invocation -> {
+            ArchivoClinico archivo = invocation.getArgument(0);
+            archivo.setId(30L);
+            return archivo;
+        });
+
+        // 2. LÓGICA DE LA PRUEBA
+        ArchivoClinicoDto resultado = archivoClinicoService.createArchivoClinico(12L, cuerpo(), BOUNDARY);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(30L, resultado.getId());
+        assertEquals(SHA256, resultado.getSha256());
+        InOrder orden = inOrder(fileStorageService, transactionManager, historialClinicoRepository, blobArchivoService);
+        orden.verify(fileStorageService).stageBlob(any(InputStream.class), eq("rx.png"), eq("image/png"));
+        orden.verify(transactionManager).getTransaction(any());
+        orden.verify(historialClinicoRepository).findById(12L);
+        orden.verify(blobArchivoService).registrarPendiente(pendiente);
+        orden.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("debería descartar el contenido leído si el historial no existe")
+    void deberiaDescartarContenidoSinHistorial() {
+        // 1. PREPARACIÓN
+        when(historialClinicoRepository.findById(99L)).thenReturn(Optional.empty());
+
+        // 2. LÓGICA DE LA PRUEBA
+        assertThrows(ResourceNotFoundException.class,
+                () -> archivoClinicoService.createArchivoClinico(99L, cuerpo(), BOUNDARY));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        verify(transactionManager).rollback(any());
+        verify(blobArchivoService, never()).registrarPendiente(any());
+        verify(fileStorageService).discardStaged(pendiente);
+        verify(archivoClinicoRepository, never()).save(any());
+    }
+
+    private static InputStream cuerpo() {
+        String cuerpo = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"rx.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n"
+                + "\u0089PNG\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        return new ByteArrayInputStream(cuerpo.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,124 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.model.Permission;
+import com.backend.vet.repository.PermissionRepository;
+import com.backend.vet.security.BitsetSecurityExpressionRoot;
+import com.backend.vet.security.PermissionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para la evaluación de permisos con mapas de bits
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para BitsetSecurityExpressionRoot")
+class BitsetSecurityExpressionRootTest {
+
+    @Mock
+    private PermissionRepository permissionRepository;
+
+    @Mock
+    private MethodSecurityExpressionOperations delegado;
+
+    @InjectMocks
+    private PermissionRegistry permissionRegistry;
+
+    private Authentication veterinario;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración del catálogo: tres permisos, el veterinario autenticado tiene dos de ellos
+        when(permissionRepository.findAll()).thenReturn(List.of(
+                permiso(1L, "CITA_READ"), permiso(2L, "CITA_CREATE"), permiso(70L, "USUARIO_DELETE")));
+        permissionRegistry.recargar();
+
+        veterinario = new UsernamePasswordAuthenticationToken("dr.garcia", null, List.of(
+                new SimpleGrantedAuthority("CITA_READ"),
+                new SimpleGrantedAuthority("CITA_CREATE"),
+                new SimpleGrantedAuthority("ROLE_VETERINARIO")));
+    }
+
+    @Test
+    @DisplayName("debería resolver hasAuthority con el mapa de bits de las authorities del usuario")
+    void deberiaResolverPermisosConMapaDeBits() {
+        // 1. PREPARACIÓN
+        BitsetSecurityExpressionRoot root = new BitsetSecurityExpressionRoot(delegado, () -> veterinario, permissionRegistry);
+
+        // 2. LÓGICA DE LA PRUEBA
+        boolean puedeLeer = root.hasAuthority("CITA_READ");
+        boolean puedeCrear = root.hasAuthority("CITA_CREATE");
+        boolean puedeEliminarUsuarios = root.hasAuthority("USUARIO_DELETE");
+        boolean alguno = root.hasAnyAuthority("USUARIO_DELETE", "CITA_CREATE");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(puedeLeer);
+        assertTrue(puedeCrear);
+        assertFalse(puedeEliminarUsuarios);
+        assertTrue(alguno);
+        verifyNoInteractions(delegado);
+    }
+
+    @Test
+    @DisplayName("debería negar un permiso revocado al usuario aunque otro usuario con el mismo rol lo conserve")
+    void deberiaUsarLasAuthoritiesDelUsuario() {
+        // 1. PREPARACIÓN
+        // Mismo rol, pero al usuario se le revocó CITA_CREATE
+        Authentication revocado = new UsernamePasswordAuthenticationToken("dr.lopez", null, List.of(
+                new SimpleGrantedAuthority("CITA_READ"),
+                new SimpleGrantedAuthority("ROLE_VETERINARIO")));
+        new BitsetSecurityExpressionRoot(delegado, () -> veterinario, permissionRegistry).hasAuthority("CITA_CREATE");
+        BitsetSecurityExpressionRoot root = new BitsetSecurityExpressionRoot(delegado, () -> revocado, permissionRegistry);
+
+        // 2. LÓGICA DE LA PRUEBA
+        boolean puedeLeer = root.hasAuthority("CITA_READ");
+        boolean puedeCrear = root.hasAuthority("CITA_CREATE");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(puedeLeer);
+        assertFalse(puedeCrear);
+        verifyNoInteractions(delegado);
+    }
+
+    @Test
+    @DisplayName("debería delegar en la evaluación estándar cuando el permiso no está en el catálogo o no hay usuario")
+    void deberiaDelegarPermisosFueraDelCatalogo() {
+        // 1. PREPARACIÓN
+        Authentication conPermisoNuevo = new UsernamePasswordAuthenticationToken("dr.garcia", null,
+                List.of(new SimpleGrantedAuthority("REPORTE_EXPORT")));
+        BitsetSecurityExpressionRoot root = new BitsetSecurityExpressionRoot(delegado, () -> conPermisoNuevo, permissionRegistry);
+        BitsetSecurityExpressionRoot sinUsuario = new BitsetSecurityExpressionRoot(delegado, () -> null, permissionRegistry);
+        when(delegado.hasAuthority("REPORTE_EXPORT")).thenReturn(true);
+
+        // 2. LÓGICA DE LA PRUEBA
+        boolean puedeExportar = root.hasAuthority("REPORTE_EXPORT");
+        boolean puedeLeer = sinUsuario.hasAuthority("CITA_READ");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(puedeExportar);
+        assertFalse(puedeLeer);
+        verify(delegado).hasAuthority("REPORTE_EXPORT");
+        verify(delegado).hasAuthority("CITA_READ");
+    }
+
+    private Permission permiso(Long id, String nombre) {
+        Permission permission = new Permission(nombre);
+        permission.setId(id);
+        return permission;
+    }
+}
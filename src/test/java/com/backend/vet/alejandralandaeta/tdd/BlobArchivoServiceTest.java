@@ -0,0 +1,204 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.model.BlobArchivo;
+import com.backend.vet.repository.BlobArchivoRepository;
+import com.backend.vet.service.BlobArchivoService;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.service.FileStorageService.StoredFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para el almacén de contenido deduplicado
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para BlobArchivoService")
+class BlobArchivoServiceTest {
+
+    private static final byte[] CERTIFICADO = "Certificado de vacunación antirrábica".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private BlobArchivoRepository blobArchivoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directorio;
+
+    private FileStorageService fileStorageService;
+    private BlobArchivoService blobArchivoService;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: almacenamiento real en un directorio temporal
+        FileStorageConfig config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        fileStorageService = new FileStorageService(config);
+        fileStorageService.init();
+
+        blobArchivoService = new BlobArchivoService();
+        ReflectionTestUtils.setField(blobArchivoService, "blobArchivoRepository", blobArchivoRepository);
+        ReflectionTestUtils.setField(blobArchivoService, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(blobArchivoService, "transactionManager", transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("debería guardar una sola vez el mismo contenido subido para dos mascotas")
+    void deberiaDeduplicarContenidoRepetido() throws Exception {
+        // 2. LÓGICA DE LA PRUEBA
+        StoredFile primero = blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "certificado.pdf");
+        StoredFile segundo = blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "vacuna luna.pdf");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        String sha256 = primero.getSha256();
+        assertEquals(sha256, segundo.getSha256());
+        assertEquals(sha256 + "_certificado.pdf", primero.getFileName());
+        assertEquals(sha256 + "_vacuna luna.pdf", segundo.getFileName());
+        Path blob = fileStorageService.blobPath(sha256);
+        assertEquals(directorio.resolve("blobs").resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4))
+                .resolve(sha256).toAbsolutePath(), blob);
+        assertArrayEquals(CERTIFICADO, Files.readAllBytes(blob));
+        try (var pendientes = Files.list(directorio.resolve("blobs").resolve(".tmp"))) {
+            assertEquals(0, pendientes.count());
+        }
+        verify(blobArchivoRepository, times(2)).agregarReferencia(sha256, CERTIFICADO.length, null);
+    }
+
+    @Test
+    @DisplayName("debería adjuntar contenido conocido sin transferirlo")
+    void deberiaAdjuntarContenidoExistente() {
+        // 1. PREPARACIÓN
+        String sha256 = blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "a.pdf").getSha256();
+        when(blobArchivoRepository.findBySha256ForUpdate(sha256)).thenReturn(Optional.of(blob(sha256, 1)));
+
+        // 2. LÓGICA DE LA PRUEBA
+        StoredFile adjunto = blobArchivoService.adjuntar(sha256, "copia.pdf");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(sha256 + "_copia.pdf", adjunto.getFileName());
+        assertEquals(CERTIFICADO.length, adjunto.getSize());
+        verify(blobArchivoRepository, times(2)).agregarReferencia(sha256, CERTIFICADO.length, null);
+    }
+
+    @Test
+    @DisplayName("debería rechazar adjuntar un hash que no está en el almacén")
+    void deberiaRechazarHashDesconocido() {
+        String sha256 = "a".repeat(64);
+        when(blobArchivoRepository.findBySha256ForUpdate(sha256)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> blobArchivoService.adjuntar(sha256, "x.pdf"));
+        verify(blobArchivoRepository, never()).agregarReferencia(anyString(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("debería conservar el contenido mientras queden referencias")
+    void deberiaConservarContenidoConReferencias() {
+        String sha256 = blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "a.pdf").getSha256();
+        when(blobArchivoRepository.findBySha256ForUpdate(sha256)).thenReturn(Optional.of(blob(sha256, 2)));
+
+        blobArchivoService.liberar(sha256);
+
+        assertTrue(fileStorageService.blobExists(sha256));
+        verify(blobArchivoRepository, never()).delete(any());
+    }
+
+    @Test
+    @DisplayName("debería eliminar el contenido al liberar su última referencia")
+    void deberiaEliminarContenidoSinReferencias() {
+        String sha256 = blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "a.pdf").getSha256();
+        BlobArchivo blob = blob(sha256, 1);
+        when(blobArchivoRepository.findBySha256ForUpdate(sha256)).thenReturn(Optional.of(blob));
+
+        blobArchivoService.liberar(sha256);
+
+        assertEquals(0, blob.getReferencias());
+        assertFalse(fileStorageService.blobExists(sha256));
+        verify(blobArchivoRepository).delete(blob);
+    }
+
+    @Test
+    @DisplayName("debería retirar el contenido nuevo si la transacción que lo subió se revierte")
+    void deberiaRetirarContenidoAlRevertir() {
+        // 1. PREPARACIÓN
+        TransactionSynchronizationManager.initSynchronization();
+        String sha256 = blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "a.pdf").getSha256();
+        // La fila insertada se revirtió: la que se bloquea es la recreada sin referencias
+        BlobArchivo recreada = blob(sha256, 0);
+        when(blobArchivoRepository.findBySha256ForUpdate(sha256)).thenReturn(Optional.of(recreada));
+
+        // 2. LÓGICA DE LA PRUEBA
+        finalizarTransaccion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertFalse(fileStorageService.blobExists(sha256));
+        verify(blobArchivoRepository).reservarFila(sha256, CERTIFICADO.length);
+        verify(blobArchivoRepository).delete(recreada);
+    }
+
+    @Test
+    @DisplayName("debería conservar el contenido tras revertir si otra subida lo registró entretanto o ya existía")
+    void deberiaConservarContenidoRegistradoPorOtraSubida() {
+        // 1. PREPARACIÓN
+        TransactionSynchronizationManager.initSynchronization();
+        String sha256 = blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "a.pdf").getSha256();
+        when(blobArchivoRepository.findBySha256ForUpdate(sha256)).thenReturn(Optional.of(blob(sha256, 1)));
+        // El mismo contenido otra vez: ya está en el almacén, así que no registra otra limpieza
+        blobArchivoService.almacenar(new ByteArrayInputStream(CERTIFICADO), "b.pdf");
+
+        // 2. LÓGICA DE LA PRUEBA
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        finalizarTransaccion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(1, sincronizaciones.size());
+        assertTrue(fileStorageService.blobExists(sha256));
+        verify(blobArchivoRepository, never()).delete(any());
+    }
+
+    private static void finalizarTransaccion(int estado) {
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+
+    private static BlobArchivo blob(String sha256, int referencias) {
+        BlobArchivo blob = new BlobArchivo();
+        blob.setSha256(sha256);
+        blob.setTamano((long) CERTIFICADO.length);
+        blob.setReferencias(referencias);
+        return blob;
+    }
+}
@@ -0,0 +1,240 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.model.ArchivoClinico;
+import com.backend.vet.repository.ArchivoClinicoRepository;
+import com.backend.vet.repository.BlobArchivoRepository;
+import com.backend.vet.service.ConciliacionAlmacenamientoService;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.service.FileStorageService.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias TDD para la conciliación entre el almacenamiento y la base de datos
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para ConciliacionAlmacenamientoService")
+class ConciliacionAlmacenamientoServiceTest {
+
+    private static final String HASH_REGISTRADO = "a".repeat(64);
+    private static final String HASH_HUERFANO = "b".repeat(64);
+
+    @TempDir
+    Path directorio;
+
+    private FileStorageConfig config;
+    private FileStorageService fileStorageService;
+    private ArchivoClinicoRepository archivoClinicoRepository;
+    private BlobArchivoRepository blobArchivoRepository;
+    private ConciliacionAlmacenamientoService conciliacionService;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: almacenamiento real en un directorio temporal y repositorios simulados
+        config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        fileStorageService = new FileStorageService(config);
+        fileStorageService.init();
+
+        archivoClinicoRepository = mock(ArchivoClinicoRepository.class);
+        blobArchivoRepository = mock(BlobArchivoRepository.class);
+        when(archivoClinicoRepository.findUrlsRegistradas(anyCollection()))
+                .thenAnswer(inv -> registrados(inv.getArgument(0), fileStorageService.getFileUrl("registrado.pdf")));
+        when(blobArchivoRepository.findHashesRegistrados(anyCollection()))
+                .thenAnswer(inv -> registrados(inv.getArgument(0), HASH_REGISTRADO));
+        when(archivoClinicoRepository.findHashesRegistrados(anyCollection())).thenReturn(List.of());
+
+        conciliacionService = nuevoServicio("quarantine", 2);
+    }
+
+    @Test
+    @DisplayName("debería mover a cuarentena solo los archivos antiguos sin registro, recorriendo por lotes")
+    void deberiaMoverHuerfanosACuarentena() throws Exception {
+        // 1. PREPARACIÓN
+        Path historiales = config.getHistorialStoragePath();
+        Path registrado = antiguo(Files.writeString(historiales.resolve("registrado.pdf"), "registrado"));
+        Path huerfano = antiguo(Files.writeString(historiales.resolve("huerfano.pdf"), "huerfano"));
+        Path miniatura = antiguo(Files.writeString(historiales.resolve("huerfano.pdf.thumb.jpg"), "mini"));
+        Path reciente = Files.writeString(historiales.resolve("reciente.pdf"), "subida en curso");
+        Path blobRegistrado = antiguo(blob(HASH_REGISTRADO));
+        Path blobHuerfano = antiguo(blob(HASH_HUERFANO));
+        Path pendiente = antiguo(Files.writeString(
+                Files.createDirectories(config.getBlobStoragePath().resolve(".tmp")).resolve("abandonado"), "temporal"));
+
+        // 2. LÓGICA DE LA PRUEBA: el lote es de 2 archivos, así que la pasada necesita varias ejecuciones
+        int ejecuciones = 0;
+        while (conciliacionService.conciliarArchivos() > 0) {
+            ejecuciones++;
+        }
+
+        // 3. VERIFICACIÓN CON ASSERT
+        // Temporales y blob "aa" en la primera; blob "bb" y el directorio plano completo en la segunda
+        assertEquals(2, ejecuciones);
+        assertEquals(1, conciliacionService.getPasadasCompletadas());
+        assertTrue(Files.exists(registrado));
+        assertTrue(Files.exists(reciente));
+        assertTrue(Files.exists(blobRegistrado));
+        assertFalse(Files.exists(huerfano));
+        assertFalse(Files.exists(miniatura));
+        assertFalse(Files.exists(blobHuerfano));
+        assertFalse(Files.exists(pendiente));
+
+        Path cuarentena = config.getQuarantinePath();
+        assertTrue(Files.exists(cuarentena.resolve(directorio.relativize(huerfano))));
+        assertTrue(Files.exists(cuarentena.resolve(directorio.relativize(miniatura))));
+        assertTrue(Files.exists(cuarentena.resolve(directorio.relativize(blobHuerfano))));
+        assertEquals(4, conciliacionService.getHuerfanos());
+        assertEquals(0.0, conciliacionService.getProgreso());
+    }
+
+    @Test
+    @DisplayName("debería avanzar por directorios de reparto y no volver a revisar los ya recorridos en la pasada")
+    void deberiaAvanzarPorDirectoriosDeReparto() throws Exception {
+        // 1. PREPARACIÓN
+        conciliacionService = nuevoServicio("quarantine", 1);
+        List<Path> huerfanos = List.of(
+                repartido("uno.pdf"), repartido("dos.pdf"), repartido("tres.pdf"));
+
+        // 2. LÓGICA DE LA PRUEBA
+        int primera = conciliacionService.conciliarArchivos();
+        // Un archivo nuevo en un directorio ya revisado espera a la pasada siguiente
+        Path revisado = huerfanos.stream().filter(h -> !Files.exists(h)).findFirst().orElseThrow();
+        Path tardio = antiguo(Files.writeString(revisado.resolveSibling("tardio.pdf"), "tardío"));
+        int segunda = conciliacionService.conciliarArchivos();
+        int tercera = conciliacionService.conciliarArchivos();
+        int cierre = conciliacionService.conciliarArchivos();
+        boolean tardioTrasLaPasada = Files.exists(tardio);
+        while (conciliacionService.conciliarArchivos() > 0) {
+            // siguiente pasada
+        }
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(List.of(1, 1, 1, 0), List.of(primera, segunda, tercera, cierre));
+        assertTrue(huerfanos.stream().noneMatch(Files::exists));
+        assertTrue(tardioTrasLaPasada);
+        assertFalse(Files.exists(tardio));
+        assertEquals(2, conciliacionService.getPasadasCompletadas());
+    }
+
+    @Test
+    @DisplayName("debería contar los bytes recuperados al eliminar y al purgar la cuarentena")
+    void deberiaContarBytesRecuperados() throws Exception {
+        // 1. PREPARACIÓN
+        conciliacionService = nuevoServicio("delete", 100);
+        antiguo(Files.write(config.getHistorialStoragePath().resolve("huerfano.txt"), new byte[1000]));
+        Path enCuarentena = config.getQuarantinePath().resolve("historiales").resolve("viejo.txt");
+        Files.createDirectories(enCuarentena.getParent());
+        Files.write(enCuarentena, new byte[500]);
+        Files.setLastModifiedTime(enCuarentena, FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+
+        // 2. LÓGICA DE LA PRUEBA
+        conciliacionService.conciliarArchivos();
+        conciliacionService.purgarCuarentena();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(1, conciliacionService.getHuerfanos());
+        assertEquals(1500, conciliacionService.getBytesRecuperados());
+        assertFalse(Files.exists(enCuarentena));
+        assertFalse(Files.exists(enCuarentena.getParent()));
+    }
+
+    @Test
+    @DisplayName("debería detectar los registros cuyo archivo ya no existe")
+    void deberiaDetectarRegistrosSinArchivo() throws Exception {
+        // 1. PREPARACIÓN
+        Files.writeString(config.getHistorialStoragePath().resolve("presente.pdf"), "presente");
+        ArchivoClinico presente = new ArchivoClinico();
+        presente.setId(1L);
+        presente.setUrl(fileStorageService.getFileUrl("presente.pdf"));
+        ArchivoClinico perdido = new ArchivoClinico();
+        perdido.setId(2L);
+        perdido.setUrl(fileStorageService.getFileUrl("perdido.pdf"));
+        when(archivoClinicoRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(presente, perdido));
+        when(archivoClinicoRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // 2. LÓGICA DE LA PRUEBA
+        int revisados = conciliacionService.revisarRegistros();
+        int siguiente = conciliacionService.revisarRegistros();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(2, revisados);
+        assertEquals(0, siguiente);
+        assertEquals(1, conciliacionService.getRegistrosSinArchivo());
+    }
+
+    @Test
+    @DisplayName("no debería retirar el contenido de una subida reanudable antigua que aún no tiene fila")
+    void noDeberiaRetirarContenidoRecienPromovido() throws Exception {
+        // 1. PREPARACIÓN: la subida empezó hace más de la antigüedad mínima y su fila no se ha confirmado
+        Path parcial = antiguo(Files.writeString(directorio.resolve("sesion.part"), "ecografía completa"));
+        StoredFile pendiente = fileStorageService.stageExistingFile(parcial, "ecografia.mp4", "video/mp4");
+        assertTrue(fileStorageService.promoteBlob(pendiente));
+
+        // 2. LÓGICA DE LA PRUEBA
+        while (conciliacionService.conciliarArchivos() > 0) {
+            // se recorre la pasada completa
+        }
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(fileStorageService.blobExists(pendiente.getSha256()));
+        assertEquals(0, conciliacionService.getHuerfanos());
+    }
+
+    private ConciliacionAlmacenamientoService nuevoServicio(String modo, int tamanoLote) {
+        ConciliacionAlmacenamientoService servicio = new ConciliacionAlmacenamientoService();
+        ReflectionTestUtils.setField(servicio, "fileStorageConfig", config);
+        ReflectionTestUtils.setField(servicio, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(servicio, "archivoClinicoRepository", archivoClinicoRepository);
+        ReflectionTestUtils.setField(servicio, "blobArchivoRepository", blobArchivoRepository);
+        ReflectionTestUtils.setField(servicio, "tamanoLote", tamanoLote);
+        ReflectionTestUtils.setField(servicio, "antiguedadMinima", Duration.ofHours(1));
+        ReflectionTestUtils.setField(servicio, "modoConfigurado", modo);
+        ReflectionTestUtils.setField(servicio, "retencionCuarentena", Duration.ofDays(7));
+        servicio.init();
+        return servicio;
+    }
+
+    private Path blob(String hash) throws Exception {
+        Path ruta = fileStorageService.blobPath(hash);
+        Files.createDirectories(ruta.getParent());
+        return Files.writeString(ruta, "contenido " + hash.charAt(0));
+    }
+
+    private Path repartido(String nombre) throws Exception {
+        Path ruta = fileStorageService.shardedFilePath(nombre);
+        Files.createDirectories(ruta.getParent());
+        return antiguo(Files.writeString(ruta, nombre));
+    }
+
+    private static Path antiguo(Path ruta) throws Exception {
+        Files.setLastModifiedTime(ruta, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        return ruta;
+    }
+
+    private static List<String> registrados(Collection<String> consultados, String registrado) {
+        return consultados.contains(registrado) ? List.of(registrado) : List.of();
+    }
+}
@@ -0,0 +1,128 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.service.FileStorageService.StoredFile;
+import com.backend.vet.util.CompresionUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias TDD para la compresión en disco de los archivos clínicos
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para la compresión de FileStorageService")
+class FileStorageCompresionTest {
+
+    @TempDir
+    Path directorio;
+
+    private FileStorageConfig config;
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: almacenamiento real en un directorio temporal con los tipos comprimibles por defecto
+        config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        fileStorageService = new FileStorageService(config);
+        fileStorageService.init();
+    }
+
+    @Test
+    @DisplayName("debería guardar comprimido un CSV de laboratorio y devolver el original al leerlo")
+    void deberiaComprimirResultadosDeLaboratorio() throws Exception {
+        // 1. PREPARACIÓN
+        byte[] csv = "fecha,parametro,valor\n2024-03-01,hematocrito,45\n".repeat(500).getBytes(StandardCharsets.UTF_8);
+
+        // 2. LÓGICA DE LA PRUEBA
+        StoredFile guardado = fileStorageService.storeStream(new ByteArrayInputStream(csv), "laboratorio.csv",
+                "text/csv; charset=utf-8");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        Path ruta = fileStorageService.resolveExistingFile(guardado.getFileName());
+        assertEquals(CompresionUtil.GZIP, guardado.getEncoding());
+        assertEquals(csv.length, guardado.getSize());
+        assertEquals(sha256(csv), guardado.getSha256());
+        assertTrue(Files.size(ruta) < csv.length / 10);
+        try (InputStream in = fileStorageService.openStream(ruta, guardado.getEncoding())) {
+            assertArrayEquals(csv, in.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("debería guardar sin comprimir el contenido que apenas se reduce")
+    void deberiaDescartarCompresionSinAhorro() throws Exception {
+        // 1. PREPARACIÓN: un PDF escaneado se comporta como datos aleatorios
+        byte[] escaneado = new byte[32 * 1024];
+        new Random(7).nextBytes(escaneado);
+
+        // 2. LÓGICA DE LA PRUEBA
+        StoredFile guardado = fileStorageService.storeStream(new ByteArrayInputStream(escaneado), "escaneo.pdf",
+                "application/pdf");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNull(guardado.getEncoding());
+        assertArrayEquals(escaneado, Files.readAllBytes(fileStorageService.resolveExistingFile(guardado.getFileName())));
+    }
+
+    @Test
+    @DisplayName("debería comprimir al incorporar una subida reanudable completa")
+    void deberiaComprimirArchivoExistente() throws Exception {
+        byte[] informe = "Informe de necropsia: sin hallazgos relevantes.\n".repeat(300).getBytes(StandardCharsets.UTF_8);
+        Path parcial = Files.write(directorio.resolve("sesion.part"), informe);
+
+        StoredFile guardado = fileStorageService.storeExistingFile(parcial, "necropsia.txt", "text/plain");
+
+        assertFalse(Files.exists(parcial));
+        assertEquals(CompresionUtil.GZIP, guardado.getEncoding());
+        assertEquals(sha256(informe), guardado.getSha256());
+        Path ruta = fileStorageService.resolveExistingFile(guardado.getFileName());
+        try (InputStream in = fileStorageService.openStream(ruta, guardado.getEncoding())) {
+            assertArrayEquals(informe, in.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("debería guardar las imágenes y los tipos desconocidos tal cual")
+    void deberiaIgnorarTiposNoComprimibles() {
+        assertTrue(fileStorageService.isCompressible("TEXT/PLAIN"));
+        assertTrue(fileStorageService.isCompressible("application/json"));
+        assertFalse(fileStorageService.isCompressible("image/png"));
+        assertFalse(fileStorageService.isCompressible(null));
+
+        StoredFile guardado = fileStorageService.storeStream(
+                new ByteArrayInputStream("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".getBytes(StandardCharsets.US_ASCII)),
+                "placa.png", "image/png");
+
+        assertNull(guardado.getEncoding());
+    }
+
+    @Test
+    @DisplayName("debería interpretar Accept-Encoding respetando los valores q")
+    void deberiaInterpretarAcceptEncoding() {
+        assertTrue(CompresionUtil.aceptaCodificacion("gzip, deflate, br", "gzip"));
+        assertTrue(CompresionUtil.aceptaCodificacion("*", "gzip"));
+        assertFalse(CompresionUtil.aceptaCodificacion("gzip;q=0, *", "gzip"));
+        assertFalse(CompresionUtil.aceptaCodificacion("identity", "gzip"));
+        assertFalse(CompresionUtil.aceptaCodificacion(null, "gzip"));
+    }
+
+    private static String sha256(byte[] contenido) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido));
+    }
+}
@@ -0,0 +1,104 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.dto.PaginaDto;
+import com.backend.vet.dto.ResultadoBusquedaHistorialDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import com.backend.vet.service.HistorialClinicoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para la búsqueda de texto en HistorialClinicoService
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para la búsqueda en el historial clínico")
+class HistorialClinicoBusquedaTest {
+
+    @Mock
+    private HistorialClinicoRepository historialClinicoRepository;
+
+    @InjectMocks
+    private HistorialClinicoService historialClinicoService;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: límites por defecto de application.yml
+        ReflectionTestUtils.setField(historialClinicoService, "busquedaPageSizeMax", 50);
+        ReflectionTestUtils.setField(historialClinicoService, "busquedaLongitudMaxima", 200);
+    }
+
+    @Test
+    @DisplayName("debería devolver los resultados con los fragmentos escapados y resaltados solo en los campos que coinciden")
+    void deberiaDevolverFragmentosResaltados() {
+        // 1. PREPARACIÓN
+        LocalDateTime fecha = LocalDateTime.of(2023, 9, 14, 10, 30);
+        Object[] fila = {42L, Timestamp.valueOf(fecha), 7L, "Luna", 0.35f,
+                "Reacción a la \u0001vacuna\u0002 <b>antirrábica</b>", null, "Control tras la \u0001vacunación\u0002"};
+        when(historialClinicoRepository.contarBusquedaTexto("vacuna")).thenReturn(1L);
+        when(historialClinicoRepository.buscarTexto(eq("vacuna"), anyString(), eq(20), eq(0L)))
+                .thenReturn(List.<Object[]>of(fila));
+
+        // 2. LÓGICA DE LA PRUEBA
+        PaginaDto<ResultadoBusquedaHistorialDto> pagina = historialClinicoService.buscarHistorialClinico("  vacuna ", 0, 20);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(1, pagina.getTotal());
+        assertFalse(pagina.isTieneMas());
+        ResultadoBusquedaHistorialDto resultado = pagina.getContenido().get(0);
+        assertEquals(42L, resultado.getId());
+        assertEquals(fecha, resultado.getFecha());
+        assertEquals("Luna", resultado.getMascotaNombre());
+        assertEquals(0.35, resultado.getRelevancia(), 0.0001);
+        assertEquals(List.of("diagnostico", "observaciones"), List.copyOf(resultado.getFragmentos().keySet()));
+        assertEquals("Reacción a la <mark>vacuna</mark> &lt;b&gt;antirrábica&lt;/b&gt;",
+                resultado.getFragmentos().get("diagnostico"));
+        assertEquals("Control tras la <mark>vacunación</mark>", resultado.getFragmentos().get("observaciones"));
+    }
+
+    @Test
+    @DisplayName("debería paginar limitando el tamaño y sin consultar filas más allá del total")
+    void deberiaPaginarLimitandoTamano() {
+        // 1. PREPARACIÓN
+        when(historialClinicoRepository.contarBusquedaTexto("otitis")).thenReturn(120L);
+        when(historialClinicoRepository.buscarTexto(eq("otitis"), anyString(), eq(50), eq(50L)))
+                .thenReturn(List.of());
+
+        // 2. LÓGICA DE LA PRUEBA
+        PaginaDto<ResultadoBusquedaHistorialDto> segunda = historialClinicoService.buscarHistorialClinico("otitis", 1, 500);
+        PaginaDto<ResultadoBusquedaHistorialDto> fueraDeRango = historialClinicoService.buscarHistorialClinico("otitis", 3, 50);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(50, segunda.getTamano());
+        assertTrue(segunda.isTieneMas());
+        assertTrue(fueraDeRango.getContenido().isEmpty());
+        assertFalse(fueraDeRango.isTieneMas());
+        verify(historialClinicoRepository, never()).buscarTexto(anyString(), anyString(), anyInt(), eq(150L));
+    }
+
+    @Test
+    @DisplayName("debería rechazar búsquedas vacías, demasiado largas o con página negativa")
+    void deberiaRechazarBusquedasInvalidas() {
+        // 2. LÓGICA DE LA PRUEBA y 3. VERIFICACIÓN CON ASSERT
+        assertThrows(BadRequestException.class, () -> historialClinicoService.buscarHistorialClinico("  ", 0, 20));
+        assertThrows(BadRequestException.class, () -> historialClinicoService.buscarHistorialClinico("a".repeat(201), 0, 20));
+        assertThrows(BadRequestException.class, () -> historialClinicoService.buscarHistorialClinico("otitis", -1, 20));
+        verifyNoInteractions(historialClinicoRepository);
+    }
+}
@@ -0,0 +1,233 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.dto.LineaTiempoHistorialDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.model.Cliente;
+import com.backend.vet.model.HistorialClinico;
+import com.backend.vet.model.Mascota;
+import com.backend.vet.model.Role;
+import com.backend.vet.model.Usuario;
+import com.backend.vet.service.DashboardCounters;
+import com.backend.vet.service.HistorialClinicoService;
+import com.backend.vet.util.KeysetCursor;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas TDD para la línea de tiempo paginada del historial clínico de una mascota
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        // Sin ventana las novedades no repiten entradas; la ventana se prueba por separado
+        "app.historial.linea-tiempo.ventana-novedades=0s"
+})
+@Import(HistorialClinicoService.class)
+@DisplayName("Pruebas de la línea de tiempo del historial clínico")
+class HistorialClinicoLineaTiempoTest {
+
+    private static final int ENTRADAS = 5;
+
+    @Autowired
+    private HistorialClinicoService historialClinicoService;
+
+    @MockitoBean
+    private DashboardCounters dashboardCounters;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Mascota mascota;
+    private Usuario veterinario;
+    private LocalDateTime base;
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: 5 entradas de una mascota, dos de ellas en la misma fecha, y una de otra mascota
+        base = LocalDateTime.of(2023, 10, 1, 9, 0);
+
+        Role rol = new Role();
+        rol.setNombre("VETERINARIO");
+        entityManager.persist(rol);
+
+        veterinario = new Usuario();
+        veterinario.setNombreUsuario("dr.garcia");
+        veterinario.setCorreo("garcia@vet.com");
+        veterinario.setContrasenaHash("hash");
+        veterinario.setRol(rol);
+        entityManager.persist(veterinario);
+
+        Cliente cliente = new Cliente();
+        cliente.setNombre("Juan");
+        cliente.setApellido("Pérez");
+        entityManager.persist(cliente);
+
+        mascota = nuevaMascota("Luna", cliente);
+        Mascota otra = nuevaMascota("Rex", cliente);
+
+        ids = new ArrayList<>();
+        for (int i = 0; i < ENTRADAS; i++) {
+            // Las entradas 2 y 3 comparten fecha: el id desempata el orden
+            ids.add(nuevaEntrada(mascota, base.plusDays(i == 3 ? 2 : i)).getId());
+        }
+        nuevaEntrada(otra, base.plusDays(10));
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("debería recorrer la línea de tiempo de la más reciente a la más antigua con una sentencia por página")
+    void deberiaRecorrerLineaTiempoPorPaginas() {
+        // 2. LÓGICA DE LA PRUEBA
+        LineaTiempoHistorialDto primera = historialClinicoService.getLineaTiempo(mascota.getId(), null, null, 2);
+        LineaTiempoHistorialDto segunda = historialClinicoService.getLineaTiempo(mascota.getId(), primera.getSiguienteCursor(), null, 2);
+        LineaTiempoHistorialDto tercera = historialClinicoService.getLineaTiempo(mascota.getId(), segunda.getSiguienteCursor(), null, 2);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(List.of(ids.get(4), ids.get(3)), idsDe(primera));
+        assertEquals(List.of(ids.get(2), ids.get(1)), idsDe(segunda));
+        assertEquals(List.of(ids.get(0)), idsDe(tercera));
+        assertTrue(primera.isTieneMas());
+        assertFalse(tercera.isTieneMas());
+        assertNull(tercera.getSiguienteCursor());
+        assertNotNull(primera.getCursorReciente());
+        assertNull(segunda.getCursorReciente());
+
+        HistorialClinicoDto reciente = primera.getContenido().get(0);
+        assertEquals("Luna", reciente.getMascotaNombre());
+        assertEquals("Juan Pérez", reciente.getClienteNombre());
+        assertEquals("dr.garcia", reciente.getUsuarioNombre());
+        // Una por página y la del último id en la primera
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería devolver solo las entradas más nuevas que el cursor reciente")
+    void deberiaDevolverSoloNovedades() {
+        // 1. PREPARACIÓN
+        String since = historialClinicoService.getLineaTiempo(mascota.getId(), null, null, 2).getCursorReciente();
+        Long nueva1 = nuevaEntrada(mascota, base.plusDays(20)).getId();
+        Long nueva2 = nuevaEntrada(mascota, base.plusDays(21)).getId();
+        Long nueva3 = nuevaEntrada(mascota, base.plusDays(22)).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // 2. LÓGICA DE LA PRUEBA
+        LineaTiempoHistorialDto novedades = historialClinicoService.getLineaTiempo(mascota.getId(), null, since, 2);
+        LineaTiempoHistorialDto resto = historialClinicoService.getLineaTiempo(mascota.getId(), novedades.getSiguienteCursor(), since, 2);
+        LineaTiempoHistorialDto sinCambios = historialClinicoService.getLineaTiempo(mascota.getId(), null, novedades.getCursorReciente(), 2);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(List.of(nueva3, nueva2), idsDe(novedades));
+        assertEquals(List.of(nueva1), idsDe(resto));
+        assertFalse(resto.isTieneMas());
+        assertTrue(sinCambios.getContenido().isEmpty());
+        // Sin novedades se conserva el último id; solo se renueva el momento de la lectura
+        assertEquals(KeysetCursor.decode(novedades.getCursorReciente(), 2)[0],
+                KeysetCursor.decode(sinCambios.getCursorReciente(), 2)[0]);
+    }
+
+    @Test
+    @DisplayName("debería incluir en las novedades las entradas nuevas registradas con una fecha anterior")
+    void deberiaIncluirNovedadesConFechaAnterior() {
+        // 1. PREPARACIÓN
+        String since = historialClinicoService.getLineaTiempo(mascota.getId(), null, null, 2).getCursorReciente();
+        // Atención de hace días registrada ahora, y otra cargada con la fecha de hoy
+        Long atrasada = nuevaEntrada(mascota, base.minusDays(30)).getId();
+        Long reciente = nuevaEntrada(mascota, base.plusDays(20)).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // 2. LÓGICA DE LA PRUEBA
+        LineaTiempoHistorialDto novedades = historialClinicoService.getLineaTiempo(mascota.getId(), null, since, 10);
+        LineaTiempoHistorialDto sinCambios = historialClinicoService.getLineaTiempo(mascota.getId(), null, novedades.getCursorReciente(), 10);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(List.of(reciente, atrasada), idsDe(novedades));
+        assertTrue(sinCambios.getContenido().isEmpty());
+        assertThrows(BadRequestException.class,
+                () -> historialClinicoService.getLineaTiempo(mascota.getId(), null, "no-es-un-cursor", 2));
+    }
+
+    @Test
+    @DisplayName("debería rechazar cursores inválidos y mascotas inexistentes")
+    void deberiaRechazarCursorInvalidoYMascotaInexistente() {
+        // 2. LÓGICA DE LA PRUEBA y 3. VERIFICACIÓN CON ASSERT
+        assertThrows(BadRequestException.class, () -> historialClinicoService.getLineaTiempo(mascota.getId(), "no-es-un-cursor", null, 2));
+        assertThrows(ResourceNotFoundException.class, () -> historialClinicoService.getLineaTiempo(-1L, null, null, 2));
+    }
+
+    @Test
+    @DisplayName("debería repetir en las novedades una entrada de id menor confirmada después de la consulta")
+    void deberiaRepetirEntradasConfirmadasTarde() {
+        // 1. PREPARACIÓN: la transacción de "tardia" obtuvo su id antes que "vista", pero confirmó después
+        HistorialClinicoService objetivo = AopTestUtils.getTargetObject(historialClinicoService);
+        ReflectionTestUtils.setField(objetivo, "ventanaNovedades", Duration.ofSeconds(30));
+        Long tardia = nuevaEntrada(mascota, base.plusDays(20)).getId();
+        Long vista = nuevaEntrada(mascota, base.plusDays(21)).getId();
+        entityManager.flush();
+        entityManager.clear();
+        String since = KeysetCursor.encode(vista, LocalDateTime.now());
+
+        // 2. LÓGICA DE LA PRUEBA
+        LineaTiempoHistorialDto novedades = historialClinicoService.getLineaTiempo(mascota.getId(), null, since, 10);
+
+        // 3. VERIFICACIÓN CON ASSERT: se repiten todas las creadas en la ventana, también las ya vistas,
+        // y el cliente las descarta por id
+        assertEquals(List.of(vista, tardia), idsDe(novedades).subList(0, 2));
+        assertTrue(idsDe(novedades).containsAll(ids));
+        assertEquals(String.valueOf(vista), KeysetCursor.decode(novedades.getCursorReciente(), 2)[0]);
+    }
+
+    private Mascota nuevaMascota(String nombre, Cliente cliente) {
+        Mascota nueva = new Mascota();
+        nueva.setNombre(nombre);
+        nueva.setEspecie("Gato");
+        nueva.setCliente(cliente);
+        return entityManager.persist(nueva);
+    }
+
+    private HistorialClinico nuevaEntrada(Mascota paciente, LocalDateTime fecha) {
+        HistorialClinico entrada = new HistorialClinico();
+        entrada.setFecha(fecha);
+        entrada.setDiagnostico("Control de insuficiencia renal");
+        entrada.setMascota(entityManager.find(Mascota.class, paciente.getId()));
+        entrada.setUsuario(entityManager.find(Usuario.class, veterinario.getId()));
+        return entityManager.persist(entrada);
+    }
+
+    private static List<Long> idsDe(LineaTiempoHistorialDto pagina) {
+        return pagina.getContenido().stream().map(HistorialClinicoDto::getId).toList();
+    }
+}
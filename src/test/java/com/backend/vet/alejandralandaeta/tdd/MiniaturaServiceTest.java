@@ -0,0 +1,105 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.service.MiniaturaService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias TDD para la generación de miniaturas de imágenes clínicas
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para MiniaturaService")
+class MiniaturaServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private FileStorageService fileStorageService;
+    private MiniaturaService miniaturaService;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: almacenamiento real en un directorio temporal
+        FileStorageConfig config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        fileStorageService = new FileStorageService(config);
+        fileStorageService.init();
+
+        miniaturaService = new MiniaturaService();
+        ReflectionTestUtils.setField(miniaturaService, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(miniaturaService, "tamanoMaximo", 320);
+        ReflectionTestUtils.setField(miniaturaService, "calidad", 0.8f);
+        ReflectionTestUtils.setField(miniaturaService, "hilos", 1);
+        ReflectionTestUtils.setField(miniaturaService, "capacidadCola", 4);
+        miniaturaService.init();
+    }
+
+    @Test
+    @DisplayName("debería generar una miniatura JPEG reducida junto a la radiografía original")
+    void deberiaGenerarMiniaturaReducida() throws Exception {
+        // 1. PREPARACIÓN
+        BufferedImage radiografia = new BufferedImage(2400, 1600, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(radiografia, "png", png);
+        ArchivoClinicoDto archivo = archivo(fileStorageService.storeStream(
+                new ByteArrayInputStream(png.toByteArray()), "radiografia.png").getFileName(), "image/png");
+
+        // 2. LÓGICA DE LA PRUEBA
+        Path miniatura = miniaturaService.obtener(archivo);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNotNull(miniatura);
+        assertTrue(miniatura.getFileName().toString().endsWith(".thumb.jpg"));
+        BufferedImage leida = ImageIO.read(miniatura.toFile());
+        assertEquals(320, leida.getWidth());
+        assertEquals(213, leida.getHeight(), 1); // el submuestreo puede redondear una fila
+        assertEquals(miniatura, miniaturaService.obtener(archivo));
+    }
+
+    @Test
+    @DisplayName("no debería generar miniatura de un contenido que no es una imagen legible")
+    void noDeberiaGenerarMiniaturaDeContenidoNoImagen() {
+        ArchivoClinicoDto archivo = archivo(fileStorageService.storeStream(new ByteArrayInputStream(
+                "no es una imagen".getBytes(StandardCharsets.UTF_8)), "falsa.jpg").getFileName(), "image/jpeg");
+
+        assertNull(miniaturaService.obtener(archivo));
+    }
+
+    @Test
+    @DisplayName("debería eliminar la miniatura junto con el archivo")
+    void deberiaEliminarMiniaturaConArchivo() throws Exception {
+        BufferedImage imagen = new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream jpg = new ByteArrayOutputStream();
+        ImageIO.write(imagen, "jpg", jpg);
+        String fileName = fileStorageService.storeStream(new ByteArrayInputStream(jpg.toByteArray()), "foto.jpg").getFileName();
+        Path miniatura = miniaturaService.obtener(archivo(fileName, "image/jpeg"));
+
+        fileStorageService.deleteFile(fileName);
+
+        assertFalse(Files.exists(miniatura));
+    }
+
+    private ArchivoClinicoDto archivo(String fileName, String tipoMime) {
+        ArchivoClinicoDto dto = new ArchivoClinicoDto();
+        dto.setUrl(fileStorageService.getFileUrl(fileName));
+        dto.setTipoMime(tipoMime);
+        return dto;
+    }
+}
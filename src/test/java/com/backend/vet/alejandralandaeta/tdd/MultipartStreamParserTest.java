@@ -0,0 +1,174 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.exception.FileStorageException;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.util.MultipartStreamParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias TDD para la subida de archivos clínicos por streaming
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para MultipartStreamParser")
+class MultipartStreamParserTest {
+
+    private static final String BOUNDARY = "----LimiteDePrueba7MA4YWxkTrZu0gW";
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("debería separar las partes aunque el cuerpo llegue en fragmentos pequeños")
+    void deberiaSepararPartesLeidasEnFragmentos() throws IOException {
+        // 1. PREPARACIÓN
+        byte[] archivo = contenidoAleatorio(200_000);
+        byte[] cuerpo = cuerpo("historial", null, "12".getBytes(StandardCharsets.UTF_8),
+                "file", "radiografía.png", archivo);
+        MultipartStreamParser parser = new MultipartStreamParser(new FragmentadoInputStream(cuerpo, 7), BOUNDARY);
+
+        // 2. LÓGICA DE LA PRUEBA
+        MultipartStreamParser.Parte campo = parser.siguienteParte();
+        String valor = new String(campo.getContenido().readAllBytes(), StandardCharsets.UTF_8);
+        MultipartStreamParser.Parte parteArchivo = parser.siguienteParte();
+        byte[] leido = parteArchivo.getContenido().readAllBytes();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals("historial", campo.getNombre());
+        assertNull(campo.getNombreArchivo());
+        assertEquals("12", valor);
+        assertEquals("file", parteArchivo.getNombre());
+        assertEquals("radiografía.png", parteArchivo.getNombreArchivo());
+        assertEquals("application/octet-stream", parteArchivo.getContentType());
+        assertArrayEquals(archivo, leido);
+        assertNull(parser.siguienteParte());
+    }
+
+    @Test
+    @DisplayName("debería descartar el resto de una parte no leída al avanzar")
+    void deberiaDescartarParteNoLeida() throws IOException {
+        byte[] cuerpo = cuerpo("nota", null, contenidoAleatorio(100_000),
+                "file", "informe.pdf", "%PDF".getBytes(StandardCharsets.UTF_8));
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(cuerpo), BOUNDARY);
+
+        parser.siguienteParte();
+        MultipartStreamParser.Parte parteArchivo = parser.siguienteParte();
+
+        assertEquals("informe.pdf", parteArchivo.getNombreArchivo());
+        assertEquals("%PDF", new String(parteArchivo.getContenido().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("debería fallar si el cuerpo está truncado")
+    void deberiaFallarConCuerpoTruncado() {
+        byte[] cuerpo = cuerpo("file", "a.bin", contenidoAleatorio(1000), null, null, null);
+        byte[] truncado = java.util.Arrays.copyOf(cuerpo, cuerpo.length - BOUNDARY.length() - 10);
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(truncado), BOUNDARY);
+
+        assertThrows(IOException.class, () -> parser.siguienteParte().getContenido().readAllBytes());
+    }
+
+    @Test
+    @DisplayName("debería almacenar el archivo calculando tamaño y SHA-256 en una sola pasada")
+    void deberiaAlmacenarConTamanoYHash() throws Exception {
+        // 1. PREPARACIÓN
+        FileStorageService service = new FileStorageService(config(DataSize.ofMegabytes(1)));
+        service.init();
+        byte[] archivo = contenidoAleatorio(300_000);
+        MultipartStreamParser parser = new MultipartStreamParser(new FragmentadoInputStream(
+                cuerpo("file", "eco.jpg", archivo, null, null, null), 4096), BOUNDARY);
+
+        // 2. LÓGICA DE LA PRUEBA
+        MultipartStreamParser.Parte parte = parser.siguienteParte();
+        FileStorageService.StoredFile stored = service.storeStream(parte.getContenido(), parte.getNombreArchivo());
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(stored.getFileName().endsWith("_eco.jpg"));
+        assertEquals(archivo.length, stored.getSize());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(archivo)), stored.getSha256());
+        assertArrayEquals(archivo, Files.readAllBytes(service.resolveExistingFile(stored.getFileName())));
+    }
+
+    @Test
+    @DisplayName("debería rechazar y eliminar archivos que superan el tamaño máximo")
+    void deberiaRechazarArchivoDemasiadoGrande() throws IOException {
+        FileStorageService service = new FileStorageService(config(DataSize.ofKilobytes(64)));
+        service.init();
+        InputStream contenido = new ByteArrayInputStream(contenidoAleatorio(100_000));
+
+        assertThrows(FileStorageException.class, () -> service.storeStream(contenido, "grande.bin"));
+        try (var archivos = Files.walk(directorio.resolve("historiales"))) {
+            assertEquals(0, archivos.filter(Files::isRegularFile).count());
+        }
+    }
+
+    private FileStorageConfig config(DataSize maximo) {
+        FileStorageConfig config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        config.setMaxUploadSize(maximo);
+        return config;
+    }
+
+    private static byte[] contenidoAleatorio(int tamano) {
+        byte[] datos = new byte[tamano];
+        new Random(42).nextBytes(datos);
+        return datos;
+    }
+
+    private static byte[] cuerpo(String nombre1, String archivo1, byte[] datos1,
+                                 String nombre2, String archivo2, byte[] datos2) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("preámbulo ignorado\r\n".getBytes(StandardCharsets.UTF_8));
+        escribirParte(out, nombre1, archivo1, datos1);
+        if (nombre2 != null) {
+            escribirParte(out, nombre2, archivo2, datos2);
+        }
+        out.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static void escribirParte(ByteArrayOutputStream out, String nombre, String archivo, byte[] datos) {
+        StringBuilder cabeceras = new StringBuilder("--" + BOUNDARY + "\r\n")
+                .append("Content-Disposition: form-data; name=\"").append(nombre).append('"');
+        if (archivo != null) {
+            cabeceras.append("; filename=\"").append(archivo).append("\"\r\n")
+                    .append("Content-Type: application/octet-stream");
+        }
+        cabeceras.append("\r\n\r\n");
+        out.writeBytes(cabeceras.toString().getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(datos);
+        out.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Entrega el contenido en lecturas de tamaño limitado, como un socket
+    private static class FragmentadoInputStream extends ByteArrayInputStream {
+        private final int fragmento;
+
+        FragmentadoInputStream(byte[] datos, int fragmento) {
+            super(datos);
+            this.fragmento = fragmento;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, fragmento));
+        }
+    }
+}
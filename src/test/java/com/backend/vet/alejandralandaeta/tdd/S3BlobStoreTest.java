@@ -0,0 +1,178 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.exception.FileStorageException;
+import com.backend.vet.service.storage.S3BlobStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias TDD para el almacén de contenido en S3 o compatible
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para S3BlobStore")
+class S3BlobStoreTest {
+
+    private static final String HASH = "ab" + "cd" + "e".repeat(60);
+
+    @TempDir
+    Path directorio;
+
+    private S3Client s3;
+    private S3BlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: cliente simulado y firmador real apuntando a un MinIO local
+        FileStorageConfig.S3 config = new FileStorageConfig.S3();
+        config.setBucket("veterinaria");
+        config.setMultipartThreshold(DataSize.ofBytes(2048));
+        config.setPartSize(DataSize.ofBytes(1024));
+        config.setParallelParts(3);
+
+        s3 = mock(S3Client.class);
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .endpointOverride(URI.create("http://localhost:9000"))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("minio", "minio123")))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        blobStore = new S3BlobStore(s3, presigner, config);
+        when(s3.headObject(any(HeadObjectRequest.class))).thenThrow(NoSuchKeyException.builder().build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        blobStore.shutdown();
+    }
+
+    @Test
+    @DisplayName("debería subir un archivo grande por partes en paralelo, leyendo cada tramo del archivo")
+    void deberiaSubirPorPartes() throws Exception {
+        // 1. PREPARACIÓN
+        byte[] contenido = new byte[2500];
+        new Random(3).nextBytes(contenido);
+        Path pendiente = Files.write(directorio.resolve("pendiente"), contenido);
+        when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("subida-1").build());
+        Map<Integer, byte[]> partes = new ConcurrentHashMap<>();
+        when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> {
+            UploadPartRequest parte = inv.getArgument(0);
+            try (InputStream in = inv.getArgument(1, RequestBody.class).contentStreamProvider().newStream()) {
+                partes.put(parte.partNumber(), in.readAllBytes());
+            }
+            return UploadPartResponse.builder().eTag("etag-" + parte.partNumber()).build();
+        });
+
+        // 2. LÓGICA DE LA PRUEBA
+        boolean nuevo = blobStore.put(HASH, pendiente, null);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(nuevo);
+        assertFalse(Files.exists(pendiente));
+        ArgumentCaptor<CompleteMultipartUploadRequest> completar = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3).completeMultipartUpload(completar.capture());
+        assertEquals("blobs/ab/cd/" + HASH, completar.getValue().key());
+        assertEquals(List.of(1, 2, 3), completar.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber).toList());
+        assertEquals("etag-3", completar.getValue().multipartUpload().parts().get(2).eTag());
+
+        ByteArrayOutputStream reensamblado = new ByteArrayOutputStream();
+        for (int numero = 1; numero <= 3; numero++) {
+            reensamblado.write(partes.get(numero));
+        }
+        assertEquals(1024, partes.get(1).length);
+        assertEquals(452, partes.get(3).length);
+        assertArrayEquals(contenido, reensamblado.toByteArray());
+    }
+
+    @Test
+    @DisplayName("debería cancelar la subida por partes si falla una parte")
+    void deberiaCancelarSiFallaUnaParte() throws Exception {
+        // 1. PREPARACIÓN
+        Path pendiente = Files.write(directorio.resolve("pendiente"), new byte[4096]);
+        when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("subida-2").build());
+        when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(new IllegalStateException("conexión cerrada"));
+
+        // 2. LÓGICA DE LA PRUEBA y 3. VERIFICACIÓN CON ASSERT
+        assertThrows(FileStorageException.class, () -> blobStore.put(HASH, pendiente, null));
+        verify(s3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    @DisplayName("no debería volver a subir un contenido que ya está en el almacén")
+    void noDeberiaSubirContenidoExistente() throws Exception {
+        // 1. PREPARACIÓN
+        Path pendiente = Files.write(directorio.resolve("pendiente"), new byte[10]);
+        when(s3.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(HeadObjectResponse.builder().contentLength(10L).build());
+
+        // 2. LÓGICA DE LA PRUEBA
+        boolean nuevo = blobStore.put(HASH, pendiente, null);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertFalse(nuevo);
+        assertFalse(Files.exists(pendiente));
+        verify(s3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    @DisplayName("debería firmar URLs de descarga directa con el nombre, el tipo y el códec de la respuesta")
+    void deberiaFirmarDescargaDirecta() {
+        // 2. LÓGICA DE LA PRUEBA
+        URI url = blobStore.presignedDownloadUrl(HASH, "análisis.csv", "text/csv", "gzip").orElseThrow();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        String texto = url.toString();
+        assertTrue(texto.startsWith("http://localhost:9000/veterinaria/blobs/ab/cd/" + HASH + "?"));
+        assertTrue(texto.contains("X-Amz-Signature="));
+        assertTrue(texto.contains("X-Amz-Expires=900"));
+        assertTrue(texto.contains("response-content-disposition="));
+        assertTrue(texto.contains("response-content-encoding=gzip"));
+        assertTrue(texto.contains("response-content-type=text%2Fcsv"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.backend.vet.alejandralandaeta.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.dto.SubidaArchivoDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import com.backend.vet.service.ArchivoClinicoService;
+import com.backend.vet.service.SubidaArchivoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para las subidas reanudables de archivos clínicos
+ * Autor: Alejandra Landaeta
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para SubidaArchivoService")
+class SubidaArchivoServiceTest {
+
+    private static final String USUARIO = "dr.garcia";
+    private static final int TAMANO = 300_000;
+
+    @Mock
+    private HistorialClinicoRepository historialClinicoRepository;
+
+    @Mock
+    private ArchivoClinicoService archivoClinicoService;
+
+    @TempDir
+    Path directorio;
+
+    private byte[] contenido;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: un video de ecografía de 300 KB
+        contenido = new byte[TAMANO];
+        new Random(7).nextBytes(contenido);
+    }
+
+    @Test
+    @DisplayName("debería reconstruir el archivo con fragmentos desordenados y finalizarlo en el historial")
+    void deberiaFinalizarConFragmentosDesordenados() throws Exception {
+        // 1. PREPARACIÓN
+        SubidaArchivoService service = nuevoServicio();
+        when(historialClinicoRepository.existsById(12L)).thenReturn(true);
+        SubidaArchivoDto sesion = service.crearSesion(solicitud(), USUARIO);
+        AtomicReference<byte[]> finalizado = new AtomicReference<>();
+        when(archivoClinicoService.createArchivoClinico(eq(12L), any(Path.class), eq("ecografia.mp4"), eq("video/mp4")))
+                .thenAnswer(invocation -> {
+                    finalizado.set(Files.readAllBytes(invocation.getArgument(1)));
+                    ArchivoClinicoDto dto = new ArchivoClinicoDto();
+                    dto.setId(5L);
+                    return dto;
+                });
+
+        // 2. LÓGICA DE LA PRUEBA
+        service.escribirFragmento(sesion.getId(), 200_000, fragmento(200_000, TAMANO), USUARIO);
+        SubidaArchivoDto parcial = service.escribirFragmento(sesion.getId(), 0, fragmento(0, 100_000), USUARIO);
+        service.escribirFragmento(sesion.getId(), 90_000, fragmento(90_000, 200_000), USUARIO);
+        ArchivoClinicoDto archivo = service.finalizar(sesion.getId(), USUARIO);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(100_000, parcial.getSiguienteOffset());
+        assertEquals(200_000, parcial.getRecibidos());
+        assertEquals(5L, archivo.getId());
+        assertArrayEquals(contenido, finalizado.get());
+        assertThrows(ResourceNotFoundException.class, () -> service.getEstado(sesion.getId(), USUARIO));
+        try (var restantes = Files.list(directorio.resolve("subidas"))) {
+            assertEquals(0, restantes.count());
+        }
+    }
+
+    @Test
+    @DisplayName("debería conservar lo recibido antes de un corte de conexión y tras un reinicio")
+    void deberiaReanudarTrasCorteYReinicio() throws Exception {
+        // 1. PREPARACIÓN
+        SubidaArchivoService service = nuevoServicio();
+        when(historialClinicoRepository.existsById(12L)).thenReturn(true);
+        String id = service.crearSesion(solicitud(), USUARIO).getId();
+
+        // 2. LÓGICA DE LA PRUEBA
+        InputStream cortado = new CortadoInputStream(fragmento(0, TAMANO), 150_000);
+        assertThrows(IOException.class, () -> service.escribirFragmento(id, 0, cortado, USUARIO));
+        SubidaArchivoService reiniciado = nuevoServicio();
+        SubidaArchivoDto estado = reiniciado.getEstado(id, USUARIO);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(150_000, estado.getSiguienteOffset());
+        assertFalse(estado.isCompleta());
+        assertEquals("ecografia.mp4", estado.getNombreArchivo());
+        SubidaArchivoDto completa = reiniciado.escribirFragmento(id, 150_000, fragmento(150_000, TAMANO), USUARIO);
+        assertTrue(completa.isCompleta());
+    }
+
+    @Test
+    @DisplayName("debería rechazar finalizar una subida incompleta")
+    void deberiaRechazarFinalizarIncompleta() throws Exception {
+        SubidaArchivoService service = nuevoServicio();
+        when(historialClinicoRepository.existsById(12L)).thenReturn(true);
+        String id = service.crearSesion(solicitud(), USUARIO).getId();
+        service.escribirFragmento(id, 0, fragmento(0, 1000), USUARIO);
+
+        assertThrows(BadRequestException.class, () -> service.finalizar(id, USUARIO));
+        verifyNoInteractions(archivoClinicoService);
+    }
+
+    @Test
+    @DisplayName("debería rechazar fragmentos que exceden el tamaño declarado")
+    void deberiaRechazarFragmentoFueraDeRango() throws Exception {
+        SubidaArchivoService service = nuevoServicio();
+        when(historialClinicoRepository.existsById(12L)).thenReturn(true);
+        String id = service.crearSesion(solicitud(), USUARIO).getId();
+
+        assertThrows(BadRequestException.class,
+                () -> service.escribirFragmento(id, TAMANO - 10, new ByteArrayInputStream(new byte[20]), USUARIO));
+    }
+
+    @Test
+    @DisplayName("no debería exponer la sesión a otro usuario")
+    void noDeberiaExponerSesionAOtroUsuario() {
+        SubidaArchivoService service = nuevoServicio();
+        when(historialClinicoRepository.existsById(12L)).thenReturn(true);
+        String id = service.crearSesion(solicitud(), USUARIO).getId();
+
+        assertThrows(ResourceNotFoundException.class, () -> service.getEstado(id, "otro.usuario"));
+    }
+
+    private SubidaArchivoService nuevoServicio() {
+        FileStorageConfig config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        SubidaArchivoService service = new SubidaArchivoService();
+        ReflectionTestUtils.setField(service, "fileStorageConfig", config);
+        ReflectionTestUtils.setField(service, "historialClinicoRepository", historialClinicoRepository);
+        ReflectionTestUtils.setField(service, "archivoClinicoService", archivoClinicoService);
+        ReflectionTestUtils.setField(service, "duracionSesion", Duration.ofHours(24));
+        service.init();
+        return service;
+    }
+
+    private SubidaArchivoDto solicitud() {
+        SubidaArchivoDto solicitud = new SubidaArchivoDto();
+        solicitud.setHistorialClinicoId(12L);
+        solicitud.setNombreArchivo("ecografia.mp4");
+        solicitud.setTipoMime("video/mp4");
+        solicitud.setTamano((long) TAMANO);
+        return solicitud;
+    }
+
+    private InputStream fragmento(int desde, int hasta) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(contenido, desde, hasta));
+    }
+
+    // Simula una conexión que se corta después de entregar cierta cantidad de bytes
+    private static class CortadoInputStream extends InputStream {
+        private final InputStream origen;
+        private int restantes;
+
+        CortadoInputStream(InputStream origen, int restantes) {
+            this.origen = origen;
+            this.restantes = restantes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] uno = new byte[1];
+            return read(uno, 0, 1) < 0 ? -1 : uno[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (restantes <= 0) {
+                throw new IOException("Conexión interrumpida");
+            }
+            int leidos = origen.read(b, off, Math.min(len, restantes));
+            restantes -= leidos;
+            return leidos;
+        }
+    }
+}
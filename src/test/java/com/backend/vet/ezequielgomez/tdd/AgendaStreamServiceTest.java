@@ -0,0 +1,156 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.controller.StreamController;
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.event.CitaEvent;
+import com.backend.vet.service.AgendaStreamService;
+import com.backend.vet.service.DashboardCounters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Pruebas unitarias TDD para el stream de la agenda
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para AgendaStreamService")
+class AgendaStreamServiceTest {
+
+    private DashboardCounters dashboardCounters;
+    private AgendaStreamService agendaStreamService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: contadores simulados y un despachador que solo se ejecuta a mano
+        dashboardCounters = mock(DashboardCounters.class);
+        when(dashboardCounters.getPacientesAtendidos()).thenReturn(3);
+        when(dashboardCounters.getCitasDelDia()).thenReturn(5);
+        when(dashboardCounters.getVacunasAplicadas()).thenReturn(1);
+
+        agendaStreamService = new AgendaStreamService();
+        ReflectionTestUtils.setField(agendaStreamService, "dashboardCounters", dashboardCounters);
+        ReflectionTestUtils.setField(agendaStreamService, "intervaloMs", 3_600_000L);
+        ReflectionTestUtils.setField(agendaStreamService, "heartbeatMs", 3_600_000L);
+        ReflectionTestUtils.setField(agendaStreamService, "capacidad", 2);
+        ReflectionTestUtils.setField(agendaStreamService, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(agendaStreamService, "reconexionMs", 3000L);
+        agendaStreamService.init();
+
+        StreamController streamController = new StreamController();
+        ReflectionTestUtils.setField(streamController, "agendaStreamService", agendaStreamService);
+        mockMvc = MockMvcBuilders.standaloneSetup(streamController).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        agendaStreamService.shutdown();
+    }
+
+    @Test
+    @DisplayName("debería enviar el último cambio de cada cita una sola vez y los contadores al cambiar")
+    void deberiaAgruparCambiosDeCitasYContadores() throws Exception {
+        // 1. PREPARACIÓN
+        MockHttpServletResponse respuesta = suscribir(true);
+        CitaDto creada = cita(131L, "Pendiente");
+        CitaDto confirmada = cita(131L, "Confirmada");
+        CitaDto efimera = cita(132L, "Pendiente");
+
+        // 2. LÓGICA DE LA PRUEBA
+        agendaStreamService.onCita(new CitaEvent(null, creada));
+        agendaStreamService.onCita(new CitaEvent(creada, confirmada));
+        agendaStreamService.onCita(new CitaEvent(null, efimera));
+        agendaStreamService.onCita(new CitaEvent(efimera, null));
+        when(dashboardCounters.getCitasDelDia()).thenReturn(6);
+        agendaStreamService.despachar();
+        String contenido = esperar(respuesta, "\"citasDelDia\":6");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(contenido.contains("retry:3000"));
+        assertTrue(contenido.contains("\"citasDelDia\":5"));
+        assertEquals(1, ocurrencias(contenido, "event:cita"));
+        assertTrue(contenido.contains("\"tipo\":\"CREADO\",\"citaId\":131"));
+        assertTrue(contenido.contains("\"estado\":\"Confirmada\""));
+        assertFalse(contenido.contains("\"citaId\":132"));
+        assertEquals(2, ocurrencias(contenido, "event:dashboard"));
+    }
+
+    @Test
+    @DisplayName("debería descartar la cola llena de una conexión y pedirle que recargue la agenda")
+    void deberiaPedirResincronizarAlLlenarseLaCola() throws Exception {
+        // 1. PREPARACIÓN
+        MockHttpServletResponse respuesta = suscribir(false);
+
+        // 2. LÓGICA DE LA PRUEBA
+        for (long id = 1; id <= 3; id++) {
+            agendaStreamService.onCita(new CitaEvent(null, cita(id, "Pendiente")));
+        }
+        agendaStreamService.despachar();
+        String contenido = esperar(respuesta, "event:resincronizar");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertFalse(contenido.contains("event:cita"));
+        assertFalse(contenido.contains("event:dashboard"));
+        assertEquals(1, agendaStreamService.getConexiones());
+    }
+
+    @Test
+    @DisplayName("debería enviar un latido a las conexiones sin actividad")
+    void deberiaEnviarLatido() throws Exception {
+        // 1. PREPARACIÓN
+        MockHttpServletResponse respuesta = suscribir(false);
+        ReflectionTestUtils.setField(agendaStreamService, "heartbeatMs", 0L);
+
+        // 2. LÓGICA DE LA PRUEBA
+        agendaStreamService.despachar();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertTrue(esperar(respuesta, ":ping").contains(":conectado"));
+    }
+
+    private MockHttpServletResponse suscribir(boolean dashboard) throws Exception {
+        return mockMvc.perform(get("/api/stream/agenda").param("dashboard", String.valueOf(dashboard)))
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    // Los envíos se hacen en otro hilo: se espera a que aparezca el texto
+    private static String esperar(MockHttpServletResponse respuesta, String texto) throws Exception {
+        long limite = System.currentTimeMillis() + 2000;
+        String contenido = respuesta.getContentAsString();
+        while (!contenido.contains(texto) && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+            contenido = respuesta.getContentAsString();
+        }
+        assertTrue(contenido.contains(texto), "No se recibió " + texto + " en: " + contenido);
+        return contenido;
+    }
+
+    private static int ocurrencias(String contenido, String texto) {
+        return contenido.split(texto, -1).length - 1;
+    }
+
+    private static CitaDto cita(Long id, String estado) {
+        CitaDto dto = new CitaDto();
+        dto.setId(id);
+        dto.setFecha(LocalDate.now());
+        dto.setHora(LocalTime.of(10, 30));
+        dto.setEstado(estado);
+        return dto;
+    }
+}
@@ -0,0 +1,220 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.event.ConsumidorEventos;
+import com.backend.vet.event.EventoDominio;
+import com.backend.vet.model.EventoOutbox;
+import com.backend.vet.model.OffsetConsumidor;
+import com.backend.vet.repository.EventoOutboxRepository;
+import com.backend.vet.repository.OffsetConsumidorRepository;
+import com.backend.vet.service.BusEventos;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para la entrega de eventos del outbox
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para BusEventos")
+class BusEventosTest {
+
+    private static final long TRANSACCION = 900L;
+
+    private EventoOutboxRepository eventoOutboxRepository;
+    private OffsetConsumidorRepository offsetConsumidorRepository;
+    private PlatformTransactionManager transactionManager;
+    private BusEventos busEventos;
+    private OffsetConsumidor offset;
+    private List<EventoDominio> recibidos;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: repositorios simulados y un consumidor con offset en 0
+        eventoOutboxRepository = mock(EventoOutboxRepository.class);
+        offsetConsumidorRepository = mock(OffsetConsumidorRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+
+        busEventos = new BusEventos();
+        ReflectionTestUtils.setField(busEventos, "eventoOutboxRepository", eventoOutboxRepository);
+        ReflectionTestUtils.setField(busEventos, "offsetConsumidorRepository", offsetConsumidorRepository);
+        ReflectionTestUtils.setField(busEventos, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(busEventos, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(busEventos, "tamanoLote", 4);
+        ReflectionTestUtils.setField(busEventos, "lotesPorPasada", 20);
+        ReflectionTestUtils.setField(busEventos, "carriles", 8);
+        ReflectionTestUtils.setField(busEventos, "carrilesSimultaneos", 2);
+        busEventos.init();
+
+        offset = new OffsetConsumidor("agenda", 0L, 0L, LocalDateTime.now());
+        when(offsetConsumidorRepository.findParaEntregar("agenda")).thenReturn(Optional.of(offset));
+        recibidos = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @AfterEach
+    void tearDown() {
+        busEventos.shutdown();
+    }
+
+    @Test
+    @DisplayName("debería entregar todos los lotes pendientes y avanzar el offset hasta el último evento")
+    void deberiaEntregarLotesYAvanzarOffset() {
+        // 1. PREPARACIÓN
+        when(eventoOutboxRepository.findLote(eq(0L), eq(0L), anyInt()))
+                .thenReturn(List.of(evento(1L, 1L), evento(2L, 2L), evento(3L, 1L), evento(4L, 3L)));
+        when(eventoOutboxRepository.findLote(eq(TRANSACCION), eq(4L), anyInt()))
+                .thenReturn(List.of(evento(5L, 2L)));
+
+        // 2. LÓGICA DE LA PRUEBA
+        long resultado = busEventos.entregar(consumidor(null));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(5L, resultado);
+        assertEquals(5L, offset.getUltimoId());
+        assertEquals(TRANSACCION, offset.getUltimaTransaccion());
+        assertEquals(5, recibidos.size());
+        verify(offsetConsumidorRepository).crearSiNoExiste("agenda");
+        verify(eventoOutboxRepository, times(2)).findLote(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("debería respetar el orden por agregado y dejar el offset antes del primer evento de un carril fallido")
+    void deberiaDetenerOffsetAntesDelCarrilFallido() {
+        // 1. PREPARACIÓN
+        when(eventoOutboxRepository.findLote(eq(0L), eq(0L), anyInt()))
+                .thenReturn(List.of(evento(1L, 1L), evento(2L, 2L), evento(3L, 1L), evento(4L, 2L)));
+
+        // 2. LÓGICA DE LA PRUEBA
+        long resultado = busEventos.entregar(consumidor(2L));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(1L, resultado);
+        assertEquals(1L, offset.getUltimoId());
+        assertEquals(List.of(1L, 3L), recibidos.stream().map(EventoDominio::getId).toList());
+        assertEquals(131L, recibidos.get(0).getDatos().path("actual").path("id").asLong());
+        verify(eventoOutboxRepository, times(1)).findLote(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("debería omitir la entrega si otra instancia tiene bloqueado el offset del consumidor")
+    void deberiaOmitirEntregaConOffsetBloqueado() {
+        // 1. PREPARACIÓN
+        when(offsetConsumidorRepository.findParaEntregar("agenda")).thenReturn(Optional.empty());
+
+        // 2. LÓGICA DE LA PRUEBA
+        long resultado = busEventos.entregar(consumidor(null));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(-1L, resultado);
+        verify(eventoOutboxRepository, never()).findLote(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("debería confirmar el offset de cada lote entregado aunque falle la lectura del siguiente")
+    void deberiaConfirmarOffsetPorLote() {
+        // 1. PREPARACIÓN
+        when(eventoOutboxRepository.findLote(eq(0L), eq(0L), anyInt()))
+                .thenReturn(List.of(evento(1L, 1L), evento(2L, 2L), evento(3L, 1L), evento(4L, 3L)));
+        when(eventoOutboxRepository.findLote(eq(TRANSACCION), eq(4L), anyInt()))
+                .thenThrow(new IllegalStateException("Conexión perdida"));
+
+        // 2. LÓGICA DE LA PRUEBA
+        assertThrows(IllegalStateException.class, () -> busEventos.entregar(consumidor(null)));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(4L, offset.getUltimoId());
+        // Creación del offset y primer lote confirmados; solo el segundo lote se revierte
+        verify(transactionManager, times(2)).commit(any());
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    @Test
+    @DisplayName("debería omitir un evento ilegible y seguir entregando los demás")
+    void deberiaOmitirEventoIlegible() {
+        // 1. PREPARACIÓN
+        EventoOutbox ilegible = new EventoOutbox(2L, "Cita", 2L, "ACTUALIZADO", "{no es json",
+                LocalDateTime.now().minusSeconds(5), TRANSACCION);
+        when(eventoOutboxRepository.findLote(eq(0L), eq(0L), anyInt()))
+                .thenReturn(List.of(evento(1L, 1L), ilegible, evento(3L, 3L)));
+
+        // 2. LÓGICA DE LA PRUEBA
+        long resultado = busEventos.entregar(consumidor(null));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(3L, resultado);
+        assertEquals(3L, offset.getUltimoId());
+        assertEquals(List.of(1L, 3L), recibidos.stream().map(EventoDominio::getId).sorted().toList());
+    }
+
+    @Test
+    @DisplayName("no debería procesar más carriles a la vez que los configurados")
+    void noDeberiaSuperarCarrilesSimultaneos() {
+        // 1. PREPARACIÓN
+        when(eventoOutboxRepository.findLote(eq(0L), eq(0L), anyInt()))
+                .thenReturn(List.of(evento(1L, 1L), evento(2L, 2L), evento(3L, 3L)));
+        AtomicInteger activos = new AtomicInteger();
+        AtomicInteger maximo = new AtomicInteger();
+        ConsumidorEventos lento = new ConsumidorEventos() {
+            @Override
+            public String getNombre() {
+                return "agenda";
+            }
+
+            @Override
+            public void procesar(List<EventoDominio> eventos) {
+                maximo.accumulateAndGet(activos.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                activos.decrementAndGet();
+                recibidos.addAll(eventos);
+            }
+        };
+
+        // 2. LÓGICA DE LA PRUEBA
+        busEventos.entregar(lento);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(3, recibidos.size());
+        assertTrue(maximo.get() <= 2);
+    }
+
+    private ConsumidorEventos consumidor(Long agregadoFallido) {
+        return new ConsumidorEventos() {
+            @Override
+            public String getNombre() {
+                return "agenda";
+            }
+
+            @Override
+            public void procesar(List<EventoDominio> eventos) {
+                if (eventos.stream().anyMatch(evento -> evento.getAgregadoId().equals(agregadoFallido))) {
+                    throw new IllegalStateException("Fallo simulado");
+                }
+                recibidos.addAll(eventos);
+            }
+        };
+    }
+
+    private static EventoOutbox evento(Long id, Long citaId) {
+        return new EventoOutbox(id, "Cita", citaId, "ACTUALIZADO",
+                "{\"anterior\":null,\"actual\":{\"id\":131}}", LocalDateTime.now().minusSeconds(5), TRANSACCION);
+    }
+}
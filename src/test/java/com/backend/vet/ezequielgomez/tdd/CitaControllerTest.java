@@ -2,6 +2,9 @@ package com.backend.vet.ezequielgomez.tdd;
 
 import com.backend.vet.controller.CitaController;
 import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.PaginaCursorDto;
+import com.backend.vet.dto.ResultadoCitaLoteDto;
+import com.backend.vet.dto.ResultadoLoteCitasDto;
 import com.backend.vet.service.CitaService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -13,6 +16,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.Arrays;
@@ -218,4 +223,45 @@ class CitaControllerTest {
         verify(citaService, times(1)).getCitasByMascotaId(mascotaId);
     }
 
+    @Test
+    @DisplayName("debería obtener una página de citas con el cursor de la siguiente página")
+    void deberiaObtenerPaginaDeCitasConCursorSiguiente() {
+        // 1. PREPARACIÓN
+        PaginaCursorDto<CitaDto> paginaEsperada =
+                new PaginaCursorDto<>(List.of(citaDto), "MjAyNC0wMS0wMXwxMDozMHwx", true);
+        when(citaService.getCitasPagina(null, 1)).thenReturn(paginaEsperada);
+
+        // 2. LÓGICA DE LA PRUEBA
+        ResponseEntity<PaginaCursorDto<CitaDto>> response = citaController.getCitasPagina(null, 1);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(1, response.getBody().getContenido().size());
+        assertTrue(response.getBody().isTieneMas());
+        assertEquals("MjAyNC0wMS0wMXwxMDozMHwx", response.getBody().getSiguienteCursor());
+        
+        verify(citaService, times(1)).getCitasPagina(null, 1);
+    }
+
+    @Test
+    @DisplayName("debería procesar un lote de citas y devolver el resultado de cada elemento")
+    void deberiaProcesarLoteDeCitas() throws Exception {
+        // 1. PREPARACIÓN
+        InputStream cuerpo = new ByteArrayInputStream("[]".getBytes());
+        ResultadoLoteCitasDto resultadoEsperado = new ResultadoLoteCitasDto(1, 1, 0, 0,
+                List.of(new ResultadoCitaLoteDto(0, CitaService.RESULTADO_CREADA, 1L, null)));
+        when(citaService.leerLote(cuerpo)).thenReturn(List.of(citaDto));
+        when(citaService.procesarLote(List.of(citaDto))).thenReturn(resultadoEsperado);
+
+        // 2. LÓGICA DE LA PRUEBA
+        ResponseEntity<ResultadoLoteCitasDto> response = citaController.procesarLote(cuerpo);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(resultadoEsperado, response.getBody());
+        verify(citaService, times(1)).procesarLote(List.of(citaDto));
+    }
+
 }
@@ -0,0 +1,196 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.PaginaCursorDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.model.Cita;
+import com.backend.vet.model.Cliente;
+import com.backend.vet.model.Mascota;
+import com.backend.vet.model.Role;
+import com.backend.vet.model.Usuario;
+import com.backend.vet.service.CitaService;
+import com.backend.vet.service.DashboardCounters;
+import com.backend.vet.service.DisponibilidadIndex;
+import com.backend.vet.util.KeysetCursor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas TDD para la paginación por cursor y la exportación NDJSON de CitaService
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(CitaService.class)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@DisplayName("Pruebas de paginación por cursor y exportación de citas")
+class CitaServicePaginacionTest {
+
+    private static final int TOTAL_CITAS = 9;
+
+    @Autowired
+    private CitaService citaService;
+
+    @MockitoBean
+    private DisponibilidadIndex disponibilidadIndex;
+
+    @MockitoBean
+    private DashboardCounters dashboardCounters;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private LocalDate hoy;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: 9 citas en 3 horas del mismo día, 3 por hora, para que el id desempate
+        hoy = LocalDate.now();
+
+        Role rol = new Role();
+        rol.setNombre("VETERINARIO");
+        entityManager.persist(rol);
+
+        Usuario veterinario = new Usuario();
+        veterinario.setNombreUsuario("dr.garcia");
+        veterinario.setCorreo("garcia@vet.com");
+        veterinario.setContrasenaHash("hash");
+        veterinario.setRol(rol);
+        entityManager.persist(veterinario);
+
+        Cliente cliente = new Cliente();
+        cliente.setNombre("Ana");
+        cliente.setApellido("Pérez");
+        entityManager.persist(cliente);
+
+        Mascota mascota = new Mascota();
+        mascota.setNombre("Firulais");
+        mascota.setEspecie("Perro");
+        mascota.setRaza("Labrador");
+        mascota.setCliente(cliente);
+        entityManager.persist(mascota);
+
+        // Se insertan de la última hora a la primera para que el orden no coincida con el de inserción
+        for (int i = 0; i < TOTAL_CITAS; i++) {
+            Cita cita = new Cita();
+            cita.setFecha(hoy);
+            cita.setHora(LocalTime.of(11 - i / 3, 0));
+            cita.setMotivo("Control " + i);
+            cita.setEstado("Pendiente");
+            cita.setMascota(mascota);
+            cita.setUsuario(veterinario);
+            entityManager.persist(cita);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("debería recorrer todas las citas página a página siguiendo el cursor, sin repetir ni omitir")
+    void deberiaRecorrerPaginasConElCursor() {
+        // 1. PREPARACIÓN
+        List<Integer> tamanos = new ArrayList<>();
+        List<CitaDto> recorridas = new ArrayList<>();
+
+        // 2. LÓGICA DE LA PRUEBA
+        String cursor = null;
+        do {
+            PaginaCursorDto<CitaDto> pagina = citaService.getCitasPagina(cursor, 4);
+            tamanos.add(pagina.getContenido().size());
+            recorridas.addAll(pagina.getContenido());
+            cursor = pagina.getSiguienteCursor();
+            assertEquals(pagina.isTieneMas(), cursor != null);
+        } while (cursor != null);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(List.of(4, 4, 1), tamanos);
+        assertEquals(TOTAL_CITAS, recorridas.stream().map(CitaDto::getId).distinct().count());
+        List<CitaDto> ordenadas = new ArrayList<>(recorridas);
+        ordenadas.sort(Comparator.comparing(CitaDto::getFecha)
+                .thenComparing(CitaDto::getHora)
+                .thenComparing(CitaDto::getId));
+        assertEquals(ordenadas, recorridas);
+        assertEquals(LocalTime.of(9, 0), recorridas.get(0).getHora());
+    }
+
+    @Test
+    @DisplayName("debería marcar la última página sin cursor siguiente, también cuando llena justo el tamaño")
+    void deberiaMarcarLaUltimaPagina() {
+        // 2. LÓGICA DE LA PRUEBA
+        PaginaCursorDto<CitaDto> completa = citaService.getCitasPagina(null, TOTAL_CITAS);
+        PaginaCursorDto<CitaDto> primera = citaService.getCitasPagina(null, TOTAL_CITAS - 1);
+        PaginaCursorDto<CitaDto> ultima = citaService.getCitasPagina(primera.getSiguienteCursor(), TOTAL_CITAS - 1);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(TOTAL_CITAS, completa.getContenido().size());
+        assertFalse(completa.isTieneMas());
+        assertNull(completa.getSiguienteCursor());
+        assertTrue(primera.isTieneMas());
+        assertEquals(1, ultima.getContenido().size());
+        assertFalse(ultima.isTieneMas());
+        assertNull(ultima.getSiguienteCursor());
+    }
+
+    @Test
+    @DisplayName("debería rechazar con BadRequestException un cursor manipulado o mal formado")
+    void deberiaRechazarCursorInvalido() {
+        // 1. PREPARACIÓN
+        String noBase64 = "%%%";
+        String partesIncorrectas = KeysetCursor.encode(hoy, LocalTime.of(9, 0));
+        String fechaInvalida = KeysetCursor.encode("ayer", LocalTime.of(9, 0), 1L);
+        String idInvalido = KeysetCursor.encode(hoy, LocalTime.of(9, 0), "uno");
+
+        // 2. LÓGICA DE LA PRUEBA
+        // 3. VERIFICACIÓN CON ASSERT
+        for (String cursor : List.of(noBase64, partesIncorrectas, fechaInvalida, idInvalido)) {
+            BadRequestException ex = assertThrows(BadRequestException.class,
+                    () -> citaService.getCitasPagina(cursor, 4));
+            assertEquals("Cursor de paginación inválido", ex.getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("debería exportar todas las citas en NDJSON en el mismo orden que la paginación")
+    void deberiaExportarCitasEnNdjson() throws Exception {
+        // 1. PREPARACIÓN
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        List<CitaDto> paginadas = citaService.getCitasPagina(null, TOTAL_CITAS).getContenido();
+
+        // 2. LÓGICA DE LA PRUEBA
+        long total = citaService.exportCitas(salida);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(TOTAL_CITAS, total);
+        assertEquals(TOTAL_CITAS, lineas.length);
+        for (int i = 0; i < lineas.length; i++) {
+            CitaDto exportada = objectMapper.readValue(lineas[i], CitaDto.class);
+            assertEquals(paginadas.get(i).getId(), exportada.getId());
+            assertEquals("Firulais", exportada.getMascotaNombre());
+        }
+    }
+}
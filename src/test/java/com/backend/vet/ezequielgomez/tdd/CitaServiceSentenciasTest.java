@@ -0,0 +1,264 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.ResultadoCitaLoteDto;
+import com.backend.vet.dto.ResultadoLoteCitasDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.model.Cita;
+import com.backend.vet.model.Cliente;
+import com.backend.vet.model.Mascota;
+import com.backend.vet.model.Role;
+import com.backend.vet.model.Usuario;
+import com.backend.vet.service.CitaService;
+import com.backend.vet.service.DashboardCounters;
+import com.backend.vet.service.DisponibilidadIndex;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas TDD que verifican que los listados de CitaService se resuelven con una sola sentencia SQL
+ * (sin N+1 al cargar mascota, cliente y veterinario)
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(CitaService.class)
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@DisplayName("Pruebas de sentencias SQL por endpoint de citas")
+class CitaServiceSentenciasTest {
+
+    private static final int CITAS_POR_MASCOTA = 3;
+
+    @Autowired
+    private CitaService citaService;
+
+    @MockitoBean
+    private DisponibilidadIndex disponibilidadIndex;
+
+    @MockitoBean
+    private DashboardCounters dashboardCounters;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long mascotaId;
+    private Long clienteId;
+    private Long veterinarioId;
+    private LocalDate hoy;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: 3 clientes con una mascota cada uno y 3 citas por mascota
+        hoy = LocalDate.now();
+
+        Role rol = new Role();
+        rol.setNombre("VETERINARIO");
+        entityManager.persist(rol);
+
+        Usuario veterinario = new Usuario();
+        veterinario.setNombreUsuario("dr.garcia");
+        veterinario.setCorreo("garcia@vet.com");
+        veterinario.setContrasenaHash("hash");
+        veterinario.setRol(rol);
+        entityManager.persist(veterinario);
+        veterinarioId = veterinario.getId();
+
+        for (int i = 0; i < 3; i++) {
+            Cliente cliente = new Cliente();
+            cliente.setNombre("Cliente" + i);
+            cliente.setApellido("Apellido" + i);
+            entityManager.persist(cliente);
+
+            Mascota mascota = new Mascota();
+            mascota.setNombre("Mascota" + i);
+            mascota.setEspecie("Perro");
+            mascota.setRaza("Labrador");
+            mascota.setCliente(cliente);
+            entityManager.persist(mascota);
+
+            for (int j = 0; j < CITAS_POR_MASCOTA; j++) {
+                Cita cita = new Cita();
+                cita.setFecha(hoy.plusDays(j));
+                cita.setHora(LocalTime.of(9 + i, 0));
+                cita.setMotivo("Control");
+                cita.setEstado("Pendiente");
+                cita.setMascota(mascota);
+                cita.setUsuario(veterinario);
+                entityManager.persist(cita);
+            }
+
+            mascotaId = mascota.getId();
+            clienteId = cliente.getId();
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("debería listar las citas de una mascota con una sola sentencia")
+    void deberiaListarCitasPorMascotaConUnaSentencia() {
+        // 2. LÓGICA DE LA PRUEBA
+        List<CitaDto> citas = citaService.getCitasByMascotaId(mascotaId);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(CITAS_POR_MASCOTA, citas.size());
+        assertEquals("Cliente2 Apellido2", citas.get(0).getClienteNombre());
+        assertEquals("dr.garcia", citas.get(0).getUsuarioNombre());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería listar las citas de un cliente con una sola sentencia")
+    void deberiaListarCitasPorClienteConUnaSentencia() {
+        List<CitaDto> citas = citaService.getCitasByClienteId(clienteId);
+
+        assertEquals(CITAS_POR_MASCOTA, citas.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería listar las citas de un veterinario con una sola sentencia")
+    void deberiaListarCitasPorVeterinarioConUnaSentencia() {
+        List<CitaDto> citas = citaService.getCitasByVeterinarioId(veterinarioId);
+
+        assertEquals(3 * CITAS_POR_MASCOTA, citas.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería listar las citas por rango de fechas con una sola sentencia")
+    void deberiaListarCitasPorFechaConUnaSentencia() {
+        List<CitaDto> citas = citaService.getCitasByFechaRango(hoy, hoy.plusDays(1));
+
+        assertEquals(3 * 2, citas.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería listar las citas por estado con una sola sentencia")
+    void deberiaListarCitasPorEstadoConUnaSentencia() {
+        List<CitaDto> citas = citaService.getCitasByEstado("Pendiente");
+
+        assertEquals(3 * CITAS_POR_MASCOTA, citas.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería listar las próximas citas ordenadas y paginadas con especie y raza en una sola sentencia")
+    void deberiaListarProximasCitasConUnaSentencia() {
+        List<CitaDto> citas = citaService.findProximasCitas(4, 2);
+
+        assertEquals(4, citas.size());
+        // Ordenadas por fecha y hora: hoy 9:00, 10:00, 11:00, mañana 9:00... con offset 2
+        assertEquals(hoy, citas.get(0).getFecha());
+        assertEquals(LocalTime.of(11, 0), citas.get(0).getHora());
+        assertEquals(hoy.plusDays(1), citas.get(1).getFecha());
+        assertEquals(LocalTime.of(9, 0), citas.get(1).getHora());
+        assertEquals("Perro", citas.get(0).getEspecie());
+        assertEquals("Labrador", citas.get(0).getRaza());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería procesar un lote con una consulta IN por entidad y las inserciones agrupadas en lotes JDBC")
+    void deberiaProcesarLoteConInsercionesAgrupadas() {
+        // 1. PREPARACIÓN
+        Long existenteId = citaService.getCitasByMascotaId(mascotaId).get(0).getId();
+        statistics.clear();
+        List<CitaDto> lote = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lote.add(nuevaCita(null, mascotaId, LocalTime.of(8, 0).plusMinutes(i)));
+        }
+        lote.add(nuevaCita(existenteId, null, LocalTime.of(18, 0)));
+        lote.add(nuevaCita(null, -1L, LocalTime.of(19, 0)));
+        CitaDto sinHora = nuevaCita(null, mascotaId, null);
+        lote.add(sinHora);
+        lote.add(nuevaCita(-5L, null, LocalTime.of(20, 0)));
+
+        // 2. LÓGICA DE LA PRUEBA
+        ResultadoLoteCitasDto resultado = citaService.procesarLote(lote);
+        entityManager.flush();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(24, resultado.getTotal());
+        assertEquals(20, resultado.getCreadas());
+        assertEquals(1, resultado.getActualizadas());
+        assertEquals(3, resultado.getFallidas());
+        ResultadoCitaLoteDto actualizada = resultado.getResultados().get(20);
+        assertEquals(CitaService.RESULTADO_ACTUALIZADA, actualizada.getResultado());
+        assertEquals(existenteId, actualizada.getId());
+        assertEquals("Mascota no encontrado con id: '-1'", resultado.getResultados().get(21).getError());
+        assertEquals("La hora es obligatoria", resultado.getResultados().get(22).getError());
+        assertEquals(CitaService.RESULTADO_ERROR, resultado.getResultados().get(23).getResultado());
+        assertEquals(20, statistics.getEntityInsertCount());
+        // 3 consultas IN, 1 lote de INSERT y 1 UPDATE; los ids salen del bloque de la secuencia ya reservado
+        assertEquals(5, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("debería leer un lote enviado como arreglo JSON o como NDJSON y rechazar contenido inválido")
+    void deberiaLeerLoteComoArregloONdjson() throws Exception {
+        // 1. PREPARACIÓN
+        String cita1 = "{\"fecha\":\"2023-10-20\",\"hora\":\"09:00:00\",\"mascotaId\":1,\"usuarioId\":3}";
+        String cita2 = "{\"id\":131,\"fecha\":\"2023-10-21\",\"hora\":\"10:00:00\"}";
+
+        // 2. LÓGICA DE LA PRUEBA
+        List<CitaDto> arreglo = citaService.leerLote(entrada("[" + cita1 + "," + cita2 + "]"));
+        List<CitaDto> ndjson = citaService.leerLote(entrada(cita1 + "\n" + cita2 + "\n"));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(arreglo, ndjson);
+        assertEquals(2, ndjson.size());
+        assertEquals(LocalTime.of(9, 0), ndjson.get(0).getHora());
+        assertEquals(131L, ndjson.get(1).getId());
+        assertThrows(BadRequestException.class, () -> citaService.leerLote(entrada(cita1 + "\n{\"fecha\":")));
+        assertThrows(BadRequestException.class, () -> citaService.leerLote(entrada("[]")));
+    }
+
+    private CitaDto nuevaCita(Long id, Long mascota, LocalTime hora) {
+        CitaDto dto = new CitaDto();
+        dto.setId(id);
+        dto.setFecha(hoy.plusDays(10));
+        dto.setHora(hora);
+        dto.setMotivo("Vacuna antirrábica");
+        dto.setMascotaId(mascota);
+        dto.setUsuarioId(veterinarioId);
+        return dto;
+    }
+
+    private static ByteArrayInputStream entrada(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,249 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.CitaSlotDto;
+import com.backend.vet.dto.DisponibilidadDto;
+import com.backend.vet.exception.BadRequestException;
+import com.backend.vet.exception.ErrorResponse;
+import com.backend.vet.exception.GlobalExceptionHandler;
+import com.backend.vet.model.Cita;
+import com.backend.vet.model.Mascota;
+import com.backend.vet.model.Usuario;
+import com.backend.vet.repository.CitaRepository;
+import com.backend.vet.repository.MascotaRepository;
+import com.backend.vet.repository.UsuarioRepository;
+import com.backend.vet.service.CitaService;
+import com.backend.vet.service.DisponibilidadIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.WebRequest;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para el índice de disponibilidad de los veterinarios
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para DisponibilidadIndex")
+class DisponibilidadIndexTest {
+
+    private static final Long VETERINARIO = 3L;
+
+    private CitaRepository citaRepository;
+    private DisponibilidadIndex disponibilidadIndex;
+    private LocalDate fecha;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: franjas de 30 minutos entre las 08:00 y las 10:00
+        citaRepository = mock(CitaRepository.class);
+        disponibilidadIndex = new DisponibilidadIndex();
+        ReflectionTestUtils.setField(disponibilidadIndex, "citaRepository", citaRepository);
+        ReflectionTestUtils.setField(disponibilidadIndex, "duracionSlotMinutos", 30);
+        ReflectionTestUtils.setField(disponibilidadIndex, "horaApertura", "08:00");
+        ReflectionTestUtils.setField(disponibilidadIndex, "horaCierre", "10:00");
+        ReflectionTestUtils.setField(disponibilidadIndex, "rangoMaximoDias", 31);
+        fecha = LocalDate.now().plusDays(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("debería ocupar la franja al reservar y rechazar otra cita en la misma franja")
+    void deberiaReservarYRechazarFranjaOcupada() {
+        // 2. LÓGICA DE LA PRUEBA
+        disponibilidadIndex.reservar(VETERINARIO, fecha, LocalTime.of(8, 30));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(List.of(LocalTime.of(8, 0), LocalTime.of(9, 0), LocalTime.of(9, 30)), libres());
+        assertThrows(BadRequestException.class,
+                () -> disponibilidadIndex.reservar(VETERINARIO, fecha, LocalTime.of(8, 45)));
+        // Otro veterinario no se ve afectado
+        assertDoesNotThrow(() -> disponibilidadIndex.reservar(4L, fecha, LocalTime.of(8, 30)));
+    }
+
+    @Test
+    @DisplayName("debería liberar la franja de inmediato cuando no hay transacción")
+    void deberiaLiberarFranjaSinTransaccion() {
+        // 1. PREPARACIÓN
+        disponibilidadIndex.reservar(VETERINARIO, fecha, LocalTime.of(9, 0));
+
+        // 2. LÓGICA DE LA PRUEBA
+        disponibilidadIndex.liberar(VETERINARIO, fecha, LocalTime.of(9, 0));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(4, libres().size());
+    }
+
+    @Test
+    @DisplayName("debería devolver la franja reservada si la transacción se revierte")
+    void deberiaLiberarReservaAlRevertirTransaccion() {
+        // 1. PREPARACIÓN
+        TransactionSynchronizationManager.initSynchronization();
+        disponibilidadIndex.reservar(VETERINARIO, fecha, LocalTime.of(8, 0));
+        assertEquals(3, libres().size());
+
+        // 2. LÓGICA DE LA PRUEBA
+        finalizarTransaccion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(4, libres().size());
+    }
+
+    @Test
+    @DisplayName("debería liberar la franja solo cuando la transacción se confirma")
+    void deberiaLiberarAlConfirmarTransaccion() {
+        // 1. PREPARACIÓN
+        disponibilidadIndex.reservar(VETERINARIO, fecha, LocalTime.of(8, 0));
+        TransactionSynchronizationManager.initSynchronization();
+
+        // 2. LÓGICA DE LA PRUEBA
+        disponibilidadIndex.liberar(VETERINARIO, fecha, LocalTime.of(8, 0));
+        int libresAntesDelCommit = libres().size();
+        finalizarTransaccion(TransactionSynchronization.STATUS_COMMITTED);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(3, libresAntesDelCommit);
+        assertEquals(4, libres().size());
+    }
+
+    @Test
+    @DisplayName("debería cargar las citas activas al reconstruir y validar el rango consultado")
+    void deberiaReconstruirYValidarRango() {
+        // 1. PREPARACIÓN
+        when(citaRepository.findSlotsOcupadosDesde(any()))
+                .thenReturn(List.of(new CitaSlotDto(VETERINARIO, fecha, LocalTime.of(9, 30))));
+
+        // 2. LÓGICA DE LA PRUEBA
+        disponibilidadIndex.reconstruir();
+        List<DisponibilidadDto> dias = disponibilidadIndex.consultar(VETERINARIO, fecha, fecha.plusDays(1));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(2, dias.size());
+        assertEquals(3, dias.get(0).getHorasLibres().size());
+        assertEquals(4, dias.get(1).getHorasLibres().size());
+        assertThrows(BadRequestException.class,
+                () -> disponibilidadIndex.consultar(VETERINARIO, fecha, fecha.minusDays(1)));
+        assertThrows(BadRequestException.class,
+                () -> disponibilidadIndex.consultar(VETERINARIO, fecha, fecha.plusDays(40)));
+    }
+
+    @Test
+    @DisplayName("debería rechazar con BadRequestException una segunda cita del mismo veterinario en la misma franja")
+    void deberiaRechazarDobleReservaAlCrearCita() {
+        // 1. PREPARACIÓN
+        MascotaRepository mascotaRepository = mock(MascotaRepository.class);
+        UsuarioRepository usuarioRepository = mock(UsuarioRepository.class);
+        Mascota mascota = new Mascota();
+        mascota.setId(1L);
+        Usuario veterinario = new Usuario();
+        veterinario.setId(VETERINARIO);
+        when(mascotaRepository.findById(1L)).thenReturn(Optional.of(mascota));
+        when(usuarioRepository.findById(VETERINARIO)).thenReturn(Optional.of(veterinario));
+        when(citaRepository.save(any(Cita.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        CitaService citaService = new CitaService();
+        ReflectionTestUtils.setField(citaService, "citaRepository", citaRepository);
+        ReflectionTestUtils.setField(citaService, "mascotaRepository", mascotaRepository);
+        ReflectionTestUtils.setField(citaService, "usuarioRepository", usuarioRepository);
+        ReflectionTestUtils.setField(citaService, "disponibilidadIndex", disponibilidadIndex);
+        ReflectionTestUtils.setField(citaService, "eventPublisher", mock(ApplicationEventPublisher.class));
+
+        CitaDto primera = cita(LocalTime.of(10, 0));
+        CitaDto superpuesta = cita(LocalTime.of(10, 15));
+
+        // 2. LÓGICA DE LA PRUEBA
+        citaService.createCita(primera);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertThrows(BadRequestException.class, () -> citaService.createCita(superpuesta));
+        verify(citaRepository, times(1)).save(any(Cita.class));
+    }
+
+    @Test
+    @DisplayName("debería descartar los días pasados y reemplazar el índice completo al reconstruir")
+    void deberiaDescartarDiasPasadosYReemplazarIndice() {
+        // 1. PREPARACIÓN
+        LocalDate ayer = LocalDate.now().minusDays(1);
+        disponibilidadIndex.reservar(VETERINARIO, ayer, LocalTime.of(8, 0));
+        disponibilidadIndex.reservar(VETERINARIO, fecha, LocalTime.of(8, 0));
+
+        // 2. LÓGICA DE LA PRUEBA
+        disponibilidadIndex.descartarDiasPasados();
+        int libresAyer = disponibilidadIndex.consultar(VETERINARIO, ayer, ayer).get(0).getHorasLibres().size();
+        int libresManana = libres().size();
+        when(citaRepository.findSlotsOcupadosDesde(any()))
+                .thenReturn(List.of(new CitaSlotDto(VETERINARIO, fecha, LocalTime.of(9, 30))));
+        disponibilidadIndex.reconstruir();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(4, libresAyer);
+        assertEquals(3, libresManana);
+        assertEquals(List.of(LocalTime.of(8, 0), LocalTime.of(8, 30), LocalTime.of(9, 0)), libres());
+    }
+
+    @Test
+    @DisplayName("debería responder como franja ocupada cuando la base de datos rechaza la cita por el índice único")
+    void deberiaTraducirViolacionDelIndiceDeFranjas() {
+        // 1. PREPARACIÓN
+        GlobalExceptionHandler handler = new GlobalExceptionHandler();
+        WebRequest request = mock(WebRequest.class);
+        when(request.getDescription(false)).thenReturn("uri=/api/citas");
+        DataIntegrityViolationException franja = new DataIntegrityViolationException("insert",
+                new SQLException("duplicate key value violates unique constraint \"" + Cita.INDICE_FRANJA + "30\""));
+        DataIntegrityViolationException otra = new DataIntegrityViolationException("insert",
+                new SQLException("null value in column \"fecha\" violates not-null constraint"));
+
+        // 2. LÓGICA DE LA PRUEBA
+        ResponseEntity<ErrorResponse> conflicto = handler.handleDataIntegrityViolationException(franja, request);
+        ResponseEntity<ErrorResponse> error = handler.handleDataIntegrityViolationException(otra, request);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(HttpStatus.BAD_REQUEST, conflicto.getStatusCode());
+        assertEquals("El veterinario ya tiene una cita programada en esa franja", conflicto.getBody().getMessage());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, error.getStatusCode());
+    }
+
+    private List<LocalTime> libres() {
+        return disponibilidadIndex.consultar(VETERINARIO, fecha, fecha).get(0).getHorasLibres();
+    }
+
+    private static void finalizarTransaccion(int estado) {
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+
+    private CitaDto cita(LocalTime hora) {
+        CitaDto dto = new CitaDto();
+        dto.setFecha(fecha);
+        dto.setHora(hora);
+        dto.setEstado("Pendiente");
+        dto.setMascotaId(1L);
+        dto.setUsuarioId(VETERINARIO);
+        return dto;
+    }
+}
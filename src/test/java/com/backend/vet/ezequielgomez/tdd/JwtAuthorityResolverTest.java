@@ -0,0 +1,97 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.event.AutorizacionCambiadaEvent;
+import com.backend.vet.security.PermissionRegistry;
+import com.backend.vet.security.jwt.JwtAuthorityResolver;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para JwtAuthorityResolver
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para JwtAuthorityResolver")
+class JwtAuthorityResolverTest {
+
+    @Mock
+    private PermissionRegistry permissionRegistry;
+
+    @InjectMocks
+    private JwtAuthorityResolver jwtAuthorityResolver;
+
+    private UserDetails veterinario;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: modo habilitado y un veterinario con dos permisos
+        ReflectionTestUtils.setField(jwtAuthorityResolver, "embedAuthorities", true);
+        ReflectionTestUtils.setField(jwtAuthorityResolver, "revalidateIntervalMs", 300000L);
+        veterinario = new User("dr.garcia", "hash", List.of(
+                new SimpleGrantedAuthority("ROLE_VETERINARIO"),
+                new SimpleGrantedAuthority("CITA_READ"),
+                new SimpleGrantedAuthority("CITA_CREATE")));
+        when(permissionRegistry.codificar(anyCollection())).thenReturn("Bg");
+    }
+
+    @Test
+    @DisplayName("debería construir el usuario desde los claims sin consultar la base de datos")
+    void deberiaResolverUsuarioDesdeClaims() {
+        // 1. PREPARACIÓN
+        Claims claims = claimsDeLogin();
+        when(permissionRegistry.decodificar("Bg")).thenReturn(List.of("CITA_READ", "CITA_CREATE"));
+
+        // 2. LÓGICA DE LA PRUEBA
+        UserDetails resuelto = jwtAuthorityResolver.resolver(claims);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNotNull(resuelto);
+        assertEquals("dr.garcia", resuelto.getUsername());
+        assertEquals(3, resuelto.getAuthorities().size());
+        assertTrue(resuelto.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_VETERINARIO")));
+    }
+
+    @Test
+    @DisplayName("debería ignorar los claims emitidos antes de un cambio en los permisos del rol")
+    void deberiaIgnorarClaimsTrasCambioDeRol() throws InterruptedException {
+        // 1. PREPARACIÓN
+        Claims claims = claimsDeLogin();
+        Thread.sleep(5);
+
+        // 2. LÓGICA DE LA PRUEBA
+        jwtAuthorityResolver.onAutorizacionCambiada(AutorizacionCambiadaEvent.deRol("VETERINARIO"));
+        UserDetails resuelto = jwtAuthorityResolver.resolver(claims);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNull(resuelto);
+        verify(permissionRegistry, never()).decodificar(anyString());
+    }
+
+    private Claims claimsDeLogin() {
+        Map<String, Object> embebidos = jwtAuthorityResolver.claimsDe(veterinario);
+        Claims claims = Jwts.claims(embebidos);
+        claims.setSubject("dr.garcia");
+        // Igual que en el JWT, la fecha de emisión se trunca a segundos
+        claims.setIssuedAt(new Date(System.currentTimeMillis() / 1000 * 1000));
+        return claims;
+    }
+}
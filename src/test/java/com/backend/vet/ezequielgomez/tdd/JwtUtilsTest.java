@@ -0,0 +1,92 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.security.jwt.JwtUtils;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias TDD para JwtUtils
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para JwtUtils")
+class JwtUtilsTest {
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: clave de prueba y expiración de una hora
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "claveSecretaDePruebaQueDebeSerMuyLargaParaHmacSha");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3600000);
+        ReflectionTestUtils.setField(jwtUtils, "cacheMaxEntries", 100);
+        jwtUtils.init();
+    }
+
+    @Test
+    @DisplayName("debería validar un token generado y devolver sus claims")
+    void deberiaValidarTokenGenerado() {
+        // 1. PREPARACIÓN
+        String token = generarToken("admin");
+
+        // 2. LÓGICA DE LA PRUEBA
+        Claims primera = jwtUtils.parseAndValidate(token);
+        Claims segunda = jwtUtils.parseAndValidate(token);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNotNull(primera);
+        assertEquals("admin", primera.getSubject());
+        // La segunda validación se sirve desde la caché de tokens verificados
+        assertSame(primera, segunda);
+        assertTrue(jwtUtils.validateJwtToken(token));
+        assertEquals("admin", jwtUtils.getUsernameFromJwtToken(token));
+    }
+
+    @Test
+    @DisplayName("debería rechazar un token con firma alterada")
+    void deberiaRechazarTokenAlterado() {
+        // 1. PREPARACIÓN
+        String token = generarToken("admin");
+        String alterado = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        // 2. LÓGICA DE LA PRUEBA
+        Claims claims = jwtUtils.parseAndValidate(alterado);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNull(claims);
+        assertFalse(jwtUtils.validateJwtToken("no-es-un-jwt"));
+        assertNull(jwtUtils.parseAndValidate(null));
+    }
+
+    @Test
+    @DisplayName("no debería servir desde la caché un token que ya expiró")
+    void noDeberiaServirTokenExpiradoDesdeCache() throws Exception {
+        // 1. PREPARACIÓN: el token dura un segundo (la expiración del JWT se expresa en segundos)
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 1000);
+        jwtUtils.init();
+        String token = generarToken("recepcion");
+        assertNotNull(jwtUtils.parseAndValidate(token));
+
+        // 2. LÓGICA DE LA PRUEBA
+        Thread.sleep(1100);
+        Claims claims = jwtUtils.parseAndValidate(token);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNull(claims);
+    }
+
+    private String generarToken(String usuario) {
+        User principal = new User(usuario, "clave", List.of());
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+}
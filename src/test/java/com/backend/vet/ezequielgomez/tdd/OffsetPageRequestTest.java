@@ -0,0 +1,109 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.repository.CitaRepository;
+import com.backend.vet.service.CitaService;
+import com.backend.vet.util.OffsetPageRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para la paginación por offset de las próximas citas
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para OffsetPageRequest y findProximasCitas")
+class OffsetPageRequestTest {
+
+    @Mock
+    private CitaRepository citaRepository;
+
+    @InjectMocks
+    private CitaService citaService;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: como mucho 50 citas por petición
+        ReflectionTestUtils.setField(citaService, "pageSizeMax", 50);
+    }
+
+    @Test
+    @DisplayName("debería calcular página, siguiente y anterior a partir del offset y el límite")
+    void deberiaCalcularPaginasDesdeOffset() {
+        // 1. PREPARACIÓN
+        OffsetPageRequest pagina = new OffsetPageRequest(25, 10);
+
+        // 2. LÓGICA DE LA PRUEBA
+        Pageable siguiente = pagina.next();
+        Pageable anterior = pagina.previousOrFirst();
+        Pageable primera = new OffsetPageRequest(0, 10).previousOrFirst();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(25, pagina.getOffset());
+        assertEquals(10, pagina.getPageSize());
+        assertEquals(2, pagina.getPageNumber());
+        assertTrue(pagina.hasPrevious());
+        assertEquals(35, siguiente.getOffset());
+        assertEquals(15, anterior.getOffset());
+        assertEquals(0, new OffsetPageRequest(5, 10).previousOrFirst().getOffset());
+        assertEquals(0, primera.getOffset());
+        assertFalse(primera.hasPrevious());
+        assertEquals(30, pagina.withPage(3).getOffset());
+        assertEquals(0, pagina.first().getOffset());
+        assertTrue(pagina.getSort().isUnsorted());
+    }
+
+    @Test
+    @DisplayName("no debería desbordar el offset al pedir una página alta")
+    void noDeberiaDesbordarOffset() {
+        // 2. LÓGICA DE LA PRUEBA
+        Pageable pagina = new OffsetPageRequest(0, 1000).withPage(5_000_000);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(5_000_000_000L, pagina.getOffset());
+    }
+
+    @Test
+    @DisplayName("debería rechazar un offset negativo o un límite menor que uno")
+    void deberiaRechazarParametrosInvalidos() {
+        assertThrows(IllegalArgumentException.class, () -> new OffsetPageRequest(-1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new OffsetPageRequest(0, 0));
+    }
+
+    @Test
+    @DisplayName("debería limitar el tamaño al máximo configurado y corregir valores fuera de rango")
+    void deberiaAcotarLimiteYOffsetDeProximasCitas() {
+        // 1. PREPARACIÓN
+        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
+
+        // 2. LÓGICA DE LA PRUEBA
+        citaService.findProximasCitas(10, 20);
+        citaService.findProximasCitas(500, 0);
+        citaService.findProximasCitas(0, -7);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        verify(citaRepository, times(3)).findProximasCitas(eq(LocalDate.now()), captor.capture());
+        Pageable normal = captor.getAllValues().get(0);
+        Pageable excesivo = captor.getAllValues().get(1);
+        Pageable invalido = captor.getAllValues().get(2);
+        assertEquals(10, normal.getPageSize());
+        assertEquals(20, normal.getOffset());
+        assertEquals(50, excesivo.getPageSize());
+        assertEquals(1, invalido.getPageSize());
+        assertEquals(0, invalido.getOffset());
+    }
+}
@@ -0,0 +1,84 @@
+package com.backend.vet.ezequielgomez.tdd;
+
+import com.backend.vet.event.AutorizacionCambiadaEvent;
+import com.backend.vet.model.Permission;
+import com.backend.vet.model.Role;
+import com.backend.vet.model.Usuario;
+import com.backend.vet.repository.UsuarioRepository;
+import com.backend.vet.security.services.UserDetailsServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para la caché de UserDetailsServiceImpl
+ * Autor: Ezequiel Gomez
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para UserDetailsServiceImpl")
+class UserDetailsServiceImplTest {
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @InjectMocks
+    private UserDetailsServiceImpl userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: veterinario activo con un permiso
+        ReflectionTestUtils.setField(userDetailsService, "userCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(userDetailsService, "userCacheTtlMinutes", 10L);
+        userDetailsService.init();
+
+        Role rol = new Role(1L, "VETERINARIO", Set.of(new Permission("CITA_READ")));
+        Usuario usuario = new Usuario();
+        usuario.setNombreUsuario("dr.garcia");
+        usuario.setContrasenaHash("hash");
+        usuario.setRol(rol);
+        when(usuarioRepository.findByNombreUsuario("dr.garcia")).thenReturn(Optional.of(usuario));
+    }
+
+    @Test
+    @DisplayName("debería consultar la base de datos una sola vez para cargas repetidas")
+    void deberiaServirUsuarioDesdeCache() {
+        // 2. LÓGICA DE LA PRUEBA
+        UserDetails primero = userDetailsService.loadUserByUsername("dr.garcia");
+        ((User) primero).eraseCredentials();
+        UserDetails segundo = userDetailsService.loadUserByUsername("dr.garcia");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        verify(usuarioRepository, times(1)).findByNombreUsuario("dr.garcia");
+        // Borrar la contraseña del principal entregado no afecta a la copia en caché
+        assertEquals("hash", segundo.getPassword());
+        assertEquals(2, segundo.getAuthorities().size());
+    }
+
+    @Test
+    @DisplayName("debería volver a cargar los usuarios de un rol cuando cambian sus permisos")
+    void deberiaInvalidarUsuariosDelRol() {
+        // 1. PREPARACIÓN
+        userDetailsService.loadUserByUsername("dr.garcia");
+
+        // 2. LÓGICA DE LA PRUEBA
+        userDetailsService.onAutorizacionCambiada(AutorizacionCambiadaEvent.deRol("VETERINARIO"));
+        userDetailsService.loadUserByUsername("dr.garcia");
+
+        // 3. VERIFICACIÓN CON ASSERT
+        verify(usuarioRepository, times(2)).findByNombreUsuario("dr.garcia");
+    }
+}
@@ -0,0 +1,150 @@
+package com.backend.vet.fabriziopalenque.tdd;
+
+import com.backend.vet.config.FileStorageConfig;
+import com.backend.vet.dto.ArchivoClinicoDto;
+import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.dto.MascotaDto;
+import com.backend.vet.service.ArchivoClinicoService;
+import com.backend.vet.service.ExpedienteService;
+import com.backend.vet.service.FileStorageService;
+import com.backend.vet.service.HistorialClinicoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas unitarias TDD para la exportación del expediente clínico de una mascota
+ * Autor: Fabrizio Palenque
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para ExpedienteService")
+class ExpedienteServiceTest {
+
+    @TempDir
+    Path directorio;
+
+    private Path almacenamiento;
+    private HistorialClinicoService historialClinicoService;
+    private ArchivoClinicoService archivoClinicoService;
+    private ExpedienteService expedienteService;
+    private MascotaDto mascota;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: almacenamiento real en un directorio temporal y servicios simulados
+        FileStorageConfig config = new FileStorageConfig();
+        config.setUploadDir(directorio.toString());
+        FileStorageService fileStorageService = new FileStorageService(config);
+        fileStorageService.init();
+        almacenamiento = config.getHistorialStoragePath();
+
+        historialClinicoService = mock(HistorialClinicoService.class);
+        archivoClinicoService = mock(ArchivoClinicoService.class);
+
+        expedienteService = new ExpedienteService();
+        ReflectionTestUtils.setField(expedienteService, "historialClinicoService", historialClinicoService);
+        ReflectionTestUtils.setField(expedienteService, "archivoClinicoService", archivoClinicoService);
+        ReflectionTestUtils.setField(expedienteService, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(expedienteService, "objectMapper", new ObjectMapper().findAndRegisterModules());
+
+        mascota = new MascotaDto(1L, "Firulais", "Perro", "Labrador", LocalDate.of(2018, 1, 1), "Cafe", 1L, "Sin alergias", "M");
+    }
+
+    @Test
+    @DisplayName("debería generar un ZIP con el historial y los archivos, sin recomprimir las imágenes")
+    void deberiaGenerarZipConHistorialYArchivos() throws Exception {
+        // 1. PREPARACIÓN
+        HistorialClinicoDto consulta = new HistorialClinicoDto();
+        consulta.setId(10L);
+        consulta.setFecha(LocalDateTime.of(2024, 3, 1, 10, 30));
+        consulta.setDiagnostico("Otitis, oído derecho");
+        consulta.setTratamiento("Gotas \"Otomax\"");
+        consulta.setMascotaId(1L);
+        when(historialClinicoService.getHistorialClinicoByMascotaId(1L)).thenReturn(List.of(consulta));
+
+        byte[] radiografia = new byte[4096];
+        radiografia[0] = (byte) 0xFF;
+        Files.write(almacenamiento.resolve("radiografia.jpg"), radiografia);
+        String informe = "Informe de laboratorio\n".repeat(200);
+        Files.writeString(almacenamiento.resolve("informe.txt"), informe);
+
+        ArchivoClinicoDto imagen = archivo(100L, "radiografia.jpg", "image/jpeg");
+        ArchivoClinicoDto texto = archivo(101L, "informe.txt", "text/plain");
+        ArchivoClinicoDto perdido = archivo(102L, "perdido.pdf", "application/pdf");
+        when(archivoClinicoService.getArchivosByMascotaId(1L)).thenReturn(List.of(imagen, texto, perdido));
+
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        // 2. LÓGICA DE LA PRUEBA
+        int incluidos = expedienteService.escribirExpediente(mascota, salida);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        Map<String, ZipEntry> entradas = new HashMap<>();
+        Map<String, byte[]> contenidos = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(salida.toByteArray()))) {
+            ZipEntry entrada;
+            while ((entrada = zip.getNextEntry()) != null) {
+                entradas.put(entrada.getName(), entrada);
+                contenidos.put(entrada.getName(), zip.readAllBytes());
+            }
+        }
+
+        assertEquals(2, incluidos);
+        assertTrue(entradas.containsKey("mascota.json"));
+        assertTrue(entradas.containsKey("historial.json"));
+        assertTrue(entradas.containsKey("archivos.json"));
+        assertFalse(entradas.containsKey("archivos/10/102_perdido.pdf"));
+
+        assertEquals(ZipEntry.STORED, entradas.get("archivos/10/100_radiografia.jpg").getMethod());
+        assertArrayEquals(radiografia, contenidos.get("archivos/10/100_radiografia.jpg"));
+        assertEquals(ZipEntry.DEFLATED, entradas.get("archivos/10/101_informe.txt").getMethod());
+        assertEquals(informe, new String(contenidos.get("archivos/10/101_informe.txt"), StandardCharsets.UTF_8));
+
+        String csv = new String(contenidos.get("historial.csv"), StandardCharsets.UTF_8);
+        assertTrue(csv.contains("\"Otitis, oído derecho\""));
+        assertTrue(csv.contains("\"Gotas \"\"Otomax\"\"\""));
+        assertTrue(new String(contenidos.get("mascota.json"), StandardCharsets.UTF_8).contains("Firulais"));
+    }
+
+    @Test
+    @DisplayName("debería detectar los formatos ya comprimidos por tipo MIME o por extensión")
+    void deberiaDetectarFormatosComprimidos() {
+        // 2. LÓGICA DE LA PRUEBA y 3. VERIFICACIÓN CON ASSERT
+        assertTrue(ExpedienteService.estaComprimido("image/png", "placa.png"));
+        assertTrue(ExpedienteService.estaComprimido("video/mp4", "ecografia"));
+        assertTrue(ExpedienteService.estaComprimido(null, "estudio.PDF"));
+        assertTrue(ExpedienteService.estaComprimido("application/octet-stream", "resultados.zip"));
+        assertFalse(ExpedienteService.estaComprimido("application/dicom", "torax.dcm"));
+        assertFalse(ExpedienteService.estaComprimido("text/csv; charset=utf-8", "analitica.csv"));
+    }
+
+    private ArchivoClinicoDto archivo(Long id, String nombre, String tipoMime) {
+        ArchivoClinicoDto archivo = new ArchivoClinicoDto();
+        archivo.setId(id);
+        archivo.setNombreArchivo(nombre);
+        archivo.setTipoMime(tipoMime);
+        archivo.setUrl("/api/archivos-clinicos/download/" + nombre);
+        archivo.setHistorialClinicoId(10L);
+        return archivo;
+    }
+}
@@ -0,0 +1,101 @@
+package com.backend.vet.fabriziopalenque.tdd;
+
+import com.backend.vet.controller.MascotaController;
+import com.backend.vet.exception.GlobalExceptionHandler;
+import com.backend.vet.service.ExpedienteService;
+import com.backend.vet.service.MascotaService;
+import com.backend.vet.service.ResumenPacienteService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pruebas TDD para la autorización de la exportación del expediente clínico
+ * Autor: Fabrizio Palenque
+ * Estructura: Arrange-Act-Assert
+ */
+@SpringJUnitWebConfig(MascotaExpedienteSeguridadTest.Configuracion.class)
+@DisplayName("Pruebas de autorización para la exportación del expediente clínico")
+class MascotaExpedienteSeguridadTest {
+
+    @Configuration
+    @EnableWebMvc
+    @EnableMethodSecurity
+    @Import({MascotaController.class, GlobalExceptionHandler.class})
+    static class Configuracion {
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @MockitoBean
+    private MascotaService mascotaService;
+
+    @MockitoBean
+    private ExpedienteService expedienteService;
+
+    @MockitoBean
+    private ResumenPacienteService resumenPacienteService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: MockMvc sobre el contexto con seguridad de métodos activa
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @Test
+    @WithMockUser(username = "gerente", authorities = {"ROLE_GERENTE", "MASCOTA_READ", "HISTORIAL_CLINICO_READ"})
+    @DisplayName("debería responder 403 a un usuario sin ARCHIVO_CLINICO_READ aunque lea mascotas e historial")
+    void deberiaRechazarSinPermisoDeArchivos() throws Exception {
+        // 2. LÓGICA DE LA PRUEBA
+        // 3. VERIFICACIÓN CON ASSERT
+        mockMvc.perform(get("/api/mascotas/7/expediente.zip"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(mascotaService, expedienteService);
+    }
+
+    @Test
+    @WithMockUser(username = "consultor",
+            authorities = {"ROLE_CONSULTOR_DATOS", "MASCOTA_READ", "HISTORIAL_CLINICO_READ", "ARCHIVO_CLINICO_READ"})
+    @DisplayName("debería responder 403 a un rol que no puede descargar archivos clínicos")
+    void deberiaRechazarRolSinDescargaDeArchivos() throws Exception {
+        // 2. LÓGICA DE LA PRUEBA
+        // 3. VERIFICACIÓN CON ASSERT
+        mockMvc.perform(get("/api/mascotas/7/expediente.zip"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(mascotaService, expedienteService);
+    }
+
+    @Test
+    @WithMockUser(username = "dr.garcia",
+            authorities = {"ROLE_VETERINARIO", "MASCOTA_READ", "HISTORIAL_CLINICO_READ", "ARCHIVO_CLINICO_READ"})
+    @DisplayName("debería permitir la exportación a un veterinario con los tres permisos")
+    void deberiaPermitirAlVeterinario() throws Exception {
+        // 1. PREPARACIÓN
+        when(mascotaService.getMascotaById(anyLong())).thenReturn(null);
+
+        // 2. LÓGICA DE LA PRUEBA
+        // 3. VERIFICACIÓN CON ASSERT
+        mockMvc.perform(get("/api/mascotas/7/expediente.zip"))
+                .andExpect(status().isNotFound());
+        verify(mascotaService).getMascotaById(7L);
+    }
+}
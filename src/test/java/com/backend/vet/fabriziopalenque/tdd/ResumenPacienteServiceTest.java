@@ -0,0 +1,189 @@
+package com.backend.vet.fabriziopalenque.tdd;
+
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.dto.ResumenPacienteDto;
+import com.backend.vet.event.CitaEvent;
+import com.backend.vet.event.EventoDominio;
+import com.backend.vet.exception.ResourceNotFoundException;
+import com.backend.vet.model.Cliente;
+import com.backend.vet.model.Mascota;
+import com.backend.vet.model.ResumenPaciente;
+import com.backend.vet.repository.ArchivoClinicoRepository;
+import com.backend.vet.repository.CitaRepository;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import com.backend.vet.repository.MascotaRepository;
+import com.backend.vet.repository.ResumenPacienteRepository;
+import com.backend.vet.service.ResumenPacienteService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para el resumen de la ficha de una mascota
+ * Autor: Fabrizio Palenque
+ * Estructura: Arrange-Act-Assert
+ */
+@DisplayName("Pruebas unitarias para ResumenPacienteService")
+class ResumenPacienteServiceTest {
+
+    private ResumenPacienteRepository resumenPacienteRepository;
+    private MascotaRepository mascotaRepository;
+    private HistorialClinicoRepository historialClinicoRepository;
+    private CitaRepository citaRepository;
+    private ArchivoClinicoRepository archivoClinicoRepository;
+    private ResumenPacienteService resumenPacienteService;
+    private Mascota mascota;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: repositorios simulados y una mascota con propietario
+        resumenPacienteRepository = mock(ResumenPacienteRepository.class);
+        mascotaRepository = mock(MascotaRepository.class);
+        historialClinicoRepository = mock(HistorialClinicoRepository.class);
+        citaRepository = mock(CitaRepository.class);
+        archivoClinicoRepository = mock(ArchivoClinicoRepository.class);
+
+        resumenPacienteService = new ResumenPacienteService();
+        ReflectionTestUtils.setField(resumenPacienteService, "resumenPacienteRepository", resumenPacienteRepository);
+        ReflectionTestUtils.setField(resumenPacienteService, "mascotaRepository", mascotaRepository);
+        ReflectionTestUtils.setField(resumenPacienteService, "historialClinicoRepository", historialClinicoRepository);
+        ReflectionTestUtils.setField(resumenPacienteService, "citaRepository", citaRepository);
+        ReflectionTestUtils.setField(resumenPacienteService, "archivoClinicoRepository", archivoClinicoRepository);
+        ReflectionTestUtils.setField(resumenPacienteService, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(resumenPacienteService, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(resumenPacienteService, "ultimasAtenciones", 2);
+
+        Cliente cliente = new Cliente();
+        cliente.setId(4L);
+        cliente.setNombre("Juan");
+        cliente.setApellido("Pérez");
+        cliente.setTelefono("555-1234");
+        mascota = new Mascota();
+        mascota.setId(7L);
+        mascota.setNombre("Luna");
+        mascota.setEspecie("Gato");
+        mascota.setCliente(cliente);
+    }
+
+    @Test
+    @DisplayName("debería armar el resumen completo y servirlo después desde su fila sin volver a consultar")
+    void deberiaArmarYServirResumen() {
+        // 1. PREPARACIÓN
+        when(mascotaRepository.findById(7L)).thenReturn(Optional.of(mascota));
+        when(historialClinicoRepository.findLineaTiempo(eq(7L), any()))
+                .thenReturn(List.of(atencion(58L, null), atencion(57L, "Insuficiencia renal")));
+        CitaDto proxima = new CitaDto();
+        proxima.setId(131L);
+        proxima.setFecha(LocalDate.now().plusDays(3));
+        proxima.setHora(LocalTime.of(10, 30));
+        when(citaRepository.findProximasByMascotaId(eq(7L), any(), any(), any())).thenReturn(List.of(proxima));
+        when(archivoClinicoRepository.countPorTipoMimeByMascotaId(7L))
+                .thenReturn(List.of(new Object[]{"image/jpeg", 2L}, new Object[]{null, 1L}));
+
+        // 2. LÓGICA DE LA PRUEBA
+        ResumenPacienteDto armado = resumenPacienteService.reconstruir(7L).orElseThrow();
+        ArgumentCaptor<String> datos = ArgumentCaptor.forClass(String.class);
+        verify(resumenPacienteRepository).guardar(eq(7L), eq(4L), datos.capture(), any());
+        when(resumenPacienteRepository.findById(7L))
+                .thenReturn(Optional.of(new ResumenPaciente(7L, 4L, datos.getValue(), LocalDateTime.now())));
+        ResumenPacienteDto servido = resumenPacienteService.getResumen(7L);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(armado, servido);
+        assertEquals("Luna", servido.getMascota().getNombre());
+        assertEquals("555-1234", servido.getPropietario().getTelefono());
+        assertEquals(2, servido.getUltimasAtenciones().size());
+        assertEquals("Insuficiencia renal", servido.getUltimoDiagnostico());
+        assertEquals(131L, servido.getProximaCita().getId());
+        assertEquals(3, servido.getTotalArchivos());
+        assertEquals(Map.of("image/jpeg", 2L, "application/octet-stream", 1L), servido.getArchivosPorTipo());
+        verify(mascotaRepository, times(1)).findById(7L);
+        verify(historialClinicoRepository, never()).findConDiagnosticoByMascotaId(any(), any());
+    }
+
+    @Test
+    @DisplayName("debería rehacer el resumen al consultarlo si su próxima cita ya pasó")
+    void deberiaRehacerResumenConCitaVencida() throws Exception {
+        // 1. PREPARACIÓN
+        ResumenPacienteDto anterior = new ResumenPacienteDto();
+        CitaDto pasada = new CitaDto();
+        pasada.setFecha(LocalDate.now().minusDays(1));
+        pasada.setHora(LocalTime.of(9, 0));
+        anterior.setProximaCita(pasada);
+        String datos = new ObjectMapper().findAndRegisterModules().writeValueAsString(anterior);
+        when(resumenPacienteRepository.findById(7L))
+                .thenReturn(Optional.of(new ResumenPaciente(7L, 4L, datos, LocalDateTime.now().minusDays(2))));
+        when(mascotaRepository.findById(7L)).thenReturn(Optional.of(mascota));
+
+        // 2. LÓGICA DE LA PRUEBA
+        ResumenPacienteDto resumen = resumenPacienteService.getResumen(7L);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertNull(resumen.getProximaCita());
+        verify(resumenPacienteRepository).guardar(eq(7L), eq(4L), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("debería eliminar el resumen y responder 404 si la mascota no existe")
+    void deberiaEliminarResumenDeMascotaInexistente() {
+        // 1. PREPARACIÓN
+        when(mascotaRepository.findById(99L)).thenReturn(Optional.empty());
+
+        // 2. LÓGICA DE LA PRUEBA y 3. VERIFICACIÓN CON ASSERT
+        assertThrows(ResourceNotFoundException.class, () -> resumenPacienteService.getResumen(99L));
+        verify(resumenPacienteRepository).deleteById(99L);
+    }
+
+    @Test
+    @DisplayName("debería reconstruir una sola vez cada mascota afectada por un grupo de eventos del bus")
+    void deberiaReconstruirMascotasDeUnaCitaModificada() {
+        // 1. PREPARACIÓN
+        Mascota otra = new Mascota();
+        otra.setId(8L);
+        otra.setNombre("Rex");
+        when(mascotaRepository.findById(7L)).thenReturn(Optional.of(mascota));
+        when(mascotaRepository.findById(8L)).thenReturn(Optional.of(otra));
+        CitaDto antes = new CitaDto();
+        antes.setMascotaId(7L);
+        CitaDto despues = new CitaDto();
+        despues.setMascotaId(8L);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        List<EventoDominio> eventos = List.of(
+                new EventoDominio(1L, "Cita", 131L, "ACTUALIZADO",
+                        objectMapper.valueToTree(new CitaEvent(antes, despues)), LocalDateTime.now()),
+                new EventoDominio(2L, "Mascota", 7L, "ACTUALIZADO",
+                        objectMapper.createObjectNode(), LocalDateTime.now()));
+
+        // 2. LÓGICA DE LA PRUEBA
+        resumenPacienteService.procesar(eventos);
+
+        // 3. VERIFICACIÓN CON ASSERT
+        verify(resumenPacienteRepository, times(1)).guardar(eq(7L), eq(4L), anyString(), any());
+        verify(resumenPacienteRepository, times(1)).guardar(eq(8L), isNull(), anyString(), any());
+    }
+
+    private static HistorialClinicoDto atencion(Long id, String diagnostico) {
+        HistorialClinicoDto dto = new HistorialClinicoDto();
+        dto.setId(id);
+        dto.setFecha(LocalDateTime.of(2023, 10, id.intValue() % 28 + 1, 9, 0));
+        dto.setDiagnostico(diagnostico);
+        dto.setMascotaId(7L);
+        return dto;
+    }
+}
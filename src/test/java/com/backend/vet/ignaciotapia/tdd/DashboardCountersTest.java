@@ -0,0 +1,173 @@
+package com.backend.vet.ignaciotapia.tdd;
+
+import com.backend.vet.dto.CitaDto;
+import com.backend.vet.dto.HistorialClinicoDto;
+import com.backend.vet.event.CitaEvent;
+import com.backend.vet.event.HistorialClinicoEvent;
+import com.backend.vet.repository.CitaRepository;
+import com.backend.vet.repository.HistorialClinicoRepository;
+import com.backend.vet.service.DashboardCounters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias TDD para DashboardCounters
+ * Estructura: Arrange-Act-Assert
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Pruebas unitarias para DashboardCounters")
+class DashboardCountersTest {
+
+    @Mock
+    private CitaRepository citaRepository;
+
+    @Mock
+    private HistorialClinicoRepository historialClinicoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private DashboardCounters dashboardCounters;
+
+    private LocalDate hoy;
+
+    @BeforeEach
+    void setUp() {
+        // Configuración común: 8 citas, 2 mascotas atendidas (una dos veces) y 1 vacuna hoy
+        hoy = LocalDate.now();
+        when(citaRepository.countByFecha(hoy)).thenReturn(8L);
+        when(historialClinicoRepository.countAtencionesPorMascota(any(), any()))
+                .thenReturn(List.of(new Object[]{1L, 2L}, new Object[]{2L, 1L}));
+        when(historialClinicoRepository.countVacunasEntre(any(), any())).thenReturn(1);
+        dashboardCounters.reconstruir();
+    }
+
+    @Test
+    @DisplayName("debería servir los contadores cargados desde la base de datos")
+    void deberiaServirContadoresCargados() {
+        // 2. LÓGICA DE LA PRUEBA
+        int citas = dashboardCounters.getCitasDelDia();
+        int pacientes = dashboardCounters.getPacientesAtendidos();
+        int vacunas = dashboardCounters.getVacunasAplicadas();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(8, citas);
+        assertEquals(2, pacientes);
+        assertEquals(1, vacunas);
+        verify(citaRepository, times(1)).countByFecha(hoy);
+    }
+
+    @Test
+    @DisplayName("debería actualizar las citas del día al crear, mover y eliminar citas")
+    void deberiaActualizarCitasDelDia() {
+        // 1. PREPARACIÓN
+        CitaDto deHoy = cita(hoy);
+        CitaDto deManana = cita(hoy.plusDays(1));
+
+        // 2. LÓGICA DE LA PRUEBA
+        dashboardCounters.onCita(new CitaEvent(null, deHoy));
+        dashboardCounters.onCita(new CitaEvent(null, deManana));
+        dashboardCounters.onCita(new CitaEvent(deHoy, deManana));
+        dashboardCounters.onCita(new CitaEvent(deHoy, null));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(7, dashboardCounters.getCitasDelDia());
+    }
+
+    @Test
+    @DisplayName("debería contar pacientes distintos y vacunas a partir de los eventos de historial")
+    void deberiaActualizarPacientesYVacunas() {
+        // 1. PREPARACIÓN
+        HistorialClinicoDto vacunaMascota3 = historial(3L, "vacuna antirrábica");
+        HistorialClinicoDto controlMascota1 = historial(1L, "control general");
+
+        // 2. LÓGICA DE LA PRUEBA
+        dashboardCounters.onHistorialClinico(new HistorialClinicoEvent(null, vacunaMascota3));
+        dashboardCounters.onHistorialClinico(new HistorialClinicoEvent(controlMascota1, null));
+
+        // 3. VERIFICACIÓN CON ASSERT
+        // La mascota 1 tenía dos atenciones, por lo que sigue contando como paciente atendido
+        assertEquals(3, dashboardCounters.getPacientesAtendidos());
+        assertEquals(2, dashboardCounters.getVacunasAplicadas());
+
+        dashboardCounters.onHistorialClinico(new HistorialClinicoEvent(vacunaMascota3, null));
+
+        assertEquals(2, dashboardCounters.getPacientesAtendidos());
+        assertEquals(1, dashboardCounters.getVacunasAplicadas());
+    }
+
+    @Test
+    @DisplayName("no debería contar dos veces un cambio que las consultas de la recarga ya incluyen")
+    void noDeberiaContarDosVecesCambiosDuranteLaRecarga() {
+        // 1. PREPARACIÓN
+        // La cita y la vacuna se confirman antes de las consultas, pero sus eventos llegan durante la recarga
+        when(citaRepository.countByFecha(hoy)).thenReturn(9L);
+        when(historialClinicoRepository.countVacunasEntre(any(), any())).thenAnswer(invocacion -> {
+            dashboardCounters.onCita(new CitaEvent(null, cita(hoy)));
+            dashboardCounters.onHistorialClinico(new HistorialClinicoEvent(null, historial(3L, "vacuna triple")));
+            return 2;
+        });
+
+        // 2. LÓGICA DE LA PRUEBA
+        dashboardCounters.reconstruir();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(9, dashboardCounters.getCitasDelDia());
+        assertEquals(2, dashboardCounters.getVacunasAplicadas());
+        verify(transactionManager, atLeastOnce()).getTransaction(argThat(definicion ->
+                definicion.getIsolationLevel() == TransactionDefinition.ISOLATION_REPEATABLE_READ
+                        && definicion.isReadOnly()));
+    }
+
+    @Test
+    @DisplayName("debería corregir en la reconciliación los cambios perdidos y no bajar de cero")
+    void deberiaReconciliarYNoBajarDeCero() {
+        // 1. PREPARACIÓN
+        when(citaRepository.countByFecha(hoy)).thenReturn(0L);
+        dashboardCounters.reconstruir();
+
+        // 2. LÓGICA DE LA PRUEBA
+        // Se elimina una cita cuya creación no vio la recarga
+        dashboardCounters.onCita(new CitaEvent(cita(hoy), null));
+        int trasEliminar = dashboardCounters.getCitasDelDia();
+        when(citaRepository.countByFecha(hoy)).thenReturn(3L);
+        dashboardCounters.reconciliar();
+
+        // 3. VERIFICACIÓN CON ASSERT
+        assertEquals(0, trasEliminar);
+        assertEquals(3, dashboardCounters.getCitasDelDia());
+    }
+
+    private CitaDto cita(LocalDate fecha) {
+        CitaDto dto = new CitaDto();
+        dto.setFecha(fecha);
+        dto.setHora(LocalTime.of(10, 0));
+        return dto;
+    }
+
+    private HistorialClinicoDto historial(Long mascotaId, String diagnostico) {
+        HistorialClinicoDto dto = new HistorialClinicoDto();
+        dto.setFecha(LocalDateTime.now());
+        dto.setMascotaId(mascotaId);
+        dto.setDiagnostico(diagnostico);
+        return dto;
+    }
+}